@@ -0,0 +1,375 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later 
+ * and CeCILL. This should be distributed with the code. If you 
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import fr.ens.biologie.genomique.aozan.RunData;
+
+/**
+ * This class generates the synthetic files used by the benchmarks. The
+ * generated data only depends on the arguments, so the results of several runs
+ * of the benchmarks can be compared.
+ * @since 3.2
+ * @author Laurent Jourdren
+ */
+public final class SyntheticData {
+
+  private static final char[] NUCLEOTIDES = {'A', 'C', 'G', 'T'};
+  private static final long SEED = 42;
+
+  /** Number of quality scores of the quality metrics histograms. */
+  private static final int QSCORE_COUNT = 50;
+
+  //
+  // InterOp
+  //
+
+  /**
+   * Write a QMetricsOut.bin file (version 6 without quality score bins).
+   * @param file output file
+   * @param lanes number of lanes
+   * @param tiles number of tiles per lane
+   * @param cycles number of cycles
+   * @throws IOException if an error occurs while writing the file
+   */
+  public static void writeQualityMetricsFile(final File file, final int lanes,
+      final int tiles, final int cycles) throws IOException {
+
+    final int recordSize = 6 + QSCORE_COUNT * 4;
+    final Random random = new Random(SEED);
+
+    try (FileOutputStream out = new FileOutputStream(file);
+        FileChannel channel = out.getChannel()) {
+
+      final ByteBuffer header = ByteBuffer.allocate(3);
+      header.put((byte) 6);
+      header.put((byte) recordSize);
+      header.put((byte) 0);
+      header.flip();
+      channel.write(header);
+
+      final ByteBuffer record = ByteBuffer.allocate(recordSize);
+      record.order(ByteOrder.LITTLE_ENDIAN);
+
+      for (int lane = 1; lane <= lanes; lane++) {
+        for (int tile = 1; tile <= tiles; tile++) {
+          for (int cycle = 1; cycle <= cycles; cycle++) {
+
+            record.clear();
+            record.putShort((short) lane);
+            record.putShort((short) (1100 + tile));
+            record.putShort((short) cycle);
+            for (int q = 0; q < QSCORE_COUNT; q++) {
+              record.putInt(q < 10 ? 0 : random.nextInt(10000));
+            }
+            record.flip();
+            channel.write(record);
+          }
+        }
+      }
+    }
+  }
+
+  //
+  // FASTQ
+  //
+
+  /**
+   * Write a gzipped FASTQ file with Illumina read identifiers.
+   * @param file output file
+   * @param reads number of reads
+   * @param readLength length of the reads
+   * @param filteredRatio ratio of reads that do not pass the filters
+   * @param indexes indexes of the reads, a random index is used when the
+   *          array is empty
+   * @throws IOException if an error occurs while writing the file
+   */
+  public static void writeFastq(final File file, final int reads,
+      final int readLength, final double filteredRatio, final String[] indexes)
+      throws IOException {
+
+    final Random random = new Random(SEED);
+
+    try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+        new GZIPOutputStream(new FileOutputStream(file), 65536),
+        StandardCharsets.US_ASCII))) {
+
+      final StringBuilder sb = new StringBuilder();
+
+      for (int i = 0; i < reads; i++) {
+
+        final String index = indexes.length == 0
+            ? randomSequence(random, 8)
+            : indexes[random.nextInt(indexes.length)];
+        final boolean filtered = random.nextDouble() < filteredRatio;
+
+        sb.setLength(0);
+        sb.append("@NB500892:10:H3YL2BGX2:1:11101:");
+        sb.append(1000 + i % 20000);
+        sb.append(':');
+        sb.append(1000 + i / 20000);
+        sb.append(" 1:");
+        sb.append(filtered ? 'Y' : 'N');
+        sb.append(":0:");
+        sb.append(index);
+        sb.append('\n');
+        sb.append(randomSequence(random, readLength));
+        sb.append("\n+\n");
+        for (int j = 0; j < readLength; j++) {
+          sb.append((char) ('#' + random.nextInt(38)));
+        }
+        sb.append('\n');
+
+        writer.write(sb.toString());
+      }
+    }
+  }
+
+  /**
+   * Create random indexes.
+   * @param count number of indexes
+   * @param length length of the indexes
+   * @return an array with the indexes
+   */
+  public static String[] createIndexes(final int count, final int length) {
+
+    final Random random = new Random(SEED);
+    final String[] result = new String[count];
+
+    for (int i = 0; i < count; i++) {
+      result[i] = randomSequence(random, length);
+    }
+
+    return result;
+  }
+
+  /**
+   * Create a RunData with the samplesheet and demultiplexing entries of a
+   * lane.
+   * @param lane the lane
+   * @param indexes the indexes of the samples
+   * @param clusterCount the number of clusters of each sample
+   * @return a new RunData object
+   */
+  public static RunData createRunData(final int lane, final String[] indexes,
+      final int clusterCount) {
+
+    final RunData data = new RunData();
+    final StringBuilder samples = new StringBuilder();
+
+    data.put("run.info.flow.cell.lane.count", lane);
+    data.put("run.info.read.count", 1);
+    data.put("run.info.read1.cycles", 100);
+    data.put("run.info.read1.indexed", false);
+
+    for (int i = 0; i < indexes.length; i++) {
+
+      final int sampleId = i + 1;
+      final String prefix = "samplesheet.sample" + sampleId;
+
+      if (samples.length() > 0) {
+        samples.append(',');
+      }
+      samples.append(sampleId);
+
+      data.put(prefix + ".id", "sample" + sampleId);
+      data.put(prefix + ".demux.name", "sample" + sampleId);
+      data.put(prefix + ".project", "Project");
+      data.put(prefix + ".description", "Benchmark sample " + sampleId);
+      data.put(prefix + ".index", indexes[i]);
+      data.put(prefix + ".lane", lane);
+      data.put(prefix + ".undetermined", false);
+      data.put("demux.sample" + sampleId + ".read1.raw.cluster.count",
+          clusterCount);
+      data.put("demux.sample" + sampleId + ".read1.pf.cluster.count",
+          clusterCount);
+    }
+
+    data.put("samplesheet.sample.count", indexes.length);
+    data.put("samplesheet.lane" + lane + ".samples", samples.toString());
+
+    return data;
+  }
+
+  /**
+   * Write a bcl2fastq 2 samplesheet with one sample.
+   * @param file output file
+   * @param sampleName name of the sample
+   * @param projectName name of the project
+   * @param index index of the sample
+   * @throws IOException if an error occurs while writing the file
+   */
+  public static void writeSampleSheet(final File file, final String sampleName,
+      final String projectName, final String index) throws IOException {
+
+    try (Writer writer = newWriter(new FileOutputStream(file))) {
+      writer.write("[Header]\nIEMFileVersion,4\n\n[Data]\n");
+      writer.write("Lane,Sample_ID,Sample_Name,Sample_Project,index\n");
+      writer.write("1,"
+          + sampleName + "," + sampleName + "," + projectName + "," + index
+          + "\n");
+    }
+  }
+
+  //
+  // SAM
+  //
+
+  /**
+   * Write a FASTA file of a genome.
+   * @param file output file
+   * @param sequences number of sequences
+   * @param length length of each sequence
+   * @throws IOException if an error occurs while writing the file
+   */
+  public static void writeFasta(final File file, final int sequences,
+      final int length) throws IOException {
+
+    final Random random = new Random(SEED);
+
+    try (Writer writer = newWriter(new FileOutputStream(file))) {
+      for (int i = 1; i <= sequences; i++) {
+        writer.write(">chr" + i + "\n");
+        for (int j = 0; j < length; j += 60) {
+          writer.write(randomSequence(random, Math.min(60, length - j)));
+          writer.write('\n');
+        }
+      }
+    }
+  }
+
+  /**
+   * Write a SAM file as created by bowtie for FastqScreen. A quarter of the
+   * reads are unmapped and a quarter of the reads have two alignments.
+   * @param file output file
+   * @param reads number of reads
+   * @param sequences number of sequences of the genome
+   * @param sequenceLength length of the sequences of the genome
+   * @param readLength length of the reads
+   * @throws IOException if an error occurs while writing the file
+   */
+  public static void writeSam(final File file, final int reads,
+      final int sequences, final int sequenceLength, final int readLength)
+      throws IOException {
+
+    final Random random = new Random(SEED);
+
+    try (Writer writer = newWriter(new FileOutputStream(file))) {
+
+      writer.write("@HD\tVN:1.0\tSO:unsorted\n");
+      for (int i = 1; i <= sequences; i++) {
+        writer.write("@SQ\tSN:chr" + i + "\tLN:" + sequenceLength + "\n");
+      }
+
+      final StringBuilder quality = new StringBuilder();
+      for (int i = 0; i < readLength; i++) {
+        quality.append('I');
+      }
+
+      for (int i = 0; i < reads; i++) {
+
+        final String name = "NB500892:10:H3YL2BGX2:1:11101:" + i + ":1000";
+        final String sequence = randomSequence(random, readLength);
+        final int kind = i % 4;
+
+        if (kind == 0) {
+          writer.write(name
+              + "\t4\t*\t0\t0\t*\t*\t0\t0\t" + sequence + "\t" + quality
+              + "\n");
+          continue;
+        }
+
+        final int alignments = kind == 1 ? 2 : 1;
+        for (int j = 0; j < alignments; j++) {
+          writer.write(name
+              + "\t" + (j == 0 ? 0 : 256) + "\tchr"
+              + (1 + random.nextInt(sequences)) + "\t"
+              + (1 + random.nextInt(sequenceLength - readLength)) + "\t"
+              + (j == 0 ? 42 : 1) + "\t" + readLength + "M\t*\t0\t0\t"
+              + sequence + "\t" + quality + "\n");
+        }
+      }
+    }
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Delete recursively a directory.
+   * @param file file or directory to delete
+   */
+  public static void delete(final File file) {
+
+    final File[] files = file.listFiles();
+    if (files != null) {
+      for (final File f : files) {
+        delete(f);
+      }
+    }
+
+    file.delete();
+  }
+
+  private static String randomSequence(final Random random, final int length) {
+
+    final char[] result = new char[length];
+    for (int i = 0; i < length; i++) {
+      result[i] = NUCLEOTIDES[random.nextInt(NUCLEOTIDES.length)];
+    }
+
+    return new String(result);
+  }
+
+  private static Writer newWriter(final OutputStream os) {
+
+    return new BufferedWriter(
+        new OutputStreamWriter(os, StandardCharsets.US_ASCII));
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Private constructor.
+   */
+  private SyntheticData() {
+  }
+
+}
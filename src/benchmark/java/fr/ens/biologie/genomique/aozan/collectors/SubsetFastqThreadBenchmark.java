@@ -0,0 +1,147 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later 
+ * and CeCILL. This should be distributed with the code. If you 
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.collectors;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.ens.biologie.genomique.aozan.AozanException;
+import fr.ens.biologie.genomique.aozan.benchmark.SyntheticData;
+import fr.ens.biologie.genomique.aozan.illumina.Bcl2FastqOutput;
+import fr.ens.biologie.genomique.aozan.illumina.Bcl2FastqOutput.Bcl2FastqVersion;
+import fr.ens.biologie.genomique.aozan.io.FastqSample;
+import fr.ens.biologie.genomique.kenetre.illumina.samplesheet.SampleSheet;
+import fr.ens.biologie.genomique.kenetre.illumina.samplesheet.io.SampleSheetCSVReader;
+
+/**
+ * This class benchmarks the creation of the subset FASTQ files of the samples
+ * when only the reads that pass the filters are kept.
+ * @since 3.2
+ * @author Laurent Jourdren
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class SubsetFastqThreadBenchmark {
+
+  @Param({"1000000"})
+  private int reads;
+
+  @Param({"151"})
+  private int readLength;
+
+  @Param({"200000"})
+  private int readsToCopy;
+
+  private File dir;
+  private FastqSample fastqSample;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+
+    this.dir = Files.createTempDirectory("aozan-subset-").toFile();
+    final File fastqDir = new File(this.dir, "fastq");
+    final File tmpDir = new File(this.dir, "tmp");
+    final File sampleSheetFile = new File(this.dir, "samplesheet.csv");
+
+    if (!fastqDir.mkdir() || !tmpDir.mkdir()) {
+      throw new IOException("Unable to create directories in " + this.dir);
+    }
+
+    SyntheticData.writeSampleSheet(sampleSheetFile, "sample1", "Project",
+        "ACGTACGT");
+
+    final SampleSheet sampleSheet;
+    try (InputStream in = new FileInputStream(sampleSheetFile);
+        SampleSheetCSVReader reader = new SampleSheetCSVReader(in)) {
+      sampleSheet = reader.read();
+    }
+
+    final Bcl2FastqOutput output = new Bcl2FastqOutput(sampleSheet, fastqDir,
+        Bcl2FastqVersion.BCL2FASTQ_2, null, false);
+
+    // Write the FASTQ file where the sample expects it
+    final FastqSample probe = new FastqSample(output, tmpDir, "runid", 1, 1,
+        sampleSheet.iterator().next());
+    final File sampleDir = probe.getFastqSampleParentDir();
+    if (!sampleDir.isDirectory() && !sampleDir.mkdirs()) {
+      throw new IOException("Unable to create directory " + sampleDir);
+    }
+    SyntheticData.writeFastq(
+        new File(sampleDir, probe.getFilenamePrefix() + ".fastq.gz"),
+        this.reads, this.readLength, 0.1, new String[] {"ACGTACGT"});
+
+    this.fastqSample = new FastqSample(output, tmpDir, "runid", 1, 1,
+        sampleSheet.iterator().next());
+  }
+
+  @Setup(Level.Invocation)
+  public void removeSubsetFile() {
+
+    this.fastqSample.getSubsetFastqFile().delete();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+
+    SyntheticData.delete(this.dir);
+  }
+
+  @Benchmark
+  public long filteredFastqFile() throws AozanException {
+
+    // Less reads to copy than PF reads: the reads are filtered
+    final SubsetFastqThread thread = new SubsetFastqThread(this.fastqSample,
+        this.reads, this.reads, this.readsToCopy, this.reads, 0);
+    thread.run();
+
+    if (!thread.isSuccess()) {
+      throw new AozanException(thread.getException());
+    }
+
+    return this.fastqSample.getSubsetFastqFile().length();
+  }
+
+}
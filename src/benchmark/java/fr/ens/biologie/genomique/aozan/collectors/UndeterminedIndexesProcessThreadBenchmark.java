@@ -0,0 +1,146 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later 
+ * and CeCILL. This should be distributed with the code. If you 
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.collectors;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.ens.biologie.genomique.aozan.AozanException;
+import fr.ens.biologie.genomique.aozan.RunData;
+import fr.ens.biologie.genomique.aozan.benchmark.SyntheticData;
+import fr.ens.biologie.genomique.aozan.illumina.Bcl2FastqOutput;
+import fr.ens.biologie.genomique.aozan.illumina.Bcl2FastqOutput.Bcl2FastqVersion;
+import fr.ens.biologie.genomique.aozan.io.FastqSample;
+import fr.ens.biologie.genomique.kenetre.illumina.samplesheet.SampleSheet;
+import fr.ens.biologie.genomique.kenetre.illumina.samplesheet.io.SampleSheetCSVReader;
+
+/**
+ * This class benchmarks the counting of the undetermined indexes of a lane
+ * and the search of the recoverable clusters.
+ * @since 3.2
+ * @author Laurent Jourdren
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class UndeterminedIndexesProcessThreadBenchmark {
+
+  @Param({"1000000"})
+  private int reads;
+
+  @Param({"96"})
+  private int samples;
+
+  private File dir;
+  private File reportDir;
+  private RunData data;
+  private Bcl2FastqOutput output;
+  private File tmpDir;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+
+    this.dir = Files.createTempDirectory("aozan-undetermined-").toFile();
+    final File fastqDir = new File(this.dir, "fastq");
+    this.tmpDir = new File(this.dir, "tmp");
+    this.reportDir = new File(this.dir, "report");
+    final File sampleSheetFile = new File(this.dir, "samplesheet.csv");
+
+    if (!fastqDir.mkdir() || !this.tmpDir.mkdir() || !this.reportDir.mkdir()) {
+      throw new IOException("Unable to create directories in " + this.dir);
+    }
+
+    final String[] indexes = SyntheticData.createIndexes(this.samples, 8);
+    this.data =
+        SyntheticData.createRunData(1, indexes, this.reads / this.samples);
+
+    SyntheticData.writeSampleSheet(sampleSheetFile, "sample1", "Project",
+        indexes[0]);
+
+    final SampleSheet sampleSheet;
+    try (InputStream in = new FileInputStream(sampleSheetFile);
+        SampleSheetCSVReader reader = new SampleSheetCSVReader(in)) {
+      sampleSheet = reader.read();
+    }
+
+    this.output = new Bcl2FastqOutput(sampleSheet, fastqDir,
+        Bcl2FastqVersion.BCL2FASTQ_2, null, false);
+
+    // Write the undetermined FASTQ file, with random indexes
+    final FastqSample probe = createFastqSample();
+    SyntheticData.writeFastq(
+        new File(probe.getFastqSampleParentDir(),
+            probe.getFilenamePrefix() + ".fastq.gz"),
+        this.reads, 51, 0.1, new String[0]);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+
+    SyntheticData.delete(this.dir);
+  }
+
+  private FastqSample createFastqSample() throws IOException {
+
+    return new FastqSample(this.output, this.tmpDir, "runid",
+        this.samples + 1, 1, 1, null, "lane1", "", "", "NoIndex", true, true);
+  }
+
+  @Benchmark
+  public RunData processSequences() throws AozanException, IOException {
+
+    final UndeterminedIndexesProcessThread thread =
+        new UndeterminedIndexesProcessThread(this.data, createFastqSample(),
+            this.reportDir, null);
+    thread.run();
+
+    if (!thread.isSuccess()) {
+      throw new AozanException(thread.getException());
+    }
+
+    return thread.getResults();
+  }
+
+}
@@ -0,0 +1,113 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later 
+ * and CeCILL. This should be distributed with the code. If you 
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.collectors.interop;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.ens.biologie.genomique.aozan.AozanException;
+import fr.ens.biologie.genomique.aozan.benchmark.SyntheticData;
+
+/**
+ * This class benchmarks the reading of the InterOp quality metrics file.
+ * @since 3.2
+ * @author Laurent Jourdren
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class QualityMetricsReaderBenchmark {
+
+  /** Number of tiles per lane, 624 tiles for a NovaSeq S4 lane. */
+  @Param({"96", "624"})
+  private int tiles;
+
+  @Param({"4"})
+  private int lanes;
+
+  @Param({"318"})
+  private int cycles;
+
+  private File interOpDir;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+
+    this.interOpDir = Files.createTempDirectory("aozan-interop-").toFile();
+    SyntheticData.writeQualityMetricsFile(
+        new File(this.interOpDir, QualityMetricsReader.QUALITY_METRICS_FILE),
+        this.lanes, this.tiles, this.cycles);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+
+    SyntheticData.delete(this.interOpDir);
+  }
+
+  @Benchmark
+  public List<QualityMetricsReader.Record> readMetrics()
+      throws AozanException {
+
+    return new QualityMetricsReader(this.interOpDir).readMetrics();
+  }
+
+  @Benchmark
+  public long[] visitRecords() throws AozanException {
+
+    final long[] histogram = new long[QualityMetricsReader.QSCORE_COUNT];
+
+    new QualityMetricsReader(this.interOpDir)
+        .visitRecords(new QualityMetricsReader.RecordVisitor() {
+
+          @Override
+          public void visit(final QualityMetricsReader.Record record) {
+            record.addClustersScore(histogram);
+          }
+        });
+
+    return histogram;
+  }
+
+}
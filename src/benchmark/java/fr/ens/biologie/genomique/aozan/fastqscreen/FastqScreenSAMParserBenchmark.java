@@ -0,0 +1,103 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later 
+ * and CeCILL. This should be distributed with the code. If you 
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.fastqscreen;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.ens.biologie.genomique.aozan.benchmark.SyntheticData;
+
+/**
+ * This class benchmarks the parsing of the SAM output of the mapper by
+ * FastqScreen.
+ * @since 3.2
+ * @author Laurent Jourdren
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class FastqScreenSAMParserBenchmark {
+
+  @Param({"200000"})
+  private int reads;
+
+  @Param({"50"})
+  private int readLength;
+
+  private static final int SEQUENCES = 25;
+  private static final int SEQUENCE_LENGTH = 100000;
+
+  private File dir;
+  private File samFile;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+
+    this.dir = Files.createTempDirectory("aozan-sam-").toFile();
+    this.samFile = new File(this.dir, "reads.sam");
+
+    SyntheticData.writeSam(this.samFile, this.reads, SEQUENCES,
+        SEQUENCE_LENGTH, this.readLength);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+
+    SyntheticData.delete(this.dir);
+  }
+
+  @Benchmark
+  public int parseLines() throws IOException {
+
+    final FastqScreenSAMParser parser = new FastqScreenSAMParser(
+        new FastqScreenReadHits(), "genome", false);
+
+    parser.parseLines(
+        new BufferedInputStream(new FileInputStream(this.samFile)));
+
+    return parser.getReadsprocessed();
+  }
+
+}
@@ -44,6 +44,7 @@ import com.google.common.collect.Lists;
 import com.google.common.io.Files;
 
 import fr.ens.biologie.genomique.aozan.collectors.Collector;
+import fr.ens.biologie.genomique.aozan.collectors.CollectorConfiguration;
 import fr.ens.biologie.genomique.aozan.collectors.CollectorRegistry;
 import fr.ens.biologie.genomique.aozan.collectors.FastqScreenCollector;
 import fr.ens.biologie.genomique.aozan.collectors.RunInfoCollector;
@@ -178,6 +179,26 @@ public class QC {
     return this.settings;
   }
 
+  /**
+   * Get a collector selected for the QC.
+   * @param collectorName the name of the collector
+   * @return the collector or null if the collector is not selected
+   */
+  public Collector getCollector(final String collectorName) {
+
+    if (collectorName == null) {
+      return null;
+    }
+
+    for (final Collector c : this.collectors) {
+      if (collectorName.equals(c.getName())) {
+        return c;
+      }
+    }
+
+    return null;
+  }
+
   //
   // Report methods
   //
@@ -250,9 +271,9 @@ public class QC {
     }
 
     // Create the report
-    final QCReport qcReport =
-        new QCReport(data, this.globalTests, this.laneTests,
-            this.projectStatsTests, this.samplesStatsTests, this.sampleTests);
+    final QCReport qcReport = new QCReport(data, this.globalTests,
+        this.laneTests, this.projectStatsTests, this.samplesStatsTests,
+        this.sampleTests, getReportThreads());
 
     return qcReport;
   }
@@ -524,6 +545,11 @@ public class QC {
     addSystemProperty(settings, Settings.QC_CONF_FASTQC_CONTAMINANT_FILE_KEY,
         "fastqc.contaminant_file");
 
+    // Maximal number of mismatches in a contaminant hit
+    addSystemProperty(settings,
+        Settings.QC_CONF_FASTQC_CONTAMINANT_MAX_MISMATCHES_KEY,
+        "fastqc.contaminant_max_mismatches");
+
     // Adapter file
     addSystemProperty(settings, Settings.QC_CONF_FASTQC_ADAPTER_FILE_KEY,
         "fastqc.adapter_file");
@@ -759,6 +785,18 @@ public class QC {
     }
   }
 
+  /**
+   * Get the number of threads to use to evaluate the tests of the QC report.
+   * @return the number of threads to use
+   */
+  private int getReportThreads() {
+
+    final int threads = new CollectorConfiguration(this.globalConf)
+        .getInt(Settings.QC_CONF_REPORT_THREADS_KEY, 1);
+
+    return Math.max(1, threads);
+  }
+
   private boolean isBlastDisabledInSampleSheet() {
 
     // this.globalConf.put(SAMPLESHEET,
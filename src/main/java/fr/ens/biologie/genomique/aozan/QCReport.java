@@ -25,21 +25,31 @@ package fr.ens.biologie.genomique.aozan;
 
 import static java.util.Objects.requireNonNull;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.dom.DOMResult;
 
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
 import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Sets;
@@ -69,8 +79,88 @@ public class QCReport {
   private final List<ProjectTest> projectStatsTests = new ArrayList<>();
   private final List<PooledSampleTest> samplesStatsTests = new ArrayList<>();
   private final List<SampleTest> sampleTests = new ArrayList<>();
+  private final int threads;
   private Document doc;
 
+  /** Executor used to evaluate the tests, null in single thread mode. */
+  private ExecutorService executor;
+
+  /** Number of rows evaluated in advance by each thread. */
+  private static final int ROWS_PER_THREAD_IN_ADVANCE = 4;
+
+  /**
+   * This interface define the evaluation of the tests of a row of the report.
+   */
+  private interface RowEvaluator {
+
+    /**
+     * Evaluate the tests of a row.
+     * @param row the row index
+     * @return an array with the results of the tests of the row
+     */
+    TestResult[] evaluate(int row);
+  }
+
+  /**
+   * This class provides the results of the rows of a part of the report in
+   * the order of the rows. In multithreaded mode, only a limited number of
+   * rows are evaluated in advance.
+   */
+  private final class RowResults {
+
+    private final int rowCount;
+    private final RowEvaluator evaluator;
+    private final Deque<Future<TestResult[]>> pending = new ArrayDeque<>();
+    private int submitted;
+    private int next;
+
+    /**
+     * Get the results of the next row.
+     * @return an array with the results of the tests of the row
+     * @throws AozanException if an error occurs while evaluating the tests
+     */
+    TestResult[] next() throws AozanException {
+
+      if (this.next >= this.rowCount) {
+        throw new IllegalStateException("No more rows to evaluate");
+      }
+
+      if (executor == null) {
+        return this.evaluator.evaluate(this.next++);
+      }
+
+      // Submit the next rows
+      final int maxPending = threads * ROWS_PER_THREAD_IN_ADVANCE;
+      while (this.submitted < this.rowCount
+          && this.pending.size() < maxPending) {
+
+        final int row = this.submitted++;
+        this.pending.add(executor.submit(() -> this.evaluator.evaluate(row)));
+      }
+
+      this.next++;
+
+      try {
+        return this.pending.removeFirst().get();
+      } catch (InterruptedException e) {
+        throw new AozanException(e);
+      } catch (ExecutionException e) {
+
+        // Keep the exception thrown by the tests
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw new AozanException(e.getCause());
+      }
+    }
+
+    private RowResults(final int rowCount, final RowEvaluator evaluator) {
+
+      this.rowCount = rowCount;
+      this.evaluator = evaluator;
+    }
+  }
+
   //
   // Getters
   //
@@ -92,7 +182,26 @@ public class QCReport {
   public Document toDocument() throws AozanException {
 
     if (this.doc == null) {
-      doTests();
+
+      try {
+
+        final DocumentBuilderFactory dbfac =
+            DocumentBuilderFactory.newInstance();
+        final DocumentBuilder docBuilder = dbfac.newDocumentBuilder();
+        final Document doc = docBuilder.newDocument();
+
+        final XMLStreamWriter writer = XMLOutputFactory.newInstance()
+            .createXMLStreamWriter(new DOMResult(doc));
+        writer.writeStartDocument();
+        writeXML(writer);
+        writer.writeEndDocument();
+        writer.close();
+
+        this.doc = doc;
+
+      } catch (ParserConfigurationException | XMLStreamException e) {
+        throw new AozanException(e);
+      }
     }
 
     return this.doc;
@@ -103,210 +212,197 @@ public class QCReport {
   //
 
   /**
-   * Generate the QC report for global tests.
-   * @param parentElement parent Element
+   * Write the QC report for global tests.
+   * @param writer the XML stream writer
+   * @throws XMLStreamException if an error occurs while writing the report
    */
-  private void doGlobalTests(final Document doc, final Element parentElement) {
-
-    final Element root = doc.createElement("GlobalReport");
-    parentElement.appendChild(root);
+  private void doGlobalTests(final XMLStreamWriter writer)
+      throws XMLStreamException {
 
-    final Element columns = doc.createElement("Columns");
-    root.appendChild(columns);
+    writer.writeStartElement("GlobalReport");
+    writeColumns(writer, this.globalTests);
 
-    for (final GlobalTest test : this.globalTests) {
-      final Element columnElement = doc.createElement("Column");
-      columnElement.setAttribute("testname", test.getName());
-      columnElement.setAttribute("description", test.getDescription());
-      columnElement.setAttribute("unit", test.getUnit());
-      columnElement.setTextContent(test.getColumnName());
-      columns.appendChild(columnElement);
+    final TestResult[] results = new TestResult[this.globalTests.size()];
+    for (int i = 0; i < results.length; i++) {
+      results[i] = this.globalTests.get(i).test(this.data);
     }
 
-    final Element runElement = doc.createElement("Run");
-    root.appendChild(runElement);
+    writer.writeStartElement("Run");
+    writeTestResults(writer, this.globalTests, results);
+    writer.writeEndElement();
 
-    for (final GlobalTest test : this.globalTests) {
-      final TestResult result = test.test(this.data);
-
-      final Element testElement = doc.createElement("Test");
-      testElement.setAttribute("name", test.getName());
-      testElement.setAttribute("score", Integer.toString(result.getScore()));
-      testElement.setAttribute("type", result.getType());
-      testElement.setTextContent(result.getMessage());
-      runElement.appendChild(testElement);
-    }
+    writer.writeEndElement();
   }
 
   /**
-   * Generate the QC report for lane tests.
-   * @param parentElement parent Element
+   * Write the QC report for lane tests.
+   * @param writer the XML stream writer
+   * @throws XMLStreamException if an error occurs while writing the report
+   * @throws AozanException if an error occurs while evaluating the tests
    */
-  private void doLanesTests(final Document doc, final Element parentElement) {
+  private void doLanesTests(final XMLStreamWriter writer)
+      throws XMLStreamException, AozanException {
 
     final int readCount = this.data.getReadCount();
     final int laneCount = this.data.getLaneCount();
 
-    final Element root = doc.createElement("ReadsReport");
-    parentElement.appendChild(root);
+    writer.writeStartElement("ReadsReport");
+    writeColumns(writer, this.laneTests);
 
-    final Element columns = doc.createElement("Columns");
-    root.appendChild(columns);
+    // Evaluate the tests
+    final RowResults results = evaluate(readCount * laneCount, row -> {
 
-    for (final LaneTest test : this.laneTests) {
-      final Element columnElement = doc.createElement("Column");
-      columnElement.setAttribute("testname", test.getName());
-      columnElement.setAttribute("description", test.getDescription());
-      columnElement.setAttribute("unit", test.getUnit());
-      columnElement.setTextContent(test.getColumnName());
-      columns.appendChild(columnElement);
-    }
+      final int read = row / laneCount + 1;
+      final int lane = row % laneCount + 1;
+      final boolean indexedRead = this.data.isReadIndexed(read);
+      final TestResult[] rowResults = new TestResult[this.laneTests.size()];
 
-    final Element reads = doc.createElement("Reads");
-    root.appendChild(reads);
+      for (int i = 0; i < rowResults.length; i++) {
+        rowResults[i] =
+            this.laneTests.get(i).test(this.data, read, indexedRead, lane);
+      }
+
+      return rowResults;
+    });
+
+    writer.writeStartElement("Reads");
 
     for (int read = 1; read <= readCount; read++) {
 
       final int cycles = this.data.getReadCyclesCount(read);
       final boolean indexedRead = this.data.isReadIndexed(read);
 
-      final Element readElement = doc.createElement("Read");
-      readElement.setAttribute("number", Integer.toString(read));
-      readElement.setAttribute("cycles", Integer.toString(cycles));
-      readElement.setAttribute("indexed", Boolean.toString(indexedRead));
-      reads.appendChild(readElement);
+      writer.writeStartElement("Read");
+      writeAttribute(writer, "number", Integer.toString(read));
+      writeAttribute(writer, "cycles", Integer.toString(cycles));
+      writeAttribute(writer, "indexed", Boolean.toString(indexedRead));
 
       for (int lane = 1; lane <= laneCount; lane++) {
 
-        final Element laneElement = doc.createElement("Lane");
-        laneElement.setAttribute("number", Integer.toString(lane));
-        readElement.appendChild(laneElement);
-
-        for (final LaneTest test : this.laneTests) {
-          final TestResult result =
-              test.test(this.data, read, indexedRead, lane);
-
-          final Element testElement = doc.createElement("Test");
-          testElement.setAttribute("name", test.getName());
-          testElement.setAttribute("score",
-              Integer.toString(result.getScore()));
-          testElement.setAttribute("type", result.getType());
-          testElement.setTextContent(result.getMessage());
-          laneElement.appendChild(testElement);
-
-        }
+        writer.writeStartElement("Lane");
+        writeAttribute(writer, "number", Integer.toString(lane));
+        writeTestResults(writer, this.laneTests, results.next());
+        writer.writeEndElement();
       }
+
+      writer.writeEndElement();
     }
+
+    writer.writeEndElement();
+    writer.writeEndElement();
   }
 
-  private void doProjectsStatsTests(final Document doc,
-      final Element parentElement) {
+  /**
+   * Write the QC report for project tests.
+   * @param writer the XML stream writer
+   * @throws XMLStreamException if an error occurs while writing the report
+   * @throws AozanException if an error occurs while evaluating the tests
+   */
+  private void doProjectsStatsTests(final XMLStreamWriter writer)
+      throws XMLStreamException, AozanException {
 
     // Sort pooled samples
     final List<Integer> projectIds = this.data.getProjects();
     Collections.sort(projectIds, new RunData.ProjectComparator(data));
 
-    final Element root = doc.createElement("ProjectsReport");
-    parentElement.appendChild(root);
+    writer.writeStartElement("ProjectsReport");
+    writeColumns(writer, this.projectStatsTests);
 
-    final Element columns = doc.createElement("Columns");
-    root.appendChild(columns);
+    // Evaluate the tests
+    final RowResults results = evaluate(projectIds.size(), row -> {
 
-    for (final ProjectTest test : this.projectStatsTests) {
-      final Element columnElement = doc.createElement("Column");
-      columnElement.setAttribute("testname", test.getName());
-      columnElement.setAttribute("description", test.getDescription());
-      columnElement.setAttribute("unit", test.getUnit());
-      columnElement.setTextContent(test.getColumnName());
-      columns.appendChild(columnElement);
-    }
+      final int projectId = projectIds.get(row);
+      final TestResult[] rowResults =
+          new TestResult[this.projectStatsTests.size()];
 
-    final Element projectsElement = doc.createElement("Projects");
-    root.appendChild(projectsElement);
+      for (int i = 0; i < rowResults.length; i++) {
+        rowResults[i] =
+            this.projectStatsTests.get(i).test(this.data, projectId);
+      }
 
-    for (int projectId : projectIds) {
-      final Element projectElement = doc.createElement("Project");
-      projectElement.setAttribute("id", "" + projectId);
-      projectElement.setAttribute("name", data.getProjectName(projectId));
-      projectsElement.appendChild(projectElement);
+      return rowResults;
+    });
 
-      for (final ProjectTest test : this.projectStatsTests) {
-        final TestResult result = test.test(this.data, projectId);
+    writer.writeStartElement("Projects");
 
-        final Element testElement = doc.createElement("Test");
-        testElement.setAttribute("name", test.getName());
-        testElement.setAttribute("score", Integer.toString(result.getScore()));
-        testElement.setAttribute("type", result.getType());
-        testElement.setTextContent(result.getMessage());
-        projectElement.appendChild(testElement);
+    for (int projectId : projectIds) {
 
-      }
+      writer.writeStartElement("Project");
+      writeAttribute(writer, "id", "" + projectId);
+      writeAttribute(writer, "name", data.getProjectName(projectId));
+      writeTestResults(writer, this.projectStatsTests, results.next());
+      writer.writeEndElement();
     }
+
+    writer.writeEndElement();
+    writer.writeEndElement();
   }
 
-  private void doSamplesStatsTests(final Document doc,
-      final Element parentElement) {
+  /**
+   * Write the QC report for pooled sample tests.
+   * @param writer the XML stream writer
+   * @throws XMLStreamException if an error occurs while writing the report
+   * @throws AozanException if an error occurs while evaluating the tests
+   */
+  private void doSamplesStatsTests(final XMLStreamWriter writer)
+      throws XMLStreamException, AozanException {
 
     // Check needed to add this tests
     if (this.data.getProjectCount() > 1) {
       return;
     }
 
-    final Element root = doc.createElement("SamplesStatsReport");
-    parentElement.appendChild(root);
-
-    final Element columns = doc.createElement("Columns");
-    root.appendChild(columns);
+    writer.writeStartElement("SamplesStatsReport");
+    writeColumns(writer, this.samplesStatsTests);
 
-    for (final PooledSampleTest test : this.samplesStatsTests) {
-      final Element columnElement = doc.createElement("Column");
-      columnElement.setAttribute("testname", test.getName());
-      columnElement.setAttribute("description", test.getDescription());
-      columnElement.setAttribute("unit", test.getUnit());
-      columnElement.setTextContent(test.getColumnName());
-      columns.appendChild(columnElement);
-    }
-
-    final Element samplesStatsElement = doc.createElement("SamplesStats");
-    root.appendChild(samplesStatsElement);
+    writer.writeStartElement("SamplesStats");
 
     // Sort pooled samples
     final List<Integer> pooledSamples = data.getAllPooledSamples();
     Collections.sort(pooledSamples, new RunData.PooledSampleComparator(data));
 
+    // Evaluate the tests
+    final RowResults results = evaluate(pooledSamples.size(), row -> {
+
+      final int pooledSampleId = pooledSamples.get(row);
+      final TestResult[] rowResults =
+          new TestResult[this.samplesStatsTests.size()];
+
+      for (int i = 0; i < rowResults.length; i++) {
+        rowResults[i] =
+            this.samplesStatsTests.get(i).test(this.data, pooledSampleId);
+      }
+
+      return rowResults;
+    });
+
     for (int pooledSampleId : pooledSamples) {
-      final Element sampleStatsElement = doc.createElement("SampleStats");
-      sampleStatsElement.setAttribute("id", "" + pooledSampleId);
-      sampleStatsElement.setAttribute("name",
+
+      writer.writeStartElement("SampleStats");
+      writeAttribute(writer, "id", "" + pooledSampleId);
+      writeAttribute(writer, "name",
           this.data.getPooledSampleDemuxName(pooledSampleId));
-      sampleStatsElement.setAttribute("description",
+      writeAttribute(writer, "description",
           this.data.getPooledSampleDescription(pooledSampleId));
-      sampleStatsElement.setAttribute("index",
+      writeAttribute(writer, "index",
           this.data.getPooledSampleIndex(pooledSampleId));
-      sampleStatsElement.setAttribute("project",
+      writeAttribute(writer, "project",
           this.data.getPooledSampleProjectName(pooledSampleId));
-      samplesStatsElement.appendChild(sampleStatsElement);
-
-      for (final PooledSampleTest test : this.samplesStatsTests) {
-        final TestResult result = test.test(this.data, pooledSampleId);
-
-        final Element testElement = doc.createElement("Test");
-        testElement.setAttribute("name", test.getName());
-        testElement.setAttribute("score", Integer.toString(result.getScore()));
-        testElement.setAttribute("type", result.getType());
-        testElement.setTextContent(result.getMessage());
-        sampleStatsElement.appendChild(testElement);
-
-      }
+      writeTestResults(writer, this.samplesStatsTests, results.next());
+      writer.writeEndElement();
     }
+
+    writer.writeEndElement();
+    writer.writeEndElement();
   }
 
   /**
-   * Generate the QC report for projects data.
-   * @param parentElement parent Element
+   * Write the filters of the QC report.
+   * @param writer the XML stream writer
+   * @throws XMLStreamException if an error occurs while writing the report
    */
-  private void addElementForFilter(final Document doc,
-      final Element parentElement) {
+  private void addElementForFilter(final XMLStreamWriter writer)
+      throws XMLStreamException {
 
     final List<String> elements = new ArrayList<>();
     String filterType;
@@ -331,31 +427,26 @@ public class QCReport {
     final ListMultimap<String, Integer> lanesNumberRelatedElement =
         extractLaneNumberRelatedProjectName(filterType);
 
-    final Element filter = doc.createElement("TableFilter");
-    parentElement.appendChild(filter);
+    writer.writeStartElement("TableFilter");
 
     for (final String element : elements) {
 
-      final Element elementFilter = doc.createElement("ElementFilter");
-      elementFilter.setAttribute("classValue", "elementFilter");
-
       // Extract lanes number related project name
       final Set<Integer> lanesRelatedProject =
           Sets.newTreeSet(lanesNumberRelatedElement.get(element));
 
+      writer.writeStartElement("ElementFilter");
+      writeAttribute(writer, "classValue", "elementFilter");
+
       // Build command javascript for filter line samples report by project
-      elementFilter.setAttribute("cmdJS",
+      writeAttribute(writer, "cmdJS",
           "'" + Joiner.on(",").join(lanesRelatedProject) + "'");
-      elementFilter.setAttribute("typeFilter", filterType);
+      writeAttribute(writer, "typeFilter", filterType);
 
-      elementFilter.setTextContent(element);
-      filter.appendChild(elementFilter);
+      writeText(writer, element);
+      writer.writeEndElement();
     }
 
-    // Add Element for undetermined lane
-    final Element undeterminedLanes = doc.createElement("ElementFilter");
-    undeterminedLanes.setAttribute("classValue", "elementFilter");
-
     // Build list lane number
     final List<Integer> s = new ArrayList<>();
     for (int lane = 1; lane <= this.data.getLaneCount(); lane++) {
@@ -366,40 +457,68 @@ public class QCReport {
       }
     }
 
-    undeterminedLanes.setAttribute("cmdJS", "'" + Joiner.on(",").join(s) + "'");
-    undeterminedLanes.setAttribute("typeFilter", filterType);
-
-    undeterminedLanes.setTextContent("undetermined");
-    filter.appendChild(undeterminedLanes);
+    // Add Element for undetermined lane
+    writer.writeStartElement("ElementFilter");
+    writeAttribute(writer, "classValue", "elementFilter");
+    writeAttribute(writer, "cmdJS", "'" + Joiner.on(",").join(s) + "'");
+    writeAttribute(writer, "typeFilter", filterType);
+    writeText(writer, "undetermined");
+    writer.writeEndElement();
+
+    writer.writeEndElement();
   }
 
   /**
-   * Generate the QC report for samples tests.
-   * @param parentElement parent Element
+   * Write the QC report for samples tests.
+   * @param writer the XML stream writer
+   * @throws XMLStreamException if an error occurs while writing the report
+   * @throws AozanException if an error occurs while evaluating the tests
    */
-  private void doSamplesTests(final Document doc, final Element parentElement) {
+  private void doSamplesTests(final XMLStreamWriter writer)
+      throws XMLStreamException, AozanException {
 
     final int readCount = this.data.getReadCount();
     final int laneCount = this.data.getLaneCount();
 
-    final Element root = doc.createElement("SamplesReport");
-    parentElement.appendChild(root);
+    writer.writeStartElement("SamplesReport");
+    writeColumns(writer, this.sampleTests);
+
+    // List the rows of the report, each row is an array with the read, the
+    // read sample, the lane and the sample id
+    final List<int[]> rows = new ArrayList<>();
+    int readSample = 0;
+
+    for (int read = 1; read <= readCount; read++) {
+
+      if (this.data.isReadIndexed(read)) {
+        continue;
+      }
 
-    final Element columns = doc.createElement("Columns");
-    root.appendChild(columns);
+      readSample++;
 
-    for (final SampleTest test : this.sampleTests) {
-      final Element columnElement = doc.createElement("Column");
-      columnElement.setAttribute("testname", test.getName());
-      columnElement.setAttribute("description", test.getDescription());
-      columnElement.setAttribute("unit", test.getUnit());
-      columnElement.setTextContent(test.getColumnName());
-      columns.appendChild(columnElement);
+      for (int lane = 1; lane <= laneCount; lane++) {
+        for (final int sampleId : this.data.getAllSamplesInLane(lane)) {
+          rows.add(new int[] {read, readSample, lane, sampleId});
+        }
+      }
     }
 
-    final Element reads = doc.createElement("Reads");
-    root.appendChild(reads);
-    int readSample = 0;
+    // Evaluate the tests
+    final RowResults results = evaluate(rows.size(), row -> {
+
+      final int[] r = rows.get(row);
+      final TestResult[] rowResults = new TestResult[this.sampleTests.size()];
+
+      for (int i = 0; i < rowResults.length; i++) {
+        rowResults[i] =
+            this.sampleTests.get(i).test(this.data, r[0], r[1], r[3]);
+      }
+
+      return rowResults;
+    });
+
+    writer.writeStartElement("Reads");
+    readSample = 0;
 
     for (int read = 1; read <= readCount; read++) {
 
@@ -409,10 +528,8 @@ public class QCReport {
 
       readSample++;
 
-      final Element readElement = doc.createElement("Read");
-      readElement.setAttribute("number", Integer.toString(readSample));
-
-      reads.appendChild(readElement);
+      writer.writeStartElement("Read");
+      writeAttribute(writer, "number", Integer.toString(readSample));
 
       for (int lane = 1; lane <= laneCount; lane++) {
 
@@ -447,89 +564,182 @@ public class QCReport {
               indexString = "NoIndex";
             }
           }
-          addSample(doc, readElement, read, readSample, sampleId, lane,
-              sampleName, desc, projectName, indexString);
+          addSample(writer, sampleId, lane, sampleName, desc, projectName,
+              indexString, results.next());
         }
       }
+
+      writer.writeEndElement();
     }
+
+    writer.writeEndElement();
+    writer.writeEndElement();
   }
 
-  private void addSample(final Document doc, final Element readElement,
-      final int read, final int readSample, final int sampleId, final int lane,
-      final String sampleName, final String desc, final String projectName,
-      final String index) {
+  private void addSample(final XMLStreamWriter writer, final int sampleId,
+      final int lane, final String sampleName, final String desc,
+      final String projectName, final String index,
+      final TestResult[] results) throws XMLStreamException {
 
-    final Element sampleElement = doc.createElement("Sample");
-    sampleElement.setAttribute("id", "" + sampleId);
-    sampleElement.setAttribute("name",
+    writer.writeStartElement("Sample");
+    writeAttribute(writer, "id", "" + sampleId);
+    writeAttribute(writer, "name",
         sampleName == null ? "undetermined" : sampleName);
-    sampleElement.setAttribute("desc", desc == null ? "No description" : desc);
-    sampleElement.setAttribute("project",
+    writeAttribute(writer, "desc", desc == null ? "No description" : desc);
+    writeAttribute(writer, "project",
         projectName == null ? "undetermined" : projectName);
-    sampleElement.setAttribute("lane", Integer.toString(lane));
-    sampleElement.setAttribute("index", index);
+    writeAttribute(writer, "lane", Integer.toString(lane));
+    writeAttribute(writer, "index", index);
+
+    writeTestResults(writer, this.sampleTests, results);
+    writer.writeEndElement();
+  }
+
+  /**
+   * Write the columns of a part of the report.
+   * @param writer the XML stream writer
+   * @param tests the tests of the part of the report
+   * @throws XMLStreamException if an error occurs while writing the report
+   */
+  private static void writeColumns(final XMLStreamWriter writer,
+      final List<? extends AozanTest> tests) throws XMLStreamException {
+
+    writer.writeStartElement("Columns");
+
+    for (final AozanTest test : tests) {
+      writer.writeStartElement("Column");
+      writeAttribute(writer, "testname", test.getName());
+      writeAttribute(writer, "description", test.getDescription());
+      writeAttribute(writer, "unit", test.getUnit());
+      writeText(writer, test.getColumnName());
+      writer.writeEndElement();
+    }
 
-    readElement.appendChild(sampleElement);
+    writer.writeEndElement();
+  }
 
-    for (final SampleTest test : this.sampleTests) {
+  /**
+   * Write the results of tests.
+   * @param writer the XML stream writer
+   * @param tests the tests
+   * @param results the results of the tests, in the same order as the tests
+   * @throws XMLStreamException if an error occurs while writing the report
+   */
+  private static void writeTestResults(final XMLStreamWriter writer,
+      final List<? extends AozanTest> tests, final TestResult[] results)
+      throws XMLStreamException {
+
+    for (int i = 0; i < results.length; i++) {
 
-      final TestResult result =
-          test.test(this.data, read, readSample, sampleId);
+      final TestResult result = results[i];
 
-      final Element testElement = doc.createElement("Test");
-      testElement.setAttribute("name", test.getName());
-      testElement.setAttribute("score", Integer.toString(result.getScore()));
-      testElement.setAttribute("type", result.getType());
-      testElement.setTextContent(result.getMessage());
-      sampleElement.appendChild(testElement);
+      writer.writeStartElement("Test");
+      writeAttribute(writer, "name", tests.get(i).getName());
+      writeAttribute(writer, "score", Integer.toString(result.getScore()));
+      writeAttribute(writer, "type", result.getType());
+      writeText(writer, result.getMessage());
+      writer.writeEndElement();
     }
   }
 
   /**
-   * Create the QC report.
+   * Write an attribute. A null value is written as an empty value.
+   * @param writer the XML stream writer
+   * @param name name of the attribute
+   * @param value value of the attribute
+   * @throws XMLStreamException if an error occurs while writing the report
+   */
+  private static void writeAttribute(final XMLStreamWriter writer,
+      final String name, final String value) throws XMLStreamException {
+
+    writer.writeAttribute(name, Strings.nullToEmpty(value));
+  }
+
+  /**
+   * Write the text content of an element.
+   * @param writer the XML stream writer
+   * @param text the text to write
+   * @throws XMLStreamException if an error occurs while writing the report
+   */
+  private static void writeText(final XMLStreamWriter writer,
+      final String text) throws XMLStreamException {
+
+    if (text != null && !text.isEmpty()) {
+      writer.writeCharacters(text);
+    }
+  }
+
+  /**
+   * Evaluate the tests of all the rows of a part of the report. In
+   * multithreaded mode, the next rows are evaluated in parallel while the
+   * results are written in the order of the rows.
+   * @param rowCount the number of rows
+   * @param evaluator the evaluator of the rows
+   * @return an object that provides the results of each row
+   */
+  private RowResults evaluate(final int rowCount,
+      final RowEvaluator evaluator) {
+
+    return new RowResults(rowCount, evaluator);
+  }
+
+  /**
+   * Write the QC report in XML. The tests are evaluated while the report is
+   * written, so only the results of the rows being written are kept in
+   * memory. The start and the end of the document must be written by the
+   * caller.
+   * @param writer the XML stream writer
    * @throws AozanException if an error occurs while creating the report
    */
-  private void doTests() throws AozanException {
+  public void writeXML(final XMLStreamWriter writer) throws AozanException {
 
-    try {
+    requireNonNull(writer, "writer argument cannot be null");
+
+    if (this.threads > 1) {
+      this.executor = Executors.newFixedThreadPool(this.threads);
+    }
 
-      final DocumentBuilderFactory dbfac = DocumentBuilderFactory.newInstance();
-      final DocumentBuilder docBuilder = dbfac.newDocumentBuilder();
-      final Document doc = docBuilder.newDocument();
+    try {
 
-      // Create the root element and add it to the document
-      final Element root = doc.createElement("QCReport");
-      root.setAttribute("formatversion", "1.0");
-      doc.appendChild(root);
+      // Create the root element
+      writer.writeStartElement("QCReport");
+      writeAttribute(writer, "formatversion", "1.0");
 
       // Common tag header in document xml
-      XMLUtilsWriter.buildXMLCommonTagHeader(doc, root, this.data);
+      XMLUtilsWriter.writeXMLCommonTagHeader(writer, this.data);
 
       if (!this.globalTests.isEmpty()) {
-        doGlobalTests(doc, root);
+        doGlobalTests(writer);
       }
 
       if (!this.laneTests.isEmpty()) {
-        doLanesTests(doc, root);
+        doLanesTests(writer);
       }
 
       if (!this.projectStatsTests.isEmpty()) {
-        doProjectsStatsTests(doc, root);
+        doProjectsStatsTests(writer);
       }
 
       if (!this.samplesStatsTests.isEmpty()) {
-        doSamplesStatsTests(doc, root);
+        doSamplesStatsTests(writer);
       }
 
       if (!this.sampleTests.isEmpty()) {
-        addElementForFilter(doc, root);
-        doSamplesTests(doc, root);
+        addElementForFilter(writer);
+        doSamplesTests(writer);
       }
 
-      this.doc = doc;
+      writer.writeEndElement();
+      writer.flush();
 
-    } catch (final ParserConfigurationException e) {
+    } catch (final XMLStreamException e) {
       throw new AozanException(e);
+    } finally {
+
+      if (this.executor != null) {
+        this.executor.shutdownNow();
+        this.executor = null;
+      }
     }
   }
 
@@ -697,7 +907,27 @@ public class QCReport {
       final List<PooledSampleTest> samplesStatsTests,
       final List<SampleTest> sampleTests) {
 
+    this(data, globalTests, laneTests, projectStatsTests, samplesStatsTests,
+        sampleTests, 1);
+  }
+
+  /**
+   * Public constructor.
+   * @param data Run data
+   * @param globalTests list of the global tests
+   * @param laneTests list of the read tests
+   * @param projectStatsTests the project stats tests
+   * @param samplesStatsTests the samples stats tests
+   * @param sampleTests list of the sample tests
+   * @param threads number of threads to use to evaluate the tests
+   */
+  public QCReport(final RunData data, final List<GlobalTest> globalTests,
+      final List<LaneTest> laneTests, final List<ProjectTest> projectStatsTests,
+      final List<PooledSampleTest> samplesStatsTests,
+      final List<SampleTest> sampleTests, final int threads) {
+
     this.data = data;
+    this.threads = threads;
 
     if (globalTests != null) {
       this.globalTests.addAll(globalTests);
@@ -729,6 +959,7 @@ public class QCReport {
     requireNonNull(report);
 
     this.data = new RunData(report.data);
+    this.threads = report.threads;
     this.globalTests.addAll(report.globalTests);
     this.laneTests.addAll(report.laneTests);
     this.projectStatsTests.addAll(report.projectStatsTests);
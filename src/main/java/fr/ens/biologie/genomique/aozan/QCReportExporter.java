@@ -5,11 +5,15 @@ import static java.util.Objects.requireNonNull;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Writer;
 
-import org.w3c.dom.Document;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 import com.google.common.io.Files;
 
@@ -22,8 +26,11 @@ import fr.ens.biologie.genomique.aozan.util.XMLUtilsWriter;
  */
 public class QCReportExporter {
 
+  private final QCReport qcReport;
   private final RunData data;
-  private final Document doc;
+
+  /** The last XML report written by this exporter. */
+  private File xmlReportFile;
 
   //
   // Raw data
@@ -75,7 +82,7 @@ public class QCReportExporter {
    */
   public String toXML() throws AozanException, IOException {
 
-    return XMLUtilsWriter.createXMLFileContent(this.doc);
+    return XMLUtilsWriter.createXMLFileContent(this.qcReport.toDocument());
   }
 
   /**
@@ -89,23 +96,49 @@ public class QCReportExporter {
   }
 
   /**
-   * Write the XML in a file.
+   * Write the XML in a file. The report is streamed in a temporary file
+   * without indentation, then indented in the output file with the same
+   * transformer as the DOM documents. No DOM document is created.
    * @param outputFile the output file
    * @throws AozanException if an error occurs while creating the report
    */
   public void writeXMLReport(File outputFile) throws AozanException {
 
+    requireNonNull(outputFile, "outputFile argument cannot be null");
+
+    File temporaryFile = null;
+
     try {
-      final Writer writer =
-          Files.newWriter(outputFile, Globals.DEFAULT_FILE_ENCODING);
 
-      writer.write(toXML());
+      temporaryFile = File.createTempFile("qcreport-", ".xml",
+          outputFile.getAbsoluteFile().getParentFile());
 
-      writer.close();
-    } catch (final IOException e) {
+      try (OutputStream os = new FileOutputStream(temporaryFile)) {
+
+        final String encoding = Globals.DEFAULT_FILE_ENCODING.name();
+        final XMLStreamWriter writer =
+            XMLOutputFactory.newInstance().createXMLStreamWriter(os, encoding);
+
+        writer.writeStartDocument(encoding, "1.0");
+        this.qcReport.writeXML(writer);
+        writer.writeEndDocument();
+        writer.close();
+      }
+
+      try (OutputStream os = new FileOutputStream(outputFile)) {
+        XMLUtilsWriter.indentXMLFile(temporaryFile, os);
+      }
+
+    } catch (final IOException | XMLStreamException e) {
       throw new AozanException(e);
+    } finally {
+
+      if (temporaryFile != null && !temporaryFile.delete()) {
+        temporaryFile.deleteOnExit();
+      }
     }
 
+    this.xmlReportFile = outputFile;
   }
 
   //
@@ -142,7 +175,8 @@ public class QCReportExporter {
           "The input stream for the XSL stylesheet is null.");
     }
 
-    return XMLUtilsWriter.createHTMLFileFromXSL(this.doc, is);
+    return XMLUtilsWriter.createHTMLFileFromXSL(this.qcReport.toDocument(),
+        is);
   }
 
   /**
@@ -182,7 +216,10 @@ public class QCReportExporter {
   }
 
   /**
-   * Write the report usually in HTML) in a file.
+   * Write the report usually in HTML) in a file. The XSL stylesheet is
+   * applied on the XML report file previously written by this exporter or on
+   * a temporary XML file, and the result is directly written in the output
+   * file. No DOM document is created.
    * @param xslIs XSL stylesheet input stream
    * @param outputFile the report file
    * @throws AozanException if an error occurs while creating the report
@@ -190,15 +227,35 @@ public class QCReportExporter {
   public void writeReport(InputStream xslIs, File outputFile)
       throws AozanException {
 
+    requireNonNull(xslIs, "xslIs argument cannot be null");
+    requireNonNull(outputFile, "outputFile argument cannot be null");
+
+    File xmlFile = this.xmlReportFile;
+    File temporaryFile = null;
+
     try {
-      final Writer writer =
-          Files.newWriter(outputFile, Globals.DEFAULT_FILE_ENCODING);
 
-      writer.write(export(xslIs));
+      // Write the XML report in a temporary file if required
+      if (xmlFile == null || !xmlFile.isFile()) {
+
+        temporaryFile = File.createTempFile("qcreport-", ".xml",
+            outputFile.getAbsoluteFile().getParentFile());
+        writeXMLReport(temporaryFile);
+        this.xmlReportFile = null;
+        xmlFile = temporaryFile;
+      }
+
+      try (OutputStream os = new FileOutputStream(outputFile)) {
+        XMLUtilsWriter.transformXMLFile(xmlFile, xslIs, os);
+      }
 
-      writer.close();
     } catch (final IOException e) {
       throw new AozanException(e);
+    } finally {
+
+      if (temporaryFile != null && !temporaryFile.delete()) {
+        temporaryFile.deleteOnExit();
+      }
     }
   }
 
@@ -215,7 +272,7 @@ public class QCReportExporter {
   public QCReportExporter(QCReport qcReport) throws AozanException {
 
     requireNonNull(qcReport);
+    this.qcReport = qcReport;
     this.data = new RunData(qcReport.getData());
-    this.doc = qcReport.toDocument();
   }
 }
@@ -62,6 +62,15 @@ public class RunData {
   /** The map. */
   private final Map<String, String> map = new LinkedHashMap<>();
 
+  /** Modification count of the indexed keys of the map. */
+  private int modCount;
+
+  /** Index of the most used values. */
+  private volatile RunDataIndex index;
+
+  /** Entries set since the start of the recording, null if not recording. */
+  private Map<String, String> recordedEntries;
+
   //
   // Comparators
   //
@@ -179,6 +188,11 @@ public class RunData {
    */
   public List<Integer> getAllSamplesInLane(final int lane) {
 
+    final List<Integer> indexed = getIndex().getAllSamplesInLane(lane);
+    if (indexed != null) {
+      return indexed;
+    }
+
     final String value =
         get(SAMPLESHEET_DATA_PREFIX + ".lane" + lane + ".samples");
 
@@ -205,6 +219,11 @@ public class RunData {
    */
   public List<Integer> getSamplesInLane(final int lane) {
 
+    final List<Integer> indexed = getIndex().getSamplesInLane(lane);
+    if (indexed != null) {
+      return indexed;
+    }
+
     final List<Integer> result = new ArrayList<Integer>();
 
     for (int sampleId : getAllSamplesInLane(lane)) {
@@ -256,6 +275,12 @@ public class RunData {
    * @return the sample count
    */
   public int getSampleCount() {
+
+    final int indexed = getIndex().getSampleCount();
+    if (indexed != RunDataIndex.MISSING_INT) {
+      return indexed;
+    }
+
     return getInt(SAMPLESHEET_DATA_PREFIX + ".sample.count");
   }
 
@@ -324,6 +349,12 @@ public class RunData {
    * @return sequence index related to the lane and sample name
    */
   public int getSampleLane(final int sampleId) {
+
+    final int indexed = getIndex().getSampleLane(sampleId);
+    if (indexed != RunDataIndex.MISSING_INT) {
+      return indexed;
+    }
+
     return getInt(SAMPLESHEET_DATA_PREFIX + ".sample" + sampleId + ".lane");
   }
 
@@ -333,6 +364,12 @@ public class RunData {
    * @return sequence index related to the lane and sample name
    */
   public boolean isUndeterminedSample(final int sampleId) {
+
+    final RunDataIndex index = getIndex();
+    if (index.isSampleIndexed(sampleId)) {
+      return index.isUndeterminedSample(sampleId);
+    }
+
     return getBoolean(
         SAMPLESHEET_DATA_PREFIX + ".sample" + sampleId + ".undetermined");
   }
@@ -456,6 +493,12 @@ public class RunData {
    * @return the pooled sample count
    */
   public int getPooledSampleCount() {
+
+    final int indexed = getIndex().getPooledSampleCount();
+    if (indexed != RunDataIndex.MISSING_INT) {
+      return indexed;
+    }
+
     return getInt(SAMPLESHEET_DATA_PREFIX + ".pooledsample.count");
   }
 
@@ -516,6 +559,12 @@ public class RunData {
    */
   public List<Integer> getSamplesInPooledSample(final int pooledSampleId) {
 
+    final List<Integer> indexed =
+        getIndex().getSamplesInPooledSample(pooledSampleId);
+    if (indexed != null) {
+      return indexed;
+    }
+
     final List<Integer> result = new ArrayList<Integer>();
 
     for (String s : Splitter.on(',').trimResults().omitEmptyStrings()
@@ -584,6 +633,12 @@ public class RunData {
    * @return the project count
    */
   public int getProjectCount() {
+
+    final int indexed = getIndex().getProjectCount();
+    if (indexed != RunDataIndex.MISSING_INT) {
+      return indexed;
+    }
+
     return getInt(SAMPLESHEET_DATA_PREFIX + ".project.count");
   }
 
@@ -645,6 +700,11 @@ public class RunData {
    */
   public List<Integer> getSamplesInProject(final int projectId) {
 
+    final List<Integer> indexed = getIndex().getSamplesInProject(projectId);
+    if (indexed != null) {
+      return indexed;
+    }
+
     final List<Integer> result = new ArrayList<Integer>();
 
     for (String s : Splitter.on(',').trimResults().omitEmptyStrings().split(
@@ -668,6 +728,12 @@ public class RunData {
    * @return read count.
    */
   public int getReadCount() {
+
+    final int indexed = getIndex().getReadCount();
+    if (indexed != RunDataIndex.MISSING_INT) {
+      return indexed;
+    }
+
     return getInt("run.info.read.count");
   }
 
@@ -684,6 +750,12 @@ public class RunData {
    * @return lane count
    */
   public int getLaneCount() {
+
+    final int indexed = getIndex().getLaneCount();
+    if (indexed != RunDataIndex.MISSING_INT) {
+      return indexed;
+    }
+
     return getInt("run.info.flow.cell.lane.count");
   }
 
@@ -791,6 +863,11 @@ public class RunData {
    */
   public int getSampleRawClusterCount(final int sampleId, final int read) {
 
+    final int indexed = getIndex().getSampleRawClusterCount(sampleId, read);
+    if (indexed != RunDataIndex.MISSING_INT) {
+      return indexed;
+    }
+
     return getInt(
         "demux.sample" + sampleId + ".read" + read + ".raw.cluster.count");
   }
@@ -803,6 +880,11 @@ public class RunData {
    */
   public int getSamplePFClusterCount(final int sampleId, final int read) {
 
+    final int indexed = getIndex().getSamplePFClusterCount(sampleId, read);
+    if (indexed != RunDataIndex.MISSING_INT) {
+      return indexed;
+    }
+
     return getInt(
         "demux.sample" + sampleId + ".read" + read + ".pf.cluster.count");
   }
@@ -816,6 +898,12 @@ public class RunData {
    * @return tiles count
    */
   public int getTilesCount() {
+
+    final int indexed = getIndex().getTilesCount();
+    if (indexed != RunDataIndex.MISSING_INT) {
+      return indexed;
+    }
+
     return this
         .getInt(ReadCollector.READ_DATA_PREFIX + ".read1.lane1.tile.count");
   }
@@ -827,6 +915,12 @@ public class RunData {
    * @return percent align Phix related to the lane and the read
    */
   public double getReadPrcAlign(final int lane, final int read) {
+
+    final double indexed = getIndex().getReadPrcAlign(lane, read);
+    if (!Double.isNaN(indexed)) {
+      return indexed;
+    }
+
     return getDouble(
         READ_DATA_PREFIX + ".read" + read + ".lane" + lane + ".prc.align");
   }
@@ -838,6 +932,12 @@ public class RunData {
    * @return the raw cluster count related to a lane and a read
    */
   public long getReadRawClusterCount(final int lane, final int read) {
+
+    final long indexed = getIndex().getReadRawClusterCount(lane, read);
+    if (indexed != RunDataIndex.MISSING_LONG) {
+      return indexed;
+    }
+
     return getLong(
         READ_DATA_PREFIX + ".read" + read + ".lane" + lane + ".clusters.raw");
   }
@@ -849,6 +949,12 @@ public class RunData {
    * @return the passing filter cluster count related to a lane and a read
    */
   public long getReadPFClusterCount(final int lane, final int read) {
+
+    final long indexed = getIndex().getReadPFClusterCount(lane, read);
+    if (indexed != RunDataIndex.MISSING_LONG) {
+      return indexed;
+    }
+
     return getLong(
         READ_DATA_PREFIX + ".read" + read + ".lane" + lane + ".clusters.pf");
   }
@@ -933,6 +1039,12 @@ public class RunData {
       return null;
     }
 
+    // Keys generated by the accessors are usually already normalized
+    final String value = this.map.get(key);
+    if (value != null) {
+      return value;
+    }
+
     return this.map.get(key.toLowerCase().trim());
   }
 
@@ -1187,7 +1299,18 @@ public class RunData {
       return;
     }
 
-    this.map.put(key.toLowerCase().trim(), value == null ? "" : value.trim());
+    final String normalizedKey = key.toLowerCase().trim();
+    final String normalizedValue = value == null ? "" : value.trim();
+    final String previousValue = this.map.put(normalizedKey, normalizedValue);
+
+    if (this.recordedEntries != null
+        && !normalizedValue.equals(previousValue)) {
+      this.recordedEntries.put(normalizedKey, normalizedValue);
+    }
+
+    if (RunDataIndex.isIndexedKey(normalizedKey)) {
+      this.modCount++;
+    }
   }
 
   /**
@@ -1300,8 +1423,41 @@ public class RunData {
     }
 
     for (final Map.Entry<String, String> e : data.map.entrySet()) {
-      this.map.put(e.getKey(), e.getValue());
+
+      final String previousValue = this.map.put(e.getKey(), e.getValue());
+
+      if (this.recordedEntries != null
+          && !e.getValue().equals(previousValue)) {
+        this.recordedEntries.put(e.getKey(), e.getValue());
+      }
     }
+    this.modCount++;
+  }
+
+  /**
+   * Start the recording of the entries added or modified in this object.
+   */
+  void startRecording() {
+
+    this.recordedEntries = new LinkedHashMap<>();
+  }
+
+  /**
+   * Stop the recording of the entries added or modified in this object.
+   * @return a new RunData object with the entries added or modified since the
+   *         start of the recording
+   */
+  RunData stopRecording() {
+
+    if (this.recordedEntries == null) {
+      throw new IllegalStateException("The recording has not been started");
+    }
+
+    final RunData result = new RunData();
+    result.map.putAll(this.recordedEntries);
+    this.recordedEntries = null;
+
+    return result;
   }
 
   //
@@ -1319,6 +1475,10 @@ public class RunData {
       return false;
     }
 
+    if (this.map.containsKey(key)) {
+      return true;
+    }
+
     return this.map.containsKey(key.toLowerCase().trim());
   }
 
@@ -1334,7 +1494,16 @@ public class RunData {
       throw new IllegalArgumentException("Key does not exists: " + key);
     }
 
-    this.map.remove(key.toLowerCase().trim());
+    final String normalizedKey = key.toLowerCase().trim();
+    this.map.remove(normalizedKey);
+
+    if (this.recordedEntries != null) {
+      this.recordedEntries.remove(normalizedKey);
+    }
+
+    if (RunDataIndex.isIndexedKey(normalizedKey)) {
+      this.modCount++;
+    }
   }
 
   /**
@@ -1455,6 +1624,30 @@ public class RunData {
     }
   }
 
+  /**
+   * Get the index of the most used values. The index is rebuilt if the data
+   * has been modified since its creation.
+   * @return the index
+   */
+  private RunDataIndex getIndex() {
+
+    RunDataIndex result = this.index;
+
+    if (result == null || result.getModCount() != this.modCount) {
+
+      synchronized (this) {
+
+        result = this.index;
+        if (result == null || result.getModCount() != this.modCount) {
+          result = new RunDataIndex(this, this.modCount);
+          this.index = result;
+        }
+      }
+    }
+
+    return result;
+  }
+
   /**
    * Gets the map.
    * @return the map
@@ -31,8 +31,19 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
@@ -56,11 +67,49 @@ public class RunDataGenerator {
   /** Collect done property key. */
   private static final String COLLECT_DONE = "collect.done";
 
+  /** Collector journal extension. */
+  private static final String JOURNAL_EXTENSION = ".snapshot.journal";
+
+  /** Collector snapshot extension. */
+  private static final String SNAPSHOT_EXTENSION = ".snapshot.data";
+
   private final List<Collector> collectors;
   private final Map<String, String> generatorsProperties;
 
   private final String runId;
 
+  /**
+   * This class define a task that execute a collector on a copy of the data
+   * generated by its required collectors and return only the data added or
+   * modified by the collector.
+   */
+  private final class CollectorTask implements Callable<RunData> {
+
+    private final QC qc;
+    private final Collector collector;
+    private final RunData input;
+
+    @Override
+    public RunData call() throws Exception {
+
+      return collectFragment(this.qc, this.collector, this.input);
+    }
+
+    /**
+     * Constructor.
+     * @param qc QC object
+     * @param collector collector to execute
+     * @param input data generated by the required collectors
+     */
+    private CollectorTask(final QC qc, final Collector collector,
+        final RunData input) {
+
+      this.qc = qc;
+      this.collector = collector;
+      this.input = input;
+    }
+  }
+
   //
   // Others methods
   //
@@ -107,43 +156,76 @@ public class RunDataGenerator {
 
     LOGGER.info("Starting step collector");
 
-    // For all collectors
+    final File qcDir =
+        new File(this.generatorsProperties.get(QC.QC_OUTPUT_DIR));
+    final RunDataJournal journal = new RunDataJournal(
+        new File(qcDir, this.runId + JOURNAL_EXTENSION), getCollectorNames());
+
+    // Reload the data of the collectors completed by a previous execution
+    final Map<String, RunData> completed;
+    try {
+      completed = journal.load();
+    } catch (IOException e) {
+      throw new AozanException(e);
+    }
+
+    if (!completed.isEmpty()) {
+      LOGGER.info("Resume collect for run "
+          + this.runId + ", collectors already completed: "
+          + Joiner.on(", ").join(completed.keySet()));
+    }
+
+    // Configure all the collectors before executing them, a collector can use
+    // the other collectors (e.g. FastQC shares its reading of the FASTQ files)
     for (final Collector collector : this.collectors) {
 
-      final Stopwatch timerCollector = Stopwatch.createStarted();
-      LOGGER.info("Starting "
-          + collector.getName().toUpperCase() + " collector for run "
-          + this.runId);
+      if (!completed.containsKey(collector.getName())) {
+        collector.configure(qc,
+            new CollectorConfiguration(this.generatorsProperties));
+      }
+    }
 
-      // Configure
-      collector.configure(qc,
-          new CollectorConfiguration(this.generatorsProperties));
+    final int threads = new CollectorConfiguration(this.generatorsProperties)
+        .getInt(Settings.QC_CONF_COLLECTOR_THREADS_KEY, 1);
 
-      // And collect data
-      collector.collect(data);
+    if (threads > 1) {
 
-      LOGGER.info("Ended "
-          + collector.getName().toUpperCase() + " collector for run "
-          + this.runId + " in "
-          + toTimeHumanReadable(timerCollector.elapsed(TimeUnit.MILLISECONDS)));
+      // Execute the independent collectors at the same time
+      collectConcurrently(qc, data, threads, journal, completed);
+    } else {
 
-      final File qcDir =
-          new File(this.generatorsProperties.get(QC.QC_OUTPUT_DIR));
-      final File dataFile = new File(qcDir, collector.getName()
-          + '-' + System.currentTimeMillis() + ".snapshot.data");
+      // For all collectors
+      for (final Collector collector : this.collectors) {
 
-      LOGGER.fine("Writing rundata to " + dataFile);
+        final RunData fragment = completed.get(collector.getName());
 
-      try {
-        data.createRunDataFile(dataFile);
-      } catch (IOException e) {
-        throw new AozanException(e);
-      }
+        if (fragment != null) {
+          data.put(fragment);
+          continue;
+        }
 
+        // The collector works directly on the data
+        appendToJournal(journal, collector,
+            collectFragment(qc, collector, data));
+      }
     }
 
     for (final Collector collector : this.collectors) {
-      collector.clear();
+
+      // Collectors completed by a previous execution has not been configured
+      if (!completed.containsKey(collector.getName())) {
+        collector.clear();
+      }
+    }
+
+    // Fold the journal in a snapshot file
+    final File snapshotFile = new File(qcDir, this.runId + SNAPSHOT_EXTENSION);
+    LOGGER.fine("Writing rundata to " + snapshotFile);
+
+    try {
+      journal.compact(snapshotFile);
+    } catch (IOException e) {
+      throw new AozanException(e);
     }
 
     LOGGER.info("Step collector ended in "
@@ -155,6 +237,254 @@ public class RunDataGenerator {
     return data;
   }
 
+  /**
+   * Execute a collector. The collector must have been configured.
+   * @param qc QC object
+   * @param collector the collector to execute
+   * @param data result data object
+   * @throws AozanException if an error occurs while collecting data
+   */
+  private void runCollector(final QC qc, final Collector collector,
+      final RunData data) throws AozanException {
+
+    final Stopwatch timerCollector = Stopwatch.createStarted();
+    LOGGER.info("Starting "
+        + collector.getName().toUpperCase() + " collector for run "
+        + this.runId);
+
+    // Collect data
+    collector.collect(data);
+
+    LOGGER.info("Ended "
+        + collector.getName().toUpperCase() + " collector for run "
+        + this.runId + " in "
+        + toTimeHumanReadable(timerCollector.elapsed(TimeUnit.MILLISECONDS)));
+  }
+
+  /**
+   * Execute a collector on data and return only the entries added or modified
+   * by the collector. The entries are recorded while the collector works, so
+   * the data is neither copied nor compared.
+   * @param qc QC object
+   * @param collector the collector to execute
+   * @param data input data of the collector, updated by the collector
+   * @return a new RunData object with the data generated by the collector
+   * @throws AozanException if an error occurs while collecting data
+   */
+  private RunData collectFragment(final QC qc, final Collector collector,
+      final RunData data) throws AozanException {
+
+    data.startRecording();
+    runCollector(qc, collector, data);
+
+    return data.stopRecording();
+  }
+
+  /**
+   * Append the data generated by a collector to the collector journal.
+   * @param journal the journal
+   * @param collector the collector
+   * @param fragment the data generated by the collector
+   * @throws AozanException if an error occurs while writing the journal
+   */
+  private static void appendToJournal(final RunDataJournal journal,
+      final Collector collector, final RunData fragment)
+      throws AozanException {
+
+    LOGGER.fine("Append "
+        + collector.getName().toUpperCase() + " collector data to "
+        + journal.getFile());
+
+    try {
+      journal.append(collector.getName(), fragment);
+    } catch (IOException e) {
+      throw new AozanException(e);
+    }
+  }
+
+  /**
+   * Execute the collectors on a thread pool. A collector is launched as soon
+   * as all its required collectors have ended. Each collector works on its
+   * own copy of the data of its required collectors and the data generated by
+   * the collectors are merged in the order of the collector list, so the
+   * result is the same as a sequential execution.
+   * @param qc QC object
+   * @param data result data object
+   * @param threads number of collectors to execute at the same time
+   * @param journal the collector journal
+   * @param completed data of the collectors completed by a previous execution
+   * @throws AozanException if an error occurs while collecting data
+   */
+  private void collectConcurrently(final QC qc, final RunData data,
+      final int threads, final RunDataJournal journal,
+      final Map<String, RunData> completed) throws AozanException {
+
+    final Map<Collector, Set<Collector>> dependencies = getDependencies();
+    final Map<Collector, RunData> fragments = new HashMap<>();
+    final Map<Future<RunData>, Collector> running = new HashMap<>();
+    final Set<Collector> pending = new LinkedHashSet<>();
+
+    for (final Collector c : this.collectors) {
+
+      if (completed.containsKey(c.getName())) {
+        fragments.put(c, completed.get(c.getName()));
+      } else {
+        pending.add(c);
+      }
+    }
+
+    LOGGER.info("Execute collectors using " + threads + " threads");
+
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    final CompletionService<RunData> completionService =
+        new ExecutorCompletionService<>(executor);
+
+    try {
+
+      while (!pending.isEmpty() || !running.isEmpty()) {
+
+        // Submit the collectors with all their requirements done
+        final List<Collector> ready = new ArrayList<>();
+        for (final Collector c : pending) {
+          if (fragments.keySet().containsAll(dependencies.get(c))) {
+            ready.add(c);
+          }
+        }
+
+        for (final Collector c : ready) {
+
+          pending.remove(c);
+          running.put(completionService.submit(
+              new CollectorTask(qc, c, mergeFragments(fragments,
+                  getAllDependencies(c, dependencies)))),
+              c);
+        }
+
+        if (running.isEmpty()) {
+          throw new AozanException("Unable to resolve collectors dependencies");
+        }
+
+        // Wait the end of a collector
+        final Future<RunData> future = completionService.take();
+        final Collector collector = running.remove(future);
+
+        try {
+          final RunData fragment = future.get();
+          appendToJournal(journal, collector, fragment);
+          fragments.put(collector, fragment);
+        } catch (ExecutionException e) {
+
+          final Throwable cause = e.getCause();
+          if (cause instanceof AozanException) {
+            throw (AozanException) cause;
+          }
+          throw new AozanException(cause);
+        }
+      }
+
+    } catch (InterruptedException e) {
+      throw new AozanException(e);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    data.put(mergeFragments(fragments, fragments.keySet()));
+  }
+
+  /**
+   * Merge the data generated by collectors in the order of the collector list.
+   * @param fragments data generated by the collectors
+   * @param collectors the collectors to merge
+   * @return a new RunData object
+   */
+  private RunData mergeFragments(final Map<Collector, RunData> fragments,
+      final Set<Collector> collectors) {
+
+    final RunData result = new RunData();
+
+    for (final Collector c : this.collectors) {
+      if (collectors.contains(c)) {
+        result.put(fragments.get(c));
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the collectors directly required by each collector. Summary
+   * collectors require all the other collectors.
+   * @return a map with the required collectors of each collector
+   */
+  private Map<Collector, Set<Collector>> getDependencies() {
+
+    final Map<String, Collector> collectorsByName = new HashMap<>();
+    for (final Collector c : this.collectors) {
+      collectorsByName.put(c.getName(), c);
+    }
+
+    final CollectorConfiguration conf =
+        new CollectorConfiguration(this.generatorsProperties);
+    final Map<Collector, Set<Collector>> result = new LinkedHashMap<>();
+
+    for (final Collector c : this.collectors) {
+
+      final Set<Collector> deps = new HashSet<>();
+
+      if (c.isSummaryCollector()) {
+        for (final Collector other : this.collectors) {
+          if (!other.isSummaryCollector()) {
+            deps.add(other);
+          }
+        }
+      }
+
+      final List<String> names = c.getCollectorsNamesRequiered();
+      if (names != null) {
+        for (final String name : names) {
+          if (collectorsByName.containsKey(name)) {
+            deps.add(collectorsByName.get(name));
+          }
+        }
+      }
+
+      for (final String name : c.getCollectorsNamesExecutedBefore(conf)) {
+        if (collectorsByName.containsKey(name)) {
+          deps.add(collectorsByName.get(name));
+        }
+      }
+
+      deps.remove(c);
+      result.put(c, deps);
+    }
+
+    return result;
+  }
+
+  /**
+   * Get all the collectors directly or indirectly required by a collector.
+   * @param collector the collector
+   * @param dependencies the direct dependencies of the collectors
+   * @return a set with the collectors
+   */
+  private static Set<Collector> getAllDependencies(final Collector collector,
+      final Map<Collector, Set<Collector>> dependencies) {
+
+    final Set<Collector> result = new HashSet<>();
+    final List<Collector> toVisit =
+        new ArrayList<>(dependencies.get(collector));
+
+    while (!toVisit.isEmpty()) {
+
+      final Collector c = toVisit.remove(toVisit.size() - 1);
+      if (result.add(c)) {
+        toVisit.addAll(dependencies.get(c));
+      }
+    }
+
+    return result;
+  }
+
   /**
    * Adds the all collectors and change order per default to move
    * ProjectStatCollector at the end, if is selected.
@@ -195,13 +525,75 @@ public class RunDataGenerator {
     return Collections.unmodifiableList(collectorsNewOrder);
   }
 
-  private void addCollectorNameInProperties() {
-    final List<String> collectorNames = new ArrayList<>();
+  /**
+   * Move the collectors after the selected collectors that must be executed
+   * before them. The order of the other collectors is unchanged.
+   * @param collectorsInitOrder the collectors init order
+   * @return the same list with new order
+   */
+  private List<Collector> moveCollectorsExecutedAfter(
+      final List<Collector> collectorsInitOrder) {
+
+    final CollectorConfiguration conf =
+        new CollectorConfiguration(this.generatorsProperties);
+
+    final Set<String> selectedNames = new HashSet<>();
+    for (final Collector collector : collectorsInitOrder) {
+      selectedNames.add(collector.getName());
+    }
+
+    final List<Collector> toMove = new ArrayList<>(collectorsInitOrder);
+    final List<Collector> collectorsNewOrder = new ArrayList<>();
+    final Set<String> movedNames = new HashSet<>();
+
+    while (!toMove.isEmpty()) {
+
+      // Keep the first collector if the constraints cannot be satisfied
+      Collector next = toMove.get(0);
+
+      for (final Collector collector : toMove) {
+
+        boolean ready = true;
+        for (final String name : collector
+            .getCollectorsNamesExecutedBefore(conf)) {
+          if (selectedNames.contains(name) && !movedNames.contains(name)) {
+            ready = false;
+            break;
+          }
+        }
+
+        if (ready) {
+          next = collector;
+          break;
+        }
+      }
+
+      toMove.remove(next);
+      collectorsNewOrder.add(next);
+      movedNames.add(next.getName());
+    }
+
+    return Collections.unmodifiableList(collectorsNewOrder);
+  }
+
+  /**
+   * Get the names of the collectors.
+   * @return a list with the names of the collectors in execution order
+   */
+  private List<String> getCollectorNames() {
+
+    final List<String> result = new ArrayList<>();
 
     for (final Collector collector : this.collectors) {
-      collectorNames.add(collector.getName());
+      result.add(collector.getName());
     }
 
+    return result;
+  }
+
+  private void addCollectorNameInProperties() {
+    final List<String> collectorNames = getCollectorNames();
+
     // Compile collector names
     final String propertyValue = Joiner.on(", ").join(collectorNames);
 
@@ -225,9 +617,10 @@ public class RunDataGenerator {
     requireNonNull(collectors, "The list of collectors is null");
     requireNonNull(generatorsConf, "the generatorsConf argument cannot be null");
 
-    this.collectors = reorderCollector(collectors);
-    this.runId = runId;
     this.generatorsProperties = new HashMap<>(generatorsConf);
+    this.collectors =
+        moveCollectorsExecutedAfter(reorderCollector(collectors));
+    this.runId = runId;
 
     // Add collector name requiered in properties
     addCollectorNameInProperties();
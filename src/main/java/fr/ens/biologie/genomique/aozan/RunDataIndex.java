@@ -0,0 +1,521 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later 
+ * and CeCILL. This should be distributed with the code. If you 
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan;
+
+import static fr.ens.biologie.genomique.aozan.collectors.ReadCollector.READ_DATA_PREFIX;
+import static fr.ens.biologie.genomique.aozan.collectors.SamplesheetCollector.SAMPLESHEET_DATA_PREFIX;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class define an index of the values of a RunData object that are the
+ * most used by the QC tests. The values are parsed once and stored in
+ * primitive arrays indexed by lane, read and sample id. This index is
+ * immutable and must be rebuilt when the RunData object is modified.
+ * @since 3.2
+ * @author Laurent Jourdren
+ */
+final class RunDataIndex {
+
+  /** Value for a missing integer value. */
+  static final int MISSING_INT = Integer.MIN_VALUE;
+
+  /** Value for a missing long value. */
+  static final long MISSING_LONG = Long.MIN_VALUE;
+
+  private final int modCount;
+
+  private final int laneCount;
+  private final int readCount;
+  private final int sampleCount;
+  private final int projectCount;
+  private final int pooledSampleCount;
+  private final int tilesCount;
+
+  private final int[] sampleLanes;
+  private final boolean[] undeterminedSamples;
+
+  private final int[][] allSamplesInLane;
+  private final int[][] samplesInLane;
+  private final int[][] samplesInProject;
+  private final int[][] samplesInPooledSample;
+
+  private final int[][] sampleRawClusterCounts;
+  private final int[][] samplePFClusterCounts;
+  private final long[][] readRawClusterCounts;
+  private final long[][] readPFClusterCounts;
+  private final double[][] readPrcAlign;
+
+  //
+  // Getters
+  //
+
+  /**
+   * Get the modification count of the RunData object when this index has been
+   * created.
+   * @return the modification count
+   */
+  int getModCount() {
+    return this.modCount;
+  }
+
+  /**
+   * Get the lane count.
+   * @return the lane count or MISSING_INT if not set
+   */
+  int getLaneCount() {
+    return this.laneCount;
+  }
+
+  /**
+   * Get the read count.
+   * @return the read count or MISSING_INT if not set
+   */
+  int getReadCount() {
+    return this.readCount;
+  }
+
+  /**
+   * Get the sample count.
+   * @return the sample count or MISSING_INT if not set
+   */
+  int getSampleCount() {
+    return this.sampleCount;
+  }
+
+  /**
+   * Get the project count.
+   * @return the project count or MISSING_INT if not set
+   */
+  int getProjectCount() {
+    return this.projectCount;
+  }
+
+  /**
+   * Get the pooled sample count.
+   * @return the pooled sample count or MISSING_INT if not set
+   */
+  int getPooledSampleCount() {
+    return this.pooledSampleCount;
+  }
+
+  /**
+   * Get the tile count.
+   * @return the tile count or MISSING_INT if not set
+   */
+  int getTilesCount() {
+    return this.tilesCount;
+  }
+
+  /**
+   * Get the lane of a sample.
+   * @param sampleId the sample id
+   * @return the lane of the sample or MISSING_INT if not set
+   */
+  int getSampleLane(final int sampleId) {
+
+    return sampleId < 1 || sampleId >= this.sampleLanes.length
+        ? MISSING_INT : this.sampleLanes[sampleId];
+  }
+
+  /**
+   * Test if a sample is in the index.
+   * @param sampleId the sample id
+   * @return true if the sample is in the index
+   */
+  boolean isSampleIndexed(final int sampleId) {
+
+    return sampleId >= 1 && sampleId < this.undeterminedSamples.length;
+  }
+
+  /**
+   * Test if a sample is an undetermined sample.
+   * @param sampleId the sample id, must be in the index
+   * @return true if the sample is an undetermined sample
+   */
+  boolean isUndeterminedSample(final int sampleId) {
+
+    return this.undeterminedSamples[sampleId];
+  }
+
+  /**
+   * Get all the samples of a lane.
+   * @param lane the lane
+   * @return a new list with the samples ids or null if not set
+   */
+  List<Integer> getAllSamplesInLane(final int lane) {
+    return toList(this.allSamplesInLane, lane);
+  }
+
+  /**
+   * Get the samples of a lane without undetermined samples.
+   * @param lane the lane
+   * @return a new list with the samples ids or null if not set
+   */
+  List<Integer> getSamplesInLane(final int lane) {
+    return toList(this.samplesInLane, lane);
+  }
+
+  /**
+   * Get the samples of a project.
+   * @param projectId the project id
+   * @return a new list with the samples ids or null if not set
+   */
+  List<Integer> getSamplesInProject(final int projectId) {
+    return toList(this.samplesInProject, projectId);
+  }
+
+  /**
+   * Get the samples of a pooled sample.
+   * @param pooledSampleId the pooled sample id
+   * @return a new list with the samples ids or null if not set
+   */
+  List<Integer> getSamplesInPooledSample(final int pooledSampleId) {
+    return toList(this.samplesInPooledSample, pooledSampleId);
+  }
+
+  /**
+   * Get the raw cluster count of a sample.
+   * @param sampleId the sample id
+   * @param read the read
+   * @return the raw cluster count or MISSING_INT if not set
+   */
+  int getSampleRawClusterCount(final int sampleId, final int read) {
+    return get(this.sampleRawClusterCounts, sampleId, read);
+  }
+
+  /**
+   * Get the passing filter cluster count of a sample.
+   * @param sampleId the sample id
+   * @param read the read
+   * @return the passing filter cluster count or MISSING_INT if not set
+   */
+  int getSamplePFClusterCount(final int sampleId, final int read) {
+    return get(this.samplePFClusterCounts, sampleId, read);
+  }
+
+  /**
+   * Get the raw cluster count of a lane.
+   * @param lane the lane
+   * @param read the read
+   * @return the raw cluster count or MISSING_LONG if not set
+   */
+  long getReadRawClusterCount(final int lane, final int read) {
+    return get(this.readRawClusterCounts, lane, read);
+  }
+
+  /**
+   * Get the passing filter cluster count of a lane.
+   * @param lane the lane
+   * @param read the read
+   * @return the passing filter cluster count or MISSING_LONG if not set
+   */
+  long getReadPFClusterCount(final int lane, final int read) {
+    return get(this.readPFClusterCounts, lane, read);
+  }
+
+  /**
+   * Get the percent of PhiX alignment of a lane.
+   * @param lane the lane
+   * @param read the read
+   * @return the percent of alignment or NaN if not set
+   */
+  double getReadPrcAlign(final int lane, final int read) {
+
+    if (lane < 1
+        || lane >= this.readPrcAlign.length || read < 1
+        || read >= this.readPrcAlign[lane].length) {
+      return Double.NaN;
+    }
+
+    return this.readPrcAlign[lane][read];
+  }
+
+  //
+  // Static methods
+  //
+
+  /**
+   * Test if a key may be used by the index. The index must be rebuilt when
+   * such key is modified.
+   * @param key the normalized key
+   * @return true if the key may be used by the index
+   */
+  static boolean isIndexedKey(final String key) {
+
+    return key.startsWith(SAMPLESHEET_DATA_PREFIX + '.')
+        || key.startsWith(READ_DATA_PREFIX + '.')
+        || key.startsWith("demux.sample") || key.startsWith("run.info.");
+  }
+
+  private static List<Integer> toList(final int[][] array, final int index) {
+
+    if (index < 1 || index >= array.length || array[index] == null) {
+      return null;
+    }
+
+    final int[] values = array[index];
+    final List<Integer> result = new ArrayList<>(values.length);
+    for (int v : values) {
+      result.add(v);
+    }
+
+    return result;
+  }
+
+  private static int get(final int[][] array, final int i, final int j) {
+
+    if (i < 1 || i >= array.length || j < 1 || j >= array[i].length) {
+      return MISSING_INT;
+    }
+
+    return array[i][j];
+  }
+
+  private static long get(final long[][] array, final int i, final int j) {
+
+    if (i < 1 || i >= array.length || j < 1 || j >= array[i].length) {
+      return MISSING_LONG;
+    }
+
+    return array[i][j];
+  }
+
+  private static int parseInt(final RunData data, final String key) {
+
+    final String value = data.get(key);
+
+    if (value == null) {
+      return MISSING_INT;
+    }
+
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      return MISSING_INT;
+    }
+  }
+
+  private static long parseLong(final RunData data, final String key) {
+
+    final String value = data.get(key);
+
+    if (value == null) {
+      return MISSING_LONG;
+    }
+
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      return MISSING_LONG;
+    }
+  }
+
+  private static double parseDouble(final RunData data, final String key) {
+
+    final String value = data.get(key);
+
+    if (value == null) {
+      return Double.NaN;
+    }
+
+    try {
+      return Double.parseDouble(value);
+    } catch (NumberFormatException e) {
+      return Double.NaN;
+    }
+  }
+
+  /**
+   * Parse a list of integers separated by commas.
+   * @param value the value to parse
+   * @param ignoreInvalid ignore invalid integers
+   * @return an array of integers or null if the value is null or contains
+   *         invalid integers and ignoreInvalid is false
+   */
+  private static int[] parseIntList(final String value,
+      final boolean ignoreInvalid) {
+
+    if (value == null) {
+      return null;
+    }
+
+    final List<Integer> list = new ArrayList<>();
+    final int len = value.length();
+    int start = 0;
+
+    while (start <= len) {
+
+      int end = value.indexOf(',', start);
+      if (end == -1) {
+        end = len;
+      }
+
+      final String s = value.substring(start, end).trim();
+
+      if (!s.isEmpty()) {
+        try {
+          list.add(Integer.parseInt(s));
+        } catch (NumberFormatException e) {
+          if (!ignoreInvalid) {
+            return null;
+          }
+        }
+      }
+
+      start = end + 1;
+    }
+
+    final int[] result = new int[list.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = list.get(i);
+    }
+
+    return result;
+  }
+
+  private static int count(final int value) {
+
+    return value == MISSING_INT || value < 0 ? 0 : value;
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Constructor.
+   * @param data RunData object to index
+   * @param modCount modification count of the RunData object
+   */
+  RunDataIndex(final RunData data, final int modCount) {
+
+    this.modCount = modCount;
+
+    this.laneCount = parseInt(data, "run.info.flow.cell.lane.count");
+    this.readCount = parseInt(data, "run.info.read.count");
+    this.sampleCount =
+        parseInt(data, SAMPLESHEET_DATA_PREFIX + ".sample.count");
+    this.projectCount =
+        parseInt(data, SAMPLESHEET_DATA_PREFIX + ".project.count");
+    this.pooledSampleCount =
+        parseInt(data, SAMPLESHEET_DATA_PREFIX + ".pooledsample.count");
+    this.tilesCount =
+        parseInt(data, READ_DATA_PREFIX + ".read1.lane1.tile.count");
+
+    final int lanes = count(this.laneCount);
+    final int reads = count(this.readCount);
+    final int samples = count(this.sampleCount);
+    final int projects = count(this.projectCount);
+    final int pooledSamples = count(this.pooledSampleCount);
+
+    // Samples
+    this.sampleLanes = new int[samples + 1];
+    this.undeterminedSamples = new boolean[samples + 1];
+    this.sampleRawClusterCounts = new int[samples + 1][reads + 1];
+    this.samplePFClusterCounts = new int[samples + 1][reads + 1];
+
+    for (int i = 1; i <= samples; i++) {
+
+      final String prefix = SAMPLESHEET_DATA_PREFIX + ".sample" + i;
+      this.sampleLanes[i] = parseInt(data, prefix + ".lane");
+      this.undeterminedSamples[i] =
+          Boolean.parseBoolean(data.get(prefix + ".undetermined"));
+
+      for (int read = 1; read <= reads; read++) {
+
+        final String demuxPrefix = "demux.sample" + i + ".read" + read;
+        this.sampleRawClusterCounts[i][read] =
+            parseInt(data, demuxPrefix + ".raw.cluster.count");
+        this.samplePFClusterCounts[i][read] =
+            parseInt(data, demuxPrefix + ".pf.cluster.count");
+      }
+    }
+
+    // Lanes
+    this.allSamplesInLane = new int[lanes + 1][];
+    this.samplesInLane = new int[lanes + 1][];
+    this.readRawClusterCounts = new long[lanes + 1][reads + 1];
+    this.readPFClusterCounts = new long[lanes + 1][reads + 1];
+    this.readPrcAlign = new double[lanes + 1][reads + 1];
+
+    for (int lane = 1; lane <= lanes; lane++) {
+
+      final int[] all = parseIntList(
+          data.get(SAMPLESHEET_DATA_PREFIX + ".lane" + lane + ".samples"),
+          false);
+
+      if (all != null) {
+        this.allSamplesInLane[lane] = all;
+
+        int n = 0;
+        final int[] filtered = new int[all.length];
+        for (int sampleId : all) {
+
+          final boolean undetermined = sampleId >= 1 && sampleId <= samples
+              ? this.undeterminedSamples[sampleId]
+              : Boolean.parseBoolean(data.get(SAMPLESHEET_DATA_PREFIX
+                  + ".sample" + sampleId + ".undetermined"));
+
+          if (!undetermined) {
+            filtered[n++] = sampleId;
+          }
+        }
+
+        final int[] inLane = new int[n];
+        System.arraycopy(filtered, 0, inLane, 0, n);
+        this.samplesInLane[lane] = inLane;
+      }
+
+      for (int read = 1; read <= reads; read++) {
+
+        final String prefix =
+            READ_DATA_PREFIX + ".read" + read + ".lane" + lane;
+        this.readRawClusterCounts[lane][read] =
+            parseLong(data, prefix + ".clusters.raw");
+        this.readPFClusterCounts[lane][read] =
+            parseLong(data, prefix + ".clusters.pf");
+        this.readPrcAlign[lane][read] =
+            parseDouble(data, prefix + ".prc.align");
+      }
+    }
+
+    // Projects
+    this.samplesInProject = new int[projects + 1][];
+    for (int i = 1; i <= projects; i++) {
+      this.samplesInProject[i] = parseIntList(
+          data.get(SAMPLESHEET_DATA_PREFIX + ".project" + i + ".samples"),
+          true);
+    }
+
+    // Pooled samples
+    this.samplesInPooledSample = new int[pooledSamples + 1][];
+    for (int i = 1; i <= pooledSamples; i++) {
+      this.samplesInPooledSample[i] = parseIntList(data.get(
+          SAMPLESHEET_DATA_PREFIX + ".pooledsample" + i + ".samples"), true);
+    }
+  }
+
+}
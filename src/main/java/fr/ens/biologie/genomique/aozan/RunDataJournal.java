@@ -0,0 +1,238 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later 
+ * and CeCILL. This should be distributed with the code. If you 
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.io.Files;
+
+/**
+ * This class define an append-only journal of the data generated by the
+ * collectors. For each collector, only the entries added or modified by the
+ * collector are appended to the journal. A block of entries is only taken into
+ * account when it ends with a completion mark, so a journal of a crashed QC
+ * can be reloaded to resume the collect after the last completed collector.
+ * @since 3.2
+ * @author Laurent Jourdren
+ */
+public class RunDataJournal {
+
+  /** Logger. */
+  private static final Logger LOGGER = Aozan2Logger.getLogger();
+
+  private static final String COLLECTORS_MARK = "#collectors ";
+  private static final String BEGIN_MARK = "#begin ";
+  private static final String END_MARK = "#end ";
+
+  private static final Splitter COMMA_SPLITTER =
+      Splitter.on(',').trimResults().omitEmptyStrings();
+
+  private final File file;
+  private final List<String> collectorNames;
+
+  //
+  // Journal methods
+  //
+
+  /**
+   * Get the journal file.
+   * @return the journal file
+   */
+  public File getFile() {
+    return this.file;
+  }
+
+  /**
+   * Load the data of the completed collectors of the journal. If the journal
+   * has been created for another list of collectors, the journal is discarded
+   * and truncated, so the next appended blocks are written under the header of
+   * the current list of collectors.
+   * @return a map with the data generated by each completed collector, in the
+   *         order of completion
+   * @throws IOException if an error occurs while reading the journal
+   */
+  public Map<String, RunData> load() throws IOException {
+
+    final Map<String, RunData> result = new LinkedHashMap<>();
+
+    if (!this.file.exists()) {
+      return result;
+    }
+
+    boolean discard = false;
+
+    try (BufferedReader br =
+        Files.newReader(this.file, Globals.DEFAULT_FILE_ENCODING)) {
+
+      String line = br.readLine();
+
+      if (line == null
+          || !line.startsWith(COLLECTORS_MARK)
+          || !this.collectorNames.equals(COMMA_SPLITTER
+              .splitToList(line.substring(COLLECTORS_MARK.length())))) {
+
+        LOGGER.warning("Discard collector journal created for other "
+            + "collectors: " + this.file);
+        discard = true;
+      }
+
+      String collectorName = null;
+      RunData block = null;
+
+      while (!discard && (line = br.readLine()) != null) {
+
+        if (line.startsWith(BEGIN_MARK)) {
+          collectorName = line.substring(BEGIN_MARK.length()).trim();
+          block = new RunData();
+        } else if (line.startsWith(END_MARK)) {
+
+          if (block != null && line.substring(END_MARK.length()).trim()
+              .equals(collectorName)) {
+            result.put(collectorName, block);
+          }
+          collectorName = null;
+          block = null;
+        } else if (block != null) {
+
+          final int pos = line.indexOf('=');
+          if (pos != -1) {
+            block.put(line.substring(0, pos), line.substring(pos + 1));
+          }
+        }
+      }
+    }
+
+    // Remove the blocks of the discarded journal
+    if (discard) {
+      new FileOutputStream(this.file).close();
+    }
+
+    return result;
+  }
+
+  /**
+   * Append the data generated by a collector to the journal. The journal file
+   * is synchronized on the disk before the end of this method.
+   * @param collectorName name of the collector
+   * @param data the data added or modified by the collector
+   * @throws IOException if an error occurs while writing the journal
+   */
+  public void append(final String collectorName, final RunData data)
+      throws IOException {
+
+    requireNonNull(collectorName, "collectorName argument cannot be null");
+    requireNonNull(data, "data argument cannot be null");
+
+    final boolean newFile = !this.file.exists() || this.file.length() == 0;
+
+    try (FileOutputStream out = new FileOutputStream(this.file, true)) {
+
+      final Writer writer =
+          new OutputStreamWriter(out, Globals.DEFAULT_FILE_ENCODING);
+
+      if (newFile) {
+        writer.write(COLLECTORS_MARK
+            + Joiner.on(',').join(this.collectorNames) + '\n');
+      }
+
+      writer.write(BEGIN_MARK + collectorName + '\n');
+      writer.write(data.toString());
+      writer.write(END_MARK + collectorName + '\n');
+      writer.flush();
+
+      out.getFD().sync();
+    }
+  }
+
+  /**
+   * Fold the journal in a data file. The data of the collectors are merged in
+   * the order of the collector list and the journal is removed.
+   * @param dataFile the output data file
+   * @return the merged data
+   * @throws IOException if an error occurs while reading the journal or
+   *           writing the data file
+   */
+  public RunData compact(final File dataFile) throws IOException {
+
+    requireNonNull(dataFile, "dataFile argument cannot be null");
+
+    final Map<String, RunData> blocks = load();
+    final RunData result = new RunData();
+
+    for (final String collectorName : this.collectorNames) {
+      result.put(blocks.get(collectorName));
+    }
+
+    result.createRunDataFile(dataFile);
+
+    delete();
+
+    return result;
+  }
+
+  /**
+   * Delete the journal file.
+   */
+  public void delete() {
+
+    if (this.file.exists() && !this.file.delete()) {
+      LOGGER.warning("Unable to delete collector journal: " + this.file);
+    }
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Public constructor.
+   * @param file journal file
+   * @param collectorNames the names of the collectors, in execution order
+   */
+  public RunDataJournal(final File file, final List<String> collectorNames) {
+
+    requireNonNull(file, "file argument cannot be null");
+    requireNonNull(collectorNames, "collectorNames argument cannot be null");
+
+    this.file = file;
+    this.collectorNames =
+        Collections.unmodifiableList(new ArrayList<>(collectorNames));
+  }
+
+}
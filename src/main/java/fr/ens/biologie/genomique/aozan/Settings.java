@@ -191,6 +191,9 @@ public final class Settings {
   /** Collector FastQC contaminant file. */
   public static final String QC_CONF_FASTQC_CONTAMINANT_FILE_KEY =
       "qc.conf.fastqc.contaminant.file";
+  /** Collector FastQC contaminant hit maximal number of mismatches. */
+  public static final String QC_CONF_FASTQC_CONTAMINANT_MAX_MISMATCHES_KEY =
+      "qc.conf.fastqc.contaminant.max.mismatches";
   /** Collector FastQC kmer size. */
   public static final String QC_CONF_FASTQC_KMER_SIZE_KEY =
       "qc.conf.fastqc.kmer.size";
@@ -230,6 +233,18 @@ public final class Settings {
   /** Collector FastQC blast path. */
   public static final String QC_CONF_FASTQC_BLAST_PATH_KEY =
       "qc.conf.fastqc.blast.path";
+  /** Collector FastQC blast persistent result cache path. */
+  public static final String QC_CONF_FASTQC_BLAST_CACHE_PATH_KEY =
+      "qc.conf.fastqc.blast.cache.path";
+  /** Collector FastQC blast result cache maximal number of entries. */
+  public static final String QC_CONF_FASTQC_BLAST_CACHE_MAX_ENTRIES_KEY =
+      "qc.conf.fastqc.blast.cache.max.entries";
+  /** Collector FastQC blast number of sequences by batch. */
+  public static final String QC_CONF_FASTQC_BLAST_BATCH_SIZE_KEY =
+      "qc.conf.fastqc.blast.batch.size";
+  /** Collector FastQC blast number of batches blasted at the same time. */
+  public static final String QC_CONF_FASTQC_BLAST_CONCURRENT_BATCHES_KEY =
+      "qc.conf.fastqc.blast.concurrent.batches";
   /** Use Docker for Blast. */
   public static final String QC_CONF_FASTQC_BLAST_USE_DOCKER_KEY =
       "qc.conf.fastqc.blast.use.docker";
@@ -249,6 +264,9 @@ public final class Settings {
   /** Collector fastqscreen mapper argument. */
   public static final String QC_CONF_FASTQSCREEN_MAPPER_ARGUMENTS_KEY =
       "qc.conf.fastqscreen.mapper.arguments";
+  /** Collector fastqscreen number of genomes to map at the same time. */
+  public static final String QC_CONF_FASTQSCREEN_MAPPING_CONCURRENT_GENOMES_KEY =
+      "qc.conf.fastqscreen.mapping.concurrent.genomes";
   /** Collector fastqscreen mapping ignore paired mode. */
   public static final String QC_CONF_FASTQSCREEN_MAPPING_IGNORE_PAIRED_END_MODE_KEY =
       "qc.conf.fastqscreen.mapping.ignore.paired.end.mode";
@@ -267,6 +285,12 @@ public final class Settings {
   /** Collector fastqscreen settings mappers indexes path. */
   public static final String QC_CONF_FASTQSCREEN_MAPPERS_INDEXES_PATH_KEY =
       "qc.conf.fastqscreen.mapper.indexes.path";
+  /** Collector fastqscreen persistent genome index cache path. */
+  public static final String QC_CONF_FASTQSCREEN_INDEX_CACHE_PATH_KEY =
+      "qc.conf.fastqscreen.index.cache.path";
+  /** Collector fastqscreen genome index cache maximal size in gigabytes. */
+  public static final String QC_CONF_FASTQSCREEN_INDEX_CACHE_MAX_SIZE_KEY =
+      "qc.conf.fastqscreen.index.cache.max.size";
   /** Collector fastqscreen settings max read length. */
   public static final String QC_CONF_FASTQSCREEN_MAX_READ_LENGTH_KEY =
       "qc.conf.fastqscreen.max.read.length";
@@ -289,6 +313,21 @@ public final class Settings {
       "qc.conf.read.xml.collector.used";
   /** Collector threads. */
   public static final String QC_CONF_THREADS_KEY = "qc.conf.threads";
+  /** Number of collectors that can be executed at the same time. */
+  public static final String QC_CONF_COLLECTOR_THREADS_KEY =
+      "qc.conf.collector.threads";
+  /** Number of threads used to evaluate the tests of the QC report. */
+  public static final String QC_CONF_REPORT_THREADS_KEY =
+      "qc.conf.report.threads";
+  /** Number of threads used to decompress each FASTQ file. */
+  public static final String QC_CONF_FASTQ_DECOMPRESSION_THREADS_KEY =
+      "qc.conf.fastq.decompression.threads";
+  /** Maximal duration in minutes of the threads of a FASTQ collector. */
+  public static final String QC_CONF_FASTQ_COLLECTOR_TIMEOUT_KEY =
+      "qc.conf.fastq.collector.timeout";
+  /** Read the FASTQ files once for all the FASTQ collectors. */
+  public static final String QC_CONF_FASTQ_SHARED_SCAN_KEY =
+      "qc.conf.fastq.shared.scan";
 
   /** Collector undetermined indexed xsl file. */
   public static final String QC_CONF_UNDETERMINED_INDEXED_XSL_FILE_KEY =
@@ -309,6 +348,30 @@ public final class Settings {
   public static final String QC_CONF_FASTQC_KEEP_ZIP_REPORT_FILE_KEY =
       "qc.conf.fastqc.keep.zip.report.file";
 
+  /** Collector FastQC, number of threads used to execute the modules. */
+  public static final String QC_CONF_FASTQC_MODULE_THREADS_KEY =
+      "qc.conf.fastqc.module.threads";
+
+  /** Collector FastQC, enable the sampling of the reads. */
+  public static final String QC_CONF_FASTQC_SAMPLING_ENABLE_KEY =
+      "qc.conf.fastqc.sampling.enable";
+
+  /** Collector FastQC, minimal number of sampled reads. */
+  public static final String QC_CONF_FASTQC_SAMPLING_MIN_READS_KEY =
+      "qc.conf.fastqc.sampling.min.reads";
+
+  /** Collector FastQC, tolerance of the mean quality of the sampled reads. */
+  public static final String QC_CONF_FASTQC_SAMPLING_QUALITY_TOLERANCE_KEY =
+      "qc.conf.fastqc.sampling.quality.tolerance";
+
+  /** Collector FastQC, tolerance of the GC content of the sampled reads. */
+  public static final String QC_CONF_FASTQC_SAMPLING_GC_TOLERANCE_KEY =
+      "qc.conf.fastqc.sampling.gc.tolerance";
+
+  /** Collector FastQC, fraction of the sampled blocks of reads. */
+  public static final String QC_CONF_FASTQC_SAMPLING_BLOCK_FRACTION_KEY =
+      "qc.conf.fastqc.sampling.block.fraction";
+
   /**
    * Collector FastqScreen, process on undetermined indices samples, default at
    * false.
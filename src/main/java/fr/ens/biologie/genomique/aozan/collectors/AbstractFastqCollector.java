@@ -32,11 +32,12 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -50,8 +51,10 @@ import fr.ens.biologie.genomique.aozan.Aozan2Logger;
 import fr.ens.biologie.genomique.aozan.Globals;
 import fr.ens.biologie.genomique.aozan.QC;
 import fr.ens.biologie.genomique.aozan.RunData;
+import fr.ens.biologie.genomique.aozan.Settings;
 import fr.ens.biologie.genomique.aozan.io.FastqSample;
 import fr.ens.biologie.genomique.aozan.io.FastqSampleUtils;
+import uk.ac.babraham.FastQC.Sequence.Sequence;
 
 /**
  * The abstract class define commons methods for the Collectors which treats
@@ -64,6 +67,9 @@ public abstract class AbstractFastqCollector implements Collector {
   /** Logger. */
   private static final Logger LOGGER =  Aozan2Logger.getLogger();
 
+  /** Maximal duration of the cancellation of the threads in seconds. */
+  private static final int CANCELLATION_TIMEOUT_SECONDS = 60;
+
   private QC qc;
 
   /** The qc report output path. */
@@ -72,23 +78,20 @@ public abstract class AbstractFastqCollector implements Collector {
   /** The tmp dir. */
   private File tmpDir;
 
+  /** The number of threads used to decompress each FASTQ file. */
+  private int decompressionThreads;
+
   // Set samples to treat
   /** The fastq samples. */
   private final Set<FastqSample> fastqSamples = new LinkedHashSet<>();
 
   // mode threaded
-  /** The Constant CHECKING_DELAY_MS. */
-  private static final int CHECKING_DELAY_MS = 5000;
-
-  /** The Constant WAIT_SHUTDOWN_MINUTES. */
-  private static final int WAIT_SHUTDOWN_MINUTES = 60;
+  /** The maximal duration of the threads of the collector, 0 for no limit. */
+  private int timeoutMinutes;
 
   /** The threads. */
   private List<AbstractFastqProcessThread> threads;
 
-  /** The future threads. */
-  private List<Future<? extends AbstractFastqProcessThread>> futureThreads;
-
   /** The executor. */
   private ExecutorService executor;
 
@@ -140,6 +143,16 @@ public abstract class AbstractFastqCollector implements Collector {
     return true;
   }
 
+  /**
+   * Get the number of threads to use to decompress each FASTQ file.
+   * @return the number of threads, 0 if the FASTQ files must be decompressed
+   *         by the process threads
+   */
+  protected int getDecompressionThreads() {
+
+    return this.decompressionThreads;
+  }
+
   /**
    * Get the temporary path.
    * @return a File object with the temporary path
@@ -182,16 +195,10 @@ public abstract class AbstractFastqCollector implements Collector {
     this.qcReportOutputPath = qc.getQcDir();
     this.tmpDir = qc.getTmpDir();
     this.qc = qc;
-
-    if (this.getThreadsNumber() > 1) {
-
-      // Create the list for threads
-      this.threads = new ArrayList<>();
-      this.futureThreads = new ArrayList<>();
-
-      // Create executor service
-      this.executor = Executors.newFixedThreadPool(this.getThreadsNumber());
-    }
+    this.decompressionThreads = Math.max(0,
+        conf.getInt(Settings.QC_CONF_FASTQ_DECOMPRESSION_THREADS_KEY, 0));
+    this.timeoutMinutes = Math.max(0,
+        conf.getInt(Settings.QC_CONF_FASTQ_COLLECTOR_TIMEOUT_KEY, 0));
   }
 
   /**
@@ -223,6 +230,14 @@ public abstract class AbstractFastqCollector implements Collector {
     RunData resultPart;
     if (this.getThreadsNumber() > 1) {
 
+      // Create the list for threads
+      this.threads = new ArrayList<>();
+
+      // Create executor service
+      this.executor = Executors.newFixedThreadPool(this.getThreadsNumber());
+      final CompletionService<AbstractFastqProcessThread> completionService =
+          new ExecutorCompletionService<>(this.executor);
+
       for (final FastqSample fs : this.fastqSamples) {
         if (fs.getFastqFiles() != null && !fs.getFastqFiles().isEmpty()) {
 
@@ -254,9 +269,8 @@ public abstract class AbstractFastqCollector implements Collector {
                 this.collectSample(data, fs, reportDir, isRunPE);
 
             if (thread != null) {
-              // Add thread to executor or futureThreads, I don't know
               this.threads.add(thread);
-              this.futureThreads.add(this.executor.submit(thread, thread));
+              completionService.submit(thread, thread);
             }
           }
         } else {
@@ -270,15 +284,18 @@ public abstract class AbstractFastqCollector implements Collector {
         }
       }
 
-      if (this.futureThreads.size() > 0) {
+      if (this.threads.size() > 0) {
 
         // Wait for threads
-        this.waitThreads(this.futureThreads, this.executor);
+        this.waitThreads(completionService, this.threads.size(),
+            this.executor);
 
         // Add results of the threads to the data object
         for (final AbstractFastqProcessThread sft : this.threads) {
           data.put(sft.getResults());
         }
+      } else {
+        this.executor.shutdown();
       }
 
     } else {
@@ -336,6 +353,69 @@ public abstract class AbstractFastqCollector implements Collector {
 
   }
 
+  /**
+   * Create a consumer that process a FASTQ sample read by the thread of another
+   * collector instead of reading again the FASTQ files of the sample. The
+   * result part of the sample is saved at the end of the consumer, so the
+   * sample is skipped when this collector is executed after the other
+   * collector (see getCollectorsNamesExecutedBefore()). If the consumer fails,
+   * no result part is saved and this collector processes the sample itself.
+   * @param data result data object
+   * @param fastqSample sample object
+   * @param reportDir the report dir
+   * @param runPE if is a PE run
+   * @return a consumer or null if the sample is not processed by the consumer
+   * @throws AozanException if an error occurs while creating the consumer
+   */
+  FastqRecordConsumer createSharedConsumer(final RunData data,
+      final FastqSample fastqSample, final File reportDir, final boolean runPE)
+      throws AozanException {
+
+    requireNonNull(fastqSample, "fastqSample argument cannot be null");
+
+    // The collectors completed by a previous execution are not configured
+    if (this.qc == null) {
+      return null;
+    }
+
+    if (!isFastqSampleProcessed(fastqSample)
+        || this.loadResultPart(fastqSample) != null) {
+      return null;
+    }
+
+    final AbstractFastqProcessThread thread =
+        this.collectSample(data, fastqSample, reportDir, runPE);
+
+    final FastqRecordConsumer consumer =
+        thread == null ? null : thread.createRecordConsumer();
+
+    if (consumer == null) {
+      return null;
+    }
+
+    return new FastqRecordConsumer() {
+
+      @Override
+      public void process(final Sequence sequence) throws AozanException {
+        consumer.process(sequence);
+      }
+
+      @Override
+      public void end() throws AozanException {
+
+        consumer.end();
+
+        // Save result
+        saveResultPart(fastqSample, thread.getResults());
+      }
+
+      @Override
+      public void close() {
+        consumer.close();
+      }
+    };
+  }
+
   /**
    * Delete all temporaries files (fastq tmp files and map files).
    */
@@ -395,6 +475,22 @@ public abstract class AbstractFastqCollector implements Collector {
   // Private methods
   //
 
+  /**
+   * Test if a FASTQ sample is in the samples processed by the collector.
+   * @param fastqSample sample object
+   * @return true if the sample is processed by the collector
+   */
+  private boolean isFastqSampleProcessed(final FastqSample fastqSample) {
+
+    if (fastqSample.isUndeterminedIndex()
+        ? !isProcessUndeterminedIndicesSamples()
+        : !isProcessStandardSamples()) {
+      return false;
+    }
+
+    return isProcessAllReads() || fastqSample.getRead() == 1;
+  }
+
   /**
    * Restore rundata from the save file if it exists.
    * @param fastqSample sample object
@@ -480,85 +576,106 @@ public abstract class AbstractFastqCollector implements Collector {
   }
 
   /**
-   * Wait the end of the threads.
-   * @param threads list with the threads
+   * Wait the end of the threads. The result of each thread is saved as soon as
+   * the thread ends. If a thread fails, if the timeout of the collector is
+   * reached or if the current thread is interrupted, the other threads are
+   * cancelled and their end is waited before throwing the exception, so they
+   * do not write in the files of the samples once the collector has failed.
+   * @param completionService the completion service that execute the threads
+   * @param count the number of threads to wait
    * @param executor the executor
    * @throws AozanException if an error occurs while executing a thread
    */
   private void waitThreads(
-      final List<Future<? extends AbstractFastqProcessThread>> threads,
-      final ExecutorService executor) throws AozanException {
+      final CompletionService<AbstractFastqProcessThread> completionService,
+      final int count, final ExecutorService executor) throws AozanException {
 
-    final boolean interruptThreadIfRunning = true;
+    final long timeoutNanos = TimeUnit.MINUTES.toNanos(this.timeoutMinutes);
+    final long start = System.nanoTime();
 
-    final Set<AbstractFastqProcessThread> threadDataSaved = new HashSet<>();
-    int samplesNotProcessed;
+    try {
 
-    // Wait until all samples are processed
-    do {
+      for (int i = 0; i < count; i++) {
 
-      try {
-        Thread.sleep(CHECKING_DELAY_MS);
-      } catch (final InterruptedException e) {
-        // LOGGER.warning("InterruptedException: " + e.getMessage());
-      }
+        final Future<AbstractFastqProcessThread> future;
 
-      samplesNotProcessed = 0;
+        if (this.timeoutMinutes > 0) {
 
-      for (final Future<? extends AbstractFastqProcessThread> fst : threads) {
+          future = completionService.poll(
+              timeoutNanos - (System.nanoTime() - start), TimeUnit.NANOSECONDS);
 
-        if (fst.isDone()) {
+          if (future == null) {
+            throw new AozanException(getName().toUpperCase()
+                + ": " + (count - i) + " samples not processed after "
+                + this.timeoutMinutes + " minutes");
+          }
 
-          try {
+        } else {
+          future = completionService.take();
+        }
 
-            final AbstractFastqProcessThread st = fst.get();
+        final AbstractFastqProcessThread st = future.get();
 
-            if (!st.isSuccess()) {
+        if (!st.isSuccess()) {
+          throw new AozanException(st.getException());
+        }
 
-              // Close the thread pool
-              executor.shutdownNow();
+        // Save the result as soon as the thread ends
+        this.saveResultPart(st.getFastqSample(), st.getResults());
+      }
 
-              // Wait the termination of current running task
-              executor.awaitTermination(WAIT_SHUTDOWN_MINUTES,
-                  TimeUnit.MINUTES);
+    } catch (final InterruptedException e) {
 
-              // Return error Step Result
-              throw new AozanException(st.getException());
+      // Restore the interrupted status for the caller
+      Thread.currentThread().interrupt();
 
-            } else {
-              // if success, save results
-              if (!threadDataSaved.contains(st)) {
-                this.saveResultPart(st.getFastqSample(), st.getResults());
-                threadDataSaved.add(st);
-              }
+      LOGGER.severe("Interrupted while waiting threads, tasks are cancelled.");
 
-            }
-          } catch (final InterruptedException | ExecutionException e) {
+      throw new AozanException(e);
 
-            if (fst.cancel(interruptThreadIfRunning)) {
-              LOGGER.severe(
-                  "Throw exception by thread execution, task could not be cancelled. "
-                      + e.getMessage() + '\n' + stackTraceToString(e));
-            } else {
-              LOGGER.severe(
-                  "Throw exception by thread execution, task is cancelled."
-                      + e.getMessage() + '\n' + stackTraceToString(e));
-            }
+    } catch (final ExecutionException e) {
 
-            // Throw exception
-            throw new AozanException(e);
-          }
+      LOGGER.severe("Throw exception by thread execution, tasks are cancelled. "
+          + e.getMessage() + '\n' + stackTraceToString(e));
 
-        } else {
-          samplesNotProcessed++;
-        }
+      throw new AozanException(e);
+
+    } finally {
 
+      // Cancel the threads that are not ended. Nothing to cancel on success
+      executor.shutdownNow();
+      awaitTermination(executor);
+    }
+  }
+
+  /**
+   * Wait the end of the cancelled threads of an executor. The wait is bounded
+   * as a thread may not respond to the interruption.
+   * @param executor the executor
+   */
+  private void awaitTermination(final ExecutorService executor) {
+
+    // Clear the interrupted status to wait even if the current thread has been
+    // interrupted
+    final boolean interrupted = Thread.interrupted();
+
+    try {
+
+      if (!executor.awaitTermination(CANCELLATION_TIMEOUT_SECONDS,
+          TimeUnit.SECONDS)) {
+        LOGGER.warning(getName().toUpperCase()
+            + ": some threads are still running " + CANCELLATION_TIMEOUT_SECONDS
+            + " seconds after their cancellation");
       }
 
-    } while (samplesNotProcessed > 0);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
 
-    // Close the thread pool
-    executor.shutdown();
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
   }
 
   /**
@@ -25,13 +25,19 @@ package fr.ens.biologie.genomique.aozan.collectors;
 
 import static fr.ens.biologie.genomique.kenetre.util.StringUtils.toTimeHumanReadable;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 
 import com.google.common.base.Stopwatch;
 
 import fr.ens.biologie.genomique.aozan.AozanException;
 import fr.ens.biologie.genomique.aozan.RunData;
+import fr.ens.biologie.genomique.aozan.fastqc.FastqSequenceFile;
 import fr.ens.biologie.genomique.aozan.io.FastqSample;
+import uk.ac.babraham.FastQC.Sequence.SequenceFactory;
+import uk.ac.babraham.FastQC.Sequence.SequenceFile;
+import uk.ac.babraham.FastQC.Sequence.SequenceFormatException;
 
 /**
  * The abstract class define a thread, it calls by AbstractFastqCollector.
@@ -84,6 +90,74 @@ abstract class AbstractFastqProcessThread implements Runnable {
 
   protected abstract void process() throws AozanException;
 
+  /**
+   * Create a consumer that process the records of the FASTQ sample read by
+   * another thread instead of reading the FASTQ files in the process() method.
+   * The results of the consumer are available in the results of the thread
+   * once the end() method of the consumer has been called.
+   * @return a consumer or null if the thread cannot process the records read
+   *         by another thread
+   * @throws AozanException if an error occurs while creating the consumer
+   */
+  protected FastqRecordConsumer createRecordConsumer() throws AozanException {
+
+    return null;
+  }
+
+  /**
+   * Open the FASTQ files of the sample for FastQC.
+   * @param decompressionThreads number of threads to use to decompress each
+   *          FASTQ file, 0 to let FastQC decompress the files in the current
+   *          thread
+   * @param casavaFilter true if the reads filtered by the Illumina chastity
+   *          filter must be flagged, only used if decompressionThreads is
+   *          greater than 0
+   * @return a SequenceFile object
+   * @throws AozanException if an error occurs while opening the FASTQ files
+   */
+  protected SequenceFile openSequenceFile(final int decompressionThreads,
+      final boolean casavaFilter) throws AozanException {
+
+    try {
+
+      if (decompressionThreads > 0) {
+
+        final FastqSequenceFile result =
+            new FastqSequenceFile(this.fastqSample.getFastqFiles(),
+                this.fastqSample.getCompressionType(), decompressionThreads,
+                casavaFilter);
+
+        if (!result.isColorspace()) {
+          return result;
+        }
+
+        // Colorspace files are only handled by FastQC
+        result.close();
+      }
+
+      return SequenceFactory.getSequenceFile(this.fastqSample.getFastqFiles()
+          .toArray(new File[this.fastqSample.getFastqFiles().size()]));
+
+    } catch (final IOException | SequenceFormatException e) {
+      throw new AozanException(e);
+    }
+  }
+
+  /**
+   * Close a SequenceFile opened by openSequenceFile().
+   * @param seqFile the SequenceFile to close
+   */
+  protected static void closeSequenceFile(final SequenceFile seqFile) {
+
+    if (seqFile instanceof FastqSequenceFile) {
+      try {
+        ((FastqSequenceFile) seqFile).close();
+      } catch (final IOException e) {
+        // Nothing to do, the file has been read
+      }
+    }
+  }
+
   //
   // Getters
   //
@@ -23,6 +23,7 @@
 
 package fr.ens.biologie.genomique.aozan.collectors;
 
+import java.util.Collections;
 import java.util.List;
 
 import fr.ens.biologie.genomique.aozan.AozanException;
@@ -48,6 +49,19 @@ public interface Collector {
    */
   List<String> getCollectorsNamesRequiered();
 
+  /**
+   * Get the name of the collectors that must be executed before this collector
+   * when they are selected for the run. Unlike the required collectors, these
+   * collectors are not added to the run if they are not selected.
+   * @param conf the collector configuration
+   * @return a list of String with the name of the collectors
+   */
+  default List<String> getCollectorsNamesExecutedBefore(
+      final CollectorConfiguration conf) {
+
+    return Collections.emptyList();
+  }
+
   /**
    * Configure the collector with the path of the run data.
    * @param qc QC object for the run
@@ -24,6 +24,9 @@
 package fr.ens.biologie.genomique.aozan.collectors;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.logging.Logger;
 
 import fr.ens.biologie.genomique.aozan.Aozan2Logger;
@@ -51,9 +54,26 @@ public class FastQCCollector extends AbstractFastqCollector {
   /** Retrieve parameters of FastQC qc.conf.+ key_fastqc. */
   private static final boolean INGORE_FILTERED_SEQUENCES = false;
 
+  /** Default parameters of the sampling of the reads. */
+  private static final int DEFAULT_SAMPLING_MIN_READS = 1_000_000;
+  private static final double DEFAULT_SAMPLING_QUALITY_TOLERANCE = 0.2;
+  private static final double DEFAULT_SAMPLING_GC_TOLERANCE = 0.01;
+  private static final double DEFAULT_SAMPLING_BLOCK_FRACTION = 0.1;
+
   private int numberThreads = Runtime.getRuntime().availableProcessors();
   private boolean isProcessUndeterminedIndicesSamples = false;
   private boolean keepZipReportFile;
+  private boolean casavaFilter;
+  private int moduleThreads;
+  private boolean sampling;
+  private int samplingMinReads;
+  private double samplingQualityTolerance;
+  private double samplingGCTolerance;
+  private double samplingBlockFraction;
+
+  /** Collectors that process the FASTQ records read by this collector. */
+  private final List<AbstractFastqCollector> sharedScanCollectors =
+      new ArrayList<>();
 
   @Override
   public String getName() {
@@ -87,10 +107,51 @@ public class FastQCCollector extends AbstractFastqCollector {
     this.keepZipReportFile =
         conf.getBoolean(Settings.QC_CONF_FASTQC_KEEP_ZIP_REPORT_FILE_KEY, true);
 
+    // Flag the reads filtered by the Illumina chastity filter like FastQC
+    this.casavaFilter = conf.getBoolean(Settings.QC_CONF_FASTQC_CASAVA_KEY)
+        && !conf.getBoolean(Settings.QC_CONF_FASTQC_NOFILTER_KEY);
+
+    // Set the number of threads used to execute the modules of a sample
+    this.moduleThreads =
+        Math.max(1, conf.getInt(Settings.QC_CONF_FASTQC_MODULE_THREADS_KEY, 1));
+
+    // Set the sampling of the reads
+    this.sampling =
+        conf.getBoolean(Settings.QC_CONF_FASTQC_SAMPLING_ENABLE_KEY, false);
+    this.samplingMinReads =
+        conf.getInt(Settings.QC_CONF_FASTQC_SAMPLING_MIN_READS_KEY,
+            DEFAULT_SAMPLING_MIN_READS);
+    this.samplingQualityTolerance =
+        conf.getDouble(Settings.QC_CONF_FASTQC_SAMPLING_QUALITY_TOLERANCE_KEY,
+            DEFAULT_SAMPLING_QUALITY_TOLERANCE);
+    this.samplingGCTolerance =
+        conf.getDouble(Settings.QC_CONF_FASTQC_SAMPLING_GC_TOLERANCE_KEY,
+            DEFAULT_SAMPLING_GC_TOLERANCE);
+    this.samplingBlockFraction =
+        conf.getDouble(Settings.QC_CONF_FASTQC_SAMPLING_BLOCK_FRACTION_KEY,
+            DEFAULT_SAMPLING_BLOCK_FRACTION);
+
     // Check if step blast needed and configure
     OverrepresentedSequencesBlast.getInstance().configure(conf,
         qc.getSettings().get(Settings.DOCKER_URI_KEY));
 
+    // Get the selected collectors that can process the FASTQ records read by
+    // this collector. They are executed after this collector and are
+    // configured by RunDataGenerator before the execution of the collectors
+    this.sharedScanCollectors.clear();
+    if (conf.getBoolean(Settings.QC_CONF_FASTQ_SHARED_SCAN_KEY, false)) {
+
+      for (final String name : Arrays.asList(
+          SubsetFastqCollector.COLLECTOR_NAME,
+          UndeterminedIndexesCollector.COLLECTOR_NAME)) {
+
+        final Collector collector = qc.getCollector(name);
+
+        if (collector instanceof AbstractFastqCollector) {
+          this.sharedScanCollectors.add((AbstractFastqCollector) collector);
+        }
+      }
+    }
   }
 
   @Override
@@ -105,9 +166,44 @@ public class FastQCCollector extends AbstractFastqCollector {
           + fastqSample.getFilenamePrefix());
     }
 
+    // Create the sampler of the reads, the seed depends on the sample to
+    // always sample the same reads
+    FastQCSampler sampler = null;
+    if (this.sampling) {
+      try {
+        sampler = new FastQCSampler(this.samplingMinReads,
+            this.samplingQualityTolerance, this.samplingGCTolerance,
+            this.samplingBlockFraction,
+            fastqSample.getFilenamePrefix().hashCode());
+      } catch (final IllegalArgumentException e) {
+        throw new AozanException(
+            "Invalid FastQC sampling parameters: " + e.getMessage());
+      }
+    }
+
     // Create the thread object
-    return new FastQCProcessThread(fastqSample, INGORE_FILTERED_SEQUENCES,
-        reportDir, this.keepZipReportFile);
+    final FastQCProcessThread thread =
+        new FastQCProcessThread(fastqSample, INGORE_FILTERED_SEQUENCES,
+            reportDir, this.keepZipReportFile, getDecompressionThreads(),
+            this.casavaFilter, this.moduleThreads, sampler);
+
+    // Decompress the FASTQ files once for the other collectors
+    try {
+      for (final AbstractFastqCollector collector : this.sharedScanCollectors) {
+
+        final FastqRecordConsumer consumer = collector
+            .createSharedConsumer(data, fastqSample, reportDir, runPE);
+
+        if (consumer != null) {
+          thread.addRecordConsumer(consumer);
+        }
+      }
+    } catch (final AozanException e) {
+      thread.closeRecordConsumers();
+      throw e;
+    }
+
+    return thread;
   }
 
   @Override
@@ -0,0 +1,243 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later
+ * and CeCILL. This should be distributed with the code. If you
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.collectors;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import fr.ens.biologie.genomique.aozan.AozanException;
+import uk.ac.babraham.FastQC.Modules.QCModule;
+import uk.ac.babraham.FastQC.Sequence.Sequence;
+
+/**
+ * This class define a runner that process the sequences of a sample with
+ * groups of FastQC modules executed in parallel. Each group of modules is
+ * processed by a dedicated thread that receives all the sequences by batches
+ * in their original order, so each module sees the same sequences as with a
+ * sequential processing and its results are unchanged.
+ * @since 3.2
+ * @author Laurent Jourdren
+ */
+class FastQCModuleRunner implements AutoCloseable {
+
+  /** Default number of sequences in a batch. */
+  static final int DEFAULT_BATCH_SIZE = 1000;
+
+  /** Number of batches waiting to be processed by a group of modules. */
+  private static final int QUEUE_SIZE = 16;
+
+  private static final List<Sequence> END_OF_STREAM = Collections.emptyList();
+
+  private final int batchSize;
+  private final List<BlockingQueue<List<Sequence>>> queues =
+      new ArrayList<>();
+  private final List<Future<Void>> futures = new ArrayList<>();
+  private final ExecutorService executor;
+
+  private List<Sequence> batch;
+
+  /**
+   * Process a sequence.
+   * @param seq the sequence to process
+   * @throws AozanException if an error occurs while processing the sequences
+   */
+  void process(final Sequence seq) throws AozanException {
+
+    this.batch.add(seq);
+
+    if (this.batch.size() == this.batchSize) {
+      submit(this.batch);
+      this.batch = new ArrayList<>(this.batchSize);
+    }
+  }
+
+  /**
+   * Wait the end of the processing of all the sequences.
+   * @throws AozanException if an error occurs while processing the sequences
+   */
+  void end() throws AozanException {
+
+    if (!this.batch.isEmpty()) {
+      submit(this.batch);
+      this.batch = new ArrayList<>(this.batchSize);
+    }
+
+    submit(END_OF_STREAM);
+
+    for (Future<Void> future : this.futures) {
+      waitResult(future);
+    }
+  }
+
+  @Override
+  public void close() {
+
+    this.executor.shutdownNow();
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Submit a batch of sequences to all the groups of modules.
+   * @param sequences the sequences to submit
+   * @throws AozanException if the current thread has been interrupted or if a
+   *           group of modules has failed
+   */
+  private void submit(final List<Sequence> sequences) throws AozanException {
+
+    for (int i = 0; i < this.queues.size(); i++) {
+
+      final BlockingQueue<List<Sequence>> queue = this.queues.get(i);
+      final Future<Void> future = this.futures.get(i);
+
+      try {
+
+        // Stop as soon as a group of modules has failed
+        while (future.isDone()
+            || !queue.offer(sequences, 1, TimeUnit.SECONDS)) {
+
+          if (future.isDone()) {
+            waitResult(future);
+            throw new AozanException("FastQC modules have stopped");
+          }
+        }
+
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new AozanException(e);
+      }
+    }
+  }
+
+  /**
+   * Wait the result of a group of modules.
+   * @param future the future of the group of modules
+   * @throws AozanException if the group of modules has failed or if the
+   *           current thread has been interrupted
+   */
+  private static void waitResult(final Future<Void> future)
+      throws AozanException {
+
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AozanException(e);
+    } catch (ExecutionException e) {
+      throw new AozanException(e.getCause());
+    } catch (CancellationException e) {
+      throw new AozanException(e);
+    }
+  }
+
+  /**
+   * Process the sequences of a queue with a group of modules.
+   * @param modules the modules
+   * @param queue the queue
+   * @return null
+   * @throws InterruptedException if the thread has been interrupted
+   */
+  private static Void processQueue(final List<QCModule> modules,
+      final BlockingQueue<List<Sequence>> queue) throws InterruptedException {
+
+    List<Sequence> sequences;
+    while ((sequences = queue.take()) != END_OF_STREAM) {
+
+      for (final Sequence seq : sequences) {
+        for (final QCModule module : modules) {
+          module.processSequence(seq);
+        }
+      }
+    }
+
+    return null;
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Constructor.
+   * @param modules the modules to execute
+   * @param threads the number of threads to use
+   * @param batchSize the number of sequences in a batch
+   */
+  FastQCModuleRunner(final List<QCModule> modules, final int threads,
+      final int batchSize) {
+
+    requireNonNull(modules, "modules argument cannot be null");
+
+    if (threads < 1) {
+      throw new IllegalArgumentException("Invalid thread number: " + threads);
+    }
+
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+    }
+
+    this.batchSize = batchSize;
+    this.batch = new ArrayList<>(batchSize);
+
+    // Dispatch the modules in groups
+    final int groupCount = Math.max(1, Math.min(threads, modules.size()));
+    final List<List<QCModule>> groups = new ArrayList<>();
+    for (int i = 0; i < groupCount; i++) {
+      groups.add(new ArrayList<>());
+    }
+    for (int i = 0; i < modules.size(); i++) {
+      groups.get(i % groupCount).add(modules.get(i));
+    }
+
+    this.executor = Executors.newFixedThreadPool(groupCount, r -> {
+      final Thread t = new Thread(r, "fastqc-modules");
+      t.setDaemon(true);
+      return t;
+    });
+
+    for (final List<QCModule> group : groups) {
+
+      final BlockingQueue<List<Sequence>> queue =
+          new ArrayBlockingQueue<>(QUEUE_SIZE);
+
+      this.queues.add(queue);
+      this.futures
+          .add(this.executor.submit(() -> processQueue(group, queue)));
+    }
+  }
+
+}
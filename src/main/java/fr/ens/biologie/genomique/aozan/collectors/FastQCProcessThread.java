@@ -23,10 +23,13 @@
 
 package fr.ens.biologie.genomique.aozan.collectors;
 
+import static java.util.Objects.requireNonNull;
+
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -42,7 +45,6 @@ import uk.ac.babraham.FastQC.Modules.ModuleFactory;
 import uk.ac.babraham.FastQC.Modules.QCModule;
 import uk.ac.babraham.FastQC.Report.HTMLReportArchive;
 import uk.ac.babraham.FastQC.Sequence.Sequence;
-import uk.ac.babraham.FastQC.Sequence.SequenceFactory;
 import uk.ac.babraham.FastQC.Sequence.SequenceFile;
 import uk.ac.babraham.FastQC.Sequence.SequenceFormatException;
 
@@ -57,12 +59,17 @@ class FastQCProcessThread extends AbstractFastqProcessThread {
   /** Logger. */
   private static final Logger LOGGER = Aozan2Logger.getLogger();
 
-  private final SequenceFile seqFile;
+  private final int decompressionThreads;
+  private final boolean casavaFilter;
+  private final int moduleThreads;
+  private final FastQCSampler sampler;
   private final boolean ignoreFilteredSequences;
   private final List<QCModule> moduleList;
   private final File reportDir;
   private final boolean keepZipReportFile;
+  private final List<FastqRecordConsumer> consumers = new ArrayList<>();
 
+  private SequenceFile seqFile;
   private int processedReads;
 
   @Override
@@ -73,7 +80,14 @@ class FastQCProcessThread extends AbstractFastqProcessThread {
   @Override
   protected void process() throws AozanException {
 
-    processSequences(this.seqFile);
+    try {
+      this.seqFile =
+          openSequenceFile(this.decompressionThreads, this.casavaFilter);
+      processSequences(this.seqFile);
+    } finally {
+      closeRecordConsumers();
+      closeSequenceFile(this.seqFile);
+    }
   }
 
   @Override
@@ -93,6 +107,9 @@ class FastQCProcessThread extends AbstractFastqProcessThread {
 
     final boolean ignoreFiltered = this.ignoreFilteredSequences;
     final List<QCModule> modules = this.moduleList;
+
+    // Consumers are processed in reverse order as a failed consumer is removed
+    final List<FastqRecordConsumer> consumers = this.consumers;
     this.processedReads = 0;
 
     // Reset modules
@@ -100,25 +117,85 @@ class FastQCProcessThread extends AbstractFastqProcessThread {
       module.reset();
     }
 
+    // Modules that process the sequences, when the sampling is enabled only
+    // the modules that require exact counts process all the sequences
+    final FastQCSampler sampler = this.sampler;
+    final List<QCModule> exactModules = new ArrayList<>();
+    final List<QCModule> sampledModules = new ArrayList<>();
+    for (final QCModule module : modules) {
+
+      if (ignoreFiltered && module.ignoreFilteredSequences()) {
+        continue;
+      }
+
+      if (sampler != null && FastQCSampler.isExactModule(module)) {
+        exactModules.add(module);
+      } else {
+        sampledModules.add(module);
+      }
+    }
+    final boolean processed =
+        !exactModules.isEmpty() || !sampledModules.isEmpty();
+
+    // Process the modules in parallel for the large samples
+    final FastQCModuleRunner runner = this.moduleThreads > 1
+        ? new FastQCModuleRunner(sampledModules, this.moduleThreads,
+            FastQCModuleRunner.DEFAULT_BATCH_SIZE)
+        : null;
+
     try {
 
       while (seqFile.hasNext()) {
 
         final Sequence seq = seqFile.next();
 
-        boolean processed = false;
+        for (final QCModule module : exactModules) {
+          module.processSequence(seq);
+        }
 
-        for (final QCModule module : modules) {
+        if (sampler == null || sampler.accept(seq)) {
 
-          if (ignoreFiltered && module.ignoreFilteredSequences()) {
-            continue;
+          if (runner != null) {
+            runner.process(seq);
+          } else {
+            for (final QCModule module : sampledModules) {
+              module.processSequence(seq);
+            }
           }
-          processed = true;
-          module.processSequence(seq);
         }
+
         if (processed) {
           this.processedReads++;
         }
+
+        for (int i = consumers.size() - 1; i >= 0; i--) {
+          try {
+            consumers.get(i).process(seq);
+          } catch (final AozanException e) {
+            removeRecordConsumer(i, e);
+          }
+        }
+      }
+
+      if (runner != null) {
+        runner.end();
+      }
+
+      if (sampler != null) {
+        LOGGER.fine("FASTQC: "
+            + sampler.getSampledReads() + " reads sampled for "
+            + getFastqSample().getFilenamePrefix()
+            + (sampler.isConverged() ? ", statistics have converged" : ""));
+      }
+
+      // Process the results of the other collectors before the FastQC
+      // results, as the FastQC reports can take a long time to create
+      for (int i = consumers.size() - 1; i >= 0; i--) {
+        try {
+          consumers.get(i).end();
+        } catch (final AozanException e) {
+          removeRecordConsumer(i, e);
+        }
       }
 
       // Process results
@@ -129,6 +206,11 @@ class FastQCProcessThread extends AbstractFastqProcessThread {
 
     } catch (final SequenceFormatException e) {
       throw new AozanException(e);
+    } finally {
+
+      if (runner != null) {
+        runner.close();
+      }
     }
 
   }
@@ -219,32 +301,80 @@ class FastQCProcessThread extends AbstractFastqProcessThread {
     }
   }
 
+  /**
+   * Add a consumer of the records read by the thread.
+   * @param consumer the consumer to add
+   */
+  void addRecordConsumer(final FastqRecordConsumer consumer) {
+
+    requireNonNull(consumer, "consumer argument cannot be null");
+
+    this.consumers.add(consumer);
+  }
+
+  /**
+   * Remove a failed consumer of the records read by the thread. The collector
+   * of the consumer will read itself the FASTQ files of the sample.
+   * @param index index of the consumer
+   * @param e the exception thrown by the consumer
+   */
+  private void removeRecordConsumer(final int index, final AozanException e) {
+
+    LOGGER.warning("FASTQC: a consumer of the records of "
+        + getFastqSample().getFilenamePrefix() + " has failed: "
+        + e.getMessage());
+
+    this.consumers.remove(index).close();
+  }
+
+  /**
+   * Close the consumers of the records read by the thread.
+   */
+  void closeRecordConsumers() {
+
+    for (final FastqRecordConsumer consumer : this.consumers) {
+      consumer.close();
+    }
+    this.consumers.clear();
+  }
+
   //
   // Constructor
   //
 
   /**
    * Thread constructor.
-   * @throws AozanException if an error occurs while creating sequence file for
-   *           FastQC
+   * @param fastqSample the sample to process
+   * @param ignoreFilteredSequences true if the filtered reads must be ignored
+   * @param reportDir the report directory
+   * @param keepZipReportFile true if the zip report file must be kept
+   * @param decompressionThreads number of threads to use to decompress each
+   *          FASTQ file
+   * @param casavaFilter true if the reads filtered by the Illumina chastity
+   *          filter must be flagged
+   * @param moduleThreads number of threads to use to execute the FastQC
+   *          modules, the modules are executed by the thread that reads the
+   *          FASTQ file if the value is lower than 2
+   * @param sampler the sampler of the reads, all the reads are processed by
+   *          all the modules if null
+   * @throws AozanException if the sample has no FASTQ file
    */
   public FastQCProcessThread(final FastqSample fastqSample,
       final boolean ignoreFilteredSequences, final File reportDir,
-      final boolean keepZipReportFile) throws AozanException {
+      final boolean keepZipReportFile, final int decompressionThreads,
+      final boolean casavaFilter, final int moduleThreads,
+      final FastQCSampler sampler)
+      throws AozanException {
 
     super(fastqSample);
 
     this.ignoreFilteredSequences = ignoreFilteredSequences;
     this.reportDir = reportDir;
     this.keepZipReportFile = keepZipReportFile;
-
-    try {
-      this.seqFile = SequenceFactory.getSequenceFile(fastqSample.getFastqFiles()
-          .toArray(new File[fastqSample.getFastqFiles().size()]));
-
-    } catch (final IOException | SequenceFormatException e) {
-      throw new AozanException(e);
-    }
+    this.decompressionThreads = decompressionThreads;
+    this.casavaFilter = casavaFilter;
+    this.moduleThreads = moduleThreads;
+    this.sampler = sampler;
 
     // Define modules list
     this.moduleList = Lists.newArrayList(ModuleFactory.getStandardModuleList());
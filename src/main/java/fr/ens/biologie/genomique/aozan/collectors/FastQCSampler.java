@@ -0,0 +1,364 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later
+ * and CeCILL. This should be distributed with the code. If you
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.collectors;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import uk.ac.babraham.FastQC.Modules.BasicStats;
+import uk.ac.babraham.FastQC.Modules.PerTileQualityScores;
+import uk.ac.babraham.FastQC.Modules.QCModule;
+import uk.ac.babraham.FastQC.Sequence.Sequence;
+
+/**
+ * This class define a sampler of the reads processed by the FastQC modules.
+ * The reads are sampled by blocks over the whole FASTQ file: the file is
+ * split in periods of blocks and one block randomly selected is sampled in
+ * each period, so the reads of all the tiles are sampled even if the file is
+ * ordered by tile. The mean quality by position and the distribution of the
+ * GC content are compared between consecutive and disjoint windows of sampled
+ * reads. Once the minimal number of reads has been sampled, the period is
+ * doubled each time two windows have the same statistics and is reset when
+ * the statistics change. The modules that require exact counts (e.g. basic
+ * statistics) are not concerned by the sampling and process all the reads.
+ * @since 3.2
+ * @author Laurent Jourdren
+ */
+class FastQCSampler {
+
+  /** Number of reads in a block. */
+  static final int BLOCK_SIZE = 1000;
+
+  /** Number of sampled reads in a window of statistics. */
+  static final int WINDOW_SIZE = 100_000;
+
+  /** Maximal number of blocks in a period. */
+  static final int MAX_PERIOD = 1024;
+
+  private static final int GC_BINS = 101;
+
+  private final int minReads;
+  private final double qualityTolerance;
+  private final double gcTolerance;
+  private final int initialPeriod;
+  private final Random random;
+
+  private long reads;
+  private long blocks;
+  private int period;
+  private long periodStart;
+  private long selectedBlock;
+  private boolean blockSelected;
+
+  private long sampledReads;
+  private boolean converged;
+
+  // Statistics of the reads of the current window
+  private final Window window = new Window();
+
+  // Statistics of the previous window
+  private double[] lastMeanQualities;
+  private double[] lastGCFractions;
+
+  /**
+   * This class define the statistics of a window of sampled reads.
+   */
+  private static final class Window {
+
+    private long[] qualitySums = new long[0];
+    private long[] qualityCounts = new long[0];
+    private final long[] gcCounts = new long[GC_BINS];
+    private long gcTotal;
+    private int reads;
+
+    /**
+     * Add a read to the statistics.
+     * @param seq the read
+     */
+    private void add(final Sequence seq) {
+
+      final String bases = seq.getSequence();
+      final String quality = seq.getQualityString();
+
+      if (quality.length() > this.qualitySums.length) {
+        this.qualitySums = Arrays.copyOf(this.qualitySums, quality.length());
+        this.qualityCounts =
+            Arrays.copyOf(this.qualityCounts, quality.length());
+      }
+
+      // The quality offset is the same for all the reads and is not required
+      // to compare the mean qualities
+      for (int i = 0; i < quality.length(); i++) {
+        this.qualitySums[i] += quality.charAt(i);
+        this.qualityCounts[i]++;
+      }
+
+      int gc = 0;
+      int length = 0;
+      for (int i = 0; i < bases.length(); i++) {
+
+        switch (bases.charAt(i)) {
+        case 'G':
+        case 'C':
+          gc++;
+          length++;
+          break;
+        case 'A':
+        case 'T':
+          length++;
+          break;
+        default:
+          break;
+        }
+      }
+
+      if (length > 0) {
+        this.gcCounts[(int) Math.round(gc * 100.0 / length)]++;
+        this.gcTotal++;
+      }
+
+      this.reads++;
+    }
+
+    /**
+     * Get the mean quality of each position.
+     * @return an array with the mean quality of each position
+     */
+    private double[] getMeanQualities() {
+
+      final double[] result = new double[this.qualitySums.length];
+      for (int i = 0; i < result.length; i++) {
+        result[i] = (double) this.qualitySums[i] / this.qualityCounts[i];
+      }
+
+      return result;
+    }
+
+    /**
+     * Get the fraction of reads of each GC content.
+     * @return an array with the fraction of reads of each GC content
+     */
+    private double[] getGCFractions() {
+
+      final double[] result = new double[GC_BINS];
+      for (int i = 0; i < GC_BINS; i++) {
+        result[i] =
+            this.gcTotal == 0 ? 0.0 : (double) this.gcCounts[i] / this.gcTotal;
+      }
+
+      return result;
+    }
+
+    /**
+     * Clear the statistics.
+     */
+    private void clear() {
+
+      this.qualitySums = new long[0];
+      this.qualityCounts = new long[0];
+      Arrays.fill(this.gcCounts, 0);
+      this.gcTotal = 0;
+      this.reads = 0;
+    }
+  }
+
+  /**
+   * Test if a module must process all the reads.
+   * @param module the module
+   * @return true if the module must process all the reads
+   */
+  static boolean isExactModule(final QCModule module) {
+
+    // The per tile module requires the reads of all the tiles
+    return module instanceof BasicStats
+        || module instanceof PerTileQualityScores;
+  }
+
+  /**
+   * Test if a read must be processed by the sampled modules.
+   * @param seq the read
+   * @return true if the read must be processed by the sampled modules
+   */
+  boolean accept(final Sequence seq) {
+
+    if (this.reads++ % BLOCK_SIZE == 0) {
+      this.blockSelected = nextBlock();
+    }
+
+    if (!this.blockSelected) {
+      return false;
+    }
+
+    this.window.add(seq);
+    this.sampledReads++;
+
+    if (this.window.reads == WINDOW_SIZE) {
+      endWindow();
+    }
+
+    return true;
+  }
+
+  /**
+   * Test if the statistics of the last two windows of sampled reads are the
+   * same.
+   * @return true if the statistics have converged
+   */
+  boolean isConverged() {
+
+    return this.converged;
+  }
+
+  /**
+   * Get the number of sampled reads.
+   * @return the number of sampled reads
+   */
+  long getSampledReads() {
+
+    return this.sampledReads;
+  }
+
+  /**
+   * Get the current number of blocks in a period.
+   * @return the current number of blocks in a period
+   */
+  int getPeriod() {
+
+    return this.period;
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Start a new block.
+   * @return true if the block is sampled
+   */
+  private boolean nextBlock() {
+
+    final long block = this.blocks++;
+
+    // Select randomly the block to sample in the new period, the period may
+    // have been reduced since the start of the current period
+    if (block >= this.periodStart + this.period) {
+      this.periodStart = block;
+      this.selectedBlock = block + this.random.nextInt(this.period);
+    }
+
+    return block == this.selectedBlock;
+  }
+
+  /**
+   * Compare the statistics of the current window with the statistics of the
+   * previous window and update the period.
+   */
+  private void endWindow() {
+
+    final double[] meanQualities = this.window.getMeanQualities();
+    final double[] gcFractions = this.window.getGCFractions();
+    this.window.clear();
+
+    this.converged = this.lastMeanQualities != null
+        && maxDifference(meanQualities,
+            this.lastMeanQualities) <= this.qualityTolerance
+        && maxDifference(gcFractions,
+            this.lastGCFractions) <= this.gcTolerance;
+
+    // The next period starts with the new number of blocks
+    if (!this.converged) {
+      this.period = this.initialPeriod;
+    } else if (this.sampledReads >= this.minReads) {
+      this.period = Math.min(MAX_PERIOD, 2 * this.period);
+    }
+
+    this.lastMeanQualities = meanQualities;
+    this.lastGCFractions = gcFractions;
+  }
+
+  /**
+   * Compute the maximal difference between the values of two arrays.
+   * @param a first array
+   * @param b second array
+   * @return the maximal difference or infinity if the arrays have not the
+   *         same length
+   */
+  private static double maxDifference(final double[] a, final double[] b) {
+
+    if (a.length != b.length) {
+      return Double.POSITIVE_INFINITY;
+    }
+
+    double result = 0.0;
+    for (int i = 0; i < a.length; i++) {
+      result = Math.max(result, Math.abs(a[i] - b[i]));
+    }
+
+    return result;
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Constructor.
+   * @param minReads minimal number of sampled reads before reducing the
+   *          fraction of sampled blocks
+   * @param qualityTolerance maximal difference of the mean quality of each
+   *          position between two windows of sampled reads
+   * @param gcTolerance maximal difference of the fraction of reads of each GC
+   *          content between two windows of sampled reads
+   * @param blockFraction initial fraction of the sampled blocks
+   * @param seed seed of the random number generator
+   */
+  FastQCSampler(final int minReads, final double qualityTolerance,
+      final double gcTolerance, final double blockFraction, final long seed) {
+
+    if (minReads < 0) {
+      throw new IllegalArgumentException(
+          "Invalid minimal number of reads: " + minReads);
+    }
+
+    if (qualityTolerance < 0.0 || gcTolerance < 0.0) {
+      throw new IllegalArgumentException("Invalid tolerance: "
+          + qualityTolerance + ", " + gcTolerance);
+    }
+
+    if (blockFraction <= 0.0 || blockFraction > 1.0) {
+      throw new IllegalArgumentException(
+          "Invalid block fraction: " + blockFraction);
+    }
+
+    this.minReads = minReads;
+    this.qualityTolerance = qualityTolerance;
+    this.gcTolerance = gcTolerance;
+    this.initialPeriod =
+        (int) Math.min(MAX_PERIOD, Math.round(1.0 / blockFraction));
+    this.period = this.initialPeriod;
+    this.random = new Random(seed);
+    this.selectedBlock = this.random.nextInt(this.period);
+  }
+
+}
@@ -0,0 +1,58 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later 
+ * and CeCILL. This should be distributed with the code. If you 
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.collectors;
+
+import fr.ens.biologie.genomique.aozan.AozanException;
+import uk.ac.babraham.FastQC.Sequence.Sequence;
+
+/**
+ * This interface define a consumer of the records of a FASTQ sample read by
+ * the thread of another collector. It allows to decompress and parse the FASTQ
+ * files only once for several collectors.
+ * @since 3.2
+ * @author Laurent Jourdren
+ */
+interface FastqRecordConsumer {
+
+  /**
+   * Process a record of the FASTQ sample.
+   * @param sequence the record to process
+   * @throws AozanException if an error occurs while processing the record
+   */
+  void process(Sequence sequence) throws AozanException;
+
+  /**
+   * Process the results once all the records of the FASTQ sample have been
+   * processed.
+   * @throws AozanException if an error occurs while processing the results
+   */
+  void end() throws AozanException;
+
+  /**
+   * Release the resources of the consumer. This method is always called, even
+   * if the reading of the FASTQ sample has failed.
+   */
+  void close();
+
+}
@@ -0,0 +1,246 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later 
+ * and CeCILL. This should be distributed with the code. If you 
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.collectors;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+
+/**
+ * This class counts the raw and passing filter occurrences of index sequences.
+ * The index sequences are encoded in a long with 3 bits per character (A, C,
+ * G, T, N and the '+' separator of dual indexes) and counted in an open
+ * addressing hash table, so counting an index does not create any object. The
+ * index sequences that cannot be encoded (too long or with other characters)
+ * are counted in multisets.
+ * @since 3.2
+ * @author Laurent Jourdren
+ */
+final class IndexCountTable {
+
+  /** Maximal length of an encoded index, a leading bit marks the start. */
+  static final int MAX_ENCODED_LENGTH = 21;
+
+  private static final int INITIAL_CAPACITY = 1024;
+  private static final String ALPHABET = "ACGTN+";
+
+  private long[] keys = new long[INITIAL_CAPACITY];
+  private int[] rawCounts = new int[INITIAL_CAPACITY];
+  private int[] pfCounts = new int[INITIAL_CAPACITY];
+  private int size;
+
+  private final Multiset<String> rawOthers = HashMultiset.create();
+  private final Multiset<String> pfOthers = HashMultiset.create();
+
+  /**
+   * Count an index.
+   * @param s the char sequence that contains the index
+   * @param from index of the first character of the index
+   * @param to index after the last character of the index
+   * @param pf true if the read has passed the filter
+   */
+  void add(final CharSequence s, final int from, final int to,
+      final boolean pf) {
+
+    final long code = encode(s, from, to);
+
+    if (code == 0) {
+      final String index = s.subSequence(from, to).toString();
+      this.rawOthers.add(index);
+      if (pf) {
+        this.pfOthers.add(index);
+      }
+      return;
+    }
+
+    final int slot = slot(code);
+
+    if (this.keys[slot] == 0) {
+      this.keys[slot] = code;
+      this.size++;
+    }
+
+    this.rawCounts[slot]++;
+    if (pf) {
+      this.pfCounts[slot]++;
+    }
+
+    if (this.size * 2 > this.keys.length) {
+      resize();
+    }
+  }
+
+  /**
+   * Add the counts of the table to multisets.
+   * @param raw multiset for the raw counts
+   * @param pf multiset for the passing filter counts
+   */
+  void addTo(final Multiset<String> raw, final Multiset<String> pf) {
+
+    for (int i = 0; i < this.keys.length; i++) {
+
+      if (this.keys[i] != 0) {
+
+        final String index = decode(this.keys[i]);
+        raw.add(index, this.rawCounts[i]);
+        if (this.pfCounts[i] > 0) {
+          pf.add(index, this.pfCounts[i]);
+        }
+      }
+    }
+
+    raw.addAll(this.rawOthers);
+    pf.addAll(this.pfOthers);
+  }
+
+  /**
+   * Get the number of distinct indexes.
+   * @return the number of distinct indexes
+   */
+  int size() {
+
+    return this.size + this.rawOthers.elementSet().size();
+  }
+
+  //
+  // Hash table
+  //
+
+  /**
+   * Get the slot of a code in the table.
+   * @param code the code
+   * @return the slot of the code or the empty slot where to put the code
+   */
+  private int slot(final long code) {
+
+    final int mask = this.keys.length - 1;
+    int slot = hash(code) & mask;
+
+    while (this.keys[slot] != 0 && this.keys[slot] != code) {
+      slot = (slot + 1) & mask;
+    }
+
+    return slot;
+  }
+
+  /**
+   * Double the capacity of the table.
+   */
+  private void resize() {
+
+    final long[] oldKeys = this.keys;
+    final int[] oldRawCounts = this.rawCounts;
+    final int[] oldPfCounts = this.pfCounts;
+
+    this.keys = new long[oldKeys.length * 2];
+    this.rawCounts = new int[oldKeys.length * 2];
+    this.pfCounts = new int[oldKeys.length * 2];
+
+    for (int i = 0; i < oldKeys.length; i++) {
+
+      if (oldKeys[i] != 0) {
+        final int slot = slot(oldKeys[i]);
+        this.keys[slot] = oldKeys[i];
+        this.rawCounts[slot] = oldRawCounts[i];
+        this.pfCounts[slot] = oldPfCounts[i];
+      }
+    }
+  }
+
+  private static int hash(final long code) {
+
+    final long h = code * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  //
+  // Encoding
+  //
+
+  /**
+   * Encode an index sequence.
+   * @param s the char sequence that contains the index
+   * @param from index of the first character of the index
+   * @param to index after the last character of the index
+   * @return the code of the index or 0 if the index cannot be encoded
+   */
+  static long encode(final CharSequence s, final int from, final int to) {
+
+    if (to - from > MAX_ENCODED_LENGTH) {
+      return 0;
+    }
+
+    long result = 1;
+
+    for (int i = from; i < to; i++) {
+
+      final int value;
+      switch (s.charAt(i)) {
+      case 'A':
+        value = 1;
+        break;
+      case 'C':
+        value = 2;
+        break;
+      case 'G':
+        value = 3;
+        break;
+      case 'T':
+        value = 4;
+        break;
+      case 'N':
+        value = 5;
+        break;
+      case '+':
+        value = 6;
+        break;
+      default:
+        return 0;
+      }
+
+      result = result << 3 | value;
+    }
+
+    return result;
+  }
+
+  /**
+   * Decode an index sequence.
+   * @param code the code of the index
+   * @return a string with the index sequence
+   */
+  static String decode(final long code) {
+
+    final int length = (63 - Long.numberOfLeadingZeros(code)) / 3;
+    final char[] result = new char[length];
+
+    long c = code;
+    for (int i = length - 1; i >= 0; i--) {
+      result[i] = ALPHABET.charAt((int) (c & 7) - 1);
+      c >>>= 3;
+    }
+
+    return new String(result);
+  }
+
+}
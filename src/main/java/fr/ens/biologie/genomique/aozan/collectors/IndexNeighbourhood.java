@@ -0,0 +1,280 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later 
+ * and CeCILL. This should be distributed with the code. If you 
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.collectors;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * This class allow to find the sample indexes that are near of an index. All
+ * the variants of the sample indexes with at most a maximal number of
+ * mismatches are precomputed in a hash table, so searching the sample indexes
+ * near of an index only require one lookup instead of comparing the index with
+ * all the sample indexes. For dual indexes ("index1+index2"), the variants of
+ * the two indexes are precomputed in two tables: the neighbours of each index
+ * are searched in its table and the mismatches of the two indexes are added.
+ * @since 3.2
+ * @author Laurent Jourdren
+ */
+final class IndexNeighbourhood {
+
+  private static final char[] NUCLEOTIDES = {'A', 'C', 'G', 'T', 'N'};
+  private static final char DUAL_INDEX_SEPARATOR = '+';
+
+  private final int maxMismatches;
+
+  // Variants of the single indexes
+  private final Map<String, List<Neighbour>> variants = new HashMap<>();
+
+  // Variants of the first and second indexes of the dual indexes
+  private final Map<String, List<Neighbour>> index1Variants = new HashMap<>();
+  private final Map<String, List<Neighbour>> index2Variants = new HashMap<>();
+
+  private long size;
+
+  /**
+   * This class define a sample index near of an index.
+   */
+  static final class Neighbour {
+
+    private final int sampleId;
+    private final String sampleIndex;
+    private final int mismatches;
+
+    /**
+     * Get the sample id.
+     * @return the sample id
+     */
+    int getSampleId() {
+      return this.sampleId;
+    }
+
+    /**
+     * Get the index of the sample.
+     * @return the index of the sample
+     */
+    String getSampleIndex() {
+      return this.sampleIndex;
+    }
+
+    /**
+     * Get the number of mismatches between the sample index and the index.
+     * @return the number of mismatches
+     */
+    int getMismatches() {
+      return this.mismatches;
+    }
+
+    private Neighbour(final int sampleId, final String sampleIndex,
+        final int mismatches) {
+
+      this.sampleId = sampleId;
+      this.sampleIndex = sampleIndex;
+      this.mismatches = mismatches;
+    }
+  }
+
+  /**
+   * Add a sample index.
+   * @param sampleId the sample id
+   * @param sampleIndex the index of the sample
+   */
+  void add(final int sampleId, final String sampleIndex) {
+
+    requireNonNull(sampleIndex, "sampleIndex argument cannot be null");
+
+    final int separator = sampleIndex.indexOf(DUAL_INDEX_SEPARATOR);
+
+    if (separator == -1) {
+      addVariants(this.variants, sampleId, sampleIndex, sampleIndex);
+    } else {
+      addVariants(this.index1Variants, sampleId, sampleIndex,
+          sampleIndex.substring(0, separator));
+      addVariants(this.index2Variants, sampleId, sampleIndex,
+          sampleIndex.substring(separator + 1));
+    }
+  }
+
+  /**
+   * Get the sample indexes near of an index.
+   * @param index the index
+   * @return a list with the sample indexes with at most the maximal number of
+   *         mismatches, in the order of the addition of the samples
+   */
+  List<Neighbour> get(final String index) {
+
+    requireNonNull(index, "index argument cannot be null");
+
+    final int separator = index.indexOf(DUAL_INDEX_SEPARATOR);
+
+    if (separator == -1) {
+      return get(this.variants, index);
+    }
+
+    final List<Neighbour> neighbours1 =
+        get(this.index1Variants, index.substring(0, separator));
+    if (neighbours1.isEmpty()) {
+      return neighbours1;
+    }
+
+    final List<Neighbour> neighbours2 =
+        get(this.index2Variants, index.substring(separator + 1));
+    if (neighbours2.isEmpty()) {
+      return neighbours2;
+    }
+
+    // Keep the samples near of the two indexes
+    List<Neighbour> result = null;
+    for (final Neighbour n1 : neighbours1) {
+      for (final Neighbour n2 : neighbours2) {
+
+        if (n1.sampleId == n2.sampleId
+            && n1.sampleIndex.equals(n2.sampleIndex)) {
+
+          final int mismatches = n1.mismatches + n2.mismatches;
+          if (mismatches <= this.maxMismatches) {
+
+            if (result == null) {
+              result = new ArrayList<>(1);
+            }
+            result.add(new Neighbour(n1.sampleId, n1.sampleIndex, mismatches));
+          }
+          break;
+        }
+      }
+    }
+
+    return result == null ? Collections.emptyList() : result;
+  }
+
+  /**
+   * Get the number of precomputed variants.
+   * @return the number of precomputed variants of the sample indexes
+   */
+  long size() {
+
+    return this.size;
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Get the neighbours of an index in a table.
+   * @param table the table
+   * @param index the index
+   * @return a list with the neighbours
+   */
+  private static List<Neighbour> get(final Map<String, List<Neighbour>> table,
+      final String index) {
+
+    final List<Neighbour> result = table.get(index);
+
+    return result == null ? Collections.emptyList() : result;
+  }
+
+  /**
+   * Add an index and its variants to a table.
+   * @param table the table
+   * @param sampleId the sample id
+   * @param sampleIndex the index of the sample
+   * @param index the index to add, the sample index or one of its two indexes
+   */
+  private void addVariants(final Map<String, List<Neighbour>> table,
+      final int sampleId, final String sampleIndex, final String index) {
+
+    addVariant(table, index, new Neighbour(sampleId, sampleIndex, 0));
+    addVariants(table, sampleId, sampleIndex, index.toCharArray(), 0, 1);
+  }
+
+  /**
+   * Add recursively the variants of an index.
+   * @param table the table
+   * @param sampleId the sample id
+   * @param sampleIndex the index of the sample
+   * @param variant the variant being built
+   * @param start the first position to change
+   * @param mismatches the number of mismatches of the variants to create
+   */
+  private void addVariants(final Map<String, List<Neighbour>> table,
+      final int sampleId, final String sampleIndex, final char[] variant,
+      final int start, final int mismatches) {
+
+    if (mismatches > this.maxMismatches) {
+      return;
+    }
+
+    for (int i = start; i < variant.length; i++) {
+
+      final char original = variant[i];
+
+      for (char c : NUCLEOTIDES) {
+
+        if (c == original) {
+          continue;
+        }
+
+        variant[i] = c;
+        addVariant(table, new String(variant),
+            new Neighbour(sampleId, sampleIndex, mismatches));
+        addVariants(table, sampleId, sampleIndex, variant, i + 1,
+            mismatches + 1);
+      }
+
+      variant[i] = original;
+    }
+  }
+
+  private void addVariant(final Map<String, List<Neighbour>> table,
+      final String variant, final Neighbour neighbour) {
+
+    table.computeIfAbsent(variant, k -> new ArrayList<>(1)).add(neighbour);
+    this.size++;
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Constructor.
+   * @param maxMismatches maximal number of mismatches
+   */
+  IndexNeighbourhood(final int maxMismatches) {
+
+    Preconditions.checkArgument(maxMismatches >= 0,
+        "maxMismatches cannot be lower than 0: " + maxMismatches);
+
+    this.maxMismatches = maxMismatches;
+  }
+
+}
@@ -88,6 +88,22 @@ public class SubsetFastqCollector extends AbstractFastqCollector {
 
   }
 
+  /**
+   * The FastQC collector must be executed before this collector if it reads
+   * the FASTQ files for this collector.
+   * @return list of names collector
+   */
+  @Override
+  public List<String> getCollectorsNamesExecutedBefore(
+      final CollectorConfiguration conf) {
+
+    if (conf.getBoolean(Settings.QC_CONF_FASTQ_SHARED_SCAN_KEY, false)) {
+      return Collections.singletonList(FastQCCollector.COLLECTOR_NAME);
+    }
+
+    return super.getCollectorsNamesExecutedBefore(conf);
+  }
+
   @Override
   public void configure(final QC qc, final CollectorConfiguration conf) {
 
@@ -241,9 +257,15 @@ public class SubsetFastqCollector extends AbstractFastqCollector {
     final long pfClusterCount = data.getInt(prefix + ".pf.cluster.count");
     final long rawClusterCount = data.getInt(prefix + ".raw.cluster.count");
 
+    // The samples are already processed in parallel by the threads of the
+    // collector, share these threads between the FASTQ files of the samples
+    final int fileThreads = Math.max(1,
+        this.numberThreads / Math.max(1, getFastqSamples().size()));
+
     // Create the thread object
     return new SubsetFastqThread(fastqSample, rawClusterCount, pfClusterCount,
-        this.countReadsPFtoCopy, this.maxReadsPFtoParse, this.maxReadLength);
+        this.countReadsPFtoCopy, this.maxReadsPFtoParse, this.maxReadLength,
+        getDecompressionThreads(), fileThreads);
   }
 
   /**
@@ -24,29 +24,37 @@
 
 package fr.ens.biologie.genomique.aozan.collectors;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
-import com.google.common.io.Files;
+import com.google.common.util.concurrent.MoreExecutors;
 
 import fr.ens.biologie.genomique.aozan.AozanException;
 import fr.ens.biologie.genomique.aozan.Aozan2Logger;
 import fr.ens.biologie.genomique.aozan.Common;
 import fr.ens.biologie.genomique.aozan.Globals;
+import fr.ens.biologie.genomique.aozan.io.FastqRecordScanner;
 import fr.ens.biologie.genomique.aozan.io.FastqSample;
+import fr.ens.biologie.genomique.aozan.io.FastqSampleUtils;
 import fr.ens.biologie.genomique.kenetre.KenetreException;
-import fr.ens.biologie.genomique.kenetre.bio.BadBioEntryException;
 import fr.ens.biologie.genomique.kenetre.bio.IlluminaReadId;
-import fr.ens.biologie.genomique.kenetre.bio.ReadSequence;
-import fr.ens.biologie.genomique.kenetre.bio.io.FastqReader;
 import fr.ens.biologie.genomique.kenetre.io.CompressionType;
-import fr.ens.biologie.genomique.kenetre.io.FileUtils;
+import uk.ac.babraham.FastQC.Sequence.Sequence;
 
 /**
  * The class define a class for a thread that create a temporary partial fastq
@@ -60,9 +68,14 @@ public class SubsetFastqThread extends AbstractFastqProcessThread {
   /** Logger. */
   private static final Logger LOGGER = Aozan2Logger.getLogger();
 
+  /** Size of the buffer of the writers of the partial files. */
+  private static final int WRITER_BUFFER_SIZE = 1024 * 1024;
+
   // count reads pf necessary for create a temporary partial fastq
   private final int countReadsPFtoCopy;
   private final int maxReadLength;
+  private final int decompressionThreads;
+  private final int fileThreads;
 
   private final long rawClusterCount;
   private final long pfClusterCountParsed;
@@ -70,6 +83,148 @@ public class SubsetFastqThread extends AbstractFastqProcessThread {
   private final File tmpFastqFile;
   private boolean uncompressFastqFile = false;
 
+  /**
+   * This class define the selection of the reads of a partial file. One read
+   * every step is kept until the quota of reads to copy is reached. The quota
+   * is defined for each FASTQ file or shared by the FASTQ files of the sample.
+   * When the quota is shared, the FASTQ files read after the end of the quota
+   * still provide their first selected read.
+   */
+  static final class ReadSelector {
+
+    private final int step;
+    private final int readsToCopy;
+    private final boolean pfReadsOnly;
+    private final boolean sharedQuota;
+    private final int maxReadLength;
+
+    private int comptReads;
+    private int countReadsToCopy;
+    private boolean fileDone;
+
+    /**
+     * Test if only the reads passing filter are kept.
+     * @return true if only the reads passing filter are kept
+     */
+    boolean isPfReadsOnly() {
+
+      return this.pfReadsOnly;
+    }
+
+    /**
+     * Get the maximum length of the reads to write.
+     * @return the maximum length of the reads, no trimming if lower than 1
+     */
+    int getMaxReadLength() {
+
+      return this.maxReadLength;
+    }
+
+    /**
+     * Test if no more read of the current FASTQ file will be kept.
+     * @return true if no more read of the current FASTQ file will be kept
+     */
+    boolean isFileDone() {
+
+      return this.fileDone;
+    }
+
+    /**
+     * Start the selection of the reads of a new FASTQ file.
+     */
+    void startFile() {
+
+      this.comptReads = 1;
+      this.fileDone = false;
+
+      if (!this.sharedQuota) {
+        this.countReadsToCopy = this.readsToCopy;
+      }
+    }
+
+    /**
+     * Test if the next read of the current FASTQ file must be kept.
+     * @param filtered true if the read has been filtered
+     * @return true if the read must be kept
+     */
+    boolean select(final boolean filtered) {
+
+      if (this.fileDone || this.pfReadsOnly && filtered) {
+        return false;
+      }
+
+      if (this.comptReads++ % this.step != 0) {
+        return false;
+      }
+
+      this.fileDone = --this.countReadsToCopy <= 0;
+
+      return true;
+    }
+
+    /**
+     * Create a selector for the reads of a FASTQ file read independently of
+     * the other FASTQ files. When the quota is shared, the whole quota is
+     * given to the FASTQ file and readsToKeep() must be used to get the reads
+     * to keep.
+     * @return a new ReadSelector object
+     */
+    ReadSelector newFileSelector() {
+
+      return new ReadSelector(this.step, this.readsToCopy, this.pfReadsOnly,
+          false, this.maxReadLength);
+    }
+
+    /**
+     * Get the number of reads to keep for each FASTQ file from the reads
+     * selected by the selectors created by newFileSelector(). The selected
+     * reads of a FASTQ file always start with the reads to keep.
+     * @param selectedReads the number of reads selected in each FASTQ file
+     * @return an array with the number of reads to keep for each FASTQ file
+     */
+    long[] readsToKeep(final long[] selectedReads) {
+
+      if (!this.sharedQuota) {
+        return selectedReads;
+      }
+
+      final long[] result = new long[selectedReads.length];
+      long remaining = this.readsToCopy;
+
+      for (int i = 0; i < selectedReads.length; i++) {
+        result[i] = Math.min(selectedReads[i], Math.max(remaining, 1));
+        remaining -= result[i];
+      }
+
+      return result;
+    }
+
+    /**
+     * Constructor.
+     * @param step the step between two reads to keep
+     * @param readsToCopy the number of reads to keep
+     * @param pfReadsOnly true if only the reads passing filter are kept
+     * @param sharedQuota true if the number of reads to keep is shared by the
+     *          FASTQ files
+     * @param maxReadLength the maximum length of the reads to write
+     */
+    ReadSelector(final int step, final int readsToCopy,
+        final boolean pfReadsOnly, final boolean sharedQuota,
+        final int maxReadLength) {
+
+      if (step < 1) {
+        throw new IllegalArgumentException("Invalid step: " + step);
+      }
+
+      this.step = step;
+      this.readsToCopy = readsToCopy;
+      this.pfReadsOnly = pfReadsOnly;
+      this.sharedQuota = sharedQuota;
+      this.maxReadLength = maxReadLength;
+      this.countReadsToCopy = readsToCopy;
+    }
+  }
+
   @Override
   protected void logThreadStart() {
     // Nothing to log
@@ -104,18 +259,21 @@ public class SubsetFastqThread extends AbstractFastqProcessThread {
 
     if (!getFastqSample().getSubsetFastqFile().exists()) {
 
-      if (this.countReadsPFtoCopy > this.rawClusterCount) {
-        uncompressedFastqFile();
-        this.uncompressFastqFile = true;
+      final List<File> fastqFiles = getFastqSample().getFastqFiles();
 
-      } else if (this.countReadsPFtoCopy > this.pfClusterCountParsed) {
-        // Use all reads
-        partialFastqFile();
-      } else {
-        // Filter reads
-        filteredFastqFile();
+      for (final File fastqFile : fastqFiles) {
+        if (!fastqFile.exists()) {
+          throw new AozanException(
+              "Fastq file " + fastqFile.getName() + " doesn't exist");
+        }
       }
 
+      this.uncompressFastqFile = this.countReadsPFtoCopy > this.rawClusterCount;
+
+      subsetFastqFiles(fastqFiles, getFastqSample().getCompressionType(),
+          this.decompressionThreads, this.fileThreads, createReadSelector(),
+          this.tmpFastqFile);
+
       // Rename file: remove '.tmp' final
       if (!this.tmpFastqFile.renameTo(getFastqSample().getSubsetFastqFile())) {
         LOGGER.warning("FASTQC: fail to rename tmp fastq file "
@@ -125,244 +283,359 @@ public class SubsetFastqThread extends AbstractFastqProcessThread {
   }
 
   /**
-   * Write the temporary partial file from a array of fastq files, only reads
-   * passing filter Illumina are writing.
-   * @throws AozanException if an error occurs while creating file
+   * Create the selector of the reads of the partial file. If there is less
+   * reads than the reads to copy, all the reads are kept without trimming.
+   * Otherwise, if there is less PF reads than the reads to copy, the reads are
+   * selected among all the reads with a quota shared by the FASTQ files, else
+   * the reads are selected among the PF reads with a quota for each FASTQ
+   * file.
+   * @return a new ReadSelector object
    */
-  private void filteredFastqFile() throws AozanException {
+  private ReadSelector createReadSelector() {
 
-    Writer fwTmpFastq = null;
-    try {
-      fwTmpFastq =
-          Files.newWriter(this.tmpFastqFile, Globals.DEFAULT_FILE_ENCODING);
-
-      final int step = (int) (1
-          / ((double) this.countReadsPFtoCopy / this.pfClusterCountParsed));
-
-      for (final File fastqFile : getFastqSample().getFastqFiles()) {
-        int comptReadsPF = 1;
-        int countReadsToCopyByFastq =
-            this.countReadsPFtoCopy / getFastqSample().getFastqFiles().size();
+    // Uncompressed FASTQ file
+    if (this.countReadsPFtoCopy > this.rawClusterCount) {
+      return new ReadSelector(1, Integer.MAX_VALUE, false, false, 0);
+    }
 
-        if (!fastqFile.exists()) {
-          throw new AozanException(
-              "Fastq file " + fastqFile.getName() + " doesn't exist");
-        }
+    // Use all reads
+    if (this.countReadsPFtoCopy > this.pfClusterCountParsed) {
+      return new ReadSelector(getStep(this.rawClusterCount),
+          this.countReadsPFtoCopy, false, true, this.maxReadLength);
+    }
 
-        FastqReader fastqReader = null;
-        try {
-          // Get compression value
-          final CompressionType zType = getFastqSample().getCompressionType();
+    // Filter reads
+    return new ReadSelector(getStep(this.pfClusterCountParsed),
+        this.countReadsPFtoCopy / getFastqSample().getFastqFiles().size(),
+        true, false, this.maxReadLength);
+  }
 
-          // Append compressed fastq file to uncompressed file
-          final InputStream is =
-              zType.createInputStream(new FileInputStream(fastqFile));
+  /**
+   * Get the step between two reads to keep.
+   * @param readsToSelectFrom the number of reads to select from
+   * @return the step between two reads to keep
+   */
+  private int getStep(final long readsToSelectFrom) {
 
-          fastqReader = new FastqReader(is);
-          IlluminaReadId ill = null;
+    return Math.max(1,
+        (int) (1 / ((double) this.countReadsPFtoCopy / readsToSelectFrom)));
+  }
 
-          for (final ReadSequence seq : fastqReader) {
+  /**
+   * Write a partial file from FASTQ files. The FASTQ files are read in parallel
+   * and the subset of each FASTQ file is written in its own file. The subsets
+   * are then concatenated in the order of the FASTQ files and truncated to the
+   * reads that the selector keeps when the FASTQ files are read one after the
+   * other, so the partial file does not depend of the number of threads.
+   * @param fastqFiles the FASTQ files
+   * @param zType the compression type of the FASTQ files
+   * @param decompressionThreads number of threads to use to decompress each
+   *          FASTQ file
+   * @param threads maximal number of FASTQ files to read at the same time
+   * @param selector the selector of the reads
+   * @param outputFile the partial file to create
+   * @throws AozanException if an error occurs while creating file
+   */
+  static void subsetFastqFiles(final List<File> fastqFiles,
+      final CompressionType zType, final int decompressionThreads,
+      final int threads, final ReadSelector selector, final File outputFile)
+      throws AozanException {
+
+    final int fileCount = fastqFiles.size();
+    final long[] selectedReads = new long[fileCount];
+
+    // Create the task for each FASTQ file, the subset is directly written in
+    // the partial file if there is only one FASTQ file
+    final List<File> subsetFiles = new ArrayList<>();
+    final List<Callable<Void>> tasks = new ArrayList<>();
+    for (int i = 0; i < fileCount; i++) {
+
+      final int fileIndex = i;
+      final File fastqFile = fastqFiles.get(i);
+      final File subsetFile = fileCount == 1
+          ? outputFile : new File(outputFile.getPath() + "." + i);
+
+      subsetFiles.add(subsetFile);
+      tasks.add(() -> {
+        selectedReads[fileIndex] = subsetFastqFile(fastqFile, zType,
+            decompressionThreads, selector.newFileSelector(), subsetFile);
+        return null;
+      });
+    }
 
-            if (ill == null) {
-              ill = new IlluminaReadId(seq);
-            } else {
-              ill.parse(seq);
-            }
+    // The tasks are executed by the calling thread if a single thread is
+    // allowed
+    final ExecutorService executor = threads > 1 && fileCount > 1
+        ? Executors.newFixedThreadPool(Math.min(fileCount, threads))
+        : MoreExecutors.newDirectExecutorService();
 
-            if (!ill.isFiltered()) {
-              if (comptReadsPF % step == 0) {
-                // Write in tmp fastq file
-                fwTmpFastq.write(trimRead(seq).toFastQ() + '\n');
-                fwTmpFastq.flush();
+    try {
 
-                if (--countReadsToCopyByFastq <= 0) {
-                  break;
-                }
+      for (final Future<Void> f : executor.invokeAll(tasks)) {
+        f.get();
+      }
 
-              }
-              comptReadsPF++;
-            }
-          }
+      // Concatenate the subsets
+      if (fileCount > 1) {
 
-          // Throw an exception if an error has occurred while reading data
-          fastqReader.throwException();
+        final long[] readsToKeep = selector.readsToKeep(selectedReads);
 
-        } catch (final IOException | KenetreException
-            | BadBioEntryException e) {
-          throw new AozanException(e);
-        } finally {
-
-          if (fastqReader != null) {
-            try {
-              // Close fastqReader and inputStream on fastq file
-              fastqReader.close();
-            } catch (final IOException io) {
-              LOGGER.warning(
-                  "Exception occuring during the closing of FastqReader. Step collector "
-                      + SubsetFastqCollector.COLLECTOR_NAME + " for the sample "
-                      + getFastqSample().getFilenamePrefix());
+        try (OutputStream out = new FileOutputStream(outputFile)) {
+          for (int i = 0; i < fileCount; i++) {
+            try (InputStream in = new FileInputStream(subsetFiles.get(i))) {
+              appendReads(in, out, readsToKeep[i]);
             }
           }
         }
       }
 
-      if (fwTmpFastq != null) {
-        fwTmpFastq.close();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AozanException(e);
+    } catch (final ExecutionException e) {
+
+      if (e.getCause() instanceof AozanException) {
+        throw (AozanException) e.getCause();
       }
+      throw new AozanException(e.getCause());
+    } catch (final IOException e) {
+      throw new AozanException(e);
+    } finally {
 
-    } catch (final IOException io) {
-      LOGGER.warning("Exception occuring during creating tmp file : "
-          + this.tmpFastqFile.getAbsolutePath() + ". Step collector "
-          + SubsetFastqCollector.COLLECTOR_NAME + " for the sample "
-          + getFastqSample().getFilenamePrefix());
+      executor.shutdownNow();
 
-    } finally {
-      if (fwTmpFastq != null) {
-        try {
-          fwTmpFastq.close();
-        } catch (final IOException ignored) {
+      if (fileCount > 1) {
+        for (final File subsetFile : subsetFiles) {
+          subsetFile.delete();
         }
       }
-
     }
   }
 
   /**
-   * Write the temporary partial file from a array of fastq files, writing reads
-   * randomly in files.
+   * Write the subset of a FASTQ file.
+   * @param fastqFile the FASTQ file
+   * @param zType the compression type of the FASTQ file
+   * @param decompressionThreads number of threads to use to decompress the
+   *          FASTQ file
+   * @param selector the selector of the reads of the FASTQ file
+   * @param outputFile the output file
+   * @return the number of reads written
    * @throws AozanException if an error occurs while creating file
    */
-  private void partialFastqFile() throws AozanException {
+  private static long subsetFastqFile(final File fastqFile,
+      final CompressionType zType, final int decompressionThreads,
+      final ReadSelector selector, final File outputFile)
+      throws AozanException {
 
-    Writer fwTmpFastq = null;
+    long result = 0;
 
-    try {
-      fwTmpFastq =
-          Files.newWriter(this.tmpFastqFile, Globals.DEFAULT_FILE_ENCODING);
+    // The records are only converted to String objects when written
+    try (Writer writer = createWriter(outputFile);
+        FastqRecordScanner scanner =
+            new FastqRecordScanner(FastqSampleUtils.createInputStream(
+                fastqFile, zType, decompressionThreads))) {
 
-      final int step =
-          (int) (1 / ((double) this.countReadsPFtoCopy / this.rawClusterCount));
+      selector.startFile();
 
-      int countReadsToCopyByFastq =
-          this.countReadsPFtoCopy / getFastqSample().getFastqFiles().size();
+      // Stop reading the file once its quota is reached
+      while (!selector.isFileDone() && scanner.next()) {
 
-      for (final File fastqFile : getFastqSample().getFastqFiles()) {
-        int comptReadsPF = 1;
+        if (selector
+            .select(selector.isPfReadsOnly() && scanner.isFiltered())) {
 
-        if (!fastqFile.exists()) {
-          throw new AozanException(
-              "FastQ file " + fastqFile.getName() + " doesn't exist");
+          writeRead(writer, '@' + scanner.getName(), scanner.getSequence(),
+              scanner.getQuality(), selector.getMaxReadLength());
+          result++;
         }
+      }
 
-        FastqReader fastqReader = null;
-        try {
-          // Get compression value
-          final CompressionType zType = getFastqSample().getCompressionType();
+    } catch (final IOException | KenetreException e) {
+      throw new AozanException(e);
+    }
 
-          // Append compressed fastq file to uncompressed file
-          final InputStream is =
-              zType.createInputStream(new FileInputStream(fastqFile));
+    return result;
+  }
 
-          fastqReader = new FastqReader(is);
+  /**
+   * Append the first reads of a subset file to a stream.
+   * @param in the subset file to read
+   * @param out the output stream
+   * @param reads the number of reads to append
+   * @throws IOException if an error occurs while copying the reads
+   */
+  private static void appendReads(final InputStream in, final OutputStream out,
+      final long reads) throws IOException {
 
-          for (final ReadSequence seq : fastqReader) {
+    // The reads of the subset files are written on 4 lines
+    long lines = 4 * reads;
+    final byte[] buffer = new byte[WRITER_BUFFER_SIZE];
 
-            if (comptReadsPF % step == 0) {
-              // Write in tmp fastq file
-              fwTmpFastq.write(trimRead(seq).toFastQ() + '\n');
-              fwTmpFastq.flush();
+    int n;
+    while (lines > 0 && (n = in.read(buffer)) != -1) {
 
-              if (--countReadsToCopyByFastq <= 0) {
-                break;
-              }
+      int end = 0;
+      while (end < n && lines > 0) {
+        if (buffer[end++] == '\n') {
+          lines--;
+        }
+      }
 
-            }
-            comptReadsPF++;
-          }
+      out.write(buffer, 0, end);
+    }
+  }
 
-          // Throw an exception if an error has occurred while reading data
-          fastqReader.throwException();
+  @Override
+  protected FastqRecordConsumer createRecordConsumer() throws AozanException {
 
-        } catch (final IOException | BadBioEntryException e) {
-          throw new AozanException(e);
-        } finally {
-
-          if (fastqReader != null) {
-            try {
-              fastqReader.close();
-            } catch (final IOException io) {
-              LOGGER.warning(
-                  "Exception occurred during the closing of FastqReader. Step collector "
-                      + SubsetFastqCollector.COLLECTOR_NAME + " for the sample "
-                      + getFastqSample().getFilenamePrefix());
-            }
+    if (getFastqSample().getSubsetFastqFile().exists()) {
+      return null;
+    }
+
+    // Select the reads like processResults(), the FASTQ files are read one
+    // after the other
+    final ReadSelector selector = createReadSelector();
+
+    final Writer writer;
+    try {
+      writer = createWriter(this.tmpFastqFile);
+    } catch (final IOException e) {
+      throw new AozanException(e);
+    }
+
+    return new FastqRecordConsumer() {
+
+      private IlluminaReadId ill;
+      private File currentFile;
+
+      @Override
+      public void process(final Sequence sequence) throws AozanException {
+
+        final File file = sequence.file().getFile();
+        if (!file.equals(this.currentFile)) {
+          this.currentFile = file;
+          selector.startFile();
+        }
+
+        if (selector.isFileDone()) {
+          return;
+        }
+
+        if (selector.select(
+            selector.isPfReadsOnly() && isFiltered(sequence.getID()))) {
+
+          try {
+            writeRead(writer, sequence.getID(), sequence.getSequence(),
+                sequence.getQualityString(), selector.getMaxReadLength());
+          } catch (final IOException e) {
+            throw new AozanException(e);
           }
         }
       }
 
-    } catch (final IOException io) {
-      LOGGER.warning("Exception occurred during creating tmp file : "
-          + this.tmpFastqFile.getAbsolutePath() + ". Step collector "
-          + SubsetFastqCollector.COLLECTOR_NAME + " for the sample "
-          + getFastqSample().getFilenamePrefix());
+      @Override
+      public void end() throws AozanException {
 
-    } finally {
-      try {
-        if (fwTmpFastq != null) {
-          fwTmpFastq.close();
+        try {
+          writer.close();
+        } catch (final IOException e) {
+          throw new AozanException(e);
+        }
+
+        // Rename file: remove '.tmp' final
+        if (!tmpFastqFile.renameTo(getFastqSample().getSubsetFastqFile())) {
+          LOGGER.warning("FASTQC: fail to rename tmp fastq file "
+              + tmpFastqFile.getAbsolutePath());
         }
-      } catch (final IOException ignored) {
       }
-    }
-  }
 
-  /**
-   * Write the temporary partial file from a array of fastq files, all reads are
-   * writing.
-   * @throws AozanException if an error occurs while creating file
-   */
-  private void uncompressedFastqFile() throws AozanException {
-    try {
+      @Override
+      public void close() {
 
-      final OutputStream out = new FileOutputStream(this.tmpFastqFile);
+        try {
+          writer.close();
+        } catch (final IOException ignored) {
+        }
+      }
 
-      for (final File fastqFile : getFastqSample().getFastqFiles()) {
+      /**
+       * Test if a read has been filtered. Like FastqRecordScanner, the filter
+       * flag of the Illumina 1.8 ids is read without parsing the whole id.
+       * @param id the id of the read
+       * @return true if the read has been filtered
+       * @throws AozanException if the id of the read cannot be parsed
+       */
+      private boolean isFiltered(final String id) throws AozanException {
+
+        final int space = id.indexOf(' ');
+        if (space != -1) {
+
+          int i = space + 1;
+          while (i < id.length() && Character.isDigit(id.charAt(i))) {
+            i++;
+          }
 
-        if (!fastqFile.exists()) {
-          throw new IOException(
-              "FastQ file " + fastqFile.getName() + " doesn't exist");
+          if (i > space + 1
+              && i + 2 < id.length() && id.charAt(i) == ':'
+              && id.charAt(i + 2) == ':') {
+
+            final char flag = id.charAt(i + 1);
+            if (flag == 'Y' || flag == 'N') {
+              return flag == 'Y';
+            }
+          }
         }
 
-        // Get compression value
-        final CompressionType zType = getFastqSample().getCompressionType();
+        try {
+          if (this.ill == null) {
+            this.ill = new IlluminaReadId(id.substring(1));
+          } else {
+            this.ill.parse(id.substring(1));
+          }
+        } catch (final KenetreException e) {
+          throw new AozanException(e);
+        }
 
-        // Append compressed fastq file to uncompressed file
-        final InputStream in = new FileInputStream(fastqFile);
-        FileUtils.append(zType.createInputStream(in), out);
+        return this.ill.isFiltered();
       }
-
-      out.close();
-
-    } catch (final IOException io) {
-      throw new AozanException(io);
-    }
+    };
   }
 
   /**
-   * Trim reads to write if required in configuration file.
-   * @param read read to trim
-   * @return a trimmed read
+   * Write a read in FASTQ format, trimmed if required in configuration file.
+   * @param writer the writer
+   * @param id the id of the read, with the '@' character
+   * @param bases the sequence of the read
+   * @param quality the quality of the read
+   * @param maxReadLength the maximum length of the read, no trimming if lower
+   *          than 1
+   * @throws IOException if an error occurs while writing the read
    */
-  private ReadSequence trimRead(ReadSequence read) {
-
-    if (this.maxReadLength < 1 || read.length() < this.maxReadLength) {
-      return read;
-    }
+  private static void writeRead(final Writer writer, final String id,
+      final String bases, final String quality, final int maxReadLength)
+      throws IOException {
+
+    final boolean trim = maxReadLength > 0 && bases.length() >= maxReadLength;
+
+    writer.write(id);
+    writer.write('\n');
+    writer.write(trim ? bases.substring(0, maxReadLength) : bases);
+    writer.write("\n+\n");
+    writer.write(trim ? quality.substring(0, maxReadLength) : quality);
+    writer.write('\n');
+  }
 
-    ReadSequence result = read.subSequence(0, this.maxReadLength);
-    result.setName(read.getName());
+  /**
+   * Create a writer for a partial file.
+   * @param file the file to create
+   * @return a new Writer object
+   * @throws IOException if an error occurs while creating the file
+   */
+  private static Writer createWriter(final File file) throws IOException {
 
-    return result;
+    return new BufferedWriter(new OutputStreamWriter(
+        new FileOutputStream(file), Globals.DEFAULT_FILE_ENCODING),
+        WRITER_BUFFER_SIZE);
   }
 
   //
@@ -385,6 +658,54 @@ public class SubsetFastqThread extends AbstractFastqProcessThread {
       final int numberReadsToCopy, final int maxReadsToParse,
       final int maxReadLength) throws AozanException {
 
+    this(fastqSample, rawClusterCount, pfClusterCount, numberReadsToCopy,
+        maxReadsToParse, maxReadLength, 0);
+  }
+
+  /**
+   * Thread constructor.
+   * @param fastqSample fastq sample instance
+   * @param rawClusterCount raw cluster count for the sample
+   * @param pfClusterCount passing filter cluster count for the sample
+   * @param numberReadsToCopy number reads in partial fastq to create
+   * @param maxReadsToParse maximum number reads to parse for create partial
+   *          fastq
+   * @param maxReadLength maximum length of the reads to write
+   * @param decompressionThreads number of threads to use to decompress each
+   *          FASTQ file
+   * @throws AozanException if the sample has no FASTQ file
+   */
+  public SubsetFastqThread(final FastqSample fastqSample,
+      final long rawClusterCount, final long pfClusterCount,
+      final int numberReadsToCopy, final int maxReadsToParse,
+      final int maxReadLength, final int decompressionThreads)
+      throws AozanException {
+
+    this(fastqSample, rawClusterCount, pfClusterCount, numberReadsToCopy,
+        maxReadsToParse, maxReadLength, decompressionThreads, 1);
+  }
+
+  /**
+   * Thread constructor.
+   * @param fastqSample fastq sample instance
+   * @param rawClusterCount raw cluster count for the sample
+   * @param pfClusterCount passing filter cluster count for the sample
+   * @param numberReadsToCopy number reads in partial fastq to create
+   * @param maxReadsToParse maximum number reads to parse for create partial
+   *          fastq
+   * @param maxReadLength maximum length of the reads to write
+   * @param decompressionThreads number of threads to use to decompress each
+   *          FASTQ file
+   * @param fileThreads maximal number of FASTQ files of the sample to read at
+   *          the same time
+   * @throws AozanException if the sample has no FASTQ file
+   */
+  public SubsetFastqThread(final FastqSample fastqSample,
+      final long rawClusterCount, final long pfClusterCount,
+      final int numberReadsToCopy, final int maxReadsToParse,
+      final int maxReadLength, final int decompressionThreads,
+      final int fileThreads) throws AozanException {
+
     super(fastqSample);
 
     this.countReadsPFtoCopy = numberReadsToCopy;
@@ -396,5 +717,7 @@ public class SubsetFastqThread extends AbstractFastqProcessThread {
     this.tmpFastqFile =
         new File(fastqSample.getSubsetFastqFile().getPath() + ".tmp");
     this.maxReadLength = maxReadLength;
+    this.decompressionThreads = decompressionThreads;
+    this.fileThreads = fileThreads;
   }
 }
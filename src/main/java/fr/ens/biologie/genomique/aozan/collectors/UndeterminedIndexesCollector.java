@@ -86,6 +86,22 @@ public class UndeterminedIndexesCollector extends AbstractFastqCollector {
     return Collections.unmodifiableList(result);
   }
 
+  /**
+   * The FastQC collector must be executed before this collector if it reads
+   * the FASTQ files for this collector.
+   * @return list of names collector
+   */
+  @Override
+  public List<String> getCollectorsNamesExecutedBefore(
+      final CollectorConfiguration conf) {
+
+    if (conf.getBoolean(Settings.QC_CONF_FASTQ_SHARED_SCAN_KEY, false)) {
+      return Collections.singletonList(FastQCCollector.COLLECTOR_NAME);
+    }
+
+    return super.getCollectorsNamesExecutedBefore(conf);
+  }
+
   @Override
   public void configure(final QC qc, final CollectorConfiguration conf) {
 
@@ -131,7 +147,7 @@ public class UndeterminedIndexesCollector extends AbstractFastqCollector {
     }
 
     return new UndeterminedIndexesProcessThread(data, fastqSample, reportDir,
-        this.undeterminedIndexedXSLFile);
+        this.undeterminedIndexedXSLFile, getDecompressionThreads());
   }
 
 }
@@ -37,9 +37,11 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -63,13 +65,13 @@ import fr.ens.biologie.genomique.aozan.AozanException;
 import fr.ens.biologie.genomique.aozan.Aozan2Logger;
 import fr.ens.biologie.genomique.aozan.Globals;
 import fr.ens.biologie.genomique.aozan.RunData;
+import fr.ens.biologie.genomique.aozan.collectors.IndexNeighbourhood.Neighbour;
 import fr.ens.biologie.genomique.aozan.io.FastqSample;
 import fr.ens.biologie.genomique.aozan.util.XMLUtilsWriter;
 import fr.ens.biologie.genomique.kenetre.KenetreException;
 import fr.ens.biologie.genomique.kenetre.bio.IlluminaReadId;
 import fr.ens.biologie.genomique.kenetre.util.XMLUtils;
 import uk.ac.babraham.FastQC.Sequence.Sequence;
-import uk.ac.babraham.FastQC.Sequence.SequenceFactory;
 import uk.ac.babraham.FastQC.Sequence.SequenceFile;
 import uk.ac.babraham.FastQC.Sequence.SequenceFormatException;
 
@@ -93,25 +95,36 @@ public class UndeterminedIndexesProcessThread
 
   private static final String REPORT_FILENAME_SUFFIX = "-potentialindices";
 
+  /** Maximal number of mismatches allowed to recover an index. */
+  private static final int MAX_MISMATCHES_ALLOWED = 2;
+
+  private static final String DUAL_INDEX_SEPARATOR = "+";
+
   private final RunData data;
   private final int lane;
   private final int read;
-  private final SequenceFile seqFile;
   private final File reportDir;
   private final File xslFile;
+  private final int decompressionThreads;
+  private final boolean dualIndex;
 
   private final Map<Integer, String> sampleIndexes;
   private final Map<String, Integer> reverseSampleIndexes;
   private final Multiset<String> rawUndeterminedIndices = HashMultiset.create();
   private final Multiset<String> pfUndeterminedIndices = HashMultiset.create();
+  private final IndexCountTable indexCounts = new IndexCountTable();
   private final Multimap<Integer, String> newSamplesIndexes =
       ArrayListMultimap.create();
   private final Multimap<String, String> newIndexes =
       ArrayListMultimap.create();
 
   private int maxMismatches = 1;
+  private IndexNeighbourhood sampleIndexNeighbourhood;
   private boolean isSkipProcessResult = false;
 
+  private IlluminaReadId irid;
+  private boolean illuminaIds = true;
+
   /**
    * This class store a result entry for the whole lane.
    */
@@ -498,7 +511,15 @@ public class UndeterminedIndexesProcessThread
   @Override
   protected void process() throws AozanException {
 
-    processSequences(this.seqFile);
+    // The filtered reads are identified from the read ids
+    final SequenceFile seqFile =
+        openSequenceFile(this.decompressionThreads, false);
+
+    try {
+      processSequences(seqFile);
+    } finally {
+      closeSequenceFile(seqFile);
+    }
   }
 
   @Override
@@ -517,87 +538,207 @@ public class UndeterminedIndexesProcessThread
   private void processSequences(final SequenceFile seqFile)
       throws AozanException {
 
-    IlluminaReadId irid = null;
+    try {
+
+      while (seqFile.hasNext() && this.illuminaIds) {
+        processSequence(seqFile.next());
+      }
+
+    } catch (final SequenceFormatException e) {
+      throw new AozanException(e);
+    }
+
+    endSequences();
+  }
+
+  /**
+   * Count the index of a sequence.
+   * @param seq the sequence
+   */
+  private void processSequence(final Sequence seq) {
+
+    if (!this.illuminaIds) {
+      return;
+    }
+
+    final String id = seq.getID();
 
+    // Fast path for the Illumina 1.8 ids
+    if (countIllumina18Index(id, this.dualIndex, this.indexCounts)) {
+      return;
+    }
+
+    // Parse sequence id
     try {
+      if (this.irid == null) {
+        this.irid = new IlluminaReadId(id.substring(1));
+      } else {
+        this.irid.parse(id.substring(1));
+      }
+    } catch (final KenetreException e) {
 
-      while (seqFile.hasNext()) {
+      // This is not an Illumina id
+      this.illuminaIds = false;
+      return;
+    }
 
-        final Sequence seq = seqFile.next();
+    // Get the sequence indexes
+    final List<String> indexes = this.irid.getSequenceIndexList();
 
-        // Parse sequence id
-        try {
-          if (irid == null) {
-            irid = new IlluminaReadId(seq.getID().substring(1));
-          } else {
-            irid.parse(seq.getID().substring(1));
-          }
-        } catch (final KenetreException e) {
+    // Process only nucleotides sequences
+    if (indexes.isEmpty()) {
+      return;
+    }
 
-          // This is not an Illumina id
-          return;
-        }
+    // In dual index mode, the two indexes are counted together
+    final String index = this.dualIndex
+        ? String.join(DUAL_INDEX_SEPARATOR, indexes) : indexes.get(0);
 
-        // Get the sequence indexes
-        final List<String> indexes = irid.getSequenceIndexList();
+    if (index == null
+        || index.isEmpty() || Character.isDigit(index.charAt(0))) {
+      return;
+    }
 
-        // Process only nucleotides sequences
-        if (indexes.isEmpty()) {
-          continue;
-        }
+    this.indexCounts.add(index, 0, index.length(), !this.irid.isFiltered());
+  }
 
-        // TODO Process the secondary indexes
-        final String index = indexes.get(0);
+  /**
+   * Count the index of a read id in the Illumina 1.8 format (e.g.
+   * "@EAS139:136:FC706VJ:2:2104:15343:197393 1:Y:18:ATCACG") without creating
+   * any object.
+   * @param id the read id
+   * @param dualIndex true if the two indexes must be counted together
+   * @param indexCounts the table where count the index
+   * @return false if the read id is not in the Illumina 1.8 format
+   */
+  static boolean countIllumina18Index(final String id,
+      final boolean dualIndex, final IndexCountTable indexCounts) {
+
+    final int length = id.length();
+    final int readStart = id.indexOf(' ') + 1;
+
+    // Read number
+    int pos = skipDigits(id, readStart);
+    if (readStart == 0
+        || pos == readStart || pos + 3 > length || id.charAt(pos) != ':'
+        || id.charAt(pos + 2) != ':') {
+      return false;
+    }
 
-        if (index == null
-            || index.isEmpty() || Character.isDigit(index.charAt(0))) {
-          continue;
-        }
+    // Filtered flag
+    final char filtered = id.charAt(pos + 1);
+    if (filtered != 'Y' && filtered != 'N') {
+      return false;
+    }
 
-        this.rawUndeterminedIndices.add(index);
-        if (!irid.isFiltered()) {
-          this.pfUndeterminedIndices.add(index);
-        }
-      }
+    // Control number
+    final int controlStart = pos + 3;
+    pos = skipDigits(id, controlStart);
+    if (pos == controlStart || pos >= length || id.charAt(pos) != ':') {
+      return false;
+    }
+
+    // Index sequence, only the first index is processed if not in dual index
+    // mode
+    final int indexStart = pos + 1;
+    int indexEnd = indexStart;
+    while (indexEnd < length
+        && (dualIndex || id.charAt(indexEnd) != '+')
+        && !Character.isWhitespace(id.charAt(indexEnd))) {
+      indexEnd++;
+    }
 
-      // Set max mismatches allowed
-      computeMismatchesAllowed();
+    // Process only nucleotides sequences
+    if (indexEnd > indexStart && !Character.isDigit(id.charAt(indexStart))) {
+      indexCounts.add(id, indexStart, indexEnd, filtered == 'N');
+    }
 
-      // Process results
-      processResults();
+    return true;
+  }
 
-    } catch (final SequenceFormatException e) {
-      throw new AozanException(e);
+  /**
+   * Skip the digits of a string.
+   * @param s the string
+   * @param from the index of the first character to test
+   * @return the index of the first character that is not a digit
+   */
+  private static int skipDigits(final String s, final int from) {
+
+    int i = from;
+    while (i < s.length() && Character.isDigit(s.charAt(i))) {
+      i++;
     }
 
+    return i;
+  }
+
+  /**
+   * Process the results once all the sequences have been counted.
+   * @throws AozanException if an error occurs while processing results
+   */
+  private void endSequences() throws AozanException {
+
+    // No result if the sequence ids are not Illumina ids
+    if (!this.illuminaIds) {
+      return;
+    }
+
+    // Convert the counts of the indexes
+    this.indexCounts.addTo(this.rawUndeterminedIndices,
+        this.pfUndeterminedIndices);
+
+    // Set max mismatches allowed
+    computeMismatchesAllowed();
+
+    // Process results
+    processResults();
+  }
+
+  @Override
+  protected FastqRecordConsumer createRecordConsumer() {
+
+    return new FastqRecordConsumer() {
+
+      @Override
+      public void process(final Sequence sequence) {
+        processSequence(sequence);
+      }
+
+      @Override
+      public void end() throws AozanException {
+        endSequences();
+      }
+
+      @Override
+      public void close() {
+        // Nothing to do
+      }
+    };
   }
 
   private void computeMismatchesAllowed() {
 
-    final int maxMismatchAllowed = 2;
+    this.sampleIndexNeighbourhood = createSampleIndexNeighbourhood();
 
     int minMismatchFound = Integer.MAX_VALUE;
 
-    for (final Map.Entry<Integer, String> e : this.sampleIndexes.entrySet()) {
+    for (final String i : this.rawUndeterminedIndices.elementSet()) {
 
-      for (final String i : this.rawUndeterminedIndices.elementSet()) {
-        final String index = e.getValue();
-        final int mismatches = mismatches(index, i);
+      for (final Neighbour n : this.sampleIndexNeighbourhood.get(i)) {
 
-        minMismatchFound = Math.min(minMismatchFound, mismatches);
-
-        // Check minimum found
-        if (minMismatchFound == 1) {
-          break;
+        // Indexes identical to a sample index cannot be recovered
+        if (n.getMismatches() > 0) {
+          minMismatchFound = Math.min(minMismatchFound, n.getMismatches());
         }
       }
 
+      // Check minimum found
       if (minMismatchFound == 1) {
         break;
       }
     }
 
-    if (minMismatchFound > maxMismatchAllowed) {
+    if (minMismatchFound > MAX_MISMATCHES_ALLOWED) {
       // Set mismatches used to recovery reads
       this.isSkipProcessResult = true;
       this.maxMismatches = -1;
@@ -628,20 +769,18 @@ public class UndeterminedIndexesProcessThread
     }
 
     if (!this.isSkipProcessResult) {
-      // For each sample find the indexes sequences that can be recovered
-      for (final Map.Entry<Integer, String> e : this.sampleIndexes.entrySet()) {
-
-        final int sampleId = e.getKey();
-        final String index = e.getValue();
+      // For each undetermined index find the samples indexes that can be
+      // recovered
+      for (final String i : this.rawUndeterminedIndices.elementSet()) {
 
-        for (final String i : this.rawUndeterminedIndices.elementSet()) {
+        for (final Neighbour n : this.sampleIndexNeighbourhood.get(i)) {
 
-          final int mismatches = mismatches(index, i);
+          final int mismatches = n.getMismatches();
 
           if (mismatches > 0 && mismatches <= this.maxMismatches) {
 
-            this.newSamplesIndexes.put(sampleId, i);
-            this.newIndexes.put(i, index);
+            this.newSamplesIndexes.put(n.getSampleId(), i);
+            this.newIndexes.put(i, n.getSampleIndex());
           }
         }
       }
@@ -666,6 +805,10 @@ public class UndeterminedIndexesProcessThread
         RUN_DATA_PREFIX + ".lane" + this.lane + ".recoverable.pf.cluster.count",
         recoverablePFClusterCount);
 
+    if (this.dualIndex) {
+      computeIndexHopping();
+    }
+
     // Create reports
     try {
       // Create the report for the lane
@@ -681,6 +824,92 @@ public class UndeterminedIndexesProcessThread
     }
   }
 
+  /**
+   * Compute the number of clusters with an index hopping, i.e. clusters with
+   * the first index of a sample and the second index of another sample of the
+   * lane.
+   */
+  private void computeIndexHopping() {
+
+    getResults().put(
+        RUN_DATA_PREFIX
+            + ".lane" + this.lane + ".index.hopping.raw.cluster.count",
+        countIndexHopping(this.sampleIndexes.values(),
+            this.rawUndeterminedIndices));
+    getResults().put(
+        RUN_DATA_PREFIX
+            + ".lane" + this.lane + ".index.hopping.pf.cluster.count",
+        countIndexHopping(this.sampleIndexes.values(),
+            this.pfUndeterminedIndices));
+  }
+
+  /**
+   * Count the clusters with an index hopping, i.e. clusters with the first
+   * index of a sample and the second index of another sample.
+   * @param sampleIndexes the dual indexes of the samples
+   * @param indexCounts the counts of the dual indexes of the clusters
+   * @return the number of clusters with an index hopping
+   */
+  static int countIndexHopping(final Collection<String> sampleIndexes,
+      final Multiset<String> indexCounts) {
+
+    requireNonNull(sampleIndexes, "sampleIndexes argument cannot be null");
+    requireNonNull(indexCounts, "indexCounts argument cannot be null");
+
+    // Get the dual indexes and the first and second indexes of the samples
+    final Set<String> dualIndexes = new HashSet<>();
+    final Set<String> index1s = new HashSet<>();
+    final Set<String> index2s = new HashSet<>();
+    for (final String sampleIndex : sampleIndexes) {
+
+      final int separator = dualIndexSeparator(sampleIndex);
+      if (separator != -1) {
+        dualIndexes.add(sampleIndex);
+        index1s.add(sampleIndex.substring(0, separator));
+        index2s.add(sampleIndex.substring(separator + 1));
+      }
+    }
+
+    int result = 0;
+
+    for (final Multiset.Entry<String> e : indexCounts.entrySet()) {
+
+      final String index = e.getElement();
+      final int separator = dualIndexSeparator(index);
+
+      if (separator != -1
+          && !dualIndexes.contains(index)
+          && index1s.contains(index.substring(0, separator))
+          && index2s.contains(index.substring(separator + 1))) {
+        result += e.getCount();
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the position of the separator of a dual index.
+   * @param index the index
+   * @return the position of the separator or -1 if the index is not a dual
+   *         index
+   */
+  private static int dualIndexSeparator(final String index) {
+
+    if (index == null) {
+      return -1;
+    }
+
+    final int result = index.indexOf(DUAL_INDEX_SEPARATOR);
+
+    // Only two indexes are allowed
+    if (result == -1 || index.indexOf(DUAL_INDEX_SEPARATOR, result + 1) != -1) {
+      return -1;
+    }
+
+    return result;
+  }
+
   /**
    * Compute for a sample the number of clusters that can be recovered.
    * @param sampleId sample Id
@@ -1136,6 +1365,25 @@ public class UndeterminedIndexesProcessThread
     return result;
   }
 
+  /**
+   * Create the neighbourhood of the sample indexes.
+   * @return a new IndexNeighbourhood object
+   */
+  private IndexNeighbourhood createSampleIndexNeighbourhood() {
+
+    final IndexNeighbourhood result =
+        new IndexNeighbourhood(MAX_MISMATCHES_ALLOWED);
+
+    for (final Map.Entry<Integer, String> e : this.sampleIndexes.entrySet()) {
+
+      if (e.getValue() != null && !e.getValue().isEmpty()) {
+        result.add(e.getKey(), e.getValue());
+      }
+    }
+
+    return result;
+  }
+
   /**
    * Reverse a map.
    * @param map the original map
@@ -1169,7 +1417,39 @@ public class UndeterminedIndexesProcessThread
       // Get the sample index
       final String index = this.data.getIndexSample(sampleId);
 
-      result.put(sampleId, index);
+      // In dual index mode, the two indexes are used together
+      if (this.dualIndex && index != null && !index.isEmpty()) {
+        result.put(sampleId, index
+            + DUAL_INDEX_SEPARATOR + this.data.getSampleIndex2(sampleId));
+      } else {
+        result.put(sampleId, index);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Test if all the indexed samples of the lane have a second index.
+   * @return true if the undetermined indexes must be processed as dual indexes
+   */
+  private boolean isDualIndexLane() {
+
+    boolean result = false;
+
+    for (final int sampleId : this.data.getSamplesInLane(this.lane)) {
+
+      final String index = this.data.getIndexSample(sampleId);
+      if (index == null || index.isEmpty()) {
+        continue;
+      }
+
+      final String index2 = this.data.getSampleIndex2(sampleId);
+      if (index2 == null || index2.isEmpty()) {
+        return false;
+      }
+
+      result = true;
     }
 
     return result;
@@ -1191,6 +1471,24 @@ public class UndeterminedIndexesProcessThread
       final FastqSample fastqSample, final File reportDir,
       final File undeterminedIndexedXSLFile) throws AozanException {
 
+    this(data, fastqSample, reportDir, undeterminedIndexedXSLFile, 0);
+  }
+
+  /**
+   * Constructor.
+   * @param data run data instance
+   * @param fastqSample sample to process
+   * @param reportDir output report directory
+   * @param undeterminedIndexedXSLFile xsl file use to create report html
+   * @param decompressionThreads number of threads to use to decompress each
+   *          FASTQ file
+   * @throws AozanException if sample cannot be processed
+   */
+  public UndeterminedIndexesProcessThread(final RunData data,
+      final FastqSample fastqSample, final File reportDir,
+      final File undeterminedIndexedXSLFile, final int decompressionThreads)
+      throws AozanException {
+
     super(fastqSample);
 
     requireNonNull(data, "data argument cannot be null");
@@ -1201,19 +1499,10 @@ public class UndeterminedIndexesProcessThread
     this.read = fastqSample.getRead();
     this.reportDir = reportDir;
     this.xslFile = undeterminedIndexedXSLFile;
+    this.decompressionThreads = decompressionThreads;
 
+    this.dualIndex = isDualIndexLane();
     this.sampleIndexes = getSampleIndexes();
     this.reverseSampleIndexes = reverse(this.sampleIndexes);
-
-    try {
-
-      this.seqFile = SequenceFactory.getSequenceFile(fastqSample.getFastqFiles()
-          .toArray(new File[fastqSample.getFastqFiles().size()]));
-
-    } catch (final IOException | SequenceFormatException e) {
-      throw new AozanException(e);
-
-    }
-
   }
 }
@@ -23,6 +23,8 @@
 
 package fr.ens.biologie.genomique.aozan.collectors.interop;
 
+import static java.util.Objects.requireNonNull;
+
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -82,6 +84,24 @@ abstract class AbstractBinaryFileReader<M> {
     return this.dirInterOpPath;
   }
 
+  /**
+   * This interface define a handler of the records of a binary file. The
+   * records are not copied, the handler reads the values of the record
+   * directly in the buffer of the file.
+   */
+  interface RecordHandler {
+
+    /**
+     * Handle a record.
+     * @param buffer the buffer of the file, in little endian order
+     * @param offset the offset of the record in the buffer
+     * @param version version of the format of the file
+     * @throws AozanException if an error occurs while handling the record
+     */
+    void handle(ByteBuffer buffer, int offset, int version)
+        throws AozanException;
+  }
+
   /**
    * Gets the sets the illumina metrics.
    * @return set Illumina metrics corresponding to one binary InterOp file
@@ -91,78 +111,122 @@ abstract class AbstractBinaryFileReader<M> {
 
     final List<M> collection = new ArrayList<>();
 
-    final ByteBuffer buf;
-    final byte[] header = new byte[HEADER_SIZE];
+    readRecords(new RecordHandler() {
 
-    try {
-      FileUtils.checkExistingFile(getMetricsFile(),
-          "Error binary file " + getMetricsFile().getAbsolutePath());
+      private ByteBuffer view;
 
-      final FileInputStream is = new FileInputStream(getMetricsFile());
-      final FileChannel channel = is.getChannel();
-      final long fileSize = channel.size();
+      @Override
+      public void handle(final ByteBuffer buffer, final int offset,
+          final int version) {
 
-      // Copy binary file in buffer
-      buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
-      buf.order(ByteOrder.LITTLE_ENDIAN);
-      channel.close();
-      is.close();
+        // Use the same view of the file buffer for all the records
+        if (this.view == null) {
+          this.view = buffer.duplicate();
+          this.view.order(ByteOrder.LITTLE_ENDIAN);
+        }
 
-    } catch (final IOException e) {
-      throw new AozanException(e);
-    }
+        this.view.clear();
+        this.view.position(offset);
+        this.view.limit(offset + getExpectedRecordSize(version));
+
+        readMetricRecord(collection, this.view, version);
+      }
+    });
 
-    int version = -1;
+    return collection;
+  }
 
-    // check version file
-    if (HEADER_SIZE > 0) {
-      ByteBuffer b = ByteBuffer.allocate(HEADER_SIZE);
-      b.order(ByteOrder.LITTLE_ENDIAN);
-      b = buf.get(header);
-      b.position(0);
+  /**
+   * Read all the records of the file. The file is memory mapped and the
+   * records are given to the handler without any copy or allocation.
+   * @param handler the handler of the records
+   * @throws AozanException if an error occurs while reading the file
+   */
+  public void readRecords(final RecordHandler handler) throws AozanException {
 
-      // Read byte 0: file version number
-      version = uByteToInt(b.get());
+    requireNonNull(handler, "handler argument cannot be null");
 
-      // Check version
-      if (!getExpectedVersions().contains(version)) {
-        throw new AozanException(getName()
-            + " expects the version number to be " + getExpectedVersions()
-            + ".  Actual Version in Header(" + version + ")");
-      }
+    final ByteBuffer buf = mapMetricsFile();
+    final int version = readHeader(buf);
+    final int recordSize = getExpectedRecordSize(version);
 
-      // Read byte 1: length of each record
-      final int recordSize = uByteToInt(b.get());
+    // Handle all the records
+    final int limit = buf.limit();
+    for (int offset = buf.position(); limit - offset >= recordSize;
+        offset += recordSize) {
+      handler.handle(buf, offset, version);
+    }
+  }
 
-      readOptionalFlag(b, version);
+  /**
+   * Read and check the header of the file.
+   * @param buf the buffer of the file, the position of the buffer is moved at
+   *          the start of the first record
+   * @return the version of the format of the file
+   * @throws AozanException if the header is invalid
+   */
+  private int readHeader(final ByteBuffer buf) throws AozanException {
 
-      // Check the size record needed
-      final int expectedRecordSize = getExpectedRecordSize(version);
-      if (expectedRecordSize != recordSize) {
-        throw new AozanException(getName()
-            + " expects the record size to be " + expectedRecordSize
-            + ". Actual Record Size in Header(" + recordSize + ")");
-      }
+    // Read byte 0: file version number
+    final int version = uByteToInt(buf);
 
-      // checkRecordSize(recordSize);
+    // Check version
+    if (!getExpectedVersions().contains(version)) {
+      throw new AozanException(getName()
+          + " expects the version number to be " + getExpectedVersions()
+          + ".  Actual Version in Header(" + version + ")");
     }
 
-    final int recordSize = getExpectedRecordSize(version);
-    final byte[] element = new byte[recordSize];
-    final ByteBuffer recordBuf = ByteBuffer.wrap(element);
-    recordBuf.order(ByteOrder.LITTLE_ENDIAN);
-
-    // Build collection of illumina metrics
-    while (buf.limit() - buf.position() >= recordSize) {
-      recordBuf.position(0);
-      buf.get(element);
-      recordBuf.position(0);
-
-      // collection.add(new IlluminaMetrics(recordBuf));
-      readMetricRecord(collection, recordBuf, version);
+    // Read byte 1: length of each record
+    final int recordSize = uByteToInt(buf);
+
+    readOptionalFlag(buf, version);
+
+    // Check the size record needed
+    final int expectedRecordSize = getExpectedRecordSize(version);
+    if (expectedRecordSize != recordSize) {
+      throw new AozanException(getName()
+          + " expects the record size to be " + expectedRecordSize
+          + ". Actual Record Size in Header(" + recordSize + ")");
     }
 
-    return collection;
+    return version;
+  }
+
+  /**
+   * Memory map the metrics file.
+   * @return a read only buffer on the file, in little endian order
+   * @throws AozanException if an error occurs while mapping the file
+   */
+  private ByteBuffer mapMetricsFile() throws AozanException {
+
+    final File file = getMetricsFile();
+
+    try {
+      FileUtils.checkExistingFile(file,
+          "Error binary file " + file.getAbsolutePath());
+
+      try (FileInputStream is = new FileInputStream(file);
+          FileChannel channel = is.getChannel()) {
+
+        final long fileSize = channel.size();
+
+        if (fileSize < HEADER_SIZE) {
+          throw new AozanException(
+              getName() + " binary file is too short: " + file);
+        }
+
+        // The mapping remains valid after closing the channel
+        final ByteBuffer buf =
+            channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+
+        return buf;
+      }
+
+    } catch (final IOException e) {
+      throw new AozanException(e);
+    }
   }
 
   /**
@@ -177,7 +241,8 @@ abstract class AbstractBinaryFileReader<M> {
    * Build a set of a type of illumina metrics (M) according to the interop file
    * reading.
    * @param collection list of illumina metrics
-   * @param bb ByteBuffer contains the value corresponding to one record
+   * @param bb ByteBuffer contains the value corresponding to one record, the
+   *          position of the buffer is the start of the record
    * @param version version of the format
    */
   protected abstract void readMetricRecord(final List<M> collection,
@@ -228,22 +293,22 @@ abstract class AbstractBinaryFileReader<M> {
   }
 
   /** Convert an unsigned byte to a signed int. */
-  private static final int uByteToInt(final byte unsignedByte) {
+  static final int uByteToInt(final byte unsignedByte) {
     return unsignedByte & 0xFF;
   }
 
   /** Convert an unsigned byte to a signed short. */
-  private static final int uByteToShort(final byte unsignedByte) {
+  static final int uByteToShort(final byte unsignedByte) {
     return unsignedByte & 0xFF;
   }
 
   /** Convert an unsigned short to an int. */
-  private static final int uShortToInt(final short unsignedShort) {
+  static final int uShortToInt(final short unsignedShort) {
     return unsignedShort & 0xFFFF;
   }
 
   /** Convert an unsigned int to a long. */
-  private static final long uIntToLong(final int unsignedInt) {
+  static final long uIntToLong(final int unsignedInt) {
     return unsignedInt & 0xFFFFFFFFL;
   }
 
@@ -28,9 +28,6 @@ import java.util.List;
 
 import fr.ens.biologie.genomique.aozan.AozanException;
 import fr.ens.biologie.genomique.aozan.RunData;
-import fr.ens.biologie.genomique.kenetre.KenetreException;
-import fr.ens.biologie.genomique.kenetre.illumina.interop.QMetric;
-import fr.ens.biologie.genomique.kenetre.illumina.interop.QMetricsReader;
 
 /**
  * This class collects run data by reading the QualityMetricsOut.bin in InterOp
@@ -84,23 +81,44 @@ public class QualityMetricsCollector extends AbstractMetricsCollector {
 
     }
 
-    try {
-      for (final QMetric qual : new QMetricsReader(getInterOpDir())
-          .readMetrics()) {
+    // Aggregate the records directly from the mapped file, the clusters of
+    // the binned quality scores are added to the remapped score of their bin
+    new QualityMetricsReader(getInterOpDir())
+        .visitRecords(new QualityMetricsReader.RecordVisitor() {
 
-        int readSource = readNumberFromCycle.get(qual.getCycleNumber() - 1) - 1;
-        int lane = qual.getLaneNumber() - 1;
-        long[] scores = qual.getClustersScore();
-        for (int i = 0; i < scores.length; i++) {
-          lanes[lane][readSource][i] += scores[i];
-          global[i] += scores[i];
-        }
+          @Override
+          public void visit(final QualityMetricsReader.Record record) {
+
+            final int readSource =
+                readNumberFromCycle.get(record.getCycleNumber() - 1) - 1;
+            final int lane = record.getLaneNumber() - 1;
+
+            record.addClustersScore(lanes[lane][readSource]);
+          }
+        });
 
+    // Compute the global histogram from the lane histograms
+    for (final long[][] lane : lanes) {
+      for (final long[] read : lane) {
+        for (int i = 0; i < read.length; i++) {
+          global[i] += read[i];
+        }
       }
-    } catch (KenetreException e) {
-      throw new AozanException(e);
     }
 
+    putData(data, lanes, global, maxRead);
+  }
+
+  /**
+   * Put the quality histograms in the run data.
+   * @param data result data object
+   * @param lanes the histograms of each lane and read
+   * @param global the global histogram
+   * @param maxRead the number of reads
+   */
+  private static void putData(final RunData data, final long[][][] lanes,
+      final long[] global, final int maxRead) {
+
     for (int i = 0; i < lanes.length; i++) {
       for (int j = 0; j < maxRead; j++) {
         data.put(DATA_PREFIX + ".lane" + (i + 1) + ".read" + (j + 1),
@@ -108,7 +126,6 @@ public class QualityMetricsCollector extends AbstractMetricsCollector {
       }
     }
     data.put(DATA_PREFIX + ".global", global);
-
   }
 
 }
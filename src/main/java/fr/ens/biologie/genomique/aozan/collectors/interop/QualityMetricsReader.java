@@ -0,0 +1,282 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later 
+ * and CeCILL. This should be distributed with the code. If you 
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.collectors.interop;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableSet;
+
+import fr.ens.biologie.genomique.aozan.AozanException;
+
+/**
+ * This class define a reader for the QMetricsOut.bin file of the InterOp
+ * directory. The records can be read as flyweight views over the memory
+ * mapped file, without creating an object for each record.
+ * @since 3.2
+ * @author Laurent Jourdren
+ */
+final class QualityMetricsReader
+    extends AbstractBinaryFileReader<QualityMetricsReader.Record> {
+
+  /** Name of the quality metrics file. */
+  public static final String QUALITY_METRICS_FILE = "QMetricsOut.bin";
+
+  /** Number of quality scores of the unbinned histograms. */
+  public static final int QSCORE_COUNT = 50;
+
+  private static final Set<Integer> EXPECTED_VERSIONS =
+      ImmutableSet.of(4, 5, 6, 7);
+
+  private final File metricsFile;
+
+  /** Remapped quality scores of the bins, null if data are not binned. */
+  private int[] binnedScores;
+
+  /**
+   * This class define a record of the quality metrics file. In flyweight mode,
+   * the same object is moved from a record to another.
+   */
+  static final class Record {
+
+    private final ByteBuffer buffer;
+    private final int version;
+    private final int[] binnedScores;
+    private int offset;
+
+    /**
+     * Get the lane number.
+     * @return the lane number
+     */
+    public int getLaneNumber() {
+
+      return uShortToInt(this.buffer.getShort(this.offset));
+    }
+
+    /**
+     * Get the tile number.
+     * @return the tile number
+     */
+    public long getTileNumber() {
+
+      if (this.version >= 7) {
+        return uIntToLong(this.buffer.getInt(this.offset + 2));
+      }
+
+      return uShortToInt(this.buffer.getShort(this.offset + 2));
+    }
+
+    /**
+     * Get the cycle number.
+     * @return the cycle number
+     */
+    public int getCycleNumber() {
+
+      return uShortToInt(
+          this.buffer.getShort(this.offset + (this.version >= 7 ? 6 : 4)));
+    }
+
+    /**
+     * Add the number of clusters for each quality score of the record to an
+     * histogram. The index of the histogram is the quality score minus 1. For
+     * binned data, the clusters of a bin are added to the remapped quality
+     * score of the bin.
+     * @param histogram the histogram to update
+     */
+    public void addClustersScore(final long[] histogram) {
+
+      final int valuesOffset = this.offset + (this.version >= 7 ? 8 : 6);
+
+      if (this.binnedScores != null && this.version >= 6) {
+
+        for (int i = 0; i < this.binnedScores.length; i++) {
+          histogram[this.binnedScores[i]] +=
+              uIntToLong(this.buffer.getInt(valuesOffset + i * 4));
+        }
+      } else {
+
+        for (int i = 0; i < QSCORE_COUNT; i++) {
+          histogram[i] += uIntToLong(this.buffer.getInt(valuesOffset + i * 4));
+        }
+      }
+    }
+
+    /**
+     * Get the number of clusters for each quality score of the record.
+     * @return an histogram where the index is the quality score minus 1
+     */
+    public long[] getClustersScore() {
+
+      final long[] result = new long[QSCORE_COUNT];
+      addClustersScore(result);
+
+      return result;
+    }
+
+    private Record(final ByteBuffer buffer, final int version,
+        final int[] binnedScores, final int offset) {
+
+      this.buffer = buffer;
+      this.version = version;
+      this.binnedScores = binnedScores;
+      this.offset = offset;
+    }
+  }
+
+  /**
+   * This interface define a handler of the flyweight records.
+   */
+  interface RecordVisitor {
+
+    /**
+     * Visit a record. The record object must not be kept after this call.
+     * @param record the record
+     * @throws AozanException if an error occurs while handling the record
+     */
+    void visit(Record record) throws AozanException;
+  }
+
+  //
+  // AbstractBinaryFileReader methods
+  //
+
+  @Override
+  public String getName() {
+
+    return "QualityMetricsOut";
+  }
+
+  @Override
+  protected File getMetricsFile() {
+
+    return this.metricsFile;
+  }
+
+  @Override
+  protected int getExpectedRecordSize(final int version) {
+
+    final int headerSize = version >= 7 ? 8 : 6;
+
+    if (version >= 6 && this.binnedScores != null) {
+      return headerSize + this.binnedScores.length * 4;
+    }
+
+    return headerSize + QSCORE_COUNT * 4;
+  }
+
+  @Override
+  protected Set<Integer> getExpectedVersions() {
+
+    return EXPECTED_VERSIONS;
+  }
+
+  @Override
+  protected void readOptionalFlag(final ByteBuffer bb, final int version) {
+
+    this.binnedScores = null;
+
+    if (version < 5) {
+      return;
+    }
+
+    // Read the quality score bins
+    final boolean binned = uByteToInt(bb) != 0;
+    if (!binned) {
+      return;
+    }
+
+    final int binCount = uByteToInt(bb);
+
+    // Skip the lower and upper bounds of the bins
+    bb.position(bb.position() + 2 * binCount);
+
+    // Keep the remapped quality scores of the bins as histogram indexes
+    final int[] scores = new int[binCount];
+    for (int i = 0; i < binCount; i++) {
+      scores[i] = Math.max(0, Math.min(QSCORE_COUNT, uByteToInt(bb)) - 1);
+    }
+
+    this.binnedScores = scores;
+  }
+
+  @Override
+  protected void readMetricRecord(final List<Record> collection,
+      final ByteBuffer bb, final int version) {
+
+    // The records are views on the mapped file, no value is copied
+    collection.add(new Record(bb.duplicate().order(bb.order()), version,
+        this.binnedScores, bb.position()));
+  }
+
+  //
+  // Reading methods
+  //
+
+  /**
+   * Visit all the records of the file with a single flyweight record object.
+   * @param visitor the visitor of the records
+   * @throws AozanException if an error occurs while reading the file
+   */
+  public void visitRecords(final RecordVisitor visitor) throws AozanException {
+
+    requireNonNull(visitor, "visitor argument cannot be null");
+
+    readRecords(new RecordHandler() {
+
+      private Record record;
+
+      @Override
+      public void handle(final ByteBuffer buffer, final int offset,
+          final int version) throws AozanException {
+
+        if (this.record == null) {
+          this.record = new Record(buffer, version, binnedScores, offset);
+        }
+
+        this.record.offset = offset;
+        visitor.visit(this.record);
+      }
+    });
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Constructor.
+   * @param dirPath path to the interop directory for a run
+   * @throws AozanException if the InterOp directory does not exist
+   */
+  QualityMetricsReader(final File dirPath) throws AozanException {
+
+    super(dirPath);
+    this.metricsFile = new File(dirPath, QUALITY_METRICS_FILE);
+  }
+
+}
@@ -0,0 +1,216 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later
+ * and CeCILL. This should be distributed with the code. If you
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.demux;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import fr.ens.biologie.genomique.kenetre.bio.ReadSequence;
+import fr.ens.biologie.genomique.kenetre.bio.io.FastqWriter;
+
+/**
+ * This class define a FASTQ writer that write and compress its entries on a
+ * dedicated thread. The entries are handed to the writer thread by batches
+ * through a bounded queue, so the compression of the entries does not slow
+ * down the thread that produces them. The batches are written in the order of
+ * the calls to write(). If an error occurs in the writer thread, the
+ * remaining batches are discarded and the error is thrown by the next call to
+ * write() or close().
+ * @since 3.2
+ * @author Laurent Jourdren
+ */
+class AsyncFastqWriter implements AutoCloseable {
+
+  /** Default number of batches waiting to be written. */
+  static final int DEFAULT_QUEUE_SIZE = 64;
+
+  private static final List<ReadSequence> END_OF_STREAM =
+      Collections.emptyList();
+
+  private final FastqWriter writer;
+  private final BlockingQueue<List<ReadSequence>> queue;
+  private final Thread thread;
+
+  private volatile IOException exception;
+  private boolean closed;
+
+  /**
+   * Write a batch of entries.
+   * @param batch the entries to write
+   * @throws IOException if an error has occurred while writing previous
+   *           entries
+   */
+  public void write(final List<ReadSequence> batch) throws IOException {
+
+    requireNonNull(batch, "batch argument cannot be null");
+
+    checkException();
+
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    enqueue(batch);
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+
+    if (this.closed) {
+      return;
+    }
+    this.closed = true;
+
+    // The writer thread may have stopped after an error
+    if (this.thread.isAlive()) {
+
+      try {
+        enqueue(END_OF_STREAM);
+        this.thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while closing FASTQ writer", e);
+      }
+    }
+
+    checkException();
+  }
+
+  /**
+   * Add a batch to the queue of the writer thread. The method does not block
+   * forever if the writer thread has stopped.
+   * @param batch the batch to add
+   * @throws IOException if the writer thread has stopped or if the current
+   *           thread has been interrupted
+   */
+  private void enqueue(final List<ReadSequence> batch) throws IOException {
+
+    try {
+
+      while (!this.queue.offer(batch, 1, TimeUnit.SECONDS)) {
+
+        if (!this.thread.isAlive()) {
+          checkException();
+          throw new IOException("The FASTQ writer thread has stopped");
+        }
+      }
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while writing FASTQ entries", e);
+    }
+  }
+
+  /**
+   * Throw the exception that occurs in the writer thread if exists.
+   * @throws IOException the exception of the writer thread
+   */
+  private void checkException() throws IOException {
+
+    if (this.exception != null) {
+      throw this.exception;
+    }
+  }
+
+  /**
+   * Write the entries in the writer thread.
+   */
+  private void writeEntries() {
+
+    try {
+
+      // The queue is drained until the end of the stream even after an error,
+      // so the producers are never blocked
+      List<ReadSequence> batch;
+      while ((batch = this.queue.take()) != END_OF_STREAM) {
+
+        // Skip the remaining entries after an error
+        if (this.exception != null) {
+          continue;
+        }
+
+        try {
+          for (ReadSequence read : batch) {
+            this.writer.write(read);
+          }
+        } catch (IOException e) {
+          this.exception = e;
+        }
+      }
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+
+      try {
+        this.writer.close();
+      } catch (IOException e) {
+        if (this.exception == null) {
+          this.exception = e;
+        }
+      }
+    }
+  }
+
+  //
+  // Constructors
+  //
+
+  /**
+   * Constructor.
+   * @param writer the writer to use
+   */
+  AsyncFastqWriter(final FastqWriter writer) {
+
+    this(writer, DEFAULT_QUEUE_SIZE);
+  }
+
+  /**
+   * Constructor.
+   * @param writer the writer to use
+   * @param queueSize the maximal number of batches waiting to be written
+   */
+  AsyncFastqWriter(final FastqWriter writer, final int queueSize) {
+
+    requireNonNull(writer, "writer argument cannot be null");
+
+    if (queueSize < 1) {
+      throw new IllegalArgumentException("Invalid queue size: " + queueSize);
+    }
+
+    this.writer = writer;
+    this.queue = new ArrayBlockingQueue<>(queueSize);
+
+    this.thread = new Thread(this::writeEntries, "async-fastq-writer");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+}
@@ -40,6 +40,11 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
 import com.google.common.base.Preconditions;
@@ -64,6 +69,10 @@ import fr.ens.biologie.genomique.kenetre.io.CompressionType;
 public class ReDemux {
 
   private static final int INDEX_LENGTH = 6;
+  private static final char[] NUCLEOTIDES = {'A', 'T', 'G', 'C', 'N'};
+  private static final int BATCH_SIZE = 1000;
+  private static final int THREADS =
+      Runtime.getRuntime().availableProcessors();
 
   private final File inputDir;
   private final File outputDir;
@@ -227,7 +236,11 @@ public class ReDemux {
     }
 
     /**
-     * Re-demultiplex all the reads.
+     * Re-demultiplex all the reads. The reads of the lane are processed in
+     * parallel, but the undetermined files of a read are processed one after
+     * the other in the order of their names. Each output file is only written
+     * by one task, so the entries of the first and second reads of a pair
+     * are written in the same order.
      * @throws IOException if an error occurs while re-demultiplexing
      * @throws BadBioEntryException if FASTQ entry read is invalid
      */
@@ -237,36 +250,63 @@ public class ReDemux {
         throw new IOException("No undetermined file found");
       }
 
-      for (int i : this.reads) {
+      // Check if directory exists
+      if (!inputDir.isDirectory())
+        return;
 
-        if (i < 1) {
-          throw new IOException(
-              "The read for the undetermined file cannot be lower than 1 in lane "
-                  + this.lane + ": " + i);
-        }
+      final List<Entity> entities = new ArrayList<>();
+      final List<Callable<Void>> tasks = new ArrayList<>();
+
+      try {
 
-        if (i > 2) {
-          throw new IOException(
-              "The read for the undetermined file cannot be greater than 2 in lane "
-                  + this.lane + ": " + i);
+        for (int i : this.reads) {
+
+          if (i < 1) {
+            throw new IOException(
+                "The read for the undetermined file cannot be lower than 1 in lane "
+                    + this.lane + ": " + i);
+          }
+
+          if (i > 2) {
+            throw new IOException(
+                "The read for the undetermined file cannot be greater than 2 in lane "
+                    + this.lane + ": " + i);
+          }
+
+          // Create the demultiplexing task for the read
+          tasks.add(createReDemuxTask(i, entities));
         }
 
         // Launch demultiplexing for the lane
-        reDemux(i);
+        runTasks(tasks);
+
+      } finally {
+
+        // Close writers
+        IOException exception = null;
+        for (Entity e : entities) {
+          try {
+            e.getFw().close();
+          } catch (IOException ioe) {
+            exception = ioe;
+          }
+        }
+
+        if (exception != null) {
+          throw exception;
+        }
       }
     }
 
     /**
-     * Re-demultiplex a read.
+     * Create the task that re-demultiplex the undetermined files of a read.
      * @param read read index
-     * @throws IOException
-     * @throws BadBioEntryException
+     * @param entities list where add the created writers
+     * @return the task
+     * @throws IOException if an error occurs while creating the writers
      */
-    private void reDemux(int read) throws IOException, BadBioEntryException {
-
-      // Check if directory exists
-      if (!inputDir.isDirectory())
-        return;
+    private Callable<Void> createReDemuxTask(final int read,
+        final List<Entity> entities) throws IOException {
 
       // Get the list of files to process
       final List<File> undeterminedFiles =
@@ -282,57 +322,161 @@ public class ReDemux {
           .getCompressionTypeByFilename(undeterminedFiles.get(0).getName());
 
       // Create the writers
-      // final Map<Pattern, FastqWriter> writers =
-      // createWriters(read, compression);
-
       final Map<String, Entity> writers = createWriters2(read, compression);
+      entities.addAll(writers.values());
 
       System.out
           .println("reDemux method, nupmber index retrieve from command line "
               + this.newIndexes.size() + " with " + writers.size()
               + " create on fastq.");
 
-      // Create an array with the pattern. An array is faster than a collection.
-      final List<Pattern> patterns = new ArrayList<>();
-      for (Map.Entry<String, Entity> e : writers.entrySet()) {
-        patterns.addAll(e.getValue().getPatterns());
-      }
+      // Precompile the patterns in a lookup table
+      final Map<String, Entity> lookup = createIndexLookup(writers);
 
-      for (File file : undeterminedFiles) {
+      // The files must be processed in order to keep the pairing of the
+      // entries of the first and second reads
+      return () -> {
+        for (File file : undeterminedFiles) {
+          reDemux(file, lookup);
+        }
+        return null;
+      };
+    }
 
-        final FastqReader reader = new FastqReader(createInputStream(file));
+    /**
+     * Re-demultiplex an undetermined file.
+     * @param file the undetermined file
+     * @param lookup the writer of each index
+     * @throws IOException if an error occurs while re-demultiplexing
+     * @throws BadBioEntryException if FASTQ entry read is invalid
+     */
+    private static void reDemux(final File file,
+        final Map<String, Entity> lookup)
+        throws IOException, BadBioEntryException {
+
+      final Map<Entity, List<ReadSequence>> batches = new HashMap<>();
 
+      final FastqReader reader = new FastqReader(createInputStream(file));
+
+      try {
         for (ReadSequence rs : reader) {
 
           // Do not use IlluminaReadId class because manual parsing is faster
           final String seqName = rs.getName();
           final String index = seqName.substring(seqName.lastIndexOf(':') + 1);
 
-          for (Pattern p : patterns) {
-            if (p.matcher(index).matches()) {
+          final Entity entity = lookup.get(index);
 
-              for (Map.Entry<String, Entity> e : writers.entrySet()) {
+          if (entity != null) {
 
-                if (e.getValue().getPatterns().contains(p)) {
-                  e.getValue().getFw().write(rs);
-                  // writers.get(p).write(rs);
-                  // status.add(p);
-                  break;
-                }
-              }
+            List<ReadSequence> batch = batches.get(entity);
+            if (batch == null) {
+              batch = new ArrayList<>(BATCH_SIZE);
+              batches.put(entity, batch);
+            }
+
+            batch.add(rs);
+
+            if (batch.size() == BATCH_SIZE) {
+              entity.getFw().write(batch);
+              batches.remove(entity);
             }
           }
         }
         reader.throwException();
+      } finally {
         reader.close();
+      }
 
-        // Close writers
-        for (Entity e : writers.values()) {
-          e.getFw().close();
+      // Write the last entries
+      for (Map.Entry<Entity, List<ReadSequence>> e : batches.entrySet()) {
+        e.getKey().getFw().write(e.getValue());
+      }
+    }
+
+    /**
+     * Run the re-demultiplexing tasks.
+     * @param tasks the tasks to run
+     * @throws IOException if an error occurs while re-demultiplexing
+     * @throws BadBioEntryException if FASTQ entry read is invalid
+     */
+    private static void runTasks(final List<Callable<Void>> tasks)
+        throws IOException, BadBioEntryException {
+
+      final ExecutorService executor = Executors.newFixedThreadPool(
+          Math.max(1, Math.min(tasks.size(), THREADS)));
+
+      try {
+        for (Future<Void> f : executor.invokeAll(tasks)) {
+          f.get();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while re-demultiplexing", e);
+      } catch (ExecutionException e) {
+
+        final Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        if (cause instanceof BadBioEntryException) {
+          throw (BadBioEntryException) cause;
         }
+        throw new IOException(cause);
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+
+    /**
+     * Create a lookup table with the writer of all the index sequences that
+     * match the patterns of the writers. The wildcards of the patterns are
+     * expanded, so finding the writer of an index only require one lookup.
+     * @param writers the writers
+     * @return a map with the writer of each index sequence
+     */
+    private static Map<String, Entity> createIndexLookup(
+        final Map<String, Entity> writers) {
 
+      final Map<String, Entity> result = new HashMap<>();
+
+      for (Entity e : writers.values()) {
+        for (Pattern p : e.getPatterns()) {
+          expandPattern(p.pattern().toCharArray(), 0, e, result);
+        }
       }
 
+      return result;
+    }
+
+    /**
+     * Add to the lookup table all the index sequences that match a pattern.
+     * @param pattern the pattern
+     * @param pos position of the first character to expand
+     * @param entity the writer of the pattern
+     * @param lookup the lookup table
+     */
+    private static void expandPattern(final char[] pattern, final int pos,
+        final Entity entity, final Map<String, Entity> lookup) {
+
+      // Find the next wildcard
+      int i = pos;
+      while (i < pattern.length && pattern[i] != '.') {
+        i++;
+      }
+
+      if (i == pattern.length) {
+
+        // The first pattern that matches an index is used
+        lookup.putIfAbsent(new String(pattern), entity);
+        return;
+      }
+
+      for (char c : NUCLEOTIDES) {
+        pattern[i] = c;
+        expandPattern(pattern, i + 1, entity, lookup);
+      }
+      pattern[i] = '.';
     }
 
     /**
@@ -422,18 +566,19 @@ public class ReDemux {
           }
         }
 
-        // Define the output file
-        final File file = new File(subdir,
-            sampleName
-                + "_" + sampleIndex + "_L00" + lane + "_R" + read
-                + "_redemux_.fastq" + compression.getExtension());
+        if (!result.containsKey(sampleName)) {
 
-        final OutputStream out =
-            compression.createOutputStream(new FileOutputStream(file));
+          // Define the output file
+          final File file = new File(subdir,
+              sampleName
+                  + "_" + sampleIndex + "_L00" + lane + "_R" + read
+                  + "_redemux_.fastq" + compression.getExtension());
 
-        if (!result.containsKey(sampleName)) {
-          result.put(sampleName,
-              new Entity(new FastqWriter(out), e.getValue()));
+          final OutputStream out =
+              compression.createOutputStream(new FileOutputStream(file));
+
+          result.put(sampleName, new Entity(
+              new AsyncFastqWriter(new FastqWriter(out)), e.getValue()));
         }
 
         result.get(sampleName).addPattern(e.getKey());
@@ -447,7 +592,7 @@ public class ReDemux {
     //
     static final class Entity {
 
-      private FastqWriter fw;
+      private AsyncFastqWriter fw;
       private List<Pattern> patterns;
       private Sample cs;
 
@@ -459,7 +604,7 @@ public class ReDemux {
         this.patterns.add(p);
       }
 
-      public FastqWriter getFw() {
+      public AsyncFastqWriter getFw() {
         return fw;
       }
 
@@ -471,7 +616,7 @@ public class ReDemux {
         return cs;
       }
 
-      Entity(final FastqWriter fw, final Sample cs) {
+      Entity(final AsyncFastqWriter fw, final Sample cs) {
         this.fw = fw;
         this.patterns = new ArrayList<>();
         this.cs = cs;
@@ -483,20 +628,25 @@ public class ReDemux {
      * @param baseDir input directory
      * @param lane lane of of the undetermined files
      * @param read read to to process
-     * @return an array with the undetermined files
+     * @return a list with the undetermined files sorted by name
      */
     private static List<File> findUndeterminedFiles(final File baseDir,
         final int lane, final int read) {
 
-      return Arrays.asList(baseDir.listFiles(new FileFilter() {
+      final List<File> result =
+          new ArrayList<>(Arrays.asList(baseDir.listFiles(new FileFilter() {
+
+            @Override
+            public boolean accept(File arg0) {
 
-        @Override
-        public boolean accept(File arg0) {
+              return arg0.getName().startsWith("lane"
+                  + lane + "_Undetermined_L00" + lane + "_R" + read + "_");
+            }
+          })));
 
-          return arg0.getName().startsWith(
-              "lane" + lane + "_Undetermined_L00" + lane + "_R" + read + "_");
-        }
-      }));
+      Collections.sort(result);
+
+      return result;
     }
 
     /**
@@ -524,7 +674,12 @@ public class ReDemux {
       for (File f : undeterminedFiles) {
         final String filename = f.getName();
         final String prefix = filename.substring(0, filename.lastIndexOf('_'));
-        result.add(Integer.parseInt(prefix.substring(prefix.length() - 1)));
+        final int read = Integer.parseInt(prefix.substring(prefix.length() - 1));
+
+        // A read can have several undetermined files
+        if (!result.contains(read)) {
+          result.add(read);
+        }
       }
 
       Collections.sort(result);
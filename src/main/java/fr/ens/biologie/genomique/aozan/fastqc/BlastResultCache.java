@@ -0,0 +1,395 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later
+ * and CeCILL. This should be distributed with the code. If you
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.fastqc;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.base.Splitter;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import fr.ens.biologie.genomique.aozan.Globals;
+
+/**
+ * This class implements a persistent cache for the results of Blast. The
+ * results are saved in a tabulated file named with a key computed from the
+ * Blast database (name, size and modification date of the ".nal" file) and
+ * the Blast command line, so the results of a database version are never used
+ * with another version. The cache can be seeded with results that are never
+ * saved nor removed (e.g. the sequences to not blast). When the number of
+ * entries exceeds a quota, the least recently used entries are removed. The
+ * file is locked while it is read or written, so several Aozan instances can
+ * share the same cache. As a JVM cannot hold two locks on the same file, the
+ * instances of the same JVM are also synchronized with an in-process lock.
+ * @since 3.2
+ * @author Laurent Jourdren
+ */
+class BlastResultCache {
+
+  private static final String CACHE_FILE_PREFIX = "blast-results-";
+  private static final String CACHE_FILE_EXTENSION = ".tsv";
+  private static final String LOCK_FILE_EXTENSION = ".lock";
+  private static final String NO_HIT = "-";
+  private static final int HIT_FIELD_COUNT = 8;
+
+  private static final Splitter TAB_SPLITTER = Splitter.on('\t');
+
+  /** In-process locks of the cache files, by canonical path. */
+  private static final ConcurrentMap<String, ReentrantLock> FILE_LOCKS =
+      new ConcurrentHashMap<>();
+
+  private final File file;
+  private final int maxEntries;
+
+  private final Map<String, BlastResultHit> seeds = new HashMap<>();
+  private final Map<String, BlastResultHit> entries;
+  private boolean modified;
+
+  /**
+   * Seed the cache with a result. The seed results are never saved nor
+   * removed.
+   * @param sequence the sequence
+   * @param result the result of Blast for the sequence
+   */
+  synchronized void seed(final String sequence, final BlastResultHit result) {
+
+    this.seeds.put(sequence, result);
+  }
+
+  /**
+   * Test if the cache contains the result of a sequence.
+   * @param sequence the sequence
+   * @return true if the cache contains the result of the sequence
+   */
+  synchronized boolean contains(final String sequence) {
+
+    return this.seeds.containsKey(sequence)
+        || this.entries.containsKey(sequence);
+  }
+
+  /**
+   * Get the result of a sequence.
+   * @param sequence the sequence
+   * @return the result of the sequence or null if the sequence has no hit or
+   *         is not in the cache
+   */
+  synchronized BlastResultHit get(final String sequence) {
+
+    if (this.seeds.containsKey(sequence)) {
+      return this.seeds.get(sequence);
+    }
+
+    return this.entries.get(sequence);
+  }
+
+  /**
+   * Add results in the cache.
+   * @param results the results to add, the sequences without hit have a null
+   *          result
+   */
+  synchronized void putAll(final Map<String, BlastResultHit> results) {
+
+    this.entries.putAll(results);
+    this.modified = true;
+  }
+
+  /**
+   * Get the number of entries in the cache, without the seed entries.
+   * @return the number of entries in the cache
+   */
+  synchronized int size() {
+
+    return this.entries.size();
+  }
+
+  /**
+   * Load the cache file.
+   * @throws IOException if an error occurs while reading the cache file
+   */
+  synchronized void load() throws IOException {
+
+    if (this.file == null) {
+      return;
+    }
+
+    final ReentrantLock jvmLock = getJVMLock();
+    jvmLock.lock();
+
+    try (FileChannel channel = openLockFile();
+        FileLock lock = channel.lock()) {
+      this.entries.putAll(read(this.file));
+    } finally {
+      jvmLock.unlock();
+    }
+  }
+
+  /**
+   * Save the cache file. The entries added to the file by other Aozan
+   * instances since the loading of the cache are kept.
+   * @throws IOException if an error occurs while writing the cache file
+   */
+  synchronized void save() throws IOException {
+
+    if (this.file == null || !this.modified) {
+      return;
+    }
+
+    final ReentrantLock jvmLock = getJVMLock();
+    jvmLock.lock();
+
+    try (FileChannel channel = openLockFile();
+        FileLock lock = channel.lock()) {
+
+      // The entries of the memory are the most recently used
+      final Map<String, BlastResultHit> merged = read(this.file);
+      for (Map.Entry<String, BlastResultHit> e : this.entries.entrySet()) {
+        merged.remove(e.getKey());
+        merged.put(e.getKey(), e.getValue());
+      }
+
+      // Remove the least recently used entries
+      final Iterator<String> it = merged.keySet().iterator();
+      for (int i = merged.size(); i > this.maxEntries && this.maxEntries > 0
+          && it.hasNext(); i--) {
+        it.next();
+        it.remove();
+      }
+
+      write(this.file, merged);
+
+      this.entries.clear();
+      this.entries.putAll(merged);
+      this.modified = false;
+
+    } finally {
+      jvmLock.unlock();
+    }
+  }
+
+  //
+  // File methods
+  //
+
+  /**
+   * Get the in-process lock of the cache file. The lock must be held before
+   * locking the lock file, otherwise an OverlappingFileLockException is thrown
+   * if another instance in the same JVM holds the lock of the file.
+   * @return the lock of the cache file
+   * @throws IOException if the canonical path of the file cannot be computed
+   */
+  private ReentrantLock getJVMLock() throws IOException {
+
+    return FILE_LOCKS.computeIfAbsent(this.file.getCanonicalPath(),
+        k -> new ReentrantLock());
+  }
+
+  /**
+   * Open the lock file of the cache file.
+   * @return a channel on the lock file
+   * @throws IOException if an error occurs while opening the file
+   */
+  private FileChannel openLockFile() throws IOException {
+
+    final File lockFile = new File(this.file.getPath() + LOCK_FILE_EXTENSION);
+
+    return FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE);
+  }
+
+  /**
+   * Read a cache file.
+   * @param file the file to read
+   * @return a map with the entries of the file, in the order of the file
+   * @throws IOException if an error occurs while reading the file
+   */
+  private static Map<String, BlastResultHit> read(final File file)
+      throws IOException {
+
+    final Map<String, BlastResultHit> result = new LinkedHashMap<>();
+
+    if (!file.isFile()) {
+      return result;
+    }
+
+    try (BufferedReader reader =
+        Files.newBufferedReader(file.toPath(), Globals.DEFAULT_FILE_ENCODING)) {
+
+      String line;
+      while ((line = reader.readLine()) != null) {
+
+        final List<String> fields = TAB_SPLITTER.splitToList(line);
+
+        if (fields.size() == 2 && NO_HIT.equals(fields.get(1))) {
+          result.put(fields.get(0), null);
+        } else if (fields.size() == HIT_FIELD_COUNT + 1) {
+
+          try {
+            result.put(fields.get(0), parseHit(fields));
+          } catch (NumberFormatException e) {
+            // Ignore invalid entries
+          }
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Write a cache file. The file is first written in a temporary file that is
+   * renamed at the end.
+   * @param file the file to write
+   * @param entries the entries to write
+   * @throws IOException if an error occurs while writing the file
+   */
+  private static void write(final File file,
+      final Map<String, BlastResultHit> entries) throws IOException {
+
+    final File tmpFile = new File(file.getPath() + ".tmp");
+
+    try (Writer writer = Files.newBufferedWriter(tmpFile.toPath(),
+        Globals.DEFAULT_FILE_ENCODING)) {
+
+      for (Map.Entry<String, BlastResultHit> e : entries.entrySet()) {
+
+        writer.write(e.getKey());
+        writer.write('\t');
+        writer.write(e.getValue() == null ? NO_HIT : formatHit(e.getValue()));
+        writer.write('\n');
+      }
+    }
+
+    Files.move(tmpFile.toPath(), file.toPath(),
+        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Format a hit for the cache file.
+   * @param hit the hit
+   * @return a String with the fields of the hit separated by tabulations
+   */
+  private static String formatHit(final BlastResultHit hit) {
+
+    return String.join("\t", Integer.toString(hit.getHitNum()),
+        clean(hit.getResult()), clean(hit.getHspEValue()),
+        Integer.toString(hit.getHspIdentity()),
+        Integer.toString(hit.getHspAlignLen()),
+        Integer.toString(hit.getCountHits()),
+        Integer.toString(hit.getQueryLength()),
+        Boolean.toString(hit.isHtmlTypeOutput()));
+  }
+
+  /**
+   * Parse a hit of the cache file.
+   * @param fields the fields of the line of the cache file
+   * @return a new BlastResultHit object
+   */
+  private static BlastResultHit parseHit(final List<String> fields) {
+
+    return new BlastResultHit(Integer.parseInt(fields.get(1)), fields.get(2),
+        fields.get(3), Integer.parseInt(fields.get(4)),
+        Integer.parseInt(fields.get(5)), Integer.parseInt(fields.get(6)),
+        Integer.parseInt(fields.get(7)), fields.get(0),
+        Boolean.parseBoolean(fields.get(8)));
+  }
+
+  /**
+   * Remove the tabulations and the new lines of a field.
+   * @param s the field
+   * @return the cleaned field
+   */
+  private static String clean(final String s) {
+
+    return s == null ? "" : s.replace('\t', ' ').replace('\n', ' ');
+  }
+
+  /**
+   * Create the key of a Blast database.
+   * @param databaseFile the ".nal" file of the database
+   * @param commandLine the Blast command line
+   * @return a String with the key
+   */
+  static String createKey(final File databaseFile, final String commandLine) {
+
+    final Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putString(databaseFile.getAbsolutePath(), StandardCharsets.UTF_8);
+    hasher.putLong(databaseFile.length());
+    hasher.putLong(databaseFile.lastModified());
+    hasher.putString(commandLine, StandardCharsets.UTF_8);
+
+    return hasher.hash().toString().substring(0, 16);
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Constructor.
+   * @param cacheDir the directory of the cache, the cache is not persistent if
+   *          null
+   * @param key key of the Blast database
+   * @param maxEntries maximal number of entries in the cache, no limit if value
+   *          is lower or equal to 0
+   */
+  BlastResultCache(final File cacheDir, final String key,
+      final int maxEntries) {
+
+    this.file = cacheDir == null
+        ? null
+        : new File(cacheDir, CACHE_FILE_PREFIX + key + CACHE_FILE_EXTENSION);
+    this.maxEntries = maxEntries;
+
+    // Entries in access order to remove the least recently used entries
+    this.entries = new LinkedHashMap<String, BlastResultHit>(16, 0.75f, true) {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(
+          final Map.Entry<String, BlastResultHit> eldest) {
+
+        return maxEntries > 0 && size() > maxEntries;
+      }
+    };
+  }
+
+}
@@ -43,9 +43,12 @@ class BlastResultHit {
 
   private final boolean htmlTypeOutput;
   private final String sequence;
+  private int hitNum;
   private int queryLength;
   private String result;
   private String hspEValue;
+  private int hspIdentity;
+  private int hspAlignLen;
   private int countHits;
   private int prcIdentity;
   private int queryCover;
@@ -71,11 +74,14 @@ class BlastResultHit {
       return;
     }
 
+    this.hitNum = hitNum;
     this.queryLength = queryLength;
     this.countHits = countHits;
 
     this.result = result;
     this.hspEValue = hspEValue;
+    this.hspIdentity = hspIdentity;
+    this.hspAlignLen = hspAlignLen;
     final int countGap = queryLength - hspAlignLen;
 
     this.prcIdentity = (int) ((double) hspIdentity / this.queryLength * 100);
@@ -161,6 +167,46 @@ class BlastResultHit {
     return this.isNull;
   }
 
+  //
+  // Getters
+  //
+
+  String getSequence() {
+    return this.sequence;
+  }
+
+  int getHitNum() {
+    return this.hitNum;
+  }
+
+  String getResult() {
+    return this.result;
+  }
+
+  String getHspEValue() {
+    return this.hspEValue;
+  }
+
+  int getHspIdentity() {
+    return this.hspIdentity;
+  }
+
+  int getHspAlignLen() {
+    return this.hspAlignLen;
+  }
+
+  int getCountHits() {
+    return this.countHits;
+  }
+
+  int getQueryLength() {
+    return this.queryLength;
+  }
+
+  boolean isHtmlTypeOutput() {
+    return this.htmlTypeOutput;
+  }
+
   //
   // Constructor
   //
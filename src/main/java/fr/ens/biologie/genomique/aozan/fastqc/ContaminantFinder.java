@@ -28,8 +28,6 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.logging.Logger;
 
 import fr.ens.biologie.genomique.aozan.Aozan2Logger;
@@ -51,50 +49,57 @@ public class ContaminantFinder {
   /** LOGGER. */
   private static final Logger LOGGER = Aozan2Logger.getLogger();
 
-  private static Contaminant[] contaminants;
+  /** System property of the contaminant file. */
+  private static final String CONTAMINANT_FILE_PROPERTY =
+      "fastqc.contaminant_file";
+  /** System property of the maximal number of mismatches in a hit. */
+  private static final String MAX_MISMATCHES_PROPERTY =
+      "fastqc.contaminant_max_mismatches";
+
+  private static ContaminantIndex index;
 
   public static ContaminantHit findContaminantHit(final String sequence) {
 
     // Modify call Aozan method
-    if (contaminants == null) {
-      contaminants = makeContaminantList();
-    }
+    final ContaminantHit bestHit = getContaminantIndex().findHit(sequence);
 
-    ContaminantHit bestHit = null;
+    if (bestHit == null) {
+      return new BlastContaminantHit(sequence);
+    }
 
-    for (final Contaminant contaminant : contaminants) {
-      final ContaminantHit thisHit = contaminant.findMatch(sequence);
+    return bestHit;
+  }
 
-      if (thisHit == null) {
-        continue; // No hit
-      }
+  public static Contaminant[] makeContaminantList() {
 
-      if (bestHit == null || thisHit.length() > bestHit.length()) {
-        bestHit = thisHit;
-      }
+    return getContaminantIndex().getContaminants();
+  }
 
-    }
+  /**
+   * Get the index of the contaminants. The index is created at the first call
+   * of the method.
+   * @return the index of the contaminants
+   */
+  private static synchronized ContaminantIndex getContaminantIndex() {
 
-    if (bestHit == null) {
-      return new BlastContaminantHit(sequence);
+    if (index == null) {
+      index = makeContaminantIndex();
     }
 
-    return bestHit;
+    return index;
   }
 
-  public static Contaminant[] makeContaminantList() {
-    final List<Contaminant> c = new ArrayList<>();
+  private static ContaminantIndex makeContaminantIndex() {
+
+    final ContaminantIndex c = new ContaminantIndex(getMaxMismatches());
 
     try {
 
       final InputStream is;
+      final String contaminantFile = getContaminantFile();
 
-      if (System
-          .getProperty(Settings.QC_CONF_FASTQC_CONTAMINANT_FILE_KEY) != null
-          && System.getProperty(Settings.QC_CONF_FASTQC_CONTAMINANT_FILE_KEY)
-              .length() > 0) {
-        is = new FileInputStream(
-            System.getProperty(Settings.QC_CONF_FASTQC_CONTAMINANT_FILE_KEY));
+      if (contaminantFile != null && contaminantFile.length() > 0) {
+        is = new FileInputStream(contaminantFile);
       } else {
         // FastQC v0.11.2
         is = ClassLoader
@@ -125,8 +130,7 @@ public class ContaminantFinder {
               + sections.length + " from " + line);
           continue;
         }
-        final Contaminant con = new Contaminant(sections[0], sections[1]);
-        c.add(con);
+        c.add(sections[0], sections[1]);
       }
 
       br.close();
@@ -135,7 +139,44 @@ public class ContaminantFinder {
           "In contaminant finder class, fail to reads contaminant list.");
     }
 
-    return c.toArray(new Contaminant[c.size()]);
+    c.build();
+
+    return c;
+  }
+
+  /**
+   * Get the path of the contaminant file.
+   * @return the path of the contaminant file or null if not set
+   */
+  private static String getContaminantFile() {
+
+    final String result = System.getProperty(CONTAMINANT_FILE_PROPERTY);
+
+    if (result != null) {
+      return result;
+    }
+
+    return System.getProperty(Settings.QC_CONF_FASTQC_CONTAMINANT_FILE_KEY);
+  }
+
+  /**
+   * Get the maximal number of mismatches in a contaminant hit.
+   * @return the maximal number of mismatches in a contaminant hit
+   */
+  private static int getMaxMismatches() {
+
+    final String value = System.getProperty(MAX_MISMATCHES_PROPERTY);
+
+    if (value == null || value.trim().isEmpty()) {
+      return ContaminantIndex.DEFAULT_MAX_MISMATCHES;
+    }
+
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      throw new AozanRuntimeException(
+          "Invalid maximal number of mismatches for contaminants: " + value);
+    }
   }
 
 }
@@ -0,0 +1,529 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later
+ * and CeCILL. This should be distributed with the code. If you
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.fastqc;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+import uk.ac.babraham.FastQC.Sequence.Contaminant.Contaminant;
+import uk.ac.babraham.FastQC.Sequence.Contaminant.ContaminantHit;
+
+/**
+ * This class define an index of the contaminants that find the longest hit of
+ * a sequence without testing every contaminant. The index is built once and
+ * contains the positions of all the k-mers of the forward and reverse
+ * complement sequences of the contaminants. The length of the k-mers is chosen
+ * so that a hit of the minimal length with the maximal number of mismatches
+ * always contains an exact k-mer, so only the diagonals of the k-mers found in
+ * the sequence are extended. The hits are the same as the hits of
+ * Contaminant.findMatch() of FastQC: each diagonal is split in segments after
+ * each mismatch that exceeds the maximal number of mismatches (one by
+ * default), and the hits are the segments of more than 20 bases. The
+ * sequences shorter than 20 bases must fully match a contaminant.
+ * @since 3.2
+ * @author Laurent Jourdren
+ */
+class ContaminantIndex {
+
+  /** Default maximal number of mismatches in a hit. */
+  static final int DEFAULT_MAX_MISMATCHES = 1;
+
+  /** Minimal length of a hit, more than 20 bases like FastQC. */
+  private static final int MIN_HIT_LENGTH = 21;
+
+  /** Bias of the offsets of the diagonals to sort them as positive values. */
+  private static final int DIAGONAL_BIAS = 1 << 30;
+
+  /** Length of the sequences that must fully match a contaminant. */
+  private static final int MIN_SHORT_SEQUENCE_LENGTH = 9;
+  private static final int MAX_SHORT_SEQUENCE_LENGTH = 19;
+
+  private final List<Contaminant> contaminants = new ArrayList<>();
+
+  // Forward and reverse complement sequences of the contaminants, the target
+  // 2*i is the forward sequence of the contaminant i and the target 2*i+1 its
+  // reverse complement
+  private final List<char[]> targets = new ArrayList<>();
+
+  private final int maxMismatches;
+  private final int kmerLength;
+
+  // Positions of the k-mers in the targets: the occurrences of the k-mer with
+  // the code c are stored in occurrences between offsets[c] and
+  // offsets[c+1], each occurrence is a target and a position in the target
+  private int[] offsets;
+  private int[] occurrences;
+
+  /**
+   * Add a contaminant to the index.
+   * @param name name of the contaminant
+   * @param sequence sequence of the contaminant
+   */
+  void add(final String name, final String sequence) {
+
+    requireNonNull(name, "name argument cannot be null");
+    requireNonNull(sequence, "sequence argument cannot be null");
+
+    if (this.offsets != null) {
+      throw new IllegalStateException("The index has already been built");
+    }
+
+    final String forward = sequence.toUpperCase(Locale.ROOT);
+
+    this.contaminants.add(new Contaminant(name, sequence));
+    this.targets.add(forward.toCharArray());
+    this.targets.add(reverseComplement(forward));
+  }
+
+  /**
+   * Get the contaminants of the index.
+   * @return an array with the contaminants of the index
+   */
+  Contaminant[] getContaminants() {
+
+    return this.contaminants.toArray(new Contaminant[0]);
+  }
+
+  /**
+   * Build the index. This method must be called after the addition of all
+   * the contaminants.
+   */
+  void build() {
+
+    final int codeCount = 1 << (2 * this.kmerLength);
+    final int[] counts = new int[codeCount + 1];
+
+    // Count the occurrences of each k-mer
+    for (char[] target : this.targets) {
+      for (int pos = 0; pos + this.kmerLength <= target.length; pos++) {
+
+        final int code = encode(target, pos);
+        if (code != -1) {
+          counts[code + 1]++;
+        }
+      }
+    }
+
+    for (int i = 1; i <= codeCount; i++) {
+      counts[i] += counts[i - 1];
+    }
+
+    // Store the occurrences
+    final int[] next = counts.clone();
+    final int[] occurrences = new int[2 * counts[codeCount]];
+
+    for (int t = 0; t < this.targets.size(); t++) {
+
+      final char[] target = this.targets.get(t);
+
+      for (int pos = 0; pos + this.kmerLength <= target.length; pos++) {
+
+        final int code = encode(target, pos);
+        if (code != -1) {
+          final int i = next[code]++;
+          occurrences[2 * i] = t;
+          occurrences[2 * i + 1] = pos;
+        }
+      }
+    }
+
+    this.offsets = counts;
+    this.occurrences = occurrences;
+  }
+
+  /**
+   * Find the longest hit of a sequence in the contaminants.
+   * @param sequence the sequence
+   * @return the longest hit or null if the sequence does not match any
+   *         contaminant
+   */
+  ContaminantHit findHit(final String sequence) {
+
+    requireNonNull(sequence, "sequence argument cannot be null");
+
+    if (this.offsets == null) {
+      throw new IllegalStateException("The index has not been built");
+    }
+
+    final char[] query = sequence.toUpperCase(Locale.ROOT).toCharArray();
+
+    if (query.length >= MIN_SHORT_SEQUENCE_LENGTH
+        && query.length <= MAX_SHORT_SEQUENCE_LENGTH) {
+      return findFullMatch(query);
+    }
+
+    if (query.length < MIN_HIT_LENGTH) {
+      return null;
+    }
+
+    // The diagonals of the seeds, sorted like the search of FastQC: by target
+    // and by increasing offset of the contaminant in the sequence
+    final NavigableSet<Long> diagonals = new TreeSet<>();
+
+    for (int qPos = 0; qPos + this.kmerLength <= query.length; qPos++) {
+
+      final int code = encode(query, qPos);
+      if (code == -1) {
+        continue;
+      }
+
+      for (int i = this.offsets[code]; i < this.offsets[code + 1]; i++) {
+
+        final int t = this.occurrences[2 * i];
+        final int offset = qPos - this.occurrences[2 * i + 1];
+
+        diagonals.add(((long) t << 32) | (offset + DIAGONAL_BIAS));
+      }
+    }
+
+    int bestTarget = -1;
+    int bestLength = 0;
+    int bestIdentity = 0;
+
+    // Best hit of the current contaminant
+    int contaminant = -1;
+    int target = -1;
+    int length = 0;
+    int identity = 0;
+
+    for (long key : diagonals) {
+
+      final int t = (int) (key >>> 32);
+      final int offset = (int) key - DIAGONAL_BIAS;
+
+      if (t / 2 != contaminant) {
+
+        if (isBetterHit(length, identity, bestLength, bestIdentity)) {
+          bestTarget = target;
+          bestLength = length;
+          bestIdentity = identity;
+        }
+
+        contaminant = t / 2;
+        target = -1;
+        length = 0;
+        identity = 0;
+      }
+
+      final long hit = extend(query, this.targets.get(t), -offset);
+
+      // Like FastQC, a hit of a contaminant only replaces a longer hit
+      if ((int) (hit >>> 32) > length) {
+        target = t;
+        length = (int) (hit >>> 32);
+        identity = (int) hit;
+      }
+    }
+
+    if (isBetterHit(length, identity, bestLength, bestIdentity)) {
+      bestTarget = target;
+      bestLength = length;
+      bestIdentity = identity;
+    }
+
+    if (bestTarget == -1) {
+      return null;
+    }
+
+    return createHit(bestTarget, bestLength, bestIdentity);
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Find a full match of a short sequence in the contaminants.
+   * @param query the sequence
+   * @return a hit or null if the sequence does not match any contaminant
+   */
+  private ContaminantHit findFullMatch(final char[] query) {
+
+    int bestTarget = -1;
+
+    for (int qPos = 0; qPos + this.kmerLength <= query.length; qPos++) {
+
+      final int code = encode(query, qPos);
+      if (code == -1) {
+        continue;
+      }
+
+      // Only the first valid k-mer is required to find the full matches
+      for (int i = this.offsets[code]; i < this.offsets[code + 1]; i++) {
+
+        final int t = this.occurrences[2 * i];
+        final int start = this.occurrences[2 * i + 1] - qPos;
+
+        if ((bestTarget == -1 || t < bestTarget)
+            && matches(query, this.targets.get(t), start)) {
+          bestTarget = t;
+        }
+      }
+
+      return bestTarget == -1
+          ? null : createHit(bestTarget, query.length, 100);
+    }
+
+    // The sequence only contains k-mers with unknown bases
+    for (int t = 0; t < this.targets.size(); t++) {
+      final char[] target = this.targets.get(t);
+      for (int start = 0; start + query.length <= target.length; start++) {
+        if (matches(query, target, start)) {
+          return createHit(t, query.length, 100);
+        }
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Test if a sequence fully matches a target at a position.
+   * @param query the sequence
+   * @param target the target
+   * @param start position of the sequence in the target
+   * @return true if the sequence matches the target
+   */
+  private static boolean matches(final char[] query, final char[] target,
+      final int start) {
+
+    if (start < 0 || start + query.length > target.length) {
+      return false;
+    }
+
+    for (int i = 0; i < query.length; i++) {
+      if (query[i] != target[start + i]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Find the longest hit on a diagonal of a target like FastQC. The diagonal
+   * is read from its start and a segment ends at each mismatch that exceeds
+   * the maximal number of mismatches, the next segment starts after this
+   * mismatch.
+   * @param query the sequence
+   * @param target the target
+   * @param diagonal position of the start of the sequence in the target
+   * @return the length of the hit in the 32 high bits and the percent of
+   *         identity in the 32 low bits, 0 if there is no hit
+   */
+  private long extend(final char[] query, final char[] target,
+      final int diagonal) {
+
+    final int from = Math.max(0, -diagonal);
+    final int to = Math.min(query.length, target.length - diagonal);
+
+    int mismatchCount = 0;
+    int start = from;
+    int end = from;
+    long result = 0;
+
+    for (int i = from; i < to; i++) {
+
+      if (query[i] == target[i + diagonal]) {
+        end = i;
+        continue;
+      }
+
+      if (++mismatchCount > this.maxMismatches) {
+
+        // The segment ends before the mismatch
+        result = bestSegment(result, 1 + end - start, mismatchCount - 1);
+
+        start = i + 1;
+        end = i + 1;
+        mismatchCount = 0;
+      }
+    }
+
+    // The mismatches after the end of the last segment are counted by FastQC
+    return bestSegment(result, 1 + end - start, mismatchCount);
+  }
+
+  /**
+   * Select the best segment of a diagonal.
+   * @param best the best hit of the diagonal
+   * @param length the length of the segment
+   * @param mismatchCount the number of mismatches of the segment
+   * @return the best hit
+   */
+  private static long bestSegment(final long best, final int length,
+      final int mismatchCount) {
+
+    if (length < MIN_HIT_LENGTH) {
+      return best;
+    }
+
+    final int identity = ((length - mismatchCount) * 100) / length;
+
+    if (isBetterHit(length, identity, (int) (best >>> 32), (int) best)) {
+      return ((long) length << 32) | identity;
+    }
+
+    return best;
+  }
+
+  /**
+   * Test if a hit is better than another hit: it is longer or has the same
+   * length and a greater percent of identity.
+   * @param length the length of the hit
+   * @param identity the percent of identity of the hit
+   * @param otherLength the length of the other hit
+   * @param otherIdentity the percent of identity of the other hit
+   * @return true if the hit is better than the other hit
+   */
+  private static boolean isBetterHit(final int length, final int identity,
+      final int otherLength, final int otherIdentity) {
+
+    return length > otherLength
+        || (length == otherLength && identity > otherIdentity);
+  }
+
+  /**
+   * Create a FastQC hit.
+   * @param target the target of the hit
+   * @param length the length of the hit
+   * @param identity the percent of identity of the hit
+   * @return a new ContaminantHit object
+   */
+  private ContaminantHit createHit(final int target, final int length,
+      final int identity) {
+
+    return new ContaminantHit(this.contaminants.get(target / 2),
+        target % 2 == 0 ? ContaminantHit.FORWARD : ContaminantHit.REVERSE,
+        length, identity);
+  }
+
+  /**
+   * Encode the k-mer at a position of a sequence.
+   * @param sequence the sequence
+   * @param pos the position of the k-mer
+   * @return the code of the k-mer or -1 if the k-mer contains other bases than
+   *         A, C, G and T
+   */
+  private int encode(final char[] sequence, final int pos) {
+
+    int code = 0;
+
+    for (int i = pos; i < pos + this.kmerLength; i++) {
+
+      final int value;
+      switch (sequence[i]) {
+      case 'A':
+        value = 0;
+        break;
+      case 'C':
+        value = 1;
+        break;
+      case 'G':
+        value = 2;
+        break;
+      case 'T':
+        value = 3;
+        break;
+      default:
+        return -1;
+      }
+
+      code = (code << 2) | value;
+    }
+
+    return code;
+  }
+
+  /**
+   * Compute the reverse complement of a sequence like FastQC, the other bases
+   * than A, C, G and T are kept.
+   * @param sequence the sequence
+   * @return the reverse complement of the sequence
+   */
+  private static char[] reverseComplement(final String sequence) {
+
+    final char[] result = new char[sequence.length()];
+
+    for (int i = 0; i < result.length; i++) {
+
+      final char c = sequence.charAt(result.length - 1 - i);
+
+      switch (c) {
+      case 'A':
+        result[i] = 'T';
+        break;
+      case 'C':
+        result[i] = 'G';
+        break;
+      case 'G':
+        result[i] = 'C';
+        break;
+      case 'T':
+        result[i] = 'A';
+        break;
+      default:
+        result[i] = c;
+      }
+    }
+
+    return result;
+  }
+
+  //
+  // Constructors
+  //
+
+  /**
+   * Constructor.
+   */
+  ContaminantIndex() {
+
+    this(DEFAULT_MAX_MISMATCHES);
+  }
+
+  /**
+   * Constructor.
+   * @param maxMismatches maximal number of mismatches in a hit
+   */
+  ContaminantIndex(final int maxMismatches) {
+
+    if (maxMismatches < 0 || maxMismatches > MIN_HIT_LENGTH / 4) {
+      throw new IllegalArgumentException(
+          "Invalid maximal number of mismatches: " + maxMismatches);
+    }
+
+    this.maxMismatches = maxMismatches;
+
+    // A hit of the minimal length contains an exact k-mer of this length
+    this.kmerLength = Math.min(MIN_SHORT_SEQUENCE_LENGTH,
+        (MIN_HIT_LENGTH - maxMismatches) / (maxMismatches + 1));
+  }
+
+}
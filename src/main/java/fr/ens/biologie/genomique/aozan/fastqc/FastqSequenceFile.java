@@ -0,0 +1,311 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later 
+ * and CeCILL. This should be distributed with the code. If you 
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.fastqc;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import fr.ens.biologie.genomique.aozan.Globals;
+import fr.ens.biologie.genomique.aozan.io.FastqSampleUtils;
+import fr.ens.biologie.genomique.kenetre.io.CompressionType;
+import uk.ac.babraham.FastQC.Sequence.Sequence;
+import uk.ac.babraham.FastQC.Sequence.SequenceFile;
+import uk.ac.babraham.FastQC.Sequence.SequenceFormatException;
+
+/**
+ * This class define a FastQC SequenceFile that read one or more FASTQ files
+ * decompressed by dedicated threads (see
+ * FastqSampleUtils.createInputStream()). Like the FastQC FastQFile class, the
+ * reads filtered by the Illumina chastity filter are flagged when the casava
+ * filter is enabled. Colorspace files are not handled by this class and must
+ * be read with the FastQC SequenceFactory (see isColorspace()).
+ * @since 3.2
+ * @author Laurent Jourdren
+ */
+public class FastqSequenceFile implements SequenceFile, Closeable {
+
+  private static final String CASAVA_FILTERED_FLAG = ":Y:";
+
+  /** Same pattern as FastQC to detect colorspace reads. */
+  private static final Pattern COLORSPACE_PATTERN =
+      Pattern.compile("^[GATCNgatcn][\\.0123456]+$");
+
+  private final List<File> files;
+  private final CompressionType compressionType;
+  private final int threads;
+  private final boolean casavaFilter;
+
+  private int fileIndex = -1;
+  private SequenceFile currentFile = this;
+  private BufferedReader reader;
+  private Sequence nextSequence;
+  private boolean colorspaceChecked;
+  private boolean colorspace;
+
+  //
+  // SequenceFile methods
+  //
+
+  @Override
+  public boolean hasNext() {
+
+    return this.nextSequence != null;
+  }
+
+  @Override
+  public Sequence next() throws SequenceFormatException {
+
+    final Sequence result = this.nextSequence;
+    readNext();
+
+    return result;
+  }
+
+  /**
+   * Test if the first read of the files is a colorspace read. In this case no
+   * sequence is returned and the files must be read with the FastQC
+   * SequenceFactory.
+   * @return true if the files contain colorspace reads
+   */
+  @Override
+  public boolean isColorspace() {
+
+    return this.colorspace;
+  }
+
+  @Override
+  public String name() {
+
+    return this.files.get(0).getName();
+  }
+
+  @Override
+  public int getPercentComplete() {
+
+    if (this.nextSequence == null) {
+      return 100;
+    }
+
+    return this.fileIndex * 100 / this.files.size();
+  }
+
+  @Override
+  public File getFile() {
+
+    return this.files.get(Math.max(0, this.fileIndex));
+  }
+
+  @Override
+  public void close() throws IOException {
+
+    this.nextSequence = null;
+
+    if (this.reader != null) {
+      this.reader.close();
+      this.reader = null;
+    }
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Read the next sequence.
+   * @throws SequenceFormatException if the FASTQ entry is invalid or if an
+   *           error occurs while reading the FASTQ files
+   */
+  private void readNext() throws SequenceFormatException {
+
+    this.nextSequence = null;
+
+    try {
+
+      String id;
+      do {
+
+        // Open the next file at the end of the current file
+        if (this.reader == null) {
+
+          if (this.fileIndex + 1 == this.files.size()) {
+            return;
+          }
+
+          this.fileIndex++;
+          this.currentFile = new CurrentFile(this.files.get(this.fileIndex));
+          this.reader = new BufferedReader(new InputStreamReader(
+              FastqSampleUtils.createInputStream(
+                  this.files.get(this.fileIndex), this.compressionType,
+                  this.threads),
+              Globals.DEFAULT_FILE_ENCODING));
+        }
+
+        id = this.reader.readLine();
+
+        if (id == null) {
+          this.reader.close();
+          this.reader = null;
+        }
+
+      } while (id == null || id.isEmpty());
+
+      final String sequence = this.reader.readLine();
+      final String midLine = this.reader.readLine();
+      final String quality = this.reader.readLine();
+
+      if (!id.startsWith("@")) {
+        throw new SequenceFormatException(
+            "ID line didn't start with '@': " + id);
+      }
+
+      if (sequence == null || midLine == null || quality == null) {
+        throw new SequenceFormatException(
+            "Ran out of data in the middle of a fastq entry: " + id);
+      }
+
+      if (!midLine.startsWith("+")) {
+        throw new SequenceFormatException(
+            "Midline '" + midLine + "' didn't start with '+'");
+      }
+
+      // Colorspace files are only detected on the first read like FastQC
+      if (!this.colorspaceChecked) {
+
+        this.colorspaceChecked = true;
+        if (COLORSPACE_PATTERN.matcher(sequence).matches()) {
+          this.colorspace = true;
+          return;
+        }
+      }
+
+      // The sequences refer to the file from which they have been read
+      this.nextSequence =
+          new Sequence(this.currentFile, sequence.toUpperCase(), quality, id);
+
+      if (this.casavaFilter && id.contains(CASAVA_FILTERED_FLAG)) {
+        this.nextSequence.setIsFiltered(true);
+      }
+
+    } catch (IOException e) {
+      throw new SequenceFormatException(e.getMessage());
+    }
+  }
+
+  //
+  // Inner class
+  //
+
+  /**
+   * This class define the view of the file currently read that is associated
+   * to the sequences, so Sequence.file().getFile() returns the file from which
+   * the sequence has been read.
+   */
+  private final class CurrentFile implements SequenceFile {
+
+    private final File file;
+
+    @Override
+    public boolean hasNext() {
+
+      return FastqSequenceFile.this.hasNext();
+    }
+
+    @Override
+    public Sequence next() throws SequenceFormatException {
+
+      return FastqSequenceFile.this.next();
+    }
+
+    @Override
+    public boolean isColorspace() {
+
+      return FastqSequenceFile.this.isColorspace();
+    }
+
+    @Override
+    public String name() {
+
+      return this.file.getName();
+    }
+
+    @Override
+    public int getPercentComplete() {
+
+      return FastqSequenceFile.this.getPercentComplete();
+    }
+
+    @Override
+    public File getFile() {
+
+      return this.file;
+    }
+
+    private CurrentFile(final File file) {
+
+      this.file = file;
+    }
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Constructor.
+   * @param files FASTQ files to read
+   * @param compressionType compression type of the files
+   * @param threads number of threads to use to decompress the files
+   * @param casavaFilter true if the reads filtered by the Illumina chastity
+   *          filter must be flagged
+   * @throws SequenceFormatException if the first entry of the files is invalid
+   */
+  public FastqSequenceFile(final List<File> files,
+      final CompressionType compressionType, final int threads,
+      final boolean casavaFilter) throws SequenceFormatException {
+
+    requireNonNull(files, "files argument cannot be null");
+    requireNonNull(compressionType,
+        "compressionType argument cannot be null");
+
+    if (files.isEmpty()) {
+      throw new IllegalArgumentException("No FASTQ file to read");
+    }
+
+    this.files = new ArrayList<>(files);
+    this.compressionType = compressionType;
+    this.threads = threads;
+    this.casavaFilter = casavaFilter;
+
+    readNext();
+  }
+
+}
@@ -37,11 +37,18 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -83,6 +90,12 @@ public class OverrepresentedSequencesBlast {
 
   private static final boolean BLAST_RESULT_HTML_TYPE = true;
 
+  private static final int DEFAULT_CACHE_MAX_ENTRIES = 100000;
+  private static final int DEFAULT_BATCH_SIZE = 50;
+  private static final int DEFAULT_CONCURRENT_BATCHES = 1;
+  private static final long BATCH_DELAY_SECONDS = 10;
+  private static final long CLEAR_TIMEOUT_MINUTES = 30;
+
   private static final Object LOCK = new Object();
 
   private static final String BLAST_EXECUTABLE_DOCKER = "blastall";
@@ -103,9 +116,9 @@ public class OverrepresentedSequencesBlast {
 
   private static volatile OverrepresentedSequencesBlast singleton;
 
-  // Save sequence and result blast for the run
-  private final Map<String, BlastResultHit> sequencesAlreadyAnalysis =
-      new HashMap<>();
+  // Save sequence and result blast, persistent between runs if configured
+  private BlastResultCache sequencesAlreadyAnalysis =
+      new BlastResultCache(null, null, 0);
 
   private boolean useDocker;
   private boolean configured;
@@ -113,9 +126,19 @@ public class OverrepresentedSequencesBlast {
   private File tmpDir;
 
   private CommandLine blastCommonCommandLine;
-  private Set<String> submittedSequences = new HashSet<>();
   private String dockerConnectionString;
 
+  // Sequences submitted but not yet blasted
+  private final Map<String, CompletableFuture<BlastResultHit>> pendingResults =
+      new HashMap<>();
+  private final AtomicInteger submittedSequenceCount = new AtomicInteger();
+  private final Object batchLock = new Object();
+  private List<String> batch = new ArrayList<>();
+  private ScheduledFuture<?> batchTimer;
+  private int batchSize;
+  private ExecutorService blastExecutor;
+  private ScheduledExecutorService batchScheduler;
+
   /**
    * This class with parse Blast XML output using SAX API.
    */
@@ -175,16 +198,21 @@ public class OverrepresentedSequencesBlast {
 
       if (ITERATION_TAG.equals(qName)) {
 
-        if (this.hitCount > 0) {
+        // The results are indexed by the submitted sequences
+        final String sequence = this.sequences.get(this.seqId);
+
+        if (sequence == null) {
+          LOGGER.warning("FASTQC: unknown Blast query: " + this.seqId);
+        } else if (this.hitCount > 0) {
 
           BlastResultHit blastResultHit =
               new BlastResultHit(this.hitNum, this.hitResult, this.hspEValue,
                   this.hspIdentity, this.hspAlignLen, this.hitCount,
-                  this.queryLength, this.seqId, BLAST_RESULT_HTML_TYPE);
+                  this.queryLength, sequence, BLAST_RESULT_HTML_TYPE);
 
-          this.result.put(seqId, blastResultHit);
+          this.result.put(sequence, blastResultHit);
         } else {
-          this.result.put(seqId, null);
+          this.result.put(sequence, null);
         }
 
         this.seqId = null;
@@ -258,8 +286,8 @@ public class OverrepresentedSequencesBlast {
 
       // Empty responses
       if (this.iterationCount == 0) {
-        for (String seqId : this.sequences.keySet()) {
-          this.result.put(seqId, null);
+        for (String sequence : this.sequences.values()) {
+          this.result.put(sequence, null);
         }
       }
     }
@@ -278,7 +306,7 @@ public class OverrepresentedSequencesBlast {
 
     /**
      * Constructor.
-     * @param sequences submitted sequences
+     * @param sequences submitted sequences, indexed by their identifiers
      */
     IterationHandler(final Map<String, String> sequences) {
 
@@ -364,10 +392,36 @@ public class OverrepresentedSequencesBlast {
             createBlastCommandLine(new File(blastPath), new File(blastDBPath),
                 blastArguments, useDocker);
 
-        // Add in map all sequences to do not analysis, return a resultBlast
+        // Use a persistent cache for the results if defined
+        this.sequencesAlreadyAnalysis = new BlastResultCache(
+            conf.getFile(Settings.QC_CONF_FASTQC_BLAST_CACHE_PATH_KEY),
+            BlastResultCache.createKey(new File(blastDBPath + ".nal"),
+                this.blastCommonCommandLine.toString()),
+            conf.getInt(Settings.QC_CONF_FASTQC_BLAST_CACHE_MAX_ENTRIES_KEY,
+                DEFAULT_CACHE_MAX_ENTRIES));
+        try {
+          this.sequencesAlreadyAnalysis.load();
+        } catch (final IOException e) {
+          LOGGER.warning("FASTQC: cannot load the Blast result cache: "
+              + e.getMessage());
+        }
+
+        // Add in cache all sequences to do not analysis, return a resultBlast
         // with no hit
         loadSequencesToIgnore();
 
+        // Create the threads that blast the batches of sequences
+        this.batchSize = Math.max(1,
+            conf.getInt(Settings.QC_CONF_FASTQC_BLAST_BATCH_SIZE_KEY,
+                DEFAULT_BATCH_SIZE));
+        final int concurrentBatches = Math.max(1,
+            conf.getInt(Settings.QC_CONF_FASTQC_BLAST_CONCURRENT_BATCHES_KEY,
+                DEFAULT_CONCURRENT_BATCHES));
+        this.blastExecutor = Executors.newFixedThreadPool(concurrentBatches,
+            r -> createDaemonThread(r, "blast-batch"));
+        this.batchScheduler = Executors.newSingleThreadScheduledExecutor(
+            r -> createDaemonThread(r, "blast-batch-scheduler"));
+
         LOGGER.info("FASTQC: blast is enabled, command line = "
             + this.blastCommonCommandLine);
         this.enabled = true;
@@ -398,7 +452,7 @@ public class OverrepresentedSequencesBlast {
 
         if (!sequence.startsWith("#")) {
           if (!sequence.isEmpty()) {
-            this.sequencesAlreadyAnalysis.put(sequence,
+            this.sequencesAlreadyAnalysis.seed(sequence,
                 new BlastResultHit(sequence));
           }
         }
@@ -424,18 +478,59 @@ public class OverrepresentedSequencesBlast {
   //
 
   /**
-   * Submit a sequence to blast
+   * Submit a sequence to blast. The submitted sequences are blasted by batches
+   * in background threads. A batch is launched when it contains enough
+   * sequences, after a delay or when the result of one of its sequences is
+   * requested.
    * @param sequence the sequence to blast
+   * @return the future result of blast, a null result means no hit
    */
-  public void submitSequence(final String sequence) {
+  public CompletableFuture<BlastResultHit> submitSequence(
+      final String sequence) {
 
     requireNonNull(sequence, "sequence argument cannot be null");
 
-    if (!this.sequencesAlreadyAnalysis.containsKey(sequence)
-        && !this.submittedSequences.contains(sequence)) {
-      synchronized (this.submittedSequences) {
-        this.submittedSequences.add(sequence);
+    // Nothing to blast if blast is disabled
+    if (!this.enabled) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    // Return the result if it already been computed
+    if (this.sequencesAlreadyAnalysis.contains(sequence)) {
+      return CompletableFuture
+          .completedFuture(this.sequencesAlreadyAnalysis.get(sequence));
+    }
+
+    synchronized (this.batchLock) {
+
+      CompletableFuture<BlastResultHit> result =
+          this.pendingResults.get(sequence);
+
+      if (result != null) {
+        return result;
+      }
+
+      // Return the result if it already been computed since the end of the
+      // lock
+      if (this.sequencesAlreadyAnalysis.contains(sequence)) {
+        return CompletableFuture
+            .completedFuture(this.sequencesAlreadyAnalysis.get(sequence));
       }
+
+      // Add the sequence to the current batch
+      result = new CompletableFuture<>();
+      this.pendingResults.put(sequence, result);
+      this.submittedSequenceCount.incrementAndGet();
+      this.batch.add(sequence);
+
+      if (this.batch.size() >= this.batchSize) {
+        launchBatch();
+      } else if (this.batchTimer == null) {
+        this.batchTimer = this.batchScheduler.schedule(this::launchBatch,
+            BATCH_DELAY_SECONDS, TimeUnit.SECONDS);
+      }
+
+      return result;
     }
   }
 
@@ -445,9 +540,7 @@ public class OverrepresentedSequencesBlast {
    */
   public int getSubmittedSequenceCount() {
 
-    synchronized (this.submittedSequences) {
-      return this.submittedSequences.size();
-    }
+    return this.submittedSequenceCount.get();
   }
 
   /**
@@ -460,18 +553,66 @@ public class OverrepresentedSequencesBlast {
   }
 
   /**
-   * Clear sequences.
+   * Clear sequences. The sequences of the current batch are blasted and the
+   * end of the batches in progress is waited, then the results of the analyzed
+   * sequences are saved in the persistent cache if defined. The results of the
+   * sequences not blasted at the end of the wait are completed with an
+   * exception.
    */
   public void clear() {
 
-    synchronized (this.submittedSequences) {
-      this.submittedSequences.clear();
-      this.sequencesAlreadyAnalysis.clear();
+    // Blast the sequences of the current batch
+    final List<CompletableFuture<BlastResultHit>> futures;
+    synchronized (this.batchLock) {
+      launchBatch();
+      futures = new ArrayList<>(this.pendingResults.values());
+    }
+
+    // Wait the end of the batches in progress
+    try {
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+          .get(CLEAR_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+    } catch (final ExecutionException e) {
+      // The results of the failed batches are already completed with their
+      // exception
+    } catch (final TimeoutException e) {
+      LOGGER.warning("FASTQC: some Blast batches are not ended after "
+          + CLEAR_TIMEOUT_MINUTES + " minutes");
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    synchronized (this.batchLock) {
+
+      if (this.batchTimer != null) {
+        this.batchTimer.cancel(false);
+        this.batchTimer = null;
+      }
+
+      // The sequences not yet blasted will never be blasted
+      final AozanException exception = new AozanException(
+          "The Blast of the sequence has not ended before the clearing of the "
+              + "sequences");
+      for (CompletableFuture<BlastResultHit> future : this.pendingResults
+          .values()) {
+        future.completeExceptionally(exception);
+      }
+      this.pendingResults.clear();
+      this.batch = new ArrayList<>();
+      this.submittedSequenceCount.set(0);
+
+      try {
+        this.sequencesAlreadyAnalysis.save();
+      } catch (final IOException e) {
+        LOGGER.warning("FASTQC: cannot save the Blast result cache: "
+            + e.getMessage());
+      }
     }
   }
 
   /**
-   * Get the blast result of a sequence
+   * Get the blast result of a sequence. Only wait the end of the batch that
+   * contains the sequence.
    * @param sequence the sequence to blast
    * @return the result as BlastResultHit object
    * @throws IOException if an error occurs while blasting sequences
@@ -488,34 +629,109 @@ public class OverrepresentedSequencesBlast {
           "OverrepresentedSequencesBlast is not configured");
     }
 
-    // Return nothing if blast if disabled
-    if (!this.enabled) {
-      return null;
+    final CompletableFuture<BlastResultHit> future = submitSequence(sequence);
+
+    // Do not wait the batch delay if the sequence is in the current batch
+    if (!future.isDone()) {
+      synchronized (this.batchLock) {
+        if (this.batch.contains(sequence)) {
+          launchBatch();
+        }
+      }
     }
 
-    // Return the result if it already been computed
-    if (this.sequencesAlreadyAnalysis.containsKey(sequence)) {
-      return this.sequencesAlreadyAnalysis.get(sequence);
+    try {
+      return future.get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AozanException(e);
+    } catch (final ExecutionException e) {
+
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof AozanException) {
+        throw (AozanException) cause;
+      }
+      throw new AozanException(cause);
     }
+  }
+
+  //
+  // Batch methods
+  //
+
+  /**
+   * Launch the blast of the current batch in background.
+   */
+  private void launchBatch() {
 
-    synchronized (this.submittedSequences) {
+    synchronized (this.batchLock) {
 
-      // Return the result if it already been computed since the end of the lock
-      if (this.sequencesAlreadyAnalysis.containsKey(sequence)) {
-        return this.sequencesAlreadyAnalysis.get(sequence);
+      if (this.batchTimer != null) {
+        this.batchTimer.cancel(false);
+        this.batchTimer = null;
       }
 
-      // Add the sequence to the submitted list
-      this.submittedSequences.add(sequence);
+      if (this.batch.isEmpty()) {
+        return;
+      }
+
+      final List<String> sequences = this.batch;
+      this.batch = new ArrayList<>();
+
+      this.blastExecutor.execute(() -> blastBatch(sequences));
+    }
+  }
+
+  /**
+   * Create a daemon thread.
+   * @param r the runnable to execute
+   * @param name the name of the thread
+   * @return a new Thread object
+   */
+  private static Thread createDaemonThread(final Runnable r,
+      final String name) {
+
+    final Thread t = new Thread(r, name);
+    t.setDaemon(true);
+
+    return t;
+  }
+
+  /**
+   * Blast a batch of sequences and complete their future results.
+   * @param sequences the sequences to blast
+   */
+  private void blastBatch(final List<String> sequences) {
+
+    Exception exception = null;
+
+    try {
+      blast(sequences);
+    } catch (final IOException | AozanException | RuntimeException e) {
+      exception = e;
+    }
+
+    // The results are in the cache before removing the submitted sequences,
+    // so a sequence submitted meanwhile is never blasted twice
+    for (String sequence : sequences) {
 
-      // Blast all the submitted sequences
-      blast();
+      final CompletableFuture<BlastResultHit> future;
+      synchronized (this.batchLock) {
+        future = this.pendingResults.remove(sequence);
+      }
 
-      // Clear submitted sequences
-      this.submittedSequences.clear();
+      if (future == null) {
+        continue;
+      }
 
-      // Return the result
-      return this.sequencesAlreadyAnalysis.get(sequence);
+      if (exception != null) {
+        future.completeExceptionally(exception);
+      } else {
+        future.complete(this.sequencesAlreadyAnalysis.get(sequence));
+      }
     }
   }
 
@@ -547,7 +763,8 @@ public class OverrepresentedSequencesBlast {
   // Methods to analysis sequences
   //
 
-  private void blast() throws IOException, AozanException {
+  private void blast(final List<String> sequences)
+      throws IOException, AozanException {
 
     // Create temporary files
     File inputFastaFile = createTempFile(this.tmpDir, "blast_", "_input.fast");
@@ -559,7 +776,7 @@ public class OverrepresentedSequencesBlast {
         new FileWriter(inputFastaFile, Charset.defaultCharset())) {
 
       int count = 0;
-      for (String sequence : this.submittedSequences) {
+      for (String sequence : sequences) {
 
         final String seqId = "seq" + ++count;
 
@@ -569,8 +786,7 @@ public class OverrepresentedSequencesBlast {
       writer.flush();
     }
 
-    LOGGER
-        .info("FASTQC: Launch " + this.submittedSequences.size() + " blast(s)");
+    LOGGER.info("FASTQC: Launch " + sequences.size() + " blast(s)");
 
     // Launch blast
     launchBlast(useDocker, this.dockerConnectionString,
@@ -601,6 +817,8 @@ public class OverrepresentedSequencesBlast {
             + resultXMLFile.getAbsolutePath());
       }
     }
+    new File(resultXMLFile.getPath() + ".stdout").delete();
+    new File(resultXMLFile.getPath() + ".stderr").delete();
   }
 
   /**
@@ -634,10 +852,11 @@ public class OverrepresentedSequencesBlast {
         process = new SystemSimpleProcess();
       }
 
+      // Batches can be blasted at the same time, each one has its own
+      // standard output files
       File workingDir = outputFile.getParentFile();
-      File tmpDir = outputFile.getParentFile();
-      File stderrFile = new File(tmpDir, "STDERR");
-      File stdoutFile = new File(tmpDir, "STDOUT");
+      File stderrFile = new File(outputFile.getPath() + ".stderr");
+      File stdoutFile = new File(outputFile.getPath() + ".stdout");
 
       LOGGER.fine("FASTQC: Blast command line: " + cmd);
 
@@ -710,9 +929,10 @@ public class OverrepresentedSequencesBlast {
   //
 
   /**
-   * Private constructor.
+   * Constructor. Use getInstance() to get the instance of the application, the
+   * tests create their own instances.
    */
-  private OverrepresentedSequencesBlast() {
+  OverrepresentedSequencesBlast() {
   }
 
   //
@@ -27,7 +27,6 @@ import static fr.ens.biologie.genomique.kenetre.util.StringUtils.toTimeHumanRead
 import static java.util.Objects.requireNonNull;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
@@ -52,7 +51,9 @@ public class FastqScreen {
   private static final Logger LOGGER = Aozan2Logger.getLogger();
 
   private final File tmpDir;
+  private final GenomeIndexCache indexCache;
   private final int confThreads;
+  private final int concurrentGenomes;
   private final String mapperName;
   private final String mapperArgument;
 
@@ -118,15 +119,17 @@ public class FastqScreen {
     final Stopwatch timer = Stopwatch.createStarted();
 
     final FastqScreenPseudoMapReduce pmr = new FastqScreenPseudoMapReduce(
-        this.tmpDir, isPairedMode, this.mapperName, this.mapperArgument);
+        this.tmpDir, this.indexCache, isPairedMode, this.mapperName,
+        this.mapperArgument);
 
     try {
 
       if (isPairedMode) {
         pmr.doMap(fastqRead1, fastqRead2, genomes, sampleGenome,
-            this.confThreads);
+            this.confThreads, this.concurrentGenomes);
       } else {
-        pmr.doMap(fastqRead1, genomes, sampleGenome, this.confThreads);
+        pmr.doMap(fastqRead1, genomes, sampleGenome, this.confThreads,
+            this.concurrentGenomes);
       }
 
       LOGGER.fine("FASTQSCREEN: step map for "
@@ -134,28 +137,6 @@ public class FastqScreen {
           + (isPairedMode ? "paired" : "single") + " on genome(s) " + genomes
           + " in " + toTimeHumanReadable(timer.elapsed(TimeUnit.MILLISECONDS)));
 
-      timer.reset();
-      timer.start();
-
-      final File outputDoReduceFile =
-          new File(this.tmpDir, "outputDoReduce.txt");
-
-      pmr.doReduce(outputDoReduceFile);
-
-      LOGGER.fine("FASTQSCREEN: step reduce for "
-          + sampleDescription + " in mode "
-          + (isPairedMode ? "paired" : "single") + " in "
-          + toTimeHumanReadable(timer.elapsed(TimeUnit.MILLISECONDS)));
-
-      // Remove temporary output file use in map-reduce step
-      if (!outputDoReduceFile.delete()) {
-        LOGGER.warning("Fastqscreen : fail to delete file "
-            + outputDoReduceFile.getAbsolutePath());
-      }
-
-    } catch (final IOException e) {
-      throw new AozanException(e);
-
     } finally {
       timer.stop();
     }
@@ -178,7 +159,20 @@ public class FastqScreen {
 
     this.tmpDir = conf.getFile(QC.TMP_DIR);
 
+    // Use a persistent cache for the genome indexes if defined, otherwise the
+    // indexes are kept in the temporary directory without quota, so no entry
+    // is ever removed
+    final File indexCacheDir =
+        conf.getFile(Settings.QC_CONF_FASTQSCREEN_INDEX_CACHE_PATH_KEY);
+    this.indexCache = indexCacheDir == null
+        ? new GenomeIndexCache(this.tmpDir, 0)
+        : new GenomeIndexCache(indexCacheDir, conf.getInt(
+            Settings.QC_CONF_FASTQSCREEN_INDEX_CACHE_MAX_SIZE_KEY, 0)
+            * 1024L * 1024L * 1024L);
+
     this.confThreads = conf.getInt(Settings.QC_CONF_THREADS_KEY, -1);
+    this.concurrentGenomes = conf.getInt(
+        Settings.QC_CONF_FASTQSCREEN_MAPPING_CONCURRENT_GENOMES_KEY, 1);
 
     // Fields required to initialize fastqScreenGenomes
     this.sampleSheet = conf.getSampleSheet(QC.SAMPLESHEET);
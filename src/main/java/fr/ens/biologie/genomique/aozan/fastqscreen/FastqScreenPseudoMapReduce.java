@@ -30,13 +30,20 @@ import static java.util.Objects.requireNonNull;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
-import java.util.regex.Pattern;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Stopwatch;
@@ -45,7 +52,6 @@ import fr.ens.biologie.genomique.aozan.Aozan2Logger;
 import fr.ens.biologie.genomique.aozan.AozanException;
 import fr.ens.biologie.genomique.aozan.Globals;
 import fr.ens.biologie.genomique.aozan.Storages;
-import fr.ens.biologie.genomique.kenetre.bio.BadBioEntryException;
 import fr.ens.biologie.genomique.kenetre.bio.FastqFormat;
 import fr.ens.biologie.genomique.kenetre.bio.GenomeDescription;
 import fr.ens.biologie.genomique.kenetre.bio.readmapper.Bowtie2MapperProvider;
@@ -59,16 +65,15 @@ import fr.ens.biologie.genomique.kenetre.bio.readmapper.MapperInstanceBuilder;
 import fr.ens.biologie.genomique.kenetre.bio.readmapper.MapperProcess;
 import fr.ens.biologie.genomique.kenetre.storage.FileGenomeMapperIndexer;
 import fr.ens.biologie.genomique.kenetre.util.LocalReporter;
-import fr.ens.biologie.genomique.kenetre.util.PseudoMapReduce;
-import fr.ens.biologie.genomique.kenetre.util.Reporter;
 import fr.ens.biologie.genomique.kenetre.util.StringUtils;
 
 /**
- * This class account reads that map to each of the reference genome.
+ * This class account reads that map to each of the reference genome. The hits
+ * of the reads are aggregated in memory by a FastqScreenReadHits object.
  * @since 1.0
  * @author Sandrine Perrin
  */
-public class FastqScreenPseudoMapReduce extends PseudoMapReduce {
+public class FastqScreenPseudoMapReduce {
 
   /** Logger. */
   private static final Logger LOGGER = Aozan2Logger.getLogger();
@@ -78,23 +83,45 @@ public class FastqScreenPseudoMapReduce extends PseudoMapReduce {
   private static boolean firstDoMapRun = true;
 
   private static final String COUNTER_GROUP = "reads_mapping";
-  private final Reporter reporter;
 
-  private GenomeDescription desc = null;
+  /** Timeout to wait the end of the mappings after a failure. */
+  private static final int STOP_TIMEOUT_SECONDS = 60;
+
   private final FastqScreenResult fastqScreenResult;
+  private final FastqScreenReadHits readHits = new FastqScreenReadHits();
   private final File tmpDir;
-
-  private final Pattern pattern = Pattern.compile("\t");
+  private final GenomeIndexCache indexCache;
 
   private int readsProcessed = 0;
   private int readsMapped = 0;
   private final boolean pairedMode;
-  private String genomeReference;
 
   private final String mapperArguments;
 
   private final String mapperName;
 
+  /** Mapper processes currently running. */
+  private final Set<MapperProcess> runningProcesses =
+      ConcurrentHashMap.newKeySet();
+  private volatile boolean mappersStopped;
+
+  /**
+   * This interface define the mapping of the reads on a genome.
+   */
+  interface GenomeMapper {
+
+    /**
+     * Map the reads on a genome.
+     * @param genome the genome
+     * @param mapperThreads number threads used for mapping
+     * @return the parser used for the mapping or null if the genome has been
+     *         skipped
+     * @throws AozanException if an error occurs while mapping
+     */
+    FastqScreenSAMParser map(String genome, int mapperThreads)
+        throws AozanException;
+  }
+
   /**
    * Mapper Receive value in SAM format, only the read mapped are added in
    * output with reference genome.
@@ -102,12 +129,15 @@ public class FastqScreenPseudoMapReduce extends PseudoMapReduce {
    * @param genomes list of reference genome
    * @param sampleGenome genome reference corresponding to sample, can be null
    * @param threadNumber number threads used for mapping
+   * @param concurrentGenomes number of genomes to map at the same time
    * @throws AozanException if an error occurs while mapping
    */
   public void doMap(final File fastqRead, final List<String> genomes,
-      final String sampleGenome, final int threadNumber) throws AozanException {
+      final String sampleGenome, final int threadNumber,
+      final int concurrentGenomes) throws AozanException {
 
-    this.doMap(fastqRead, null, genomes, sampleGenome, threadNumber);
+    this.doMap(fastqRead, null, genomes, sampleGenome, threadNumber,
+        concurrentGenomes);
   }
 
   /**
@@ -118,11 +148,14 @@ public class FastqScreenPseudoMapReduce extends PseudoMapReduce {
    * @param genomes list of genome reference
    * @param sampleGenome genome reference corresponding to sample, can be null
    * @param threadNumber number threads used for mapping
+   * @param concurrentGenomes number of genomes to map at the same time, the
+   *          threads used for mapping are shared between these genomes
    * @throws AozanException if an error occurs while mapping
    */
   public void doMap(final File fastqRead1, final File fastqRead2,
       final List<String> genomes, final String sampleGenome,
-      final int threadNumber) throws AozanException {
+      final int threadNumber, final int concurrentGenomes)
+      throws AozanException {
 
     requireNonNull(fastqRead1, "fastqRead1 argument cannot be null");
     requireNonNull(genomes, "genomesForMapping argument cannot be null");
@@ -140,238 +173,327 @@ public class FastqScreenPseudoMapReduce extends PseudoMapReduce {
       LOGGER.info("FASTQSCREEN: map "
           + fastqRead1.getName() + " on genomes "
           + Joiner.on(",").join(genomes));
+    }
+
+    mapGenomes(genomes, sampleGenome, mapperThreads, concurrentGenomes,
+        (genome, threads) -> mapGenome(fastqRead1, fastqRead2, genome,
+            threads));
+
+    firstDoMapRun = false;
+  }
+
+  /**
+   * Map the reads on the genomes and add the results in the order of the
+   * genomes.
+   * @param genomes list of genome reference
+   * @param sampleGenome genome reference corresponding to sample, can be null
+   * @param mapperThreads number threads used for mapping
+   * @param concurrentGenomes number of genomes to map at the same time, the
+   *          threads used for mapping are shared between these genomes
+   * @param genomeMapper the object that map the reads on a genome
+   * @throws AozanException if an error occurs while mapping
+   */
+  void mapGenomes(final List<String> genomes, final String sampleGenome,
+      final int mapperThreads, final int concurrentGenomes,
+      final GenomeMapper genomeMapper) throws AozanException {
 
+    // Define the number of genomes to map at the same time and the number of
+    // threads to use for each genome
+    final int genomeThreads =
+        Math.max(1, Math.min(concurrentGenomes, genomes.size()));
+    final int threadsPerGenome = Math.max(1, mapperThreads / genomeThreads);
+
+    if (firstDoMapRun) {
       LOGGER.info("FASTQSCREEN: init "
           + this.mapperName + " mapper, arguments: \"" + this.mapperArguments
           + "\", mode: " + (pairedMode ? "paired" : "single") + ", threads: "
-          + mapperThreads);
+          + threadsPerGenome + ", concurrent genomes: " + genomeThreads);
     }
 
-    for (final String genome : genomes) {
-      // Timer : for step mapping on genome
-      final Stopwatch timer = Stopwatch.createStarted();
+    if (genomeThreads == 1) {
 
-      LOGGER.info("FASTQSCREEN: map "
-          + fastqRead1.getName()
-          + (this.pairedMode ? ", " + fastqRead2.getName() : "") + " on "
-          + genome);
+      for (final String genome : genomes) {
+        addGenomeResult(genomeMapper.map(genome, threadsPerGenome),
+            sampleGenome);
+      }
 
-      // Get the mapper object
-      final Mapper mapper = new MapperBuilder(this.mapperName)
-          .withTempDirectory(this.tmpDir).withLogger(getLogger()).build();
+    } else {
 
-      try {
+      final ExecutorService executor =
+          Executors.newFixedThreadPool(genomeThreads);
+      boolean success = false;
+      this.mappersStopped = false;
 
-        // Create the mapper instance
-        final MapperInstance mapperInstance = new MapperInstanceBuilder(mapper)
-            .withUseBundledBinaries(true).build();
+      try {
 
-        final File genomeFile = !Storages.getInstance().isGenomeStorage()
-            ? null : Storages.getInstance().getGenomeStorage().getFile(genome);
+        final CompletionService<FastqScreenSAMParser> completionService =
+            new ExecutorCompletionService<>(executor);
+        final List<Future<FastqScreenSAMParser>> futures = new ArrayList<>();
 
-        if (genomeFile == null) {
-          LOGGER.warning("FASTQSCREEN: genome file not found for " + genome);
-          continue;
+        for (final String genome : genomes) {
+          futures.add(completionService
+              .submit(() -> genomeMapper.map(genome, threadsPerGenome)));
         }
 
-        // get index Genome reference exists
-        final File archiveIndexFile = createIndex(mapperInstance, genomeFile);
+        // Wait the end of the mappings, the first failure stops the mappings
+        // of the other genomes
+        for (int i = 0; i < futures.size(); i++) {
+          completionService.take().get();
+        }
 
-        if (archiveIndexFile == null) {
-          LOGGER.warning(
-              "FASTQSCREEN: archive index file not found for " + genome);
-          continue;
+        // Merge the results in the order of the genomes
+        for (final Future<FastqScreenSAMParser> future : futures) {
+          addGenomeResult(future.get(), sampleGenome);
         }
 
-        final File indexDir = new File(
-            StringUtils.filenameWithoutExtension(archiveIndexFile.getPath()));
+        success = true;
 
-        final FastqScreenSAMParser parser = new FastqScreenSAMParser(
-            this.getMapOutputTempFile(), genome, this.pairedMode, this.desc);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new AozanException(e);
+      } catch (final ExecutionException e) {
 
-        this.genomeReference = genome;
-        this.fastqScreenResult.addGenome(genome, sampleGenome);
+        if (e.getCause() instanceof AozanException) {
+          throw (AozanException) e.getCause();
+        }
+        throw new AozanException(e.getCause());
 
-        // Do nothing if the file is empty
-        if (fastqRead1.length() == 0) {
-          parser.closeMapOutputFile();
-        } else {
+      } finally {
+        executor.shutdownNow();
 
-          // Create the MapperIndex object
-          final MapperIndex mapperIndex =
-              mapperInstance.newMapperIndex(archiveIndexFile, indexDir);
+        if (!success) {
 
-          // Create the mapping object
-          FileMapping mapping = mapperIndex.newFileMapping(
-              FastqFormat.FASTQ_SANGER, this.mapperArguments, mapperThreads,
-              false, this.reporter, COUNTER_GROUP);
+          // Stop the mappers of the other genomes and wait the end of their
+          // threads, no mapper must remain once the failure is reported
+          stopMapperProcesses();
+          awaitTermination(executor);
+        }
+      }
+    }
+  }
 
-          // Create the MapperProcess
-          final MapperProcess process = this.pairedMode
-              ? mapping.mapPE(fastqRead1, fastqRead2, null, null)
-              : mapping.mapSE(fastqRead1, null, null);
+  /**
+   * Stop the running mapper processes. The standard output of the processes
+   * is closed, the mappers end on the broken pipe and the threads that parse
+   * their output end on the closed stream.
+   */
+  private void stopMapperProcesses() {
 
-          // Parse SAM output
-          parser.parseLines(process.getStout());
+    this.mappersStopped = true;
 
-          // Wait the end of the process and do cleanup
-          process.waitFor();
+    for (final MapperProcess process : this.runningProcesses) {
 
-          // Throw an exception if an exception has occurred while mapping
-          mapping.throwMappingException();
-        }
+      try {
+        process.getStout().close();
+      } catch (final IOException e) {
+        LOGGER.warning("FASTQSCREEN: cannot stop a mapper process: "
+            + e.getMessage());
+      }
+    }
+  }
 
-        this.readsProcessed = parser.getReadsprocessed();
+  /**
+   * Wait the end of the threads of an executor.
+   * @param executor the executor
+   */
+  private static void awaitTermination(final ExecutorService executor) {
 
-        LOGGER.fine("FASTQSCREEN: "
-            + mapper.getName() + " mapping on genome " + genome + " in mode "
-            + (this.pairedMode ? "paired" : "single") + ", in "
-            + toTimeHumanReadable(timer.elapsed(TimeUnit.MILLISECONDS)));
+    // Clear the interrupted flag to wait, it is restored after
+    final boolean interrupted = Thread.interrupted();
 
-        timer.stop();
+    try {
+      if (!executor.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        LOGGER.warning("FASTQSCREEN: the mapping threads are still running "
+            + STOP_TIMEOUT_SECONDS + " seconds after a failure");
+      }
+    } catch (final InterruptedException e) {
+      LOGGER.warning("FASTQSCREEN: interrupted while waiting the end of the "
+          + "mapping threads");
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
 
-        firstDoMapRun = false;
+  /**
+   * Add the result of the mapping on a genome.
+   * @param parser the parser used for the mapping on the genome, can be null
+   *          if the genome has been skipped
+   * @param sampleGenome genome reference corresponding to sample, can be null
+   */
+  private void addGenomeResult(final FastqScreenSAMParser parser,
+      final String sampleGenome) {
 
-      } catch (final IOException e) {
-        throw new AozanException(e);
-      }
+    if (parser == null) {
+      return;
     }
+
+    this.fastqScreenResult.addGenome(parser.getGenome(), sampleGenome);
+    this.readsProcessed = parser.getReadsprocessed();
   }
 
   /**
-   * Create a index with bowtie from the fasta file genome.
-   * @param bowtie mapper
-   * @param genomeDataFile fasta file of genome
-   * @return File file of genome index
-   * @throws IOException if an error occurs while using file index genome
-   * @throws AozanException if an error occurs during call
-   *           FastqScreenGenomeMapper instance.
+   * Map the reads on a genome. This method can be called concurrently for
+   * different genomes as the hits of each genome are stored in a dedicated
+   * bitset of the FastqScreenReadHits object.
+   * @param fastqRead1 fastq file
+   * @param fastqRead2 fastq file in mode paired
+   * @param genome the genome
+   * @param mapperThreads number threads used for mapping
+   * @return the parser used for the mapping or null if the genome has been
+   *         skipped
+   * @throws AozanException if an error occurs while mapping
    */
-  private File createIndex(final MapperInstance bowtie,
-      final File genomeDataFile) throws IOException, AozanException {
+  private FastqScreenSAMParser mapGenome(final File fastqRead1,
+      final File fastqRead2, final String genome, final int mapperThreads)
+      throws AozanException {
 
-    // Timer
+    // Timer : for step mapping on genome
     final Stopwatch timer = Stopwatch.createStarted();
 
-    final Storages storages = Storages.getInstance();
+    LOGGER.info("FASTQSCREEN: map "
+        + fastqRead1.getName()
+        + (this.pairedMode ? ", " + fastqRead2.getName() : "") + " on "
+        + genome);
 
-    // final DataFile tempDir = new DataFile(this.tmpDir);
-    final File result = new File(this.tmpDir,
-        "aozan-"
-            + bowtie.getName().toLowerCase() + "-index-"
-            + genomeDataFile.getName() + ".zip");
+    // Get the mapper object
+    final Mapper mapper = new MapperBuilder(this.mapperName)
+        .withTempDirectory(this.tmpDir)
+        .withLogger(Aozan2Logger.getGenericLogger()).build();
+
+    File archiveIndexFile = null;
 
-    // Create genome description
     try {
-      this.desc = storages.createGenomeDescription(genomeDataFile);
-    } catch (final BadBioEntryException e) {
-      throw new AozanException(e);
-    }
 
-    if (this.desc == null) {
-      return null;
-    }
+      // Create the mapper instance
+      final MapperInstance mapperInstance = new MapperInstanceBuilder(mapper)
+          .withUseBundledBinaries(true).build();
 
-    // Check if the index has already been created/retrieved
-    if (result.exists()) {
-      return result;
-    }
+      final File genomeFile = !Storages.getInstance().isGenomeStorage()
+          ? null : Storages.getInstance().getGenomeStorage().getFile(genome);
 
-    final Map<String, String> additionnalArgument = Collections.emptyMap();
+      if (genomeFile == null) {
+        LOGGER.warning("FASTQSCREEN: genome file not found for " + genome);
+        return null;
+      }
 
-    final FileGenomeMapperIndexer indexer = new FileGenomeMapperIndexer(bowtie,
-        "", additionnalArgument, 1, storages.getGenomeIndexStorage(),
-        this.tmpDir, Aozan2Logger.getGenericLogger());
+      // Get genome description
+      final GenomeDescription desc =
+          this.indexCache.getGenomeDescription(genomeFile);
 
-    indexer.createIndex(genomeDataFile, this.desc, result);
+      if (desc == null) {
+        LOGGER.warning(
+            "FASTQSCREEN: genome description not found for " + genome);
+        return null;
+      }
 
-    LOGGER.fine("FASTQSCREEN: create/retrieve index for "
-        + genomeDataFile.getName() + " in "
-        + toTimeHumanReadable(timer.elapsed(TimeUnit.MILLISECONDS)));
+      // Get the index of the genome reference from the cache
+      archiveIndexFile = this.indexCache.acquireIndexArchive(genomeFile,
+          mapperInstance.getName(),
+          f -> createIndex(mapperInstance, genomeFile, desc, f));
 
-    timer.stop();
+      final File indexDir = new File(
+          StringUtils.filenameWithoutExtension(archiveIndexFile.getPath()));
 
-    return result;
-  }
+      final FastqScreenSAMParser parser = new FastqScreenSAMParser(
+          this.readHits, genome, this.pairedMode);
 
-  /**
-   * Mapper Receive value in SAM format, only the read mapped are added in
-   * output with reference genome.
-   * @param value input of the mapper
-   * @param output List of output of the mapper
-   * @param reporter reporter
-   * @throws IOException if an error occurs while executing the mapper
-   */
-  @Override
-  public void map(final String value, final List<String> output,
-      final Reporter reporter) throws IOException {
+      // Do nothing if the file is empty
+      if (fastqRead1.length() == 0) {
+        parser.close();
+      } else {
 
-    requireNonNull(output, "output argument cannot be null");
+        // Create the MapperIndex object
+        final MapperIndex mapperIndex =
+            mapperInstance.newMapperIndex(archiveIndexFile, indexDir);
 
-    if (value == null || value.length() == 0 || value.charAt(0) == '@') {
-      return;
-    }
+        // Create the mapping object, each mapping has its own reporter as
+        // several mappings can run at the same time
+        FileMapping mapping = mapperIndex.newFileMapping(
+            FastqFormat.FASTQ_SANGER, this.mapperArguments, mapperThreads,
+            false, new LocalReporter(), COUNTER_GROUP);
 
-    final String[] tokens = this.pattern.split(value, 3);
-    String nameRead = null;
+        // Create the MapperProcess
+        final MapperProcess process = this.pairedMode
+            ? mapping.mapPE(fastqRead1, fastqRead2, null, null)
+            : mapping.mapSE(fastqRead1, null, null);
 
-    // flag of SAM format are in case 2 and flag = 4 for read unmapped
-    if (Integer.parseInt(tokens[1]) != 4) {
-      nameRead = tokens[0];
-    }
+        // Keep the process to stop it if the mapping of another genome fails
+        this.runningProcesses.add(process);
 
-    if (nameRead == null) {
-      return;
-    }
-    output.add(nameRead + "\t" + this.genomeReference);
+        try {
 
-  }
+          // The mappings have been stopped while this process was starting
+          if (this.mappersStopped) {
+            process.getStout().close();
+          }
 
-  /**
-   * Reducer Receive for each read list mapped genome Values first character
-   * represent the number of hits for a read : 1 or 2 (for several hits) and the
-   * end represent the name of reference genome.
-   * @param key input key of the reducer
-   * @param values values for the key
-   * @param output list of output values of the reducer : here not use
-   * @param reporter reporter
-   * @throws IOException if an error occurs while executing the reducer
-   */
-  @Override
-  public void reduce(final String key, final Iterator<String> values,
-      final List<String> output, final Reporter reporter) throws IOException {
+          // Parse SAM output
+          parser.parseLines(process.getStout());
 
-    requireNonNull(values, "values argument cannot be null");
+          // Wait the end of the process and do cleanup
+          process.waitFor();
 
-    // Do not process null keys
-    if (key == null) {
-      return;
-    }
+        } finally {
+          this.runningProcesses.remove(process);
+        }
 
-    boolean oneHit = true;
-    boolean oneGenome = true;
-    String currentGenome = null;
+        // Throw an exception if an exception has occurred while mapping
+        mapping.throwMappingException();
+      }
 
-    this.readsMapped++;
+      LOGGER.fine("FASTQSCREEN: "
+          + mapper.getName() + " mapping on genome " + genome + " in mode "
+          + (this.pairedMode ? "paired" : "single") + ", in "
+          + toTimeHumanReadable(timer.elapsed(TimeUnit.MILLISECONDS)));
 
-    // values format : a number 1 or 2 which represent the number of hits for
-    // the read on one genome and after name of the genome
-    while (values.hasNext()) {
-      final String s = values.next();
-      oneHit = s.charAt(0) == '1';
+      timer.stop();
 
-      currentGenome = s.substring(1);
+      return parser;
 
-      // set false if more on genome are done
-      if (oneGenome && values.hasNext()) {
-        oneGenome = false;
+    } catch (final IOException e) {
+      throw new AozanException(e);
+    } finally {
+      if (archiveIndexFile != null) {
+        this.indexCache.releaseIndexArchive(archiveIndexFile);
       }
-
-      this.fastqScreenResult.countHitPerGenome(currentGenome, oneHit,
-          oneGenome);
     }
   }
 
+  /**
+   * Create a index with bowtie from the fasta file genome.
+   * @param bowtie mapper
+   * @param genomeDataFile fasta file of genome
+   * @param desc description of the genome
+   * @param indexArchive the index archive to create
+   * @throws IOException if an error occurs while using file index genome
+   * @throws AozanException if an error occurs during call
+   *           FastqScreenGenomeMapper instance.
+   */
+  private void createIndex(final MapperInstance bowtie,
+      final File genomeDataFile, final GenomeDescription desc,
+      final File indexArchive) throws IOException, AozanException {
+
+    // Timer
+    final Stopwatch timer = Stopwatch.createStarted();
+
+    final Map<String, String> additionnalArgument = Collections.emptyMap();
+
+    final FileGenomeMapperIndexer indexer = new FileGenomeMapperIndexer(bowtie,
+        "", additionnalArgument, 1,
+        Storages.getInstance().getGenomeIndexStorage(), this.tmpDir,
+        Aozan2Logger.getGenericLogger());
+
+    indexer.createIndex(genomeDataFile, desc, indexArchive);
+
+    LOGGER.fine("FASTQSCREEN: create/retrieve index for "
+        + genomeDataFile.getName() + " in "
+        + toTimeHumanReadable(timer.elapsed(TimeUnit.MILLISECONDS)));
+
+    timer.stop();
+  }
+
   /**
    * Compile data of fastqscreen in percentage.
    * @return FastqScreenResult result of FastqScreen or null if an error occurs
@@ -379,6 +501,8 @@ public class FastqScreenPseudoMapReduce extends PseudoMapReduce {
    */
   public FastqScreenResult getFastqScreenResult() throws AozanException {
 
+    this.readsMapped = this.readHits.countHits(this.fastqScreenResult);
+
     if (this.readsMapped > this.readsProcessed) {
       LOGGER.warning("FASTQSCREEN: mapped reads count ("
           + this.readsMapped + ") must been inferior to processed reads count ("
@@ -395,6 +519,15 @@ public class FastqScreenPseudoMapReduce extends PseudoMapReduce {
     return this.fastqScreenResult;
   }
 
+  /**
+   * Get the hits of the reads on the genomes.
+   * @return the FastqScreenReadHits object that store the hits
+   */
+  FastqScreenReadHits getReadHits() {
+
+    return this.readHits;
+  }
+
   /**
    * Return mapper arguments either the defaults or those specified in the
    * configuration.
@@ -438,19 +571,20 @@ public class FastqScreenPseudoMapReduce extends PseudoMapReduce {
    * Public construction. Instantiation the mapper, the mapper name and the
    * mapper arguments must be define together else it uses the default mapper.
    * @param tmpDir path to temporary directory
+   * @param indexCache cache for the genome indexes and descriptions
    * @param pairedMode true if a pair-end run and option paired mode equals true
    *          else false
    * @param mapperName mapper name name can be null
    * @param mapperArguments mapper arguments can be null
    * @throws AozanException occurs when the instantiation of mapper fails
    */
-  public FastqScreenPseudoMapReduce(final File tmpDir, final boolean pairedMode,
+  public FastqScreenPseudoMapReduce(final File tmpDir,
+      final GenomeIndexCache indexCache, final boolean pairedMode,
       final String mapperName, final String mapperArguments)
       throws AozanException {
 
-    super(Aozan2Logger.getGenericLogger());
-
     requireNonNull(tmpDir, "tmpDir argument cannot be null");
+    requireNonNull(indexCache, "indexCache argument cannot be null");
     requireNonNull(mapperName, "mapperName argument cannot be null");
 
     checkArgument(tmpDir.isDirectory(),
@@ -458,6 +592,7 @@ public class FastqScreenPseudoMapReduce extends PseudoMapReduce {
 
     this.pairedMode = pairedMode;
     this.tmpDir = tmpDir;
+    this.indexCache = indexCache;
 
     // Use default mapper if mapper name or arguments is null
     if (mapperName == null || mapperName.isEmpty()) {
@@ -469,10 +604,6 @@ public class FastqScreenPseudoMapReduce extends PseudoMapReduce {
     this.mapperArguments =
         getMapperArguments(mapperName, mapperArguments, pairedMode);
 
-    // Define temporary directory
-    this.setMapReduceTemporaryDirectory(this.tmpDir);
-
-    this.reporter = new LocalReporter();
     this.fastqScreenResult = new FastqScreenResult(this.mapperName);
   }
 }
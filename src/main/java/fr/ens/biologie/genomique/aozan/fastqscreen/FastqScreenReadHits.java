@@ -0,0 +1,157 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later 
+ * and CeCILL. This should be distributed with the code. If you 
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.fastqscreen;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class keeps in memory the hits of the reads on each genome of
+ * FastqScreen. Each read name is associated to an ordinal, and the hits of a
+ * genome are stored in bitsets indexed by these ordinals. This replaces the
+ * writing, sorting and parsing of a temporary file with a line for each read
+ * mapped on each genome. The reads of different genomes can be added
+ * concurrently, however the reads of a genome must be added by a single thread.
+ * @since 3.2
+ * @author Laurent Jourdren
+ */
+public class FastqScreenReadHits {
+
+  private final Map<String, Integer> readOrdinals = new ConcurrentHashMap<>();
+  private final AtomicInteger readCount = new AtomicInteger();
+  private final Map<String, GenomeHits> genomeHits =
+      new ConcurrentHashMap<>();
+
+  /**
+   * This class store the hits of the reads on a genome.
+   */
+  private static final class GenomeHits {
+
+    private final BitSet mapped = new BitSet();
+    private final BitSet multipleHits = new BitSet();
+  }
+
+  /**
+   * Get the ordinal of a read. A new ordinal is created if the read has not
+   * been seen before.
+   * @param readName the name of the read
+   * @return the ordinal of the read
+   */
+  public int getReadOrdinal(final String readName) {
+
+    requireNonNull(readName, "readName argument cannot be null");
+
+    final Integer result = this.readOrdinals.get(readName);
+
+    if (result != null) {
+      return result;
+    }
+
+    return this.readOrdinals.computeIfAbsent(readName,
+        k -> this.readCount.getAndIncrement());
+  }
+
+  /**
+   * Add a genome.
+   * @param genome the name of the genome
+   */
+  public void addGenome(final String genome) {
+
+    requireNonNull(genome, "genome argument cannot be null");
+
+    this.genomeHits.computeIfAbsent(genome, k -> new GenomeHits());
+  }
+
+  /**
+   * Add the hit of a read on a genome.
+   * @param genome the name of the genome
+   * @param readName the name of the read
+   * @param oneHit true if the read has been mapped only one time on the genome
+   */
+  public void addHit(final String genome, final String readName,
+      final boolean oneHit) {
+
+    requireNonNull(genome, "genome argument cannot be null");
+
+    final GenomeHits hits =
+        this.genomeHits.computeIfAbsent(genome, k -> new GenomeHits());
+    final int ordinal = getReadOrdinal(readName);
+
+    hits.mapped.set(ordinal);
+    if (!oneHit) {
+      hits.multipleHits.set(ordinal);
+    }
+  }
+
+  /**
+   * Count the hits of the reads for each genome in a FastqScreenResult object.
+   * @param result the result object to update
+   * @return the number of reads mapped on at least one genome
+   */
+  public int countHits(final FastqScreenResult result) {
+
+    requireNonNull(result, "result argument cannot be null");
+
+    final List<String> genomes = new ArrayList<>(this.genomeHits.keySet());
+    final List<GenomeHits> hits = new ArrayList<>(this.genomeHits.values());
+    final int genomeCount = genomes.size();
+
+    // Reads mapped on at least one genome
+    final BitSet mappedReads = new BitSet();
+    for (GenomeHits h : hits) {
+      mappedReads.or(h.mapped);
+    }
+
+    for (int read = mappedReads.nextSetBit(0); read >= 0; read =
+        mappedReads.nextSetBit(read + 1)) {
+
+      int mappedGenomes = 0;
+      for (int i = 0; i < genomeCount; i++) {
+        if (hits.get(i).mapped.get(read)) {
+          mappedGenomes++;
+        }
+      }
+
+      final boolean oneGenome = mappedGenomes == 1;
+
+      for (int i = 0; i < genomeCount; i++) {
+
+        final GenomeHits h = hits.get(i);
+        if (h.mapped.get(read)) {
+          result.countHitPerGenome(genomes.get(i),
+              !h.multipleHits.get(read), oneGenome);
+        }
+      }
+    }
+
+    return mappedReads.cardinality();
+  }
+
+}
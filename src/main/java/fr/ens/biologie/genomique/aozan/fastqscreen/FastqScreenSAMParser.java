@@ -23,150 +23,281 @@
 
 package fr.ens.biologie.genomique.aozan.fastqscreen;
 
-import java.io.BufferedReader;
-import java.io.File;
+import static java.util.Objects.requireNonNull;
+
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Writer;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
-
-import htsjdk.samtools.SAMLineParser;
-import htsjdk.samtools.SAMRecord;
-
-import com.google.common.io.Files;
-
-import fr.ens.biologie.genomique.aozan.Globals;
-import fr.ens.biologie.genomique.kenetre.bio.GenomeDescription;
-import fr.ens.biologie.genomique.kenetre.bio.SAMUtils;
-import fr.ens.biologie.genomique.kenetre.bio.alignmentfilter.MultiReadAlignmentFilter;
-import fr.ens.biologie.genomique.kenetre.bio.alignmentfilter.ReadAlignmentFilter;
-import fr.ens.biologie.genomique.kenetre.bio.alignmentfilter.ReadAlignmentFilterBuffer;
-import fr.ens.biologie.genomique.kenetre.bio.alignmentfilter.RemoveUnmappedReadAlignmentFilter;
+import java.util.Arrays;
 
 /**
- * This class ensures alignment fastqScreen treating the output format BAM of
- * mapper.
+ * This class ensures alignment fastqScreen treating the output format SAM of
+ * mapper. The SAM lines are tokenized directly from the bytes of the mapper
+ * output and only the QNAME and FLAG fields are read, so no SAMRecord object is
+ * created. The records of a read are grouped by name and the unmapped
+ * alignments are removed like with a RemoveUnmappedReadAlignmentFilter: in
+ * paired-end mode, a pair is removed if one of its mates is unmapped.
  * @since 1.0
  * @author Sandrine Perrin
  */
 public class FastqScreenSAMParser {
 
-  // private File mapOutputFile = null;
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int FLAG_PAIRED = 0x1;
+  private static final int FLAG_UNMAPPED = 0x4;
+
   private final String genome;
-  private final Writer fw;
+  private final FastqScreenReadHits readHits;
 
-  private final SAMLineParser parser;
   private boolean headerParsed = false;
   private final boolean pairedMode;
 
-  private final ReadAlignmentFilterBuffer buffer;
+  // Current read
+  private byte[] readName = new byte[256];
+  private int readNameLength = -1;
+  private int recordCount;
+  private int mappedCount;
+  private boolean mateUnmapped;
 
   private int readsprocessed = 0;
 
   /**
-   * Parse a SAM file and create a new file mapoutsamfile, it contains a line
-   * for each read mapped with her name and mapping data : first character
-   * represent the number of hits for a read : 1 or 2 (for several hits) and the
-   * end represent the name of reference genome.
+   * Parse a SAM file and add the hits of each read mapped on the genome to the
+   * read hits object.
    * @param is inputStream to parse
-   * @throws IOException
+   * @throws IOException if an error occurs while reading the SAM file
    */
   public void parseLines(final InputStream is) throws IOException {
 
-    final BufferedReader br = new BufferedReader(
-        new InputStreamReader(is, StandardCharsets.ISO_8859_1));
-
-    String line = null;
+    byte[] buffer = new byte[BUFFER_SIZE];
+    int start = 0;
+    int end = 0;
+
+    try (InputStream in = is) {
+
+      while (true) {
+
+        // Parse the complete lines of the buffer
+        int eol;
+        while ((eol = indexOf(buffer, start, end, (byte) '\n')) != -1) {
+          parseLine(buffer, start, eol);
+          start = eol + 1;
+        }
+
+        if (start > 0) {
+          // Move the incomplete line at the beginning of the buffer
+          System.arraycopy(buffer, start, buffer, 0, end - start);
+          end -= start;
+          start = 0;
+        } else if (end == buffer.length) {
+          // The line is longer than the buffer
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+
+        final int n = in.read(buffer, end, buffer.length - end);
+        if (n == -1) {
+          break;
+        }
+        end += n;
+      }
 
-    while ((line = br.readLine()) != null) {
-      parseLine(line);
+      // Last line without end of line
+      if (end > start) {
+        parseLine(buffer, start, end);
+      }
     }
 
-    br.close();
-
-    closeMapOutputFile();
+    close();
   }
 
   /**
-   * Call for each line of SAM file. Method create a new file, it contains a
-   * line for each read mapped with her name and mapping data : first character
-   * represent the number of hits for a read : 1 or 2 (for several hits) and the
-   * end represent the name of reference genome.
-   * @param SAMline parse SAM line
-   * @throws IOException if an error occurs while writing in mapOutputFile
+   * Call for each line of SAM file.
+   * @param b buffer that contains the line
+   * @param from index of the first byte of the line
+   * @param to index after the last byte of the line
+   * @throws IOException if the line is not a valid SAM line
    */
-  private void parseLine(final String SAMline) throws IOException {
+  private void parseLine(final byte[] b, final int from, final int to)
+      throws IOException {
 
-    if (SAMline == null || SAMline.length() == 0) {
+    // Remove carriage return
+    final int lineEnd = to > from && b[to - 1] == '\r' ? to - 1 : to;
+
+    if (lineEnd == from) {
       return;
     }
 
     if (!this.headerParsed) {
 
-      if (SAMline.charAt(0) == '@') {
+      if (b[from] == '@') {
         return;
-
-      } else {
-        // Set the chromosomes sizes in the parser
-        this.headerParsed = true;
       }
+
+      this.headerParsed = true;
     }
 
-    final SAMRecord samRecord = this.parser.parseLine(SAMline);
-    final boolean result = this.buffer.addAlignment(samRecord);
+    // QNAME field
+    final int nameEnd = indexOf(b, from, lineEnd, (byte) '\t');
+    if (nameEnd == -1) {
+      throw new IOException("Invalid SAM line: "
+          + new String(b, from, lineEnd - from, StandardCharsets.ISO_8859_1));
+    }
+
+    // FLAG field
+    int flagEnd = indexOf(b, nameEnd + 1, lineEnd, (byte) '\t');
+    if (flagEnd == -1) {
+      flagEnd = lineEnd;
+    }
+    final int flag = parseFlag(b, nameEnd + 1, flagEnd);
 
     // Add a new read
-    if (!result) {
-      parseBuffered();
-      this.buffer.addAlignment(samRecord);
+    if (!isCurrentRead(b, from, nameEnd)) {
+      endRead();
+      startRead(b, from, nameEnd);
     }
+
+    addRecord(flag);
   }
 
   /**
-   * Write last record and close file mapOutputFile.
+   * Process the last record.
    */
-  void closeMapOutputFile() throws IOException {
+  void close() {
 
     // processing read buffer - end of input stream bowtie execution
     if (this.headerParsed) {
-      parseBuffered();
+      endRead();
     }
+  }
 
-    this.fw.close();
+  /**
+   * Test if a read name is the name of the current read.
+   * @param b buffer that contains the read name
+   * @param from index of the first byte of the name
+   * @param to index after the last byte of the name
+   * @return true if the name is the name of the current read
+   */
+  private boolean isCurrentRead(final byte[] b, final int from, final int to) {
+
+    return this.readNameLength >= 0
+        && Arrays.equals(this.readName, 0, this.readNameLength, b, from, to);
   }
 
-  private void parseBuffered() throws IOException {
+  /**
+   * Start a new read.
+   * @param b buffer that contains the read name
+   * @param from index of the first byte of the name
+   * @param to index after the last byte of the name
+   */
+  private void startRead(final byte[] b, final int from, final int to) {
 
-    final List<SAMRecord> records = this.buffer.getFilteredAlignments();
+    final int length = to - from;
 
-    if (records != null && records.size() > 0) {
-      final String nameRead = records.get(0).getReadName();
+    if (length > this.readName.length) {
+      this.readName = new byte[length * 2];
+    }
 
-      int nbHits;
-      // mode paired : records contains an event number of reads
-      if (this.pairedMode) {
-        nbHits = records.size() == 2 ? 1 : 2;
-      } else {
-        nbHits = records.size() == 1 ? 1 : 2;
-      }
+    System.arraycopy(b, from, this.readName, 0, length);
+    this.readNameLength = length;
+    this.recordCount = 0;
+    this.mappedCount = 0;
+    this.mateUnmapped = false;
+  }
+
+  /**
+   * Add a record of the current read.
+   * @param flag the SAM flag of the record
+   */
+  private void addRecord(final int flag) {
+
+    final boolean unmapped = (flag & FLAG_UNMAPPED) != 0;
 
-      // write in SAMmapOutputFile
-      if (nameRead != null) {
-        this.fw.write(nameRead + "\t" + nbHits + this.genome);
-        this.fw.write("\n");
+    if ((flag & FLAG_PAIRED) == 0) {
+
+      if (!unmapped) {
+        this.mappedCount++;
       }
+
+    } else if (this.recordCount % 2 == 0) {
+      this.mateUnmapped = unmapped;
+    } else if (!unmapped && !this.mateUnmapped) {
+      this.mappedCount += 2;
+    }
+
+    this.recordCount++;
+  }
+
+  /**
+   * End the current read and add its hits.
+   */
+  private void endRead() {
+
+    if (this.readNameLength < 0) {
+      return;
     }
 
-    if (records != null) {
-      records.clear();
+    if (this.mappedCount > 0) {
+
+      // mode paired : records contains an event number of reads
+      final boolean oneHit = this.mappedCount == (this.pairedMode ? 2 : 1);
+
+      this.readHits.addHit(this.genome, new String(this.readName, 0,
+          this.readNameLength, StandardCharsets.ISO_8859_1), oneHit);
     }
 
+    this.readNameLength = -1;
     this.readsprocessed++;
   }
 
+  /**
+   * Parse the FLAG field of a SAM line.
+   * @param b buffer that contains the field
+   * @param from index of the first byte of the field
+   * @param to index after the last byte of the field
+   * @return the value of the flag
+   * @throws IOException if the field is not a valid integer
+   */
+  private static int parseFlag(final byte[] b, final int from, final int to)
+      throws IOException {
+
+    if (from == to) {
+      throw new IOException("Invalid SAM flag: empty field");
+    }
+
+    int result = 0;
+    for (int i = from; i < to; i++) {
+
+      final int digit = b[i] - '0';
+      if (digit < 0 || digit > 9) {
+        throw new IOException("Invalid SAM flag: "
+            + new String(b, from, to - from, StandardCharsets.ISO_8859_1));
+      }
+      result = result * 10 + digit;
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the index of a byte in a buffer.
+   * @param b the buffer
+   * @param from first index to search
+   * @param to index after the last index to search
+   * @param c the byte to search
+   * @return the index of the byte or -1 if not found
+   */
+  private static int indexOf(final byte[] b, final int from, final int to,
+      final byte c) {
+
+    for (int i = from; i < to; i++) {
+      if (b[i] == c) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
   //
   // Getters
   //
@@ -176,39 +307,36 @@ public class FastqScreenSAMParser {
     return this.readsprocessed;
   }
 
+  /**
+   * Get the genome of the parser.
+   * @return the name of the genome
+   */
+  public String getGenome() {
+
+    return this.genome;
+  }
+
   //
   // Constructor
   //
 
   /**
-   * Initialize FastqScreenSAMParser : create the mapOutputFile and the list
-   * filters used for parsing SAM file.
-   * @param mapOutputFile file result from mapping
+   * Initialize FastqScreenSAMParser.
+   * @param readHits object that store the hits of the reads
    * @param genome name genome
-   * @param genomeDescription description of the genome
    * @param pairedMode true if a pair-end run and option paired mode equals true
    *          else false
-   * @throws IOException if an error occurs while initializing mapOutputFile
    */
-  public FastqScreenSAMParser(final File mapOutputFile, final String genome,
-      final boolean pairedMode, final GenomeDescription genomeDescription)
-      throws IOException {
+  public FastqScreenSAMParser(final FastqScreenReadHits readHits,
+      final String genome, final boolean pairedMode) {
 
+    requireNonNull(readHits, "readHits argument cannot be null");
+    requireNonNull(genome, "genome argument cannot be null");
+
+    this.readHits = readHits;
     this.genome = genome;
     this.pairedMode = pairedMode;
 
-    // Create parser object
-    this.parser =
-        new SAMLineParser(SAMUtils.newSAMFileHeader(genomeDescription));
-
-    // object used for the Sam read alignments filter
-    final List<ReadAlignmentFilter> listFilters = new ArrayList<>();
-    listFilters.add(new RemoveUnmappedReadAlignmentFilter());
-
-    final ReadAlignmentFilter filter =
-        new MultiReadAlignmentFilter(listFilters);
-    this.buffer = new ReadAlignmentFilterBuffer(filter);
-
-    this.fw = Files.newWriter(mapOutputFile, Globals.DEFAULT_FILE_ENCODING);
+    this.readHits.addGenome(genome);
   }
 }
@@ -0,0 +1,594 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later 
+ * and CeCILL. This should be distributed with the code. If you 
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.fastqscreen;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import fr.ens.biologie.genomique.aozan.Aozan2Logger;
+import fr.ens.biologie.genomique.aozan.AozanException;
+import fr.ens.biologie.genomique.aozan.Globals;
+import fr.ens.biologie.genomique.aozan.Storages;
+import fr.ens.biologie.genomique.kenetre.bio.BadBioEntryException;
+import fr.ens.biologie.genomique.kenetre.bio.GenomeDescription;
+
+/**
+ * This class implements a persistent cache for the genome indexes and the
+ * genome descriptions used by FastqScreen. Each entry of the cache is a
+ * directory named with a key computed from the genome file (name, size and
+ * modification date) and for indexes, from the mapper and the Aozan version
+ * that provides the mapper binaries. An index entry contains the archive of the
+ * index and the directory where the mapper unzips it, so the index is only
+ * created and unzipped once. When the size of the cache exceeds a quota, the
+ * least recently used entries that are not in use are removed. An index entry
+ * is in use between the calls to acquireIndexArchive() and
+ * releaseIndexArchive(), in this process or in another process sharing the
+ * cache directory as the entry is also protected by a shared lock on its lock
+ * file. Only the entries of the cache are removed, so the cache directory can
+ * contain other files.
+ * @since 3.2
+ * @author Laurent Jourdren
+ */
+public class GenomeIndexCache {
+
+  /** Logger. */
+  private static final Logger LOGGER = Aozan2Logger.getLogger();
+
+  private static final String INDEX_ARCHIVE_FILENAME = "index.zip";
+  private static final String GENOME_DESC_FILENAME = "genome.desc";
+  private static final String TEMP_PREFIX = ".tmp-";
+  private static final String LOCK_FILE_PREFIX = ".lock-";
+
+  /** Genome descriptions already loaded, shared by all the caches. */
+  private static final Map<String, GenomeDescription> descriptions =
+      new ConcurrentHashMap<>();
+
+  /** Locks on the entries of the caches. */
+  private static final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+  /** Entries of the caches currently used by this process. */
+  private static final Map<String, EntryUse> usedEntries =
+      new ConcurrentHashMap<>();
+
+  private final File cacheDir;
+  private final long maxSize;
+
+  /**
+   * This class define the use of an entry by this process. The lock file of
+   * the entry is locked with a shared lock while the entry is used, so the
+   * other processes do not remove the entry.
+   */
+  private static final class EntryUse {
+
+    private final FileChannel channel;
+    private int count;
+
+    /**
+     * Constructor.
+     * @param channel the channel on the locked lock file
+     */
+    private EntryUse(final FileChannel channel) {
+
+      this.channel = channel;
+    }
+  }
+
+  /**
+   * Get the description of a genome. The description is searched in memory,
+   * then in the cache directory and at last created by the genome description
+   * storage.
+   * @param genomeFile the genome file
+   * @return the genome description or null if the description cannot be
+   *         created
+   * @throws IOException if an error occurs while reading or saving the genome
+   *           description
+   * @throws AozanException if the genome file is invalid
+   */
+  public GenomeDescription getGenomeDescription(final File genomeFile)
+      throws IOException, AozanException {
+
+    requireNonNull(genomeFile, "genomeFile argument cannot be null");
+
+    final String key = createKey(genomeFile, "desc");
+
+    GenomeDescription result = descriptions.get(key);
+    if (result != null) {
+      return result;
+    }
+
+    final File entryDir = new File(this.cacheDir, key);
+    final File descFile = new File(entryDir, GENOME_DESC_FILENAME);
+    boolean added = false;
+
+    synchronized (getLock(entryDir)) {
+
+      result = descriptions.get(key);
+      if (result != null) {
+        return result;
+      }
+
+      if (descFile.isFile()) {
+
+        try (InputStream in = new FileInputStream(descFile)) {
+          result = GenomeDescription.load(in);
+        }
+        touch(entryDir);
+
+      } else {
+
+        try {
+          result = Storages.getInstance().createGenomeDescription(genomeFile);
+        } catch (final BadBioEntryException e) {
+          throw new AozanException(e);
+        }
+
+        if (result == null) {
+          return null;
+        }
+
+        final File tmpFile = createTempFile(key, GENOME_DESC_FILENAME);
+        try {
+          try (OutputStream out = new FileOutputStream(tmpFile)) {
+            result.save(out);
+          }
+          addEntry(entryDir, tmpFile, descFile);
+        } finally {
+          deleteTempFile(tmpFile);
+        }
+        added = true;
+      }
+
+      descriptions.put(key, result);
+    }
+
+    if (added) {
+      evict();
+    }
+
+    return result;
+  }
+
+  /**
+   * Get the archive of the index of a genome for a mapper. If the index is not
+   * in the cache, it is created using the index creator. The entry of the
+   * index cannot be removed from the cache until the releaseIndexArchive()
+   * method has been called.
+   * @param genomeFile the genome file
+   * @param mapperName the name of the mapper
+   * @param creator the object that create the index archive
+   * @return the archive of the index
+   * @throws IOException if an error occurs while creating the index
+   * @throws AozanException if an error occurs while creating the index
+   */
+  public File acquireIndexArchive(final File genomeFile,
+      final String mapperName, final IndexCreator creator)
+      throws IOException, AozanException {
+
+    requireNonNull(genomeFile, "genomeFile argument cannot be null");
+    requireNonNull(mapperName, "mapperName argument cannot be null");
+    requireNonNull(creator, "creator argument cannot be null");
+
+    final String key = createKey(genomeFile,
+        mapperName.toLowerCase(Globals.DEFAULT_LOCALE),
+        Globals.APP_VERSION_STRING);
+
+    final File entryDir = new File(this.cacheDir, key);
+    final File result = new File(entryDir, INDEX_ARCHIVE_FILENAME);
+
+    synchronized (getLock(entryDir)) {
+
+      markUsed(entryDir);
+
+      try {
+
+        if (result.isFile()) {
+          touch(entryDir);
+          return result;
+        }
+
+        final File tmpFile = createTempFile(key, INDEX_ARCHIVE_FILENAME);
+        try {
+          creator.createIndex(tmpFile);
+          addEntry(entryDir, tmpFile, result);
+        } finally {
+          deleteTempFile(tmpFile);
+        }
+
+      } catch (IOException | AozanException | RuntimeException e) {
+        unmarkUsed(entryDir);
+        throw e;
+      }
+    }
+
+    // Eviction must be done without holding the lock of an entry
+    evict();
+
+    return result;
+  }
+
+  /**
+   * Release an index archive acquired with acquireIndexArchive().
+   * @param indexArchive the index archive
+   */
+  public void releaseIndexArchive(final File indexArchive) {
+
+    requireNonNull(indexArchive, "indexArchive argument cannot be null");
+
+    final File entryDir = indexArchive.getParentFile();
+
+    synchronized (getLock(entryDir)) {
+      unmarkUsed(entryDir);
+    }
+  }
+
+  //
+  // Cache management
+  //
+
+  /**
+   * Add an entry in the cache.
+   * @param entryDir the directory of the entry
+   * @param tmpFile the temporary file to add in the entry
+   * @param file the final path of the file in the entry
+   * @throws IOException if an error occurs while adding the entry
+   */
+  private void addEntry(final File entryDir, final File tmpFile,
+      final File file) throws IOException {
+
+    if (!entryDir.isDirectory() && !entryDir.mkdirs()) {
+      throw new IOException("Unable to create cache directory: " + entryDir);
+    }
+
+    if (!tmpFile.renameTo(file)) {
+      throw new IOException(
+          "Unable to rename " + tmpFile + " to " + file + " in cache");
+    }
+
+    touch(entryDir);
+  }
+
+  /**
+   * Mark an entry as used by this process. The lock of the entry must be held.
+   * @param entryDir the directory of the entry
+   * @throws IOException if the lock file of the entry cannot be locked
+   */
+  private static void markUsed(final File entryDir) throws IOException {
+
+    EntryUse use = usedEntries.get(entryDir.getAbsolutePath());
+
+    if (use == null) {
+
+      final FileChannel channel = openLockFile(entryDir);
+      try {
+        // Wait the end of the removal of the entry by another process
+        channel.lock(0, Long.MAX_VALUE, true);
+      } catch (IOException | RuntimeException e) {
+        channel.close();
+        throw e;
+      }
+
+      use = new EntryUse(channel);
+      usedEntries.put(entryDir.getAbsolutePath(), use);
+    }
+
+    use.count++;
+  }
+
+  /**
+   * Mark an entry as no more used by this process. The lock of the entry must
+   * be held.
+   * @param entryDir the directory of the entry
+   */
+  private static void unmarkUsed(final File entryDir) {
+
+    final EntryUse use = usedEntries.get(entryDir.getAbsolutePath());
+
+    if (use == null || --use.count > 0) {
+      return;
+    }
+
+    usedEntries.remove(entryDir.getAbsolutePath());
+
+    // Closing the channel releases the shared lock
+    try {
+      use.channel.close();
+    } catch (IOException e) {
+      LOGGER.warning("FASTQSCREEN: unable to unlock "
+          + entryDir + " in the genome index cache: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Remove the least recently used entries of the cache until the size of the
+   * cache is lower than the quota. The entries in use by this process or by
+   * another process are never removed.
+   */
+  private void evict() {
+
+    if (this.maxSize <= 0) {
+      return;
+    }
+
+    synchronized (getLock(this.cacheDir)) {
+
+      final File[] files = this.cacheDir.listFiles(f -> f.isDirectory()
+          && (new File(f, INDEX_ARCHIVE_FILENAME).isFile()
+              || new File(f, GENOME_DESC_FILENAME).isFile()));
+
+      if (files == null) {
+        return;
+      }
+
+      // Sort the entries by last access
+      final List<File> entries = new ArrayList<>(Arrays.asList(files));
+      entries.sort(Comparator.comparingLong(File::lastModified));
+
+      final Map<File, Long> sizes = new HashMap<>();
+      long total = 0;
+      for (File entry : entries) {
+        final long size = size(entry);
+        sizes.put(entry, size);
+        total += size;
+      }
+
+      for (File entry : entries) {
+
+        if (total <= this.maxSize) {
+          break;
+        }
+
+        synchronized (getLock(entry)) {
+
+          if (usedEntries.containsKey(entry.getAbsolutePath())) {
+            continue;
+          }
+
+          // The entry is in use by another process if its lock file is locked
+          try (FileChannel channel = openLockFile(entry);
+              FileLock lock = channel.tryLock()) {
+
+            if (lock == null) {
+              continue;
+            }
+
+            LOGGER.info("FASTQSCREEN: remove " + entry.getName()
+                + " from the genome index cache");
+
+            descriptions.remove(entry.getName());
+            delete(entry);
+            total -= sizes.get(entry);
+
+          } catch (OverlappingFileLockException e) {
+            // The lock file is already locked in this process
+          } catch (IOException e) {
+            LOGGER.warning("FASTQSCREEN: unable to lock "
+                + entry + " in the genome index cache: " + e.getMessage());
+          }
+        }
+      }
+
+      if (total > this.maxSize) {
+        LOGGER.warning("FASTQSCREEN: the size of the genome index cache ("
+            + total + " bytes) exceeds the quota (" + this.maxSize
+            + " bytes) as some entries are in use");
+      }
+    }
+  }
+
+  /**
+   * Get the lock for an entry of the cache.
+   * @param file the file of the entry
+   * @return the lock object
+   */
+  private static Object getLock(final File file) {
+
+    return locks.computeIfAbsent(file.getAbsolutePath(), k -> new Object());
+  }
+
+  /**
+   * Open the lock file of an entry. The lock files are kept in the cache
+   * directory when the entries are removed, as a process may be waiting to
+   * lock them.
+   * @param entryDir the directory of the entry
+   * @return a channel on the lock file
+   * @throws IOException if an error occurs while opening the lock file
+   */
+  private static FileChannel openLockFile(final File entryDir)
+      throws IOException {
+
+    final File cacheDir = entryDir.getParentFile();
+
+    if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+      throw new IOException(
+          "Unable to create genome index cache directory: " + cacheDir);
+    }
+
+    return FileChannel.open(
+        new File(cacheDir, LOCK_FILE_PREFIX + entryDir.getName()).toPath(),
+        StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+  }
+
+  /**
+   * Create a temporary file in the cache directory.
+   * @param key key of the entry
+   * @param filename name of the file
+   * @return a new temporary file
+   * @throws IOException if the cache directory cannot be created
+   */
+  private File createTempFile(final String key, final String filename)
+      throws IOException {
+
+    if (!this.cacheDir.isDirectory() && !this.cacheDir.mkdirs()) {
+      throw new IOException(
+          "Unable to create genome index cache directory: " + this.cacheDir);
+    }
+
+    final File result = File.createTempFile(TEMP_PREFIX + key + '-',
+        '-' + filename, this.cacheDir);
+
+    // The creator of the index must create the file
+    if (!result.delete()) {
+      throw new IOException("Unable to delete temporary file: " + result);
+    }
+
+    return result;
+  }
+
+  /**
+   * Delete a temporary file if it still exists.
+   * @param tmpFile the temporary file
+   */
+  private static void deleteTempFile(final File tmpFile) {
+
+    if (tmpFile.exists() && !tmpFile.delete()) {
+      LOGGER.warning("FASTQSCREEN: unable to delete " + tmpFile);
+    }
+  }
+
+  /**
+   * Update the last access date of an entry.
+   * @param entryDir the directory of the entry
+   */
+  private static void touch(final File entryDir) {
+
+    if (!entryDir.setLastModified(System.currentTimeMillis())) {
+      LOGGER.fine("FASTQSCREEN: unable to update the date of " + entryDir);
+    }
+  }
+
+  /**
+   * Create the key of an entry of the cache.
+   * @param genomeFile the genome file
+   * @param parts other parts of the key
+   * @return a string with the key
+   */
+  private static String createKey(final File genomeFile,
+      final String... parts) {
+
+    final Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putString(genomeFile.getName(), StandardCharsets.UTF_8);
+    hasher.putLong(genomeFile.length());
+    hasher.putLong(genomeFile.lastModified());
+    for (String p : parts) {
+      hasher.putString(p, StandardCharsets.UTF_8);
+    }
+
+    return genomeFile.getName().replaceAll("[^A-Za-z0-9._-]", "_")
+        + '-' + parts[0] + '-'
+        + hasher.hash().toString().substring(0, 16);
+  }
+
+  /**
+   * Get the size of a directory.
+   * @param dir the directory
+   * @return the size of the files of the directory in bytes
+   */
+  private static long size(final File dir) {
+
+    try (Stream<Path> stream = Files.walk(dir.toPath())) {
+      return stream.map(Path::toFile).filter(File::isFile)
+          .mapToLong(File::length).sum();
+    } catch (IOException | RuntimeException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * Delete a directory and its content.
+   * @param dir the directory to delete
+   */
+  private static void delete(final File dir) {
+
+    try (Stream<Path> stream = Files.walk(dir.toPath())) {
+      stream.map(Path::toFile).sorted(Comparator.reverseOrder())
+          .forEach(File::delete);
+    } catch (IOException | RuntimeException e) {
+      LOGGER.warning("FASTQSCREEN: unable to remove "
+          + dir + " from the genome index cache: " + e.getMessage());
+    }
+  }
+
+  //
+  // Internal interface
+  //
+
+  /**
+   * This interface define the creation of an index archive.
+   */
+  public interface IndexCreator {
+
+    /**
+     * Create the index archive.
+     * @param indexArchive the archive to create
+     * @throws IOException if an error occurs while creating the index
+     * @throws AozanException if an error occurs while creating the index
+     */
+    void createIndex(File indexArchive) throws IOException, AozanException;
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Public constructor.
+   * @param cacheDir the directory of the cache
+   * @param maxSize maximal size of the cache in bytes, no limit if value is
+   *          lower or equal to 0
+   */
+  public GenomeIndexCache(final File cacheDir, final long maxSize) {
+
+    requireNonNull(cacheDir, "cacheDir argument cannot be null");
+
+    this.cacheDir = cacheDir;
+    this.maxSize = maxSize;
+  }
+
+}
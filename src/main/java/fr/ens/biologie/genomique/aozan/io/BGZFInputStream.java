@@ -0,0 +1,341 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later 
+ * and CeCILL. This should be distributed with the code. If you 
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.io;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * This class define an InputStream that decompress a BGZF file (a gzip file
+ * made of independent members of at most 64 KiB that contain their
+ * compressed size in an extra field) using several threads. As the size of
+ * each member is known without decompressing it, the members are inflated in
+ * parallel and returned in the order of the file.
+ * @since 3.2
+ * @author Laurent Jourdren
+ */
+public class BGZFInputStream extends InputStream {
+
+  private static final int GZIP_ID1 = 31;
+  private static final int GZIP_ID2 = 139;
+  private static final int DEFLATE_METHOD = 8;
+  private static final int FEXTRA_FLAG = 4;
+  private static final int BGZF_XLEN = 6;
+  private static final int BGZF_SI1 = 'B';
+  private static final int BGZF_SI2 = 'C';
+  private static final int BGZF_SLEN = 2;
+  private static final int BGZF_HEADER_LENGTH = 18;
+  private static final int GZIP_FOOTER_LENGTH = 8;
+
+  /** Number of members inflated in advance by each thread. */
+  private static final int MEMBERS_PER_THREAD_IN_ADVANCE = 4;
+
+  private final DataInputStream in;
+  private final ExecutorService executor;
+  private final int maxPendingMembers;
+  private final Deque<Future<byte[]>> pendingMembers = new ArrayDeque<>();
+
+  private byte[] current;
+  private int pos;
+  private boolean eof;
+  private boolean closed;
+
+  //
+  // InputStream methods
+  //
+
+  @Override
+  public int read() throws IOException {
+
+    if (!nextMember()) {
+      return -1;
+    }
+
+    return this.current[this.pos++] & 0xff;
+  }
+
+  @Override
+  public int read(final byte[] b, final int off, final int len)
+      throws IOException {
+
+    if (len == 0) {
+      return 0;
+    }
+
+    if (!nextMember()) {
+      return -1;
+    }
+
+    final int count = Math.min(len, this.current.length - this.pos);
+    System.arraycopy(this.current, this.pos, b, off, count);
+    this.pos += count;
+
+    return count;
+  }
+
+  @Override
+  public int available() throws IOException {
+
+    return this.current == null ? 0 : this.current.length - this.pos;
+  }
+
+  @Override
+  public void close() throws IOException {
+
+    if (this.closed) {
+      return;
+    }
+
+    this.closed = true;
+    this.executor.shutdownNow();
+    this.pendingMembers.clear();
+    this.in.close();
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Get the next decompressed member if the current member has been fully
+   * read.
+   * @return false if the end of the file has been reached
+   * @throws IOException if an error occurs while reading the file
+   */
+  private boolean nextMember() throws IOException {
+
+    if (this.closed) {
+      throw new IOException("Stream closed");
+    }
+
+    while (this.current == null || this.pos == this.current.length) {
+
+      // Submit the next members to the threads
+      while (!this.eof && this.pendingMembers.size() < this.maxPendingMembers) {
+
+        final byte[] member = readMember();
+
+        if (member == null) {
+          this.eof = true;
+        } else {
+          this.pendingMembers
+              .add(this.executor.submit(() -> inflateMember(member)));
+        }
+      }
+
+      if (this.pendingMembers.isEmpty()) {
+        return false;
+      }
+
+      try {
+        this.current = this.pendingMembers.removeFirst().get();
+        this.pos = 0;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while reading stream", e);
+      } catch (ExecutionException e) {
+
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new IOException(e.getCause());
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Read the next compressed member of the file.
+   * @return an array with the member or null if the end of the file has been
+   *         reached
+   * @throws IOException if an error occurs while reading the file
+   */
+  private byte[] readMember() throws IOException {
+
+    final byte[] header = new byte[BGZF_HEADER_LENGTH];
+
+    final int first = this.in.read();
+    if (first == -1) {
+      return null;
+    }
+
+    header[0] = (byte) first;
+    this.in.readFully(header, 1, header.length - 1);
+
+    if (!isBGZFHeader(header)) {
+      throw new IOException("Invalid BGZF member header");
+    }
+
+    // The BSIZE field contains the size of the member minus one
+    final int memberSize = ((header[16] & 0xff) | (header[17] & 0xff) << 8) + 1;
+
+    if (memberSize < BGZF_HEADER_LENGTH + GZIP_FOOTER_LENGTH) {
+      throw new IOException("Invalid BGZF member size: " + memberSize);
+    }
+
+    final byte[] result = new byte[memberSize];
+    System.arraycopy(header, 0, result, 0, header.length);
+    this.in.readFully(result, header.length, memberSize - header.length);
+
+    return result;
+  }
+
+  /**
+   * Inflate a member of the file.
+   * @param member the compressed member
+   * @return an array with the decompressed data
+   * @throws IOException if the member is invalid
+   */
+  private static byte[] inflateMember(final byte[] member) throws IOException {
+
+    final int footer = member.length - GZIP_FOOTER_LENGTH;
+    final long crc = readUInt32(member, footer);
+    final int size = (int) readUInt32(member, footer + 4);
+
+    final byte[] result = new byte[size];
+    final Inflater inflater = new Inflater(true);
+
+    try {
+      inflater.setInput(member, BGZF_HEADER_LENGTH,
+          footer - BGZF_HEADER_LENGTH);
+
+      int length = 0;
+      while (length < size) {
+
+        final int n = inflater.inflate(result, length, size - length);
+        if (n == 0) {
+          throw new EOFException("Truncated BGZF member");
+        }
+        length += n;
+      }
+
+    } catch (DataFormatException e) {
+      throw new IOException(e);
+    } finally {
+      inflater.end();
+    }
+
+    final CRC32 checksum = new CRC32();
+    checksum.update(result, 0, size);
+    if (checksum.getValue() != crc) {
+      throw new IOException("Invalid BGZF member checksum");
+    }
+
+    return result;
+  }
+
+  private static long readUInt32(final byte[] array, final int offset) {
+
+    return (array[offset] & 0xffL)
+        | (array[offset + 1] & 0xffL) << 8 | (array[offset + 2] & 0xffL) << 16
+        | (array[offset + 3] & 0xffL) << 24;
+  }
+
+  /**
+   * Test if an array contains the header of a BGZF member.
+   * @param header the array
+   * @return true if the array starts with a BGZF member header
+   */
+  private static boolean isBGZFHeader(final byte[] header) {
+
+    return header.length >= BGZF_HEADER_LENGTH
+        && (header[0] & 0xff) == GZIP_ID1 && (header[1] & 0xff) == GZIP_ID2
+        && header[2] == DEFLATE_METHOD && (header[3] & FEXTRA_FLAG) != 0
+        && ((header[10] & 0xff) | (header[11] & 0xff) << 8) == BGZF_XLEN
+        && header[12] == BGZF_SI1 && header[13] == BGZF_SI2
+        && ((header[14] & 0xff) | (header[15] & 0xff) << 8) == BGZF_SLEN;
+  }
+
+  /**
+   * Test if a file is a BGZF file.
+   * @param file the file to test
+   * @return true if the first member of the file is a BGZF member
+   * @throws IOException if an error occurs while reading the file
+   */
+  public static boolean isBGZF(final File file) throws IOException {
+
+    requireNonNull(file, "file argument cannot be null");
+
+    final byte[] header = new byte[BGZF_HEADER_LENGTH];
+
+    try (InputStream is = new FileInputStream(file)) {
+
+      int length = 0;
+      int n;
+      while (length < header.length
+          && (n = is.read(header, length, header.length - length)) != -1) {
+        length += n;
+      }
+
+      return length == header.length && isBGZFHeader(header);
+    }
+  }
+
+  //
+  // Constructor
+  //
+
+  /**
+   * Constructor.
+   * @param file the BGZF file to read
+   * @param threads the number of threads to use to decompress the file
+   * @throws IOException if the file cannot be opened
+   */
+  public BGZFInputStream(final File file, final int threads)
+      throws IOException {
+
+    requireNonNull(file, "file argument cannot be null");
+
+    if (threads < 1) {
+      throw new IllegalArgumentException("Invalid thread count: " + threads);
+    }
+
+    this.in = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(file), 1024 * 1024));
+    this.maxPendingMembers = threads * MEMBERS_PER_THREAD_IN_ADVANCE;
+    this.executor = Executors.newFixedThreadPool(threads, r -> {
+      final Thread t = new Thread(r, "bgzf-input-stream");
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+}
@@ -0,0 +1,332 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later
+ * and CeCILL. This should be distributed with the code. If you
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.io;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import fr.ens.biologie.genomique.aozan.Globals;
+import fr.ens.biologie.genomique.kenetre.KenetreException;
+import fr.ens.biologie.genomique.kenetre.bio.IlluminaReadId;
+import fr.ens.biologie.genomique.kenetre.bio.ReadSequence;
+
+/**
+ * This class define a scanner that find the boundaries of the FASTQ records
+ * directly in the bytes of a stream. The filter flag of the Illumina 1.8 read
+ * ids is read in the bytes of the header, so the String and ReadSequence
+ * objects of a record are only created if the record is used.
+ * @since 3.2
+ * @author Laurent Jourdren
+ */
+public class FastqRecordScanner implements Closeable {
+
+  /** Default size of the buffer. */
+  public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+  private static final int HEADER = 0;
+  private static final int SEQUENCE = 1;
+  private static final int MID_LINE = 2;
+  private static final int QUALITY = 3;
+
+  private final InputStream in;
+  private byte[] buffer;
+  private int pos;
+  private int limit;
+  private boolean eof;
+
+  // Start and end of the lines of the current record in the buffer, without
+  // the end of line characters
+  private final int[] lineStarts = new int[4];
+  private final int[] lineEnds = new int[4];
+
+  private IlluminaReadId irid;
+
+  /**
+   * Go to the next record.
+   * @return false if there is no more record
+   * @throws IOException if an error occurs while reading the stream or if the
+   *           record is invalid
+   */
+  public boolean next() throws IOException {
+
+    while (true) {
+
+      final int result = parseRecord();
+
+      if (result > 0) {
+        return true;
+      }
+
+      if (this.eof) {
+
+        if (result == 0) {
+          return false;
+        }
+
+        int end = this.pos;
+        while (end < this.limit && this.buffer[end] != '\n') {
+          end++;
+        }
+
+        throw new IOException("Ran out of data in the middle of a fastq entry: "
+            + lineAsString(this.pos, end));
+      }
+
+      fill();
+    }
+  }
+
+  /**
+   * Test if the current record has been filtered by the Illumina chastity
+   * filter.
+   * @return true if the record has been filtered
+   * @throws KenetreException if the read id cannot be parsed
+   */
+  public boolean isFiltered() throws KenetreException {
+
+    final int start = this.lineStarts[HEADER];
+    final int end = this.lineEnds[HEADER];
+
+    // Fast path for the Illumina 1.8 ids (e.g.
+    // "@EAS139:136:FC706VJ:2:2104:15343:197393 1:Y:18:ATCACG")
+    int i = start;
+    while (i < end && this.buffer[i] != ' ') {
+      i++;
+    }
+
+    final int readStart = ++i;
+    while (i < end && this.buffer[i] >= '0' && this.buffer[i] <= '9') {
+      i++;
+    }
+
+    if (i > readStart && i + 2 < end && this.buffer[i] == ':'
+        && this.buffer[i + 2] == ':') {
+
+      final byte flag = this.buffer[i + 1];
+      if (flag == 'Y') {
+        return true;
+      }
+      if (flag == 'N') {
+        return false;
+      }
+    }
+
+    // Other read id formats
+    if (this.irid == null) {
+      this.irid = new IlluminaReadId(getName());
+    } else {
+      this.irid.parse(getName());
+    }
+
+    return this.irid.isFiltered();
+  }
+
+  /**
+   * Get the name of the current record.
+   * @return the name of the record without the '@' character
+   */
+  public String getName() {
+
+    return lineAsString(this.lineStarts[HEADER] + 1, this.lineEnds[HEADER]);
+  }
+
+  /**
+   * Get the sequence of the current record.
+   * @return the sequence of the record
+   */
+  public String getSequence() {
+
+    return lineAsString(this.lineStarts[SEQUENCE], this.lineEnds[SEQUENCE]);
+  }
+
+  /**
+   * Get the quality of the current record.
+   * @return the quality of the record
+   */
+  public String getQuality() {
+
+    return lineAsString(this.lineStarts[QUALITY], this.lineEnds[QUALITY]);
+  }
+
+  /**
+   * Create a ReadSequence object for the current record.
+   * @return a new ReadSequence object
+   */
+  public ReadSequence getRead() {
+
+    return new ReadSequence(getName(), getSequence(), getQuality());
+  }
+
+  @Override
+  public void close() throws IOException {
+
+    this.in.close();
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Parse the record at the current position of the buffer.
+   * @return 1 if a record has been parsed, 0 if the buffer only contains empty
+   *         lines and -1 if the record is not complete in the buffer
+   * @throws IOException if the record is invalid
+   */
+  private int parseRecord() throws IOException {
+
+    int p = this.pos;
+
+    // Skip empty lines
+    while (p < this.limit
+        && (this.buffer[p] == '\n' || this.buffer[p] == '\r')) {
+      p++;
+    }
+    this.pos = p;
+
+    if (p == this.limit) {
+      return 0;
+    }
+
+    for (int i = 0; i < 4; i++) {
+
+      int end = p;
+      while (end < this.limit && this.buffer[end] != '\n') {
+        end++;
+      }
+
+      // The last line of the stream may have no end of line
+      if (end == this.limit && !(this.eof && i == QUALITY)) {
+        return -1;
+      }
+
+      this.lineStarts[i] = p;
+      this.lineEnds[i] =
+          end > p && this.buffer[end - 1] == '\r' ? end - 1 : end;
+      p = end == this.limit ? end : end + 1;
+    }
+
+    if (this.buffer[this.lineStarts[HEADER]] != '@') {
+      throw new IOException("ID line didn't start with '@': "
+          + lineAsString(this.lineStarts[HEADER], this.lineEnds[HEADER]));
+    }
+
+    if (this.lineStarts[MID_LINE] == this.lineEnds[MID_LINE]
+        || this.buffer[this.lineStarts[MID_LINE]] != '+') {
+      throw new IOException("Midline '"
+          + lineAsString(this.lineStarts[MID_LINE], this.lineEnds[MID_LINE])
+          + "' didn't start with '+'");
+    }
+
+    final int sequenceLength =
+        this.lineEnds[SEQUENCE] - this.lineStarts[SEQUENCE];
+    final int qualityLength = this.lineEnds[QUALITY] - this.lineStarts[QUALITY];
+
+    if (sequenceLength != qualityLength) {
+      throw new IOException(
+          "The sequence and the quality of the fastq entry have not the same length: "
+              + lineAsString(this.lineStarts[HEADER], this.lineEnds[HEADER]));
+    }
+
+    this.pos = p;
+
+    return 1;
+  }
+
+  /**
+   * Read more data in the buffer. The data not yet parsed are moved at the
+   * beginning of the buffer and the buffer is enlarged if it is full.
+   * @throws IOException if an error occurs while reading the stream
+   */
+  private void fill() throws IOException {
+
+    final int remaining = this.limit - this.pos;
+
+    if (this.pos > 0) {
+      System.arraycopy(this.buffer, this.pos, this.buffer, 0, remaining);
+    } else if (remaining == this.buffer.length) {
+      this.buffer = Arrays.copyOf(this.buffer, this.buffer.length * 2);
+    }
+
+    this.pos = 0;
+    this.limit = remaining;
+
+    final int n =
+        this.in.read(this.buffer, this.limit, this.buffer.length - this.limit);
+
+    if (n == -1) {
+      this.eof = true;
+    } else {
+      this.limit += n;
+    }
+  }
+
+  /**
+   * Convert a part of the buffer to a String.
+   * @param start start of the String in the buffer
+   * @param end end of the String in the buffer
+   * @return a new String
+   */
+  private String lineAsString(final int start, final int end) {
+
+    return new String(this.buffer, start, end - start,
+        Globals.DEFAULT_FILE_ENCODING);
+  }
+
+  //
+  // Constructors
+  //
+
+  /**
+   * Constructor.
+   * @param in the stream to read
+   */
+  public FastqRecordScanner(final InputStream in) {
+
+    this(in, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Constructor.
+   * @param in the stream to read
+   * @param bufferSize the initial size of the buffer
+   */
+  public FastqRecordScanner(final InputStream in, final int bufferSize) {
+
+    requireNonNull(in, "in argument cannot be null");
+
+    if (bufferSize < 1) {
+      throw new IllegalArgumentException(
+          "Invalid buffer size: " + bufferSize);
+    }
+
+    this.in = in;
+    this.buffer = new byte[bufferSize];
+  }
+
+}
@@ -1,6 +1,9 @@
 package fr.ens.biologie.genomique.aozan.io;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.logging.Logger;
@@ -8,6 +11,7 @@ import java.util.logging.Logger;
 import fr.ens.biologie.genomique.aozan.Aozan2Logger;
 import fr.ens.biologie.genomique.aozan.QC;
 import fr.ens.biologie.genomique.aozan.RunData;
+import fr.ens.biologie.genomique.kenetre.io.CompressionType;
 
 public class FastqSampleUtils {
 
@@ -101,6 +105,36 @@ public class FastqSampleUtils {
     return result;
   }
 
+  /**
+   * Open a FASTQ file. If the number of threads is greater than 0, the file is
+   * decompressed by dedicated threads while the caller parses the previous
+   * data. BGZF files are decompressed using several threads if more than one
+   * thread is allowed.
+   * @param file the FASTQ file
+   * @param compressionType the compression type of the file
+   * @param threads the number of threads to use to decompress the file, 0 to
+   *          decompress the file in the caller thread
+   * @return an InputStream with the decompressed content of the file
+   * @throws IOException if an error occurs while opening the file
+   */
+  public static InputStream createInputStream(final File file,
+      final CompressionType compressionType, final int threads)
+      throws IOException {
+
+    if (threads < 1) {
+      return compressionType.createInputStream(new FileInputStream(file));
+    }
+
+    if (threads > 1
+        && compressionType == CompressionType.GZIP
+        && BGZFInputStream.isBGZF(file)) {
+      return new BGZFInputStream(file, threads);
+    }
+
+    return new PrefetchInputStream(
+        compressionType.createInputStream(new FileInputStream(file)));
+  }
+
   /**
    * Checks if is valid fast q sample for qc.
    * @param data result data object
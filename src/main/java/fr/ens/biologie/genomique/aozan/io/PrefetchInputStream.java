@@ -0,0 +1,288 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later 
+ * and CeCILL. This should be distributed with the code. If you 
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.io;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * This class define an InputStream that read its underlying stream on a
+ * dedicated thread. The data are read by blocks in advance and handed to the
+ * reader through a bounded queue, so the decompression of a FASTQ file can be
+ * done while the previous block is parsed.
+ * @since 3.2
+ * @author Laurent Jourdren
+ */
+public class PrefetchInputStream extends InputStream {
+
+  /** Default size of the blocks. */
+  public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+  /** Default number of blocks read in advance. */
+  public static final int DEFAULT_BLOCK_COUNT = 4;
+
+  private final InputStream in;
+  private final Thread thread;
+  private final BlockingQueue<Block> filledBlocks;
+  private final BlockingQueue<byte[]> freeBuffers;
+
+  private Block current;
+  private int pos;
+  private boolean eof;
+  private volatile boolean closed;
+
+  /**
+   * This class define a block of data read by the prefetch thread.
+   */
+  private static final class Block {
+
+    private final byte[] buffer;
+    private final int length;
+    private final IOException exception;
+
+    private Block(final byte[] buffer, final int length,
+        final IOException exception) {
+
+      this.buffer = buffer;
+      this.length = length;
+      this.exception = exception;
+    }
+  }
+
+  //
+  // InputStream methods
+  //
+
+  @Override
+  public int read() throws IOException {
+
+    if (!nextBlock()) {
+      return -1;
+    }
+
+    return this.current.buffer[this.pos++] & 0xff;
+  }
+
+  @Override
+  public int read(final byte[] b, final int off, final int len)
+      throws IOException {
+
+    if (len == 0) {
+      return 0;
+    }
+
+    if (!nextBlock()) {
+      return -1;
+    }
+
+    final int count = Math.min(len, this.current.length - this.pos);
+    System.arraycopy(this.current.buffer, this.pos, b, off, count);
+    this.pos += count;
+
+    return count;
+  }
+
+  @Override
+  public int available() throws IOException {
+
+    return this.current == null ? 0 : this.current.length - this.pos;
+  }
+
+  @Override
+  public void close() throws IOException {
+
+    if (this.closed) {
+      return;
+    }
+
+    this.closed = true;
+
+    // Wait the end of the prefetch thread before closing the underlying
+    // stream, the stream must not be closed during a read
+    this.thread.interrupt();
+    try {
+      this.thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      this.in.close();
+    }
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Get the next block if the current block has been fully read.
+   * @return false if the end of the stream has been reached
+   * @throws IOException if an error occurs while reading the underlying stream
+   */
+  private boolean nextBlock() throws IOException {
+
+    if (this.closed) {
+      throw new IOException("Stream closed");
+    }
+
+    if (this.current != null && this.pos < this.current.length) {
+      return true;
+    }
+
+    if (this.eof) {
+      return false;
+    }
+
+    // Recycle the buffer of the current block
+    if (this.current != null) {
+      this.freeBuffers.add(this.current.buffer);
+      this.current = null;
+    }
+
+    final Block block;
+    try {
+      block = this.filledBlocks.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while reading stream", e);
+    }
+
+    if (block.exception != null) {
+      this.eof = true;
+      throw block.exception;
+    }
+
+    if (block.length < 0) {
+      this.eof = true;
+      return false;
+    }
+
+    this.current = block;
+    this.pos = 0;
+
+    return true;
+  }
+
+  /**
+   * Read the underlying stream in the prefetch thread.
+   */
+  private void prefetch() {
+
+    try {
+
+      while (!this.closed) {
+
+        final byte[] buffer = this.freeBuffers.take();
+
+        // Fill the buffer
+        int length = 0;
+        int n = 0;
+        while (length < buffer.length && n != -1) {
+          n = this.in.read(buffer, length, buffer.length - length);
+          if (n > 0) {
+            length += n;
+          }
+        }
+
+        if (length > 0) {
+          this.filledBlocks.put(new Block(buffer, length, null));
+        }
+
+        if (n == -1) {
+          this.filledBlocks.put(new Block(null, -1, null));
+          return;
+        }
+      }
+
+    } catch (IOException e) {
+
+      if (!this.closed) {
+        this.filledBlocks.offer(new Block(null, -1, e));
+      }
+
+    } catch (RuntimeException e) {
+
+      // Errors of the decompressors must be reported to the reader
+      if (!this.closed) {
+        this.filledBlocks.offer(new Block(null, -1, new IOException(e)));
+      }
+
+    } catch (InterruptedException e) {
+      // The stream has been closed
+    }
+  }
+
+  //
+  // Constructors
+  //
+
+  /**
+   * Constructor.
+   * @param in the stream to read
+   */
+  public PrefetchInputStream(final InputStream in) {
+
+    this(in, DEFAULT_BLOCK_SIZE, DEFAULT_BLOCK_COUNT);
+  }
+
+  /**
+   * Constructor.
+   * @param in the stream to read
+   * @param blockSize the size of the blocks
+   * @param blockCount the number of blocks read in advance
+   */
+  public PrefetchInputStream(final InputStream in, final int blockSize,
+      final int blockCount) {
+
+    requireNonNull(in, "in argument cannot be null");
+
+    if (blockSize < 1) {
+      throw new IllegalArgumentException(
+          "Invalid block size: " + blockSize);
+    }
+
+    if (blockCount < 1) {
+      throw new IllegalArgumentException(
+          "Invalid block count: " + blockCount);
+    }
+
+    this.in = in;
+
+    // One more slot for the end of stream block, one more buffer for the
+    // block currently read
+    this.filledBlocks = new ArrayBlockingQueue<>(blockCount + 1);
+    this.freeBuffers = new ArrayBlockingQueue<>(blockCount + 1);
+    for (int i = 0; i < blockCount; i++) {
+      this.freeBuffers.add(new byte[blockSize]);
+    }
+
+    this.thread = new Thread(this::prefetch, "prefetch-input-stream");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+}
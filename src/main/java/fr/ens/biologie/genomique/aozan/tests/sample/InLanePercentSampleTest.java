@@ -80,15 +80,16 @@ public class InLanePercentSampleTest extends AbstractSampleTest {
       // Configure score
       final double homogeneityInLane = 1 / data.getSamplesInLane(lane).size();
 
-      if (this.distance >= homogeneityInLane) {
-        this.distance = 0.0;
-      }
+      // Do not modify the test configuration, the test can be evaluated for
+      // several samples at the same time
+      final double distance =
+          this.distance >= homogeneityInLane ? 0.0 : this.distance;
 
-      final double min = homogeneityInLane - this.distance;
-      final double max = homogeneityInLane + this.distance;
+      final double min = homogeneityInLane - distance;
+      final double max = homogeneityInLane + distance;
 
       // If distance not set, score = -1
-      final int score = (this.distance == 0.0
+      final int score = (distance == 0.0
           ? -1 : (percent > max || percent < min) ? 4 : 9);
 
       if (undetermined) {
@@ -29,22 +29,32 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.nio.file.Files;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stax.StAXSource;
 import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -75,10 +85,6 @@ public final class XMLUtilsWriter {
   public static void buildXMLCommonTagHeader(final Document doc,
       final Element parent, final RunData data) throws AozanException {
 
-    /** Default locale date format in the application. */
-    final DateFormat dateFormatter =
-        new SimpleDateFormat("EEE dd MMM yyyy", Globals.DEFAULT_LOCALE);
-
     if (doc == null) {
       throw new AozanException(
           "Fail add common tag header in document XML, document doesn't exist.");
@@ -89,51 +95,105 @@ public final class XMLUtilsWriter {
           "Fail add common tag header in document XML, parent element of new tag doesn't exist.");
     }
 
-    XMLUtils.addTagValue(doc, parent, "GeneratorName", Globals.APP_NAME);
-    XMLUtils.addTagValue(doc, parent, "GeneratorVersion",
-        Globals.APP_VERSION_STRING);
-    XMLUtils.addTagValue(doc, parent, "GeneratorWebsite", Globals.WEBSITE_URL);
-    XMLUtils.addTagValue(doc, parent, "GeneratorRevision",
-        Globals.APP_BUILD_COMMIT);
+    for (Map.Entry<String, String> e : createXMLCommonTagHeader(data)
+        .entrySet()) {
+      XMLUtils.addTagValue(doc, parent, e.getKey(), e.getValue());
+    }
+  }
+
+  /**
+   * Write the common tags of the header of the XML documents that describe
+   * Aozan and the run.
+   * @param writer the XML stream writer
+   * @param data instance of run data
+   * @throws XMLStreamException if an error occurs while writing the tags
+   */
+  public static void writeXMLCommonTagHeader(final XMLStreamWriter writer,
+      final RunData data) throws XMLStreamException {
+
+    requireNonNull(writer, "writer argument cannot be null");
+
+    for (Map.Entry<String, String> e : createXMLCommonTagHeader(data)
+        .entrySet()) {
+      writeTagValue(writer, e.getKey(), e.getValue());
+    }
+  }
+
+  /**
+   * Create the common tags of the header of the XML documents that describe
+   * Aozan and the run. The DOM and the stream XML documents use the same
+   * tags.
+   * @param data instance of run data
+   * @return an ordered map with the names and the values of the tags, the
+   *         null values are not written
+   */
+  private static Map<String, String> createXMLCommonTagHeader(
+      final RunData data) {
+
+    /** Default locale date format in the application. */
+    final DateFormat dateFormatter =
+        new SimpleDateFormat("EEE dd MMM yyyy", Globals.DEFAULT_LOCALE);
+
+    final Map<String, String> result = new LinkedHashMap<>();
+
+    result.put("GeneratorName", Globals.APP_NAME);
+    result.put("GeneratorVersion", Globals.APP_VERSION_STRING);
+    result.put("GeneratorWebsite", Globals.WEBSITE_URL);
+    result.put("GeneratorRevision", Globals.APP_BUILD_COMMIT);
 
     if (data != null) {
-      XMLUtils.addTagValue(doc, parent, "RunId", data.get("run.info.run.id"));
+      result.put("RunId", data.get("run.info.run.id"));
 
       // Convert string to date
       try {
         final SimpleDateFormat sdf = new SimpleDateFormat("yyMMdd");
         final Date runDate = sdf.parse(data.get("run.info.date"));
-        XMLUtils.addTagValue(doc, parent, "RunDate",
-            dateFormatter.format(runDate));
+        result.put("RunDate", dateFormatter.format(runDate));
       } catch (final ParseException e1) {
-        XMLUtils.addTagValue(doc, parent, "RunDate", data.get("run.info.date"));
+        result.put("RunDate", data.get("run.info.date"));
       }
 
-      XMLUtils.addTagValue(doc, parent, "SequencerName",
-          data.getSequencerName());
-      XMLUtils.addTagValue(doc, parent, "SequencerFamily",
-          data.getSequencerFamily());
-      XMLUtils.addTagValue(doc, parent, "InstrumentSN",
-          data.get("run.info.instrument"));
+      result.put("SequencerName", data.getSequencerName());
+      result.put("SequencerFamily", data.getSequencerFamily());
+      result.put("InstrumentSN", data.get("run.info.instrument"));
 
-      XMLUtils.addTagValue(doc, parent, "FlowcellId", data.getFlowcellId());
-      XMLUtils.addTagValue(doc, parent, "InstrumentRunNumber",
-          data.get("run.info.run.number"));
+      result.put("FlowcellId", data.getFlowcellId());
+      result.put("InstrumentRunNumber", data.get("run.info.run.number"));
 
-      XMLUtils.addTagValue(doc, parent, "SequencerApplicationName",
+      result.put("SequencerApplicationName",
           data.getSequencerApplicationName());
-      XMLUtils.addTagValue(doc, parent, "SequencerApplicationVersion",
+      result.put("SequencerApplicationVersion",
           data.getSequencerApplicationVersion());
-      XMLUtils.addTagValue(doc, parent, "SequencerRTAVersion",
-          data.getSequencerRTAVersion());
+      result.put("SequencerRTAVersion", data.getSequencerRTAVersion());
 
-      XMLUtils.addTagValue(doc, parent, "Bcl2FastqVersion",
+      result.put("Bcl2FastqVersion",
           Strings.nullToEmpty(data.getBcl2FastqVersion()).isEmpty()
               ? "Unknown version" : data.getBcl2FastqVersion());
 
-      XMLUtils.addTagValue(doc, parent, "ReportDate",
-          dateFormatter.format(new Date()));
+      result.put("ReportDate", dateFormatter.format(new Date()));
+    }
+
+    return result;
+  }
+
+  /**
+   * Write an element that only contains a text value. Like
+   * XMLUtils.addTagValue(), nothing is written if the value is null.
+   * @param writer the XML stream writer
+   * @param name name of the element
+   * @param value value of the element
+   * @throws XMLStreamException if an error occurs while writing the element
+   */
+  public static void writeTagValue(final XMLStreamWriter writer,
+      final String name, final String value) throws XMLStreamException {
+
+    if (value == null) {
+      return;
     }
+
+    writer.writeStartElement(name);
+    writer.writeCharacters(value);
+    writer.writeEndElement();
   }
 
   /**
@@ -190,11 +250,7 @@ public final class XMLUtilsWriter {
     try {
 
       // Set up a transformer
-      final TransformerFactory transfac = TransformerFactory.newInstance();
-      Transformer trans = transfac.newTransformer();
-      trans.setOutputProperty(OutputKeys.INDENT, "yes");
-      trans.setOutputProperty(OutputKeys.METHOD, "xml");
-      trans.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
+      final Transformer trans = createIndentingTransformer();
 
       // Create the String writer
       final StringWriter swxml = new StringWriter();
@@ -209,6 +265,57 @@ public final class XMLUtilsWriter {
     }
   }
 
+  /**
+   * Indent a XML file. The file is transformed as a stream with the same
+   * transformer as createXMLFileContent(), so the result is the same as for
+   * the DOM document of the file.
+   * @param input the XML file to indent
+   * @param os the output stream
+   * @throws IOException if an error occurs while reading the file
+   * @throws AozanException if an error occurs while transforming the file
+   */
+  public static void indentXMLFile(final File input, final OutputStream os)
+      throws IOException, AozanException {
+
+    requireNonNull(input, "input argument cannot be null");
+    requireNonNull(os, "os argument cannot be null");
+
+    try (InputStream is = new FileInputStream(input)) {
+
+      final XMLStreamReader reader =
+          XMLInputFactory.newInstance().createXMLStreamReader(is);
+
+      try {
+        createIndentingTransformer().transform(new StAXSource(reader),
+            new StreamResult(os));
+      } finally {
+        reader.close();
+      }
+
+    } catch (final XMLStreamException | TransformerException e) {
+      throw new AozanException(e);
+    }
+  }
+
+  /**
+   * Create the transformer that indents the XML documents.
+   * @return a new Transformer object
+   * @throws TransformerConfigurationException if the transformer cannot be
+   *           created
+   */
+  private static Transformer createIndentingTransformer()
+      throws TransformerConfigurationException {
+
+    final Transformer result =
+        TransformerFactory.newInstance().newTransformer();
+    result.setOutputProperty(OutputKeys.INDENT, "yes");
+    result.setOutputProperty(OutputKeys.METHOD, "xml");
+    result.setOutputProperty(OutputKeys.STANDALONE, "no");
+    result.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
+
+    return result;
+  }
+
   /**
    * Transform a XML file using XSL style sheet.
    * @param XMLPath XML file
@@ -309,22 +416,6 @@ public final class XMLUtilsWriter {
     }
 
     try {
-      // Set up a transformer
-      final TransformerFactory transfac = TransformerFactory.newInstance();
-      Transformer trans = transfac.newTransformer();
-      // trans.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
-      trans.setOutputProperty(OutputKeys.DOCTYPE_PUBLIC, "yes");
-      trans.setOutputProperty(OutputKeys.INDENT, "yes");
-      trans.setOutputProperty(OutputKeys.METHOD, "html");
-      trans.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
-
-      // Create string from XML tree
-      final StringWriter sw = new StringWriter();
-      final StreamResult result = new StreamResult(sw);
-
-      final DOMSource source = new DOMSource(doc);
-      trans.transform(source, result);
-
       // Create the transformer
       final Transformer transformer =
           TransformerFactory.newInstance().newTransformer(
@@ -345,4 +436,35 @@ public final class XMLUtilsWriter {
       throw new AozanException(e);
     }
   }
+
+  /**
+   * Transform a XML file using a XSL style sheet. The XML file is read as a
+   * stream and the result is directly written in the output stream, no DOM
+   * document is created.
+   * @param xmlFile XML file
+   * @param isXslFile input stream on the xsl file
+   * @param os output stream for the result of the transformation
+   * @throws AozanException if an error occurs during transforming document
+   */
+  public static void transformXMLFile(final File xmlFile,
+      final InputStream isXslFile, final OutputStream os)
+      throws AozanException {
+
+    requireNonNull(xmlFile, "xmlFile argument cannot be null");
+    requireNonNull(isXslFile, "isXslFile argument cannot be null");
+    requireNonNull(os, "os argument cannot be null");
+
+    try {
+
+      // Create the transformer
+      final Transformer transformer = TransformerFactory.newInstance()
+          .newTransformer(new StreamSource(isXslFile));
+
+      // Transform the document
+      transformer.transform(new StreamSource(xmlFile), new StreamResult(os));
+
+    } catch (final TransformerException e) {
+      throw new AozanException(e);
+    }
+  }
 }
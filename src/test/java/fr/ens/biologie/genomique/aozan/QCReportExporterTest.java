@@ -0,0 +1,116 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later
+ * and CeCILL. This should be distributed with the code. If you
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.aozan.tests.AozanTest;
+import fr.ens.biologie.genomique.aozan.tests.TestConfiguration;
+import fr.ens.biologie.genomique.aozan.tests.global.GlobalTest;
+import fr.ens.biologie.genomique.aozan.tests.global.LaneCountGlobalTest;
+import fr.ens.biologie.genomique.aozan.tests.global.RawClusterCountGlobalTest;
+import fr.ens.biologie.genomique.aozan.tests.lane.LaneTest;
+import fr.ens.biologie.genomique.aozan.tests.lane.PFClusterPercentLaneTest;
+import fr.ens.biologie.genomique.aozan.tests.lane.RawClusterCountLaneTest;
+
+public class QCReportExporterTest {
+
+  private static final File RUN_DATA_FILE =
+      new File("src/test/java/files/InterOp_SR50/SR50.data");
+
+  @Test
+  public void testStreamedReportIsSameAsDOMReport() throws Exception {
+
+    final RunData data = new RunData(RUN_DATA_FILE);
+
+    data.put("globalstats.clusters.raw.count", 2966298L);
+
+    // Characters that must be escaped
+    data.put("run.info.instrument", "SNL110 <A&B>");
+
+    final List<GlobalTest> globalTests = new ArrayList<>();
+    globalTests.add(configure(new LaneCountGlobalTest(), null));
+    globalTests.add(configure(new RawClusterCountGlobalTest(), null));
+
+    final List<LaneTest> laneTests = new ArrayList<>();
+    laneTests.add(configure(new RawClusterCountLaneTest(), null));
+    laneTests.add(configure(new PFClusterPercentLaneTest(), "[0.95, 1]"));
+
+    final QCReport report =
+        new QCReport(data, globalTests, laneTests, null, null, null);
+    final QCReportExporter exporter = new QCReportExporter(report);
+
+    final File file = File.createTempFile("qcreport-", ".xml");
+
+    try {
+
+      exporter.writeXMLReport(file);
+
+      final byte[] streamed = Files.readAllBytes(file.toPath());
+      final byte[] dom = exporter.toXML().getBytes(UTF_8);
+
+      // The streamed report must be the same as the report created from the
+      // DOM document
+      Assert.assertEquals(new String(dom, UTF_8), new String(streamed, UTF_8));
+      Assert.assertArrayEquals(dom, streamed);
+
+      Assert.assertTrue(new String(streamed, UTF_8).startsWith(
+          "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>"));
+
+    } finally {
+      Files.delete(file.toPath());
+    }
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Configure a test.
+   * @param test the test
+   * @param interval the interval of the test, can be null
+   * @return the test
+   * @throws AozanException if an error occurs while configuring the test
+   */
+  private static <T extends AozanTest> T configure(final T test,
+      final String interval) throws AozanException {
+
+    test.configure(new TestConfiguration(interval == null
+        ? Collections.<String, String> emptyMap()
+        : Collections.singletonMap("interval", interval)));
+
+    return test;
+  }
+
+}
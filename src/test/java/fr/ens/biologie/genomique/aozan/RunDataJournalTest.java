@@ -0,0 +1,151 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later 
+ * and CeCILL. This should be distributed with the code. If you 
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RunDataJournalTest {
+
+  @Test
+  public void testAppendAndCompact() throws IOException {
+
+    final File journalFile = File.createTempFile("aozan-", ".journal");
+    final File dataFile = File.createTempFile("aozan-", ".data");
+    journalFile.delete();
+
+    try {
+      final RunDataJournal journal =
+          new RunDataJournal(journalFile, Arrays.asList("a", "b"));
+
+      // Blocks are appended in completion order
+      final RunData b = new RunData();
+      b.put("b.key", "b1");
+      b.put("a.key", "modified");
+      journal.append("b", b);
+
+      final RunData a = new RunData();
+      a.put("a.key", "a1");
+      a.put("a.other", 2);
+      journal.append("a", a);
+
+      final Map<String, RunData> loaded = journal.load();
+      Assert.assertEquals(Arrays.asList("b", "a"),
+          Arrays.asList(loaded.keySet().toArray()));
+      Assert.assertEquals("b1", loaded.get("b").get("b.key"));
+
+      // Blocks are merged in collector order
+      final RunData result = journal.compact(dataFile);
+      Assert.assertFalse(journalFile.exists());
+      Assert.assertEquals("a.key=modified\na.other=2\nb.key=b1\n",
+          result.toString());
+      Assert.assertEquals(result.toString(),
+          new RunData(dataFile).toString());
+
+    } finally {
+      journalFile.delete();
+      dataFile.delete();
+    }
+  }
+
+  @Test
+  public void testIncompleteBlock() throws IOException {
+
+    final File journalFile = File.createTempFile("aozan-", ".journal");
+    journalFile.delete();
+
+    try {
+      final RunDataJournal journal =
+          new RunDataJournal(journalFile, Arrays.asList("a", "b"));
+
+      final RunData a = new RunData();
+      a.put("a.key", "a1");
+      journal.append("a", a);
+
+      // Simulate a crash while writing a block
+      try (FileOutputStream out = new FileOutputStream(journalFile, true)) {
+        out.write("#begin b\nb.key=b1\n".getBytes(StandardCharsets.UTF_8));
+      }
+
+      final Map<String, RunData> loaded = journal.load();
+      Assert.assertEquals(1, loaded.size());
+      Assert.assertTrue(loaded.containsKey("a"));
+
+      // A journal created for other collectors is discarded
+      Assert.assertTrue(new RunDataJournal(journalFile, Arrays.asList("a"))
+          .load().isEmpty());
+
+    } finally {
+      journalFile.delete();
+    }
+  }
+
+  @Test
+  public void testAppendAfterDiscard() throws IOException {
+
+    final File journalFile = File.createTempFile("aozan-", ".journal");
+    final File dataFile = File.createTempFile("aozan-", ".data");
+    journalFile.delete();
+
+    try {
+
+      // A journal of a previous QC with other collectors
+      final RunData old = new RunData();
+      old.put("old.key", "old");
+      new RunDataJournal(journalFile, Arrays.asList("old")).append("old", old);
+
+      final RunDataJournal journal =
+          new RunDataJournal(journalFile, Arrays.asList("a", "b"));
+      Assert.assertTrue(journal.load().isEmpty());
+
+      final RunData a = new RunData();
+      a.put("a.key", "a1");
+      journal.append("a", a);
+
+      // The blocks appended after the discard are reloaded
+      final Map<String, RunData> loaded = journal.load();
+      Assert.assertEquals(1, loaded.size());
+      Assert.assertEquals("a1", loaded.get("a").get("a.key"));
+
+      final RunData b = new RunData();
+      b.put("b.key", "b1");
+      journal.append("b", b);
+
+      Assert.assertEquals("a.key=a1\nb.key=b1\n",
+          journal.compact(dataFile).toString());
+
+    } finally {
+      journalFile.delete();
+      dataFile.delete();
+    }
+  }
+
+}
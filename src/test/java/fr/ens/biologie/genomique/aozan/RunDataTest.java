@@ -0,0 +1,116 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later 
+ * and CeCILL. This should be distributed with the code. If you 
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RunDataTest {
+
+  @Test
+  public void testIndexedGetters() {
+
+    final RunData data = new RunData();
+    data.put("run.info.flow.cell.lane.count", 2);
+    data.put("run.info.read.count", 2);
+    data.put("samplesheet.sample.count", 3);
+    data.put("samplesheet.lane1.samples", "1, 3");
+    data.put("samplesheet.sample1.lane", 1);
+    data.put("samplesheet.sample2.lane", 2);
+    data.put("samplesheet.sample3.lane", 1);
+    data.put("samplesheet.sample3.undetermined", true);
+    data.put("demux.sample1.read1.raw.cluster.count", 1000);
+    data.put("reads.read2.lane1.clusters.pf", 123456789012L);
+
+    Assert.assertEquals(2, data.getLaneCount());
+    Assert.assertEquals(3, data.getSampleCount());
+    Assert.assertEquals(2, data.getSampleLane(2));
+    Assert.assertTrue(data.isUndeterminedSample(3));
+    Assert.assertFalse(data.isUndeterminedSample(1));
+    Assert.assertEquals(Arrays.asList(1, 3), data.getAllSamplesInLane(1));
+    Assert.assertEquals(Collections.singletonList(1),
+        data.getSamplesInLane(1));
+    Assert.assertEquals(Collections.emptyList(), data.getSamplesInLane(2));
+    Assert.assertEquals(1000, data.getSampleRawClusterCount(1, 1));
+    Assert.assertEquals(123456789012L, data.getReadPFClusterCount(1, 2));
+
+    // The index must be updated after a modification
+    data.put("samplesheet.lane2.samples", "2");
+    data.put("demux.sample1.read1.raw.cluster.count", 2000);
+    Assert.assertEquals(Collections.singletonList(2),
+        data.getSamplesInLane(2));
+    Assert.assertEquals(2000, data.getSampleRawClusterCount(1, 1));
+  }
+
+  @Test(expected = AozanRuntimeException.class)
+  public void testMissingIndexedValue() {
+
+    final RunData data = new RunData();
+    data.put("run.info.read.count", 1);
+    data.put("samplesheet.sample.count", 1);
+
+    data.getSamplePFClusterCount(1, 1);
+  }
+
+  @Test
+  public void testRecording() {
+
+    final RunData data = new RunData();
+    data.put("a", 1);
+    data.put("b", 2);
+    data.put("c", 3);
+
+    final RunData other = new RunData();
+    other.put("c", 3);
+    other.put("d", 4);
+
+    data.startRecording();
+    data.put("a", 1);
+    data.put("b", 20);
+    data.put("e", 5);
+    data.put("e", 6);
+    data.put("f", 7);
+    data.remove("f");
+    data.put(other);
+    final RunData fragment = data.stopRecording();
+
+    // Only the entries added or modified are recorded
+    final Map<String, String> expected = new LinkedHashMap<>();
+    expected.put("b", "20");
+    expected.put("e", "6");
+    expected.put("d", "4");
+    Assert.assertEquals(expected, fragment.getMap());
+    Assert.assertEquals(5, data.size());
+
+    // The entries are no more recorded
+    data.put("g", 8);
+    Assert.assertEquals(expected, fragment.getMap());
+  }
+
+}
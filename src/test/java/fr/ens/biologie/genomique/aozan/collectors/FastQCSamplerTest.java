@@ -0,0 +1,211 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later
+ * and CeCILL. This should be distributed with the code. If you
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.collectors;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import uk.ac.babraham.FastQC.Sequence.Sequence;
+
+public class FastQCSamplerTest {
+
+  private static final int READ_LENGTH = 50;
+  private static final int POOL_SIZE = 10_000;
+
+  private static final double QUALITY_TOLERANCE = 0.2;
+  private static final double GC_TOLERANCE = 0.01;
+
+  @Test
+  public void testSampleWholeFile() {
+
+    // The statistics never converge without tolerance
+    final FastQCSampler sampler = new FastQCSampler(0, 0.0, 0.0, 0.1, 1);
+    final Random random = new Random(1);
+
+    // A file ordered by tile, the reads of each tile have their own quality
+    final int tiles = 10;
+    final int readsByTile = 200_000;
+    final long[] sampledByTile = new long[tiles];
+
+    for (int tile = 0; tile < tiles; tile++) {
+
+      final Sequence[] pool = createReads(random, 0.5, 'A' + tile);
+
+      for (int i = 0; i < readsByTile; i++) {
+        if (sampler.accept(pool[random.nextInt(POOL_SIZE)])) {
+          sampledByTile[tile]++;
+        }
+      }
+    }
+
+    // One block of ten blocks is sampled in each tile
+    for (int tile = 0; tile < tiles; tile++) {
+      Assert.assertEquals(readsByTile / 10, sampledByTile[tile]);
+    }
+    Assert.assertEquals(tiles * readsByTile / 10, sampler.getSampledReads());
+    Assert.assertEquals(10, sampler.getPeriod());
+    Assert.assertFalse(sampler.isConverged());
+  }
+
+  @Test
+  public void testConvergence() {
+
+    final FastQCSampler sampler = new FastQCSampler(200_000,
+        QUALITY_TOLERANCE, GC_TOLERANCE, 0.1, 1);
+    final Random random = new Random(1);
+    final Sequence[] pool = createReads(random, 0.4, 'I');
+
+    final int count = 5_000_000;
+    long lastSampledRead = -1;
+
+    for (int i = 0; i < count; i++) {
+      if (sampler.accept(pool[random.nextInt(POOL_SIZE)])) {
+        lastSampledRead = i;
+      }
+    }
+
+    // The fraction of sampled blocks is reduced once the statistics converge
+    Assert.assertTrue(sampler.isConverged());
+    Assert.assertTrue(sampler.getPeriod() > 10);
+    Assert.assertTrue(sampler.getSampledReads() < count / 10);
+
+    // The end of the file is still sampled
+    Assert.assertTrue(lastSampledRead >= count
+        - FastQCSampler.MAX_PERIOD * FastQCSampler.BLOCK_SIZE);
+  }
+
+  @Test
+  public void testStatisticsChange() {
+
+    final FastQCSampler sampler = new FastQCSampler(200_000,
+        QUALITY_TOLERANCE, GC_TOLERANCE, 0.1, 1);
+    final Random random = new Random(1);
+
+    final Sequence[] pool = createReads(random, 0.4, 'I');
+    for (int i = 0; i < 3_000_000; i++) {
+      sampler.accept(pool[random.nextInt(POOL_SIZE)]);
+    }
+
+    Assert.assertTrue(sampler.isConverged());
+    Assert.assertTrue(sampler.getPeriod() > 10);
+
+    // The initial fraction of blocks is sampled again when the GC content of
+    // the reads changes
+    final Sequence[] otherPool = createReads(random, 0.6, 'I');
+    int minPeriod = sampler.getPeriod();
+    for (int i = 0; i < 3_000_000; i++) {
+      sampler.accept(otherPool[random.nextInt(POOL_SIZE)]);
+      minPeriod = Math.min(minPeriod, sampler.getPeriod());
+    }
+
+    Assert.assertEquals(10, minPeriod);
+  }
+
+  @Test
+  public void testSameSample() {
+
+    final Random random = new Random(1);
+    final Sequence[] pool = createReads(random, 0.5, 'I');
+
+    final FastQCSampler sampler1 = new FastQCSampler(0, 0.0, 0.0, 0.25, 42);
+    final FastQCSampler sampler2 = new FastQCSampler(0, 0.0, 0.0, 0.25, 42);
+
+    // The same seed always samples the same reads
+    for (int i = 0; i < 100_000; i++) {
+      final Sequence seq = pool[i % POOL_SIZE];
+      Assert.assertEquals(sampler1.accept(seq), sampler2.accept(seq));
+    }
+  }
+
+  @Test
+  public void testInvalidParameters() {
+
+    assertInvalidParameters(-1, 0.0, 0.0, 0.1);
+    assertInvalidParameters(0, -0.1, 0.0, 0.1);
+    assertInvalidParameters(0, 0.0, -0.1, 0.1);
+    assertInvalidParameters(0, 0.0, 0.0, 0.0);
+    assertInvalidParameters(0, 0.0, 0.0, 1.1);
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Create a pool of reads.
+   * @param random the random number generator
+   * @param gc the probability of a G or a C base
+   * @param quality the mean quality character
+   * @return an array with the reads
+   */
+  private static Sequence[] createReads(final Random random, final double gc,
+      final int quality) {
+
+    final Sequence[] result = new Sequence[POOL_SIZE];
+
+    for (int i = 0; i < POOL_SIZE; i++) {
+
+      final StringBuilder bases = new StringBuilder();
+      final StringBuilder qualities = new StringBuilder();
+
+      for (int j = 0; j < READ_LENGTH; j++) {
+
+        if (random.nextDouble() < gc) {
+          bases.append(random.nextBoolean() ? 'G' : 'C');
+        } else {
+          bases.append(random.nextBoolean() ? 'A' : 'T');
+        }
+        qualities.append((char) (quality - 5 + random.nextInt(11)));
+      }
+
+      result[i] = new Sequence(null, bases.toString(), qualities.toString(),
+          "@read" + i);
+    }
+
+    return result;
+  }
+
+  /**
+   * Check that the parameters of a sampler are invalid.
+   * @param minReads minimal number of sampled reads
+   * @param qualityTolerance the quality tolerance
+   * @param gcTolerance the GC tolerance
+   * @param blockFraction the initial fraction of sampled blocks
+   */
+  private static void assertInvalidParameters(final int minReads,
+      final double qualityTolerance, final double gcTolerance,
+      final double blockFraction) {
+
+    try {
+      new FastQCSampler(minReads, qualityTolerance, gcTolerance,
+          blockFraction, 0);
+      Assert.fail("Invalid parameters accepted");
+    } catch (IllegalArgumentException e) {
+      // Expected exception
+    }
+  }
+
+}
@@ -0,0 +1,102 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later 
+ * and CeCILL. This should be distributed with the code. If you 
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+
+public class IndexCountTableTest {
+
+  @Test
+  public void testEncode() {
+
+    for (String index : new String[] {"", "A", "ACGTN", "NNNNNNNN",
+        "TTTTTTTTTTTTTTTTTTTTT", "GATCAGATCAGATC", "ACGTACGT+NNTTGGCC"}) {
+
+      final long code = IndexCountTable.encode(index, 0, index.length());
+      Assert.assertTrue(code != 0);
+      Assert.assertEquals(index, IndexCountTable.decode(code));
+    }
+
+    Assert.assertEquals(0, IndexCountTable.encode("ACGTX", 0, 5));
+    Assert.assertEquals(0, IndexCountTable.encode("acgt", 0, 4));
+    Assert.assertEquals(0,
+        IndexCountTable.encode("AAAAAAAAAAAAAAAAAAAAAA", 0, 22));
+
+    Assert.assertEquals(IndexCountTable.encode("CGT", 0, 3),
+        IndexCountTable.encode("1:N:0:ACGT", 7, 10));
+    Assert.assertTrue(IndexCountTable.encode("A", 0, 1) != IndexCountTable
+        .encode("AA", 0, 2));
+  }
+
+  @Test
+  public void testAdd() {
+
+    final IndexCountTable table = new IndexCountTable();
+    final Multiset<String> expectedRaw = HashMultiset.create();
+    final Multiset<String> expectedPF = HashMultiset.create();
+
+    for (int i = 0; i < 100000; i++) {
+
+      final String index = toIndex(i % 5000);
+      final boolean pf = i % 3 != 0;
+
+      table.add(index, 0, index.length(), pf);
+      expectedRaw.add(index);
+      if (pf) {
+        expectedPF.add(index);
+      }
+    }
+
+    final String other = "ACGT.ACGT";
+    table.add(other, 0, other.length(), true);
+    expectedRaw.add(other);
+    expectedPF.add(other);
+
+    Assert.assertEquals(5001, table.size());
+
+    final Multiset<String> raw = HashMultiset.create();
+    final Multiset<String> pf = HashMultiset.create();
+    table.addTo(raw, pf);
+
+    Assert.assertEquals(expectedRaw, raw);
+    Assert.assertEquals(expectedPF, pf);
+  }
+
+  private static String toIndex(final int n) {
+
+    final StringBuilder sb = new StringBuilder();
+    int v = n;
+    for (int i = 0; i < 8; i++) {
+      sb.append("ACGTN".charAt(v % 5));
+      v /= 5;
+    }
+
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,184 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later 
+ * and CeCILL. This should be distributed with the code. If you 
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.collectors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.aozan.collectors.IndexNeighbourhood.Neighbour;
+
+public class IndexNeighbourhoodTest {
+
+  @Test
+  public void testGet() {
+
+    final Random random = new Random(42);
+    final List<String> sampleIndexes = new ArrayList<>();
+    final IndexNeighbourhood neighbourhood = new IndexNeighbourhood(2);
+
+    for (int i = 0; i < 20; i++) {
+      final String index = randomIndex(random, 8);
+      sampleIndexes.add(index);
+      neighbourhood.add(i, index);
+    }
+
+    for (int i = 0; i < 20000; i++) {
+
+      // Create indexes near of the sample indexes
+      final char[] index =
+          sampleIndexes.get(random.nextInt(sampleIndexes.size())).toCharArray();
+      for (int j = random.nextInt(4); j > 0; j--) {
+        index[random.nextInt(index.length)] = "ACGTN".charAt(random.nextInt(5));
+      }
+      final String s = new String(index);
+
+      // Compare with the brute force search
+      final List<Neighbour> neighbours = neighbourhood.get(s);
+      int k = 0;
+      for (int sampleId = 0; sampleId < sampleIndexes.size(); sampleId++) {
+
+        final String sampleIndex = sampleIndexes.get(sampleId);
+        final int mismatches =
+            UndeterminedIndexesProcessThread.mismatches(sampleIndex, s);
+
+        if (mismatches <= 2) {
+          final Neighbour n = neighbours.get(k++);
+          Assert.assertEquals(sampleId, n.getSampleId());
+          Assert.assertEquals(sampleIndex, n.getSampleIndex());
+          Assert.assertEquals(mismatches, n.getMismatches());
+        }
+      }
+      Assert.assertEquals(k, neighbours.size());
+    }
+
+    Assert.assertTrue(neighbourhood.get("ACGT").isEmpty());
+  }
+
+  @Test
+  public void testGetDualIndex() {
+
+    final IndexNeighbourhood neighbourhood = new IndexNeighbourhood(2);
+    neighbourhood.add(1, "AAAAAAAA+CCCCCCCC");
+
+    // One mismatch on each index
+    List<Neighbour> neighbours = neighbourhood.get("AAAAAAAT+CCCCCCCA");
+    Assert.assertEquals(1, neighbours.size());
+    Assert.assertEquals(1, neighbours.get(0).getSampleId());
+    Assert.assertEquals(2, neighbours.get(0).getMismatches());
+
+    // The separator is never changed
+    Assert.assertTrue(neighbourhood.get("AAAAAAAAACCCCCCCC").isEmpty());
+
+    // Too many mismatches
+    neighbours = neighbourhood.get("AAAAAATT+CCCCCCCA");
+    Assert.assertTrue(neighbours.isEmpty());
+  }
+
+  @Test
+  public void testManyDualIndexes() {
+
+    final Random random = new Random(42);
+
+    // A lane with 96 dual indexes of 10 nucleotides
+    final IndexNeighbourhood neighbourhood = new IndexNeighbourhood(2);
+    final List<String> sampleIndexes = new ArrayList<>();
+
+    for (int i = 0; i < 96; i++) {
+      final String index =
+          randomIndex(random, 10) + '+' + randomIndex(random, 10);
+      sampleIndexes.add(index);
+      neighbourhood.add(i, index);
+    }
+
+    // The variants of the two indexes are precomputed separately:
+    // 1 + 10 * 4 + 45 * 16 variants for each index
+    Assert.assertEquals(96 * 2 * 761, neighbourhood.size());
+
+    for (int i = 0; i < 20000; i++) {
+
+      final char[] index =
+          sampleIndexes.get(random.nextInt(sampleIndexes.size())).toCharArray();
+      for (int j = random.nextInt(4); j > 0; j--) {
+        index[random.nextInt(index.length)] =
+            "ACGTN+".charAt(random.nextInt(6));
+      }
+      final String s = new String(index);
+
+      // Compare with the brute force search
+      final List<Neighbour> neighbours = neighbourhood.get(s);
+      int k = 0;
+      for (int sampleId = 0; sampleId < sampleIndexes.size(); sampleId++) {
+
+        final String sampleIndex = sampleIndexes.get(sampleId);
+        final int mismatches = dualIndexMismatches(sampleIndex, s);
+
+        if (mismatches <= 2) {
+          final Neighbour n = neighbours.get(k++);
+          Assert.assertEquals(sampleId, n.getSampleId());
+          Assert.assertEquals(sampleIndex, n.getSampleIndex());
+          Assert.assertEquals(mismatches, n.getMismatches());
+        }
+      }
+      Assert.assertEquals(k, neighbours.size());
+    }
+
+    Assert.assertTrue(neighbourhood.get("ACGT").isEmpty());
+  }
+
+  /**
+   * Get the number of mismatches between a dual sample index and an index.
+   * @param sampleIndex the dual sample index
+   * @param index the index
+   * @return the number of mismatches or Integer.MAX_VALUE if the separator is
+   *         not at the same position
+   */
+  private static int dualIndexMismatches(final String sampleIndex,
+      final String index) {
+
+    final int separator = sampleIndex.indexOf('+');
+
+    if (index.length() != sampleIndex.length()
+        || index.indexOf('+') != separator
+        || index.indexOf('+', separator + 1) != -1) {
+      return Integer.MAX_VALUE;
+    }
+
+    return UndeterminedIndexesProcessThread.mismatches(sampleIndex, index);
+  }
+
+  private static String randomIndex(final Random random, final int length) {
+
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < length; i++) {
+      sb.append("ACGT".charAt(random.nextInt(4)));
+    }
+
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,363 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later
+ * and CeCILL. This should be distributed with the code. If you
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.collectors;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.aozan.AozanException;
+import fr.ens.biologie.genomique.aozan.collectors.SubsetFastqThread.ReadSelector;
+import fr.ens.biologie.genomique.kenetre.io.CompressionType;
+
+public class SubsetFastqThreadTest {
+
+  private static final int[] FILE_READS = {1000, 350, 1300};
+  private static final int READ_LENGTH = 20;
+  private static final int MAX_READ_LENGTH = 15;
+
+  @Test
+  public void testFilteredReads() throws IOException, AozanException {
+
+    final List<List<String[]>> reads = createReads();
+    final int pfReads = countPfReads(reads);
+
+    for (final int readsToCopy : new int[] {30, 300, pfReads, 2}) {
+
+      final int step = (int) (1 / ((double) readsToCopy / pfReads));
+      final int readsToCopyByFastq = readsToCopy / reads.size();
+
+      assertSelection(reads, baselineFilteredReads(reads, step,
+          readsToCopyByFastq), () -> new ReadSelector(step, readsToCopyByFastq,
+              true, false, MAX_READ_LENGTH));
+    }
+  }
+
+  @Test
+  public void testPartialReads() throws IOException, AozanException {
+
+    final List<List<String[]>> reads = createReads();
+    int rawReads = 0;
+    for (final List<String[]> fileReads : reads) {
+      rawReads += fileReads.size();
+    }
+
+    for (final int readsToCopy : new int[] {30, 300, rawReads}) {
+
+      final int step = (int) (1 / ((double) readsToCopy / rawReads));
+
+      assertSelection(reads, baselinePartialReads(reads, step, readsToCopy),
+          () -> new ReadSelector(step, readsToCopy, false, true,
+              MAX_READ_LENGTH));
+    }
+
+    // The quota is reached in the second file, the third file provides its
+    // first selected read
+    assertSelection(reads, baselinePartialReads(reads, 2, 600),
+        () -> new ReadSelector(2, 600, false, true, MAX_READ_LENGTH));
+
+    // The quota is reached in the first file
+    assertSelection(reads, baselinePartialReads(reads, 3, 100),
+        () -> new ReadSelector(3, 100, false, true, MAX_READ_LENGTH));
+  }
+
+  @Test
+  public void testAllReads() throws IOException, AozanException {
+
+    final List<List<String[]>> reads = createReads();
+
+    // All the reads are kept without trimming
+    final List<String> expected = new ArrayList<>();
+    for (final List<String[]> fileReads : reads) {
+      for (final String[] read : fileReads) {
+        expected.add(toFastq(read, 0));
+      }
+    }
+
+    assertSelection(reads, expected,
+        () -> new ReadSelector(1, Integer.MAX_VALUE, false, false, 0));
+  }
+
+  @Test
+  public void testInvalidReadId() throws IOException {
+
+    final File fastqFile = File.createTempFile("aozan-", ".fastq");
+    final File outputFile = File.createTempFile("aozan-", ".fastq");
+
+    try {
+      Files.write(fastqFile.toPath(),
+          "@invalid\nACGT\n+\nIIII\n".getBytes(StandardCharsets.UTF_8));
+
+      SubsetFastqThread.subsetFastqFiles(
+          Collections.singletonList(fastqFile), CompressionType.NONE,
+          0, 1, new ReadSelector(1, 10, true, false, 0), outputFile);
+      Assert.fail();
+
+    } catch (final AozanException e) {
+      // The reads with an id that cannot be parsed are not silently kept
+    } finally {
+      fastqFile.delete();
+      outputFile.delete();
+    }
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Interface to create new selectors.
+   */
+  private interface SelectorFactory {
+
+    ReadSelector create();
+  }
+
+  /**
+   * Check that the partial files created with the thread and with the record
+   * consumer contain the expected reads.
+   * @param reads the reads of the FASTQ files
+   * @param expected the expected reads
+   * @param factory the factory of the selectors
+   */
+  private static void assertSelection(final List<List<String[]>> reads,
+      final List<String> expected, final SelectorFactory factory)
+      throws IOException, AozanException {
+
+    final List<File> fastqFiles = new ArrayList<>();
+    final File outputFile = File.createTempFile("aozan-", ".fastq");
+
+    try {
+
+      for (final List<String[]> fileReads : reads) {
+
+        final File fastqFile = File.createTempFile("aozan-", ".fastq");
+        fastqFiles.add(fastqFile);
+
+        try (Writer writer = Files.newBufferedWriter(fastqFile.toPath(),
+            StandardCharsets.UTF_8)) {
+          for (final String[] read : fileReads) {
+            writer.write(toFastq(read, 0));
+          }
+        }
+      }
+
+      // The partial file does not depend of the number of threads
+      for (final int threads : new int[] {1, 2, 4}) {
+
+        SubsetFastqThread.subsetFastqFiles(fastqFiles, CompressionType.NONE, 0,
+            threads, factory.create(), outputFile);
+
+        Assert.assertEquals(String.join("", expected), new String(
+            Files.readAllBytes(outputFile.toPath()), StandardCharsets.UTF_8));
+      }
+
+    } finally {
+      outputFile.delete();
+      for (final File fastqFile : fastqFiles) {
+        fastqFile.delete();
+      }
+    }
+
+    // The record consumer reads the FASTQ files one after the other
+    final ReadSelector selector = factory.create();
+    final List<String> result = new ArrayList<>();
+    for (final List<String[]> fileReads : reads) {
+
+      selector.startFile();
+      for (final String[] read : fileReads) {
+
+        if (selector.isFileDone()) {
+          break;
+        }
+
+        if (selector.select(selector.isPfReadsOnly() && isFiltered(read))) {
+          result.add(toFastq(read, selector.getMaxReadLength()));
+        }
+      }
+    }
+
+    Assert.assertEquals(expected, result);
+  }
+
+  /**
+   * Select the PF reads like Aozan 3.1, with a quota for each FASTQ file.
+   * @param reads the reads of the FASTQ files
+   * @param step the step between two reads to keep
+   * @param readsToCopyByFastq the number of reads to keep in each FASTQ file
+   * @return a list with the selected reads
+   */
+  private static List<String> baselineFilteredReads(
+      final List<List<String[]>> reads, final int step,
+      final int readsToCopyByFastq) {
+
+    final List<String> result = new ArrayList<>();
+
+    for (final List<String[]> fileReads : reads) {
+
+      int comptReadsPF = 1;
+      int countReadsToCopyByFastq = readsToCopyByFastq;
+
+      for (final String[] read : fileReads) {
+
+        if (!isFiltered(read)) {
+          if (comptReadsPF % step == 0) {
+            result.add(toFastq(read, MAX_READ_LENGTH));
+
+            if (--countReadsToCopyByFastq <= 0) {
+              break;
+            }
+          }
+          comptReadsPF++;
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Select the reads like Aozan 3.1, with a quota shared by the FASTQ files.
+   * @param reads the reads of the FASTQ files
+   * @param step the step between two reads to keep
+   * @param readsToCopy the number of reads to keep
+   * @return a list with the selected reads
+   */
+  private static List<String> baselinePartialReads(
+      final List<List<String[]>> reads, final int step,
+      final int readsToCopy) {
+
+    final List<String> result = new ArrayList<>();
+    int countReadsToCopyByFastq = readsToCopy;
+
+    for (final List<String[]> fileReads : reads) {
+
+      int comptReadsPF = 1;
+
+      for (final String[] read : fileReads) {
+
+        if (comptReadsPF % step == 0) {
+          result.add(toFastq(read, MAX_READ_LENGTH));
+
+          if (--countReadsToCopyByFastq <= 0) {
+            break;
+          }
+        }
+        comptReadsPF++;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Create the reads of the FASTQ files, 20% of the reads are filtered.
+   * @return a list with the reads of each FASTQ file
+   */
+  private static List<List<String[]>> createReads() {
+
+    final Random random = new Random(1);
+    final List<List<String[]>> result = new ArrayList<>();
+    final char[] bases = {'A', 'C', 'G', 'T'};
+
+    for (int file = 0; file < FILE_READS.length; file++) {
+
+      final List<String[]> fileReads = new ArrayList<>();
+
+      for (int i = 0; i < FILE_READS[file]; i++) {
+
+        final StringBuilder sequence = new StringBuilder();
+        final StringBuilder quality = new StringBuilder();
+        for (int j = 0; j < READ_LENGTH; j++) {
+          sequence.append(bases[random.nextInt(bases.length)]);
+          quality.append((char) ('#' + random.nextInt(40)));
+        }
+
+        fileReads.add(new String[] {
+            "EAS139:136:FC706VJ:" + (file + 1) + ":2104:15343:" + i + " 1:"
+                + (random.nextInt(5) == 0 ? 'Y' : 'N') + ":18:ATCACG",
+            sequence.toString(), quality.toString()});
+      }
+
+      result.add(fileReads);
+    }
+
+    return result;
+  }
+
+  /**
+   * Count the PF reads.
+   * @param reads the reads of the FASTQ files
+   * @return the number of PF reads
+   */
+  private static int countPfReads(final List<List<String[]>> reads) {
+
+    int result = 0;
+    for (final List<String[]> fileReads : reads) {
+      for (final String[] read : fileReads) {
+        if (!isFiltered(read)) {
+          result++;
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Test if a read has been filtered.
+   * @param read the read
+   * @return true if the read has been filtered
+   */
+  private static boolean isFiltered(final String[] read) {
+
+    return read[0].contains(" 1:Y:");
+  }
+
+  /**
+   * Convert a read to FASTQ format.
+   * @param read the read
+   * @param maxReadLength the maximum length of the read
+   * @return a String with the read in FASTQ format
+   */
+  private static String toFastq(final String[] read, final int maxReadLength) {
+
+    final int length = maxReadLength > 0
+        ? Math.min(maxReadLength, read[1].length()) : read[1].length();
+
+    return '@'
+        + read[0] + '\n' + read[1].substring(0, length) + "\n+\n"
+        + read[2].substring(0, length) + '\n';
+  }
+
+}
@@ -0,0 +1,139 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later 
+ * and CeCILL. This should be distributed with the code. If you 
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.collectors;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+
+public class UndeterminedIndexesProcessThreadTest {
+
+  private static final List<String> SAMPLE_INDEXES = Arrays.asList(
+      "AAAACCCC+GGGGTTTT", "CCCCAAAA+TTTTGGGG", "GTGTACAC+ACACGTGT");
+
+  @Test
+  public void testDualIndexHopping() {
+
+    final IndexCountTable table = new IndexCountTable();
+
+    // Index of the first sample with the second index of the second sample
+    count(table, "AAAACCCC+TTTTGGGG", 3, 1);
+
+    // Index of the second sample with the second index of the third sample
+    count(table, "CCCCAAAA+ACACGTGT", 2, 0);
+
+    // One mismatch with the first sample, this is not an index hopping
+    count(table, "AAAACCCA+GGGGTTTT", 5, 0);
+
+    // Unknown second index
+    count(table, "AAAACCCC+NNNNNNNN", 7, 0);
+
+    // The indexes of a sample
+    count(table, "GTGTACAC+ACACGTGT", 1, 0);
+
+    final Multiset<String> raw = HashMultiset.create();
+    final Multiset<String> pf = HashMultiset.create();
+    table.addTo(raw, pf);
+
+    // The two indexes are counted together
+    Assert.assertEquals(5, raw.elementSet().size());
+    Assert.assertEquals(4, raw.count("AAAACCCC+TTTTGGGG"));
+    Assert.assertEquals(3, pf.count("AAAACCCC+TTTTGGGG"));
+    Assert.assertEquals(7, raw.count("AAAACCCC+NNNNNNNN"));
+
+    Assert.assertEquals(6,
+        UndeterminedIndexesProcessThread.countIndexHopping(SAMPLE_INDEXES,
+            raw));
+    Assert.assertEquals(5,
+        UndeterminedIndexesProcessThread.countIndexHopping(SAMPLE_INDEXES,
+            pf));
+
+    // The hopped pairs are not near of any sample index
+    final IndexNeighbourhood neighbourhood = new IndexNeighbourhood(1);
+    for (int i = 0; i < SAMPLE_INDEXES.size(); i++) {
+      neighbourhood.add(i, SAMPLE_INDEXES.get(i));
+    }
+    Assert.assertTrue(neighbourhood.get("AAAACCCC+TTTTGGGG").isEmpty());
+    Assert.assertEquals(1, neighbourhood.get("AAAACCCA+GGGGTTTT").size());
+  }
+
+  @Test
+  public void testSingleIndexCount() {
+
+    final IndexCountTable table = new IndexCountTable();
+
+    // Only the first index is counted if not in dual index mode
+    Assert.assertTrue(UndeterminedIndexesProcessThread.countIllumina18Index(
+        "@M01:1:FC:1:1101:1000:2000 1:N:0:AAAACCCC+TTTTGGGG", false, table));
+    Assert.assertTrue(UndeterminedIndexesProcessThread.countIllumina18Index(
+        "@M01:1:FC:1:1101:1000:2001 1:Y:0:AAAACCCC+GGGGTTTT", false, table));
+
+    // Not an Illumina 1.8 id
+    Assert.assertFalse(UndeterminedIndexesProcessThread
+        .countIllumina18Index("@HWI-EAS100R:6:73:941:1973#0/1", false, table));
+
+    final Multiset<String> raw = HashMultiset.create();
+    final Multiset<String> pf = HashMultiset.create();
+    table.addTo(raw, pf);
+
+    Assert.assertEquals(1, raw.elementSet().size());
+    Assert.assertEquals(2, raw.count("AAAACCCC"));
+    Assert.assertEquals(1, pf.count("AAAACCCC"));
+
+    // No index hopping without dual indexes
+    Assert.assertEquals(0,
+        UndeterminedIndexesProcessThread.countIndexHopping(SAMPLE_INDEXES,
+            raw));
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Count the indexes of reads of a dual index lane.
+   * @param table the table of the index counts
+   * @param index the dual index of the reads
+   * @param pfCount the number of passing filter reads
+   * @param filteredCount the number of filtered reads
+   */
+  private static void count(final IndexCountTable table, final String index,
+      final int pfCount, final int filteredCount) {
+
+    for (int i = 0; i < pfCount + filteredCount; i++) {
+
+      final String id = "@M01:1:FC:1:1101:1000:"
+          + i + " 1:" + (i < pfCount ? 'N' : 'Y') + ":0:" + index;
+
+      Assert.assertTrue(UndeterminedIndexesProcessThread
+          .countIllumina18Index(id, true, table));
+    }
+  }
+
+}
@@ -0,0 +1,231 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later 
+ * and CeCILL. This should be distributed with the code. If you 
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.collectors.interop;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.primitives.Ints;
+
+import fr.ens.biologie.genomique.aozan.AozanException;
+import fr.ens.biologie.genomique.aozan.QC;
+import fr.ens.biologie.genomique.aozan.RunData;
+import fr.ens.biologie.genomique.aozan.collectors.CollectorConfiguration;
+import fr.ens.biologie.genomique.kenetre.illumina.interop.QMetric;
+import fr.ens.biologie.genomique.kenetre.illumina.interop.QMetricsReader;
+
+public class QualityMetricsCollectorTest {
+
+  private static final File SR50_DIR =
+      new File("src/test/java/files/InterOp_SR50");
+  private static final File SR50_DATA_FILE = new File(SR50_DIR, "SR50.data");
+
+  @Test
+  public void testUnbinnedFile() throws Exception {
+
+    final RunData data = new RunData(SR50_DATA_FILE);
+    collect(SR50_DIR, data);
+
+    // Same histograms as the Kenetre reader
+    final long[][][] lanes =
+        new long[data.getLaneCount()][data.getReadCount()][50];
+    final int[] reads = getReadOfCycles(data);
+    for (final QMetric qual : new QMetricsReader(new File(SR50_DIR, "InterOp"))
+        .readMetrics()) {
+
+      final int lane = qual.getLaneNumber() - 1;
+      final int read = reads[qual.getCycleNumber() - 1] - 1;
+      final long[] scores = qual.getClustersScore();
+      for (int i = 0; i < scores.length; i++) {
+        lanes[lane][read][i] += scores[i];
+      }
+    }
+
+    assertHistograms(lanes, data);
+  }
+
+  @Test
+  public void testBinnedFile() throws Exception {
+
+    final File dir = Files.createTempDirectory("run-").toFile();
+    final File interOpDir = new File(dir, "InterOp");
+    Assert.assertTrue(interOpDir.mkdir());
+
+    try {
+
+      final RunData data = new RunData(SR50_DATA_FILE);
+      final long[][][] lanes = writeBinnedFile(interOpDir, data);
+      collect(dir, data);
+
+      assertHistograms(lanes, data);
+
+    } finally {
+      for (final File f : interOpDir.listFiles()) {
+        f.delete();
+      }
+      interOpDir.delete();
+      dir.delete();
+    }
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Collect the quality metrics of a run.
+   * @param runDir the run directory
+   * @param data the run data with the description of the run
+   * @throws AozanException if an error occurs while collecting the metrics
+   */
+  private static void collect(final File runDir, final RunData data)
+      throws AozanException {
+
+    final QualityMetricsCollector collector = new QualityMetricsCollector();
+    collector.configure(null, new CollectorConfiguration(Collections
+        .singletonMap(QC.RTA_OUTPUT_DIR, runDir.getAbsolutePath())));
+    collector.collect(data);
+  }
+
+  /**
+   * Get the read number of each cycle.
+   * @param data the run data with the description of the run
+   * @return an array with the read number of each cycle
+   */
+  private static int[] getReadOfCycles(final RunData data) {
+
+    final List<Integer> result = new ArrayList<>();
+    for (int read = 1; read <= data.getReadCount(); read++) {
+      for (int i = 0; i < data.getReadCyclesCount(read); i++) {
+        result.add(read);
+      }
+    }
+
+    return Ints.toArray(result);
+  }
+
+  /**
+   * Check the quality histograms of the collector.
+   * @param lanes the expected histograms of each lane and read
+   * @param data the run data with the results of the collector
+   */
+  private static void assertHistograms(final long[][][] lanes,
+      final RunData data) {
+
+    final long[] global = new long[50];
+
+    for (int lane = 1; lane <= lanes.length; lane++) {
+      for (int read = 1; read <= lanes[lane - 1].length; read++) {
+
+        final long[] expected = lanes[lane - 1][read - 1];
+        for (int i = 0; i < expected.length; i++) {
+          global[i] += expected[i];
+        }
+
+        final String key = QualityMetricsCollector.DATA_PREFIX
+            + ".lane" + lane + ".read" + read;
+        Assert.assertArrayEquals(key, expected, data.getLongArray(key));
+      }
+    }
+
+    Assert.assertArrayEquals(global,
+        data.getLongArray(QualityMetricsCollector.DATA_PREFIX + ".global"));
+  }
+
+  /**
+   * Write a quality metrics file in version 6 with binned quality scores.
+   * @param interOpDir the InterOp directory
+   * @param data the run data with the description of the run
+   * @return the expected histograms of each lane and read
+   * @throws IOException if an error occurs while writing the file
+   */
+  private static long[][][] writeBinnedFile(final File interOpDir,
+      final RunData data) throws IOException {
+
+    final byte[] lowerBounds = {1, 10, 20, 25, 30, 35, 40};
+    final byte[] upperBounds = {9, 19, 24, 29, 34, 39, 41};
+    final byte[] remappedScores = {7, 16, 22, 27, 32, 37, 41};
+    final int binCount = remappedScores.length;
+    final int recordSize = 6 + binCount * 4;
+    final int tiles = 4;
+
+    final int[] reads = getReadOfCycles(data);
+    final int cycles = reads.length;
+    final long[][][] result =
+        new long[data.getLaneCount()][data.getReadCount()][50];
+
+    final int recordCount = data.getLaneCount() * tiles * cycles;
+    final ByteBuffer buf =
+        ByteBuffer.allocate(4 + 3 * binCount + recordCount * recordSize);
+    buf.order(ByteOrder.LITTLE_ENDIAN);
+    buf.put((byte) 6);
+    buf.put((byte) recordSize);
+    buf.put((byte) 1);
+    buf.put((byte) binCount);
+    buf.put(lowerBounds);
+    buf.put(upperBounds);
+    buf.put(remappedScores);
+
+    final Random random = new Random(1);
+
+    for (int lane = 1; lane <= data.getLaneCount(); lane++) {
+      for (int tile = 1; tile <= tiles; tile++) {
+        for (int cycle = 1; cycle <= cycles; cycle++) {
+
+          buf.putShort((short) lane);
+          buf.putShort((short) (1100 + tile));
+          buf.putShort((short) cycle);
+
+          final long[] histogram = result[lane - 1][reads[cycle - 1] - 1];
+          for (int i = 0; i < binCount; i++) {
+
+            // The clusters of a bin have the remapped quality score
+            final int clusters = random.nextInt(100_000);
+            buf.putInt(clusters);
+            histogram[remappedScores[i] - 1] += clusters;
+          }
+        }
+      }
+    }
+
+    try (FileOutputStream out = new FileOutputStream(
+        new File(interOpDir, QualityMetricsReader.QUALITY_METRICS_FILE))) {
+      out.write(buf.array(), 0, buf.position());
+    }
+
+    return result;
+  }
+
+}
@@ -0,0 +1,162 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later 
+ * and CeCILL. This should be distributed with the code. If you 
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.collectors.interop;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.aozan.AozanException;
+
+public class QualityMetricsReaderTest {
+
+  @Test
+  public void testUnbinnedFile() throws IOException, AozanException {
+
+    final File dir = Files.createTempDirectory("interop-").toFile();
+
+    try {
+      final ByteBuffer buf = ByteBuffer.allocate(2 + 2 * 206);
+      buf.order(ByteOrder.LITTLE_ENDIAN);
+      buf.put((byte) 4);
+      buf.put((byte) 206);
+
+      for (int record = 1; record <= 2; record++) {
+        buf.putShort((short) record);
+        buf.putShort((short) 1101);
+        buf.putShort((short) (record + 10));
+        for (int i = 0; i < 50; i++) {
+          buf.putInt(i == 29 ? 100 * record : 0);
+        }
+      }
+      write(dir, buf);
+
+      final QualityMetricsReader reader = new QualityMetricsReader(dir);
+      final long[] histogram = new long[50];
+      final int[] lanes = new int[3];
+
+      reader.visitRecords(new QualityMetricsReader.RecordVisitor() {
+
+        @Override
+        public void visit(final QualityMetricsReader.Record record) {
+
+          Assert.assertEquals(1101, record.getTileNumber());
+          lanes[record.getLaneNumber()] = record.getCycleNumber();
+          record.addClustersScore(histogram);
+        }
+      });
+
+      Assert.assertEquals(11, lanes[1]);
+      Assert.assertEquals(12, lanes[2]);
+      Assert.assertEquals(300, histogram[29]);
+
+      Assert.assertEquals(2, reader.readMetrics().size());
+      Assert.assertEquals(100,
+          reader.readMetrics().get(0).getClustersScore()[29]);
+
+    } finally {
+      delete(dir);
+    }
+  }
+
+  @Test
+  public void testBinnedFile() throws IOException, AozanException {
+
+    final File dir = Files.createTempDirectory("interop-").toFile();
+
+    try {
+
+      // Version 7 with 3 bins, the tile number is an unsigned int
+      final int recordSize = 8 + 3 * 4;
+      final ByteBuffer buf = ByteBuffer.allocate(2 + 2 + 9 + recordSize);
+      buf.order(ByteOrder.LITTLE_ENDIAN);
+      buf.put((byte) 7);
+      buf.put((byte) recordSize);
+      buf.put((byte) 1);
+      buf.put((byte) 3);
+      buf.put(new byte[] {1, 15, 30});
+      buf.put(new byte[] {14, 29, 40});
+      buf.put(new byte[] {12, 23, 37});
+
+      buf.putShort((short) 3);
+      buf.putInt(21101);
+      buf.putShort((short) 151);
+      buf.putInt(5);
+      buf.putInt(10);
+      buf.putInt(-1);
+      write(dir, buf);
+
+      final long[] histogram = new long[50];
+      final int[] count = new int[1];
+
+      new QualityMetricsReader(dir)
+          .visitRecords(new QualityMetricsReader.RecordVisitor() {
+
+            @Override
+            public void visit(final QualityMetricsReader.Record record) {
+
+              Assert.assertEquals(3, record.getLaneNumber());
+              Assert.assertEquals(21101, record.getTileNumber());
+              Assert.assertEquals(151, record.getCycleNumber());
+              record.addClustersScore(histogram);
+              count[0]++;
+            }
+          });
+
+      // The clusters of the bins are added to the remapped quality scores
+      Assert.assertEquals(1, count[0]);
+      Assert.assertEquals(5, histogram[11]);
+      Assert.assertEquals(10, histogram[22]);
+      Assert.assertEquals(0xFFFFFFFFL, histogram[36]);
+      Assert.assertEquals(0, histogram[0]);
+
+    } finally {
+      delete(dir);
+    }
+  }
+
+  private static void write(final File dir, final ByteBuffer buf)
+      throws IOException {
+
+    try (FileOutputStream out = new FileOutputStream(
+        new File(dir, QualityMetricsReader.QUALITY_METRICS_FILE))) {
+      out.write(buf.array(), 0, buf.position());
+    }
+  }
+
+  private static void delete(final File dir) {
+
+    for (final File f : dir.listFiles()) {
+      f.delete();
+    }
+    dir.delete();
+  }
+
+}
@@ -0,0 +1,124 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later
+ * and CeCILL. This should be distributed with the code. If you
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.demux;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.kenetre.bio.ReadSequence;
+import fr.ens.biologie.genomique.kenetre.bio.io.FastqWriter;
+
+public class AsyncFastqWriterTest {
+
+  @Test(timeout = 60000)
+  public void testWrite() throws IOException {
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+
+    try (AsyncFastqWriter writer =
+        new AsyncFastqWriter(new FastqWriter(out), 2);
+        FastqWriter syncWriter = new FastqWriter(expected)) {
+
+      int count = 0;
+      for (int i = 0; i < 50; i++) {
+
+        final List<ReadSequence> batch = new ArrayList<>();
+        for (int j = 0; j < 10; j++) {
+
+          final ReadSequence read =
+              new ReadSequence("read" + count++, "ACGT", "IIII");
+          batch.add(read);
+          syncWriter.write(read);
+        }
+        writer.write(batch);
+      }
+    }
+
+    // The batches must be written in order
+    Assert.assertTrue(expected.size() > 0);
+    Assert.assertEquals(new String(expected.toByteArray(), UTF_8),
+        new String(out.toByteArray(), UTF_8));
+  }
+
+  @Test(timeout = 60000)
+  public void testWriteError() throws IOException {
+
+    final OutputStream failingStream = new OutputStream() {
+
+      @Override
+      public void write(final int b) throws IOException {
+        throw new IOException("Disk full");
+      }
+
+      @Override
+      public void write(final byte[] b, final int off, final int len)
+          throws IOException {
+        throw new IOException("Disk full");
+      }
+    };
+
+    final AsyncFastqWriter writer =
+        new AsyncFastqWriter(new FastqWriter(failingStream), 1);
+
+    // The producer must not be blocked after an error of the writer thread,
+    // even if there is more batches than the size of the queue
+    final List<ReadSequence> batch = new ArrayList<>();
+    for (int i = 0; i < 100_000; i++) {
+      batch.add(new ReadSequence("read" + i, "ACGTACGTAC", "IIIIIIIIII"));
+    }
+
+    IOException exception = null;
+    try {
+      for (int i = 0; i < 10; i++) {
+        writer.write(batch);
+      }
+    } catch (IOException e) {
+      exception = e;
+    }
+
+    // The error must be thrown by close() if not thrown by write()
+    try {
+      writer.close();
+    } catch (IOException e) {
+      if (exception == null) {
+        exception = e;
+      }
+    }
+
+    Assert.assertNotNull(exception);
+
+    // Closing again the writer does nothing
+    writer.close();
+  }
+
+}
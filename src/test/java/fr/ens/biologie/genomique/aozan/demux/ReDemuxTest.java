@@ -0,0 +1,194 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later
+ * and CeCILL. This should be distributed with the code. If you
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.demux;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReDemuxTest {
+
+  private static final int FILES = 3;
+  private static final int READS_BY_FILE = 2500;
+
+  @Test
+  public void testPairedEndOrder() throws Exception {
+
+    final File dir = Files.createTempDirectory("redemux-").toFile();
+
+    try {
+
+      final File samplesheetFile = new File(dir, "samplesheet.csv");
+      Files.write(samplesheetFile.toPath(),
+          ("[Data]\n"
+              + "Lane,Sample_ID,Sample_Name,index,Sample_Project\n"
+              + "1,sample1,sample1,CGATGT,projectA\n"
+              + "1,sample2,sample2,TGACCA,projectA\n"
+              + "1,sample3,sample3,GCCAAT,projectA\n").getBytes(UTF_8));
+
+      final File inputDir =
+          new File(dir, "Undetermined_indices/Sample_lane1");
+      Assert.assertTrue(inputDir.mkdirs());
+
+      // The undetermined files of each read have several chunks
+      int expectedCount = 0;
+      for (int chunk = 1; chunk <= FILES; chunk++) {
+        expectedCount += writeUndeterminedFile(inputDir, 1, chunk);
+        writeUndeterminedFile(inputDir, 2, chunk);
+      }
+
+      final File outputDir = new File(dir, "output");
+      Assert.assertTrue(outputDir.mkdir());
+
+      final List<String> indexes = new ArrayList<>();
+      indexes.add("1:CGATGA");
+      ReDemux.redemultiplex(samplesheetFile, "2", indexes, outputDir);
+
+      final List<String> read1Ids = readIds(findOutputFile(outputDir, 1));
+      final List<String> read2Ids = readIds(findOutputFile(outputDir, 2));
+
+      // The entries of the pairs must be in the same order in both files
+      Assert.assertEquals(expectedCount, read1Ids.size());
+      Assert.assertEquals(read1Ids, read2Ids);
+
+      // The entries must be in the order of the undetermined files
+      final List<String> sorted = new ArrayList<>(read1Ids);
+      Collections.sort(sorted);
+      Assert.assertEquals(sorted, read1Ids);
+
+    } finally {
+      delete(dir);
+    }
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Write an undetermined file.
+   * @param dir output directory
+   * @param read the read number
+   * @param chunk the chunk number
+   * @return the number of entries with the index to re-demultiplex
+   * @throws IOException if an error occurs while writing the file
+   */
+  private static int writeUndeterminedFile(final File dir, final int read,
+      final int chunk) throws IOException {
+
+    final File file = new File(dir,
+        "lane1_Undetermined_L001_R" + read + "_00" + chunk + ".fastq");
+
+    int result = 0;
+
+    try (Writer writer = Files.newBufferedWriter(file.toPath(), UTF_8)) {
+
+      for (int i = 0; i < READS_BY_FILE; i++) {
+
+        // One read on three has the index to re-demultiplex
+        final String index = i % 3 == 0 ? "CGATGA" : "NNNNNN";
+        if (i % 3 == 0) {
+          result++;
+        }
+
+        writer.write(String.format("@NB500:1:FC:1:%d:%06d:1 %d:N:0:%s\n",
+            chunk, i, read, index));
+        writer.write("ACGTACGTAC\n+\nIIIIIIIIII\n");
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Find a re-demultiplexed file.
+   * @param dir the output directory
+   * @param read the read number
+   * @return the file
+   * @throws IOException if an error occurs while searching the file
+   */
+  private static File findOutputFile(final File dir, final int read)
+      throws IOException {
+
+    try (Stream<Path> stream = Files.walk(dir.toPath())) {
+
+      final List<Path> files = stream
+          .filter(p -> p.getFileName().toString()
+              .endsWith("_L001_R" + read + "_redemux_.fastq"))
+          .collect(Collectors.toList());
+
+      Assert.assertEquals(1, files.size());
+
+      return files.get(0).toFile();
+    }
+  }
+
+  /**
+   * Read the ids of the entries of a FASTQ file without the read number.
+   * @param file the file to read
+   * @return a list with the ids
+   * @throws IOException if an error occurs while reading the file
+   */
+  private static List<String> readIds(final File file) throws IOException {
+
+    final List<String> lines = Files.readAllLines(file.toPath(), UTF_8);
+    final List<String> result = new ArrayList<>();
+
+    for (int i = 0; i < lines.size(); i += 4) {
+      final String id = lines.get(i);
+      result.add(id.substring(0, id.indexOf(' ')));
+    }
+
+    return result;
+  }
+
+  /**
+   * Delete a directory and its content.
+   * @param dir the directory to delete
+   * @throws IOException if an error occurs while deleting the directory
+   */
+  private static void delete(final File dir) throws IOException {
+
+    try (Stream<Path> stream = Files.walk(dir.toPath())) {
+      for (Path p : stream.sorted(Comparator.reverseOrder())
+          .collect(Collectors.toList())) {
+        Files.delete(p);
+      }
+    }
+  }
+
+}
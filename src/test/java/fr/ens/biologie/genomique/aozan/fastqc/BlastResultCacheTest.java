@@ -0,0 +1,138 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later
+ * and CeCILL. This should be distributed with the code. If you
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.fastqc;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BlastResultCacheTest {
+
+  private static final String KEY = "0123456789abcdef";
+  private static final int ITERATIONS = 50;
+
+  @Test
+  public void testSaveAndLoad() throws IOException {
+
+    final File dir = Files.createTempDirectory("blast-cache-").toFile();
+
+    try {
+
+      final BlastResultCache cache = new BlastResultCache(dir, KEY, 0);
+      cache.seed("SEED", null);
+      cache.putAll(Collections.singletonMap("ACGT", null));
+      cache.save();
+
+      final BlastResultCache other = new BlastResultCache(dir, KEY, 0);
+      other.load();
+
+      Assert.assertTrue(other.contains("ACGT"));
+      Assert.assertNull(other.get("ACGT"));
+
+      // The seed entries are not saved
+      Assert.assertFalse(other.contains("SEED"));
+      Assert.assertEquals(1, other.size());
+
+    } finally {
+      delete(dir);
+    }
+  }
+
+  @Test
+  public void testConcurrentInstances() throws Exception {
+
+    final File dir = Files.createTempDirectory("blast-cache-").toFile();
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    try {
+
+      // Several instances of the same JVM share the same cache file
+      final List<Callable<Void>> tasks = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+
+        final String prefix = "T" + i + "_";
+        final BlastResultCache cache = new BlastResultCache(dir, KEY, 0);
+
+        tasks.add(() -> {
+
+          for (int j = 0; j < ITERATIONS; j++) {
+            cache.load();
+            cache.putAll(Collections.singletonMap(prefix + j, null));
+            cache.save();
+          }
+
+          return null;
+        });
+      }
+
+      // An OverlappingFileLockException is thrown without in-process lock
+      for (Future<Void> f : executor.invokeAll(tasks)) {
+        f.get();
+      }
+
+      final BlastResultCache cache = new BlastResultCache(dir, KEY, 0);
+      cache.load();
+
+      Assert.assertEquals(4 * ITERATIONS, cache.size());
+
+    } finally {
+      executor.shutdownNow();
+      delete(dir);
+    }
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Delete a directory and its content.
+   * @param dir the directory to delete
+   * @throws IOException if an error occurs while deleting the directory
+   */
+  private static void delete(final File dir) throws IOException {
+
+    try (Stream<Path> stream = Files.walk(dir.toPath())) {
+      for (Path p : stream.sorted(Comparator.reverseOrder())
+          .collect(Collectors.toList())) {
+        Files.delete(p);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,257 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later
+ * and CeCILL. This should be distributed with the code. If you
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.fastqc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import uk.ac.babraham.FastQC.Sequence.Contaminant.Contaminant;
+import uk.ac.babraham.FastQC.Sequence.Contaminant.ContaminantHit;
+
+public class ContaminantIndexTest {
+
+  private static final String ADAPTER =
+      "AGATCGGAAGAGCACACGTCTGAACTCCAGTCACATCACGATCTCGTATGCCGTCTTCTGCTTG";
+  private static final String PRIMER = "AATGATACGGCGACCACCGAGATCTACAC";
+  private static final String BASES = "ACGT";
+
+  @Test
+  public void testFindHit() {
+
+    final ContaminantIndex index = createIndex(1);
+
+    // Forward hit
+    ContaminantHit hit = index.findHit(ADAPTER.substring(10, 40));
+    Assert.assertNotNull(hit);
+    Assert.assertEquals("Adapter", hit.contaminant().name());
+    Assert.assertEquals(ContaminantHit.FORWARD, hit.direction());
+    Assert.assertEquals(30, hit.length());
+    Assert.assertEquals(100, hit.percentID());
+
+    // Reverse complement hit
+    hit = index.findHit(reverseComplement(PRIMER.substring(2)).toLowerCase());
+    Assert.assertNotNull(hit);
+    Assert.assertEquals("Primer", hit.contaminant().name());
+    Assert.assertEquals(ContaminantHit.REVERSE, hit.direction());
+    Assert.assertEquals(27, hit.length());
+    Assert.assertEquals(100, hit.percentID());
+
+    // Hit with a mismatch
+    final String mismatch =
+        ADAPTER.substring(0, 20) + 'N' + ADAPTER.substring(21, 50);
+    hit = index.findHit(mismatch);
+    Assert.assertNotNull(hit);
+    Assert.assertEquals(50, hit.length());
+    Assert.assertEquals(98, hit.percentID());
+
+    // Only the longest part is a hit without mismatch
+    hit = createIndex(0).findHit(mismatch);
+    Assert.assertNotNull(hit);
+    Assert.assertEquals(29, hit.length());
+    Assert.assertEquals(100, hit.percentID());
+
+    // The segments end at the second mismatch like FastQC, so there is no
+    // hit of 31 bases with a mismatch
+    final String segments = ADAPTER.substring(0, 2) + 'N'
+        + ADAPTER.substring(3, 18) + 'N' + ADAPTER.substring(19, 34) + 'N'
+        + ADAPTER.substring(35, 37);
+    Assert.assertNull(index.findHit(segments));
+
+    // No hit
+    Assert.assertNull(index.findHit("ACACACACACACACACACACACACACACAC"));
+    Assert.assertNull(index.findHit(ADAPTER.substring(0, 20)));
+  }
+
+  @Test
+  public void testFindShortSequenceHit() {
+
+    final ContaminantIndex index = createIndex(1);
+
+    final ContaminantHit hit = index.findHit(PRIMER.substring(5, 20));
+    Assert.assertNotNull(hit);
+    Assert.assertEquals("Primer", hit.contaminant().name());
+    Assert.assertEquals(15, hit.length());
+    Assert.assertEquals(100, hit.percentID());
+
+    // A short sequence must fully match
+    Assert.assertNull(index.findHit(PRIMER.substring(5, 19) + 'T'));
+    Assert.assertNull(index.findHit(PRIMER.substring(0, 8)));
+  }
+
+  @Test
+  public void testSameHitsAsFastQC() {
+
+    final Random random = new Random(12345);
+
+    final List<Contaminant> contaminants = new ArrayList<>();
+    final List<String> sequences = new ArrayList<>();
+    final ContaminantIndex index = new ContaminantIndex();
+
+    for (int i = 0; i < 30; i++) {
+
+      final String name = "Contaminant" + i;
+      final String sequence = randomSequence(random, 20 + random.nextInt(60));
+
+      contaminants.add(new Contaminant(name, sequence));
+      sequences.add(sequence);
+      index.add(name, sequence);
+    }
+    index.build();
+
+    for (int i = 0; i < 5000; i++) {
+
+      final String query = randomQuery(random, sequences);
+
+      final ContaminantHit expected = findFastQCHit(contaminants, query);
+      final ContaminantHit hit = index.findHit(query);
+
+      if (expected == null) {
+        Assert.assertNull(query, hit);
+        continue;
+      }
+
+      Assert.assertNotNull(query, hit);
+      Assert.assertEquals(query, expected.contaminant().name(),
+          hit.contaminant().name());
+      Assert.assertEquals(query, expected.direction(), hit.direction());
+      Assert.assertEquals(query, expected.length(), hit.length());
+      Assert.assertEquals(query, expected.percentID(), hit.percentID());
+    }
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Find the best hit of a sequence like the ContaminentFinder class of
+   * FastQC.
+   * @param contaminants the contaminants
+   * @param sequence the sequence
+   * @return the best hit or null if there is no hit
+   */
+  private static ContaminantHit findFastQCHit(
+      final List<Contaminant> contaminants, final String sequence) {
+
+    ContaminantHit result = null;
+
+    for (Contaminant contaminant : contaminants) {
+
+      final ContaminantHit hit = contaminant.findMatch(sequence);
+
+      if (hit == null) {
+        continue;
+      }
+
+      if (result == null
+          || hit.length() > result.length()
+          || (hit.length() == result.length()
+              && hit.percentID() > result.percentID())) {
+        result = hit;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Create a query from a part of a contaminant, in forward or reverse
+   * complement, with random mismatches, or a random query.
+   * @param random the random number generator
+   * @param sequences the sequences of the contaminants
+   * @return a query
+   */
+  private static String randomQuery(final Random random,
+      final List<String> sequences) {
+
+    if (random.nextInt(10) == 0) {
+      return randomSequence(random, 9 + random.nextInt(60));
+    }
+
+    final String sequence = sequences.get(random.nextInt(sequences.size()));
+    final int start = random.nextInt(sequence.length() / 2);
+    final int end =
+        Math.min(sequence.length(), start + 9 + random.nextInt(60));
+
+    // Add random bases around the part of the contaminant
+    final StringBuilder sb = new StringBuilder();
+    sb.append(randomSequence(random, random.nextInt(3) * random.nextInt(10)));
+    sb.append(sequence, start, end);
+    sb.append(randomSequence(random, random.nextInt(3) * random.nextInt(10)));
+
+    final int mismatches = random.nextInt(5);
+    for (int i = 0; i < mismatches; i++) {
+      sb.setCharAt(random.nextInt(sb.length()),
+          BASES.charAt(random.nextInt(BASES.length())));
+    }
+
+    final String result = sb.toString();
+
+    return random.nextBoolean() ? result : reverseComplement(result);
+  }
+
+  /**
+   * Create a random sequence.
+   * @param random the random number generator
+   * @param length the length of the sequence
+   * @return a random sequence
+   */
+  private static String randomSequence(final Random random,
+      final int length) {
+
+    final StringBuilder sb = new StringBuilder();
+
+    for (int i = 0; i < length; i++) {
+      sb.append(BASES.charAt(random.nextInt(BASES.length())));
+    }
+
+    return sb.toString();
+  }
+
+  private static ContaminantIndex createIndex(final int maxMismatches) {
+
+    final ContaminantIndex result = new ContaminantIndex(maxMismatches);
+    result.add("Adapter", ADAPTER);
+    result.add("Primer", PRIMER);
+    result.build();
+
+    return result;
+  }
+
+  private static String reverseComplement(final String sequence) {
+
+    final StringBuilder sb = new StringBuilder();
+
+    for (int i = sequence.length() - 1; i >= 0; i--) {
+      sb.append("TGCA".charAt("ACGT".indexOf(sequence.charAt(i))));
+    }
+
+    return sb.toString();
+  }
+
+}
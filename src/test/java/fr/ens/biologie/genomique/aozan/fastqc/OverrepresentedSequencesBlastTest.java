@@ -0,0 +1,295 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later
+ * and CeCILL. This should be distributed with the code. If you
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.fastqc;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.aozan.QC;
+import fr.ens.biologie.genomique.aozan.Settings;
+import fr.ens.biologie.genomique.aozan.collectors.CollectorConfiguration;
+
+public class OverrepresentedSequencesBlastTest {
+
+  /**
+   * Fake blastn that writes a hit named after each query sequence and logs
+   * its input files.
+   */
+  private static final String FAKE_BLASTN = "#!/bin/sh\n"
+      + "while [ $# -gt 0 ]; do\n"
+      + "  case \"$1\" in\n"
+      + "    -query) in=\"$2\"; shift;;\n"
+      + "    -out) out=\"$2\"; shift;;\n"
+      + "  esac\n"
+      + "  shift\n"
+      + "done\n"
+      + "echo \"$in\" >> \"$(dirname \"$0\")/calls.txt\"\n"
+      + "awk 'BEGIN { print \"<BlastOutput><BlastOutput_iterations>\" }\n"
+      + "  /^>/ { id = substr($0, 2); next }\n"
+      + "  { print \"<Iteration><Iteration_query-def>\" id"
+      + " \"</Iteration_query-def><Iteration_query-len>\" length($0)"
+      + " \"</Iteration_query-len><Iteration_hits><Hit><Hit_num>1</Hit_num>"
+      + "<Hit_def>hit_\" $0 \"</Hit_def><Hit_hsps><Hsp>"
+      + "<Hsp_evalue>0.0</Hsp_evalue><Hsp_identity>\" length($0)"
+      + " \"</Hsp_identity><Hsp_align-len>\" length($0)"
+      + " \"</Hsp_align-len></Hsp></Hit_hsps></Hit></Iteration_hits>"
+      + "</Iteration>\" }\n"
+      + "  END { print \"</BlastOutput_iterations></BlastOutput>\" }'"
+      + " \"$in\" > \"$out\"\n";
+
+  @Test
+  public void testBatchResults() throws Exception {
+
+    final File dir = createBlastDir();
+
+    try {
+
+      final OverrepresentedSequencesBlast blast = createBlast(dir, 3);
+
+      // Two full batches are launched at the submission, the last batch is
+      // launched when one of its results is requested
+      final List<String> sequences = createSequences(7);
+      final Map<String, CompletableFuture<BlastResultHit>> futures =
+          new HashMap<>();
+      for (String sequence : sequences) {
+        futures.put(sequence, blast.submitSequence(sequence));
+      }
+      Assert.assertEquals(7, blast.getSubmittedSequenceCount());
+
+      for (String sequence : sequences) {
+
+        final BlastResultHit hit = blast.getResult(sequence);
+
+        // Each result must be the result of its own sequence
+        Assert.assertNotNull(hit);
+        Assert.assertEquals("hit_" + sequence, hit.getResult());
+        Assert.assertSame(hit, futures.get(sequence).get());
+      }
+
+      Assert.assertEquals(3, countBlastCalls(dir));
+      Assert.assertEquals(7, blast.getAnalyzedSequenceCount());
+
+      // The results are not blasted again
+      Assert.assertTrue(blast.submitSequence(sequences.get(0)).isDone());
+      Assert.assertEquals("hit_" + sequences.get(0),
+          blast.getResult(sequences.get(0)).getResult());
+      Assert.assertEquals(3, countBlastCalls(dir));
+
+      blast.clear();
+
+    } finally {
+      delete(dir);
+    }
+  }
+
+  @Test
+  public void testClearPendingSequences() throws Exception {
+
+    final File dir = createBlastDir();
+
+    try {
+
+      final OverrepresentedSequencesBlast blast = createBlast(dir, 100);
+
+      // The batch is not full and waits its delay
+      final List<String> sequences = createSequences(5);
+      final List<CompletableFuture<BlastResultHit>> futures =
+          new ArrayList<>();
+      for (String sequence : sequences) {
+        futures.add(blast.submitSequence(sequence));
+      }
+
+      for (CompletableFuture<BlastResultHit> future : futures) {
+        Assert.assertFalse(future.isDone());
+      }
+
+      blast.clear();
+
+      // The pending sequences are blasted before the end of clear()
+      for (int i = 0; i < sequences.size(); i++) {
+        Assert.assertTrue(futures.get(i).isDone());
+        Assert.assertEquals("hit_" + sequences.get(i),
+            futures.get(i).get().getResult());
+      }
+      Assert.assertEquals(0, blast.getSubmittedSequenceCount());
+      Assert.assertEquals(5, blast.getAnalyzedSequenceCount());
+      Assert.assertEquals(1, countBlastCalls(dir));
+
+    } finally {
+      delete(dir);
+    }
+  }
+
+  @Test
+  public void testClearFailedBatch() throws Exception {
+
+    final File dir = createBlastDir();
+
+    try {
+
+      final OverrepresentedSequencesBlast blast = createBlast(dir, 100);
+
+      // The blast of the batch fails
+      Assert.assertTrue(new File(dir, "blastn").delete());
+
+      final List<CompletableFuture<BlastResultHit>> futures =
+          new ArrayList<>();
+      for (String sequence : createSequences(5)) {
+        futures.add(blast.submitSequence(sequence));
+      }
+
+      blast.clear();
+
+      // The failed sequences are not reported without hit
+      for (CompletableFuture<BlastResultHit> future : futures) {
+        Assert.assertTrue(future.isCompletedExceptionally());
+      }
+      Assert.assertEquals(0, blast.getAnalyzedSequenceCount());
+
+    } finally {
+      delete(dir);
+    }
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Create a directory with a fake blastn executable and a fake database.
+   * @return the directory
+   * @throws IOException if an error occurs while creating the directory
+   */
+  private static File createBlastDir() throws IOException {
+
+    // The fake blastn requires a Unix shell
+    Assume.assumeTrue(new File("/bin/sh").canExecute());
+
+    final File dir = Files.createTempDirectory("blast-").toFile();
+
+    final File blastn = new File(dir, "blastn");
+    Files.write(blastn.toPath(), FAKE_BLASTN.getBytes(UTF_8));
+    Assert.assertTrue(blastn.setExecutable(true));
+
+    Files.write(new File(dir, "nt.nal").toPath(), new byte[0]);
+
+    return dir;
+  }
+
+  /**
+   * Create an instance of OverrepresentedSequencesBlast that use the fake
+   * blastn.
+   * @param dir the directory of the fake blastn
+   * @param batchSize the size of the batches
+   * @return a new instance of OverrepresentedSequencesBlast
+   */
+  private static OverrepresentedSequencesBlast createBlast(final File dir,
+      final int batchSize) {
+
+    final Map<String, String> map = new HashMap<>();
+    map.put(Settings.QC_CONF_FASTQC_BLAST_ENABLE_KEY, "true");
+    map.put(Settings.QC_CONF_FASTQC_BLAST_PATH_KEY,
+        new File(dir, "blastn").getPath());
+    map.put(Settings.QC_CONF_FASTQC_BLAST_DB_PATH_KEY, dir.getPath());
+    map.put(Settings.QC_CONF_FASTQC_BLAST_BATCH_SIZE_KEY, "" + batchSize);
+    map.put(QC.TMP_DIR, dir.getPath());
+
+    final OverrepresentedSequencesBlast result =
+        new OverrepresentedSequencesBlast();
+    result.configure(new CollectorConfiguration(map), null);
+
+    return result;
+  }
+
+  /**
+   * Create sequences.
+   * @param count the number of sequences
+   * @return a list with the sequences
+   */
+  private static List<String> createSequences(final int count) {
+
+    final List<String> result = new ArrayList<>();
+
+    for (int i = 0; i < count; i++) {
+
+      final StringBuilder sb = new StringBuilder("ACGTTGCA");
+      for (int n = i; n > 0; n /= 4) {
+        sb.append("ACGT".charAt(n % 4));
+      }
+      sb.append("TTTTGGGG");
+      result.add(sb.toString());
+    }
+
+    return result;
+  }
+
+  /**
+   * Count the calls to the fake blastn.
+   * @param dir the directory of the fake blastn
+   * @return the number of calls
+   * @throws IOException if an error occurs while reading the log file
+   */
+  private static int countBlastCalls(final File dir) throws IOException {
+
+    final File file = new File(dir, "calls.txt");
+
+    if (!file.exists()) {
+      return 0;
+    }
+
+    return Files.readAllLines(file.toPath(), UTF_8).size();
+  }
+
+  /**
+   * Delete a directory and its content.
+   * @param dir the directory to delete
+   * @throws IOException if an error occurs while deleting the directory
+   */
+  private static void delete(final File dir) throws IOException {
+
+    try (Stream<Path> stream = Files.walk(dir.toPath())) {
+      for (Path p : stream.sorted(Comparator.reverseOrder())
+          .collect(Collectors.toList())) {
+        Files.delete(p);
+      }
+    }
+  }
+
+}
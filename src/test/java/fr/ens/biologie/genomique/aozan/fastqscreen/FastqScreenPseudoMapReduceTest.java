@@ -0,0 +1,273 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later
+ * and CeCILL. This should be distributed with the code. If you
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.fastqscreen;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.aozan.AozanException;
+import fr.ens.biologie.genomique.aozan.RunData;
+import fr.ens.biologie.genomique.aozan.fastqscreen.FastqScreenPseudoMapReduce.GenomeMapper;
+
+public class FastqScreenPseudoMapReduceTest {
+
+  private static final List<String> GENOMES =
+      Arrays.asList("human", "mouse", "skipped", "phix", "adapters");
+  private static final String SAMPLE_GENOME = "mouse";
+  private static final int READ_COUNT = 500;
+  private static final int MAPPER_THREADS = 8;
+
+  @Test
+  public void testConcurrentGenomes() throws IOException, AozanException {
+
+    final Map<String, String> samOutputs = createSamOutputs();
+    final File dir = Files.createTempDirectory("fastqscreen-").toFile();
+
+    try {
+
+      final Map<String, String> expected =
+          map(dir, samOutputs, 1, MAPPER_THREADS);
+
+      for (final int concurrentGenomes : new int[] {2, 3, 5, 10}) {
+
+        // The threads of the mapper are shared between the genomes
+        final int genomeThreads = Math.min(concurrentGenomes, GENOMES.size());
+
+        Assert.assertEquals(expected, map(dir, samOutputs, concurrentGenomes,
+            Math.max(1, MAPPER_THREADS / genomeThreads)));
+      }
+
+    } finally {
+      delete(dir);
+    }
+  }
+
+  @Test
+  public void testGenomeFailure() throws IOException, AozanException {
+
+    final File dir = Files.createTempDirectory("fastqscreen-").toFile();
+
+    try {
+
+      final FastqScreenPseudoMapReduce pmr = newPseudoMapReduce(dir);
+      final CountDownLatch started = new CountDownLatch(1);
+      final AtomicBoolean otherMappingEnded = new AtomicBoolean();
+
+      final GenomeMapper genomeMapper = (genome, threads) -> {
+
+        if ("human".equals(genome)) {
+
+          // A long mapping, only stopped by the failure of another genome
+          try {
+            started.countDown();
+            Thread.sleep(60_000);
+          } catch (final InterruptedException e) {
+            // The mapping is stopped
+          } finally {
+            otherMappingEnded.set(true);
+          }
+          return null;
+        }
+
+        try {
+          started.await();
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        throw new AozanException("mapping failed on " + genome);
+      };
+
+      final long start = System.currentTimeMillis();
+
+      try {
+        pmr.mapGenomes(Arrays.asList("human", "mouse"), SAMPLE_GENOME,
+            MAPPER_THREADS, 2, genomeMapper);
+        Assert.fail();
+      } catch (final AozanException e) {
+        Assert.assertEquals("mapping failed on mouse", e.getMessage());
+      }
+
+      // The failure does not wait the end of the other mapping, and the other
+      // mapping has ended when the failure is reported
+      Assert.assertTrue(System.currentTimeMillis() - start < 30_000);
+      Assert.assertTrue(otherMappingEnded.get());
+
+    } finally {
+      delete(dir);
+    }
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Map the reads on the genomes and get the result.
+   * @param dir temporary directory
+   * @param samOutputs the SAM outputs of the mapper for each genome
+   * @param concurrentGenomes number of genomes to map at the same time
+   * @param expectedThreads expected number of threads for each genome
+   * @return a map with the result
+   */
+  private static Map<String, String> map(final File dir,
+      final Map<String, String> samOutputs, final int concurrentGenomes,
+      final int expectedThreads) throws IOException, AozanException {
+
+    final FastqScreenPseudoMapReduce pmr = newPseudoMapReduce(dir);
+    final Map<String, Integer> threadsPerGenome = new ConcurrentHashMap<>();
+
+    pmr.mapGenomes(GENOMES, SAMPLE_GENOME, MAPPER_THREADS, concurrentGenomes,
+        (genome, threads) -> {
+
+          threadsPerGenome.put(genome, threads);
+
+          // The last genomes end first
+          sleep(10 * (GENOMES.size() - GENOMES.indexOf(genome)));
+
+          if (!samOutputs.containsKey(genome)) {
+            return null;
+          }
+
+          final FastqScreenSAMParser parser =
+              new FastqScreenSAMParser(pmr.getReadHits(), genome, false);
+
+          try {
+            parser.parseLines(new ByteArrayInputStream(
+                samOutputs.get(genome).getBytes(StandardCharsets.US_ASCII)));
+          } catch (final IOException e) {
+            throw new AozanException(e);
+          }
+
+          return parser;
+        });
+
+    Assert.assertEquals(GENOMES.size(), threadsPerGenome.size());
+    for (final int threads : threadsPerGenome.values()) {
+      Assert.assertEquals(expectedThreads, threads);
+    }
+
+    final RunData data = pmr.getFastqScreenResult().createRundata("s");
+
+    Assert.assertEquals(READ_COUNT, data.getInt("s.read.processed.count"));
+
+    return data.getMap();
+  }
+
+  /**
+   * Create the SAM outputs of the mapper for each genome, some reads map on
+   * several genomes.
+   * @return a map with the SAM output of each genome
+   */
+  private static Map<String, String> createSamOutputs() {
+
+    final Random random = new Random(1);
+    final Map<String, String> result = new HashMap<>();
+
+    for (final String genome : GENOMES) {
+
+      if ("skipped".equals(genome)) {
+        continue;
+      }
+
+      final StringBuilder sb = new StringBuilder();
+      sb.append("@HD\tVN:1.0\tSO:unsorted\n@SQ\tSN:chr1\tLN:1000\n");
+
+      for (int i = 0; i < READ_COUNT; i++) {
+
+        final int hits = random.nextInt(4);
+        final String read = "read" + i;
+
+        if (hits == 0) {
+          sb.append(read + "\t4\t*\t0\t0\t*\t*\t0\t0\tACGT\tIIII\n");
+        } else {
+          sb.append(read + "\t0\tchr1\t10\t255\t4M\t*\t0\t0\tACGT\tIIII\n");
+          if (hits == 3) {
+            sb.append(
+                read + "\t256\tchr1\t50\t255\t4M\t*\t0\t0\tACGT\tIIII\n");
+          }
+        }
+      }
+
+      result.put(genome, sb.toString());
+    }
+
+    return result;
+  }
+
+  /**
+   * Create a FastqScreenPseudoMapReduce object.
+   * @param dir temporary directory
+   * @return a new FastqScreenPseudoMapReduce object
+   */
+  private static FastqScreenPseudoMapReduce newPseudoMapReduce(final File dir)
+      throws AozanException {
+
+    return new FastqScreenPseudoMapReduce(dir,
+        new GenomeIndexCache(new File(dir, "cache"), 0), false, "bowtie",
+        null);
+  }
+
+  /**
+   * Sleep without interruption.
+   * @param millis the time to sleep in milliseconds
+   */
+  private static void sleep(final int millis) {
+
+    try {
+      Thread.sleep(millis);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Delete a directory and its content.
+   * @param dir the directory to delete
+   */
+  private static void delete(final File dir) throws IOException {
+
+    try (Stream<Path> stream = Files.walk(dir.toPath())) {
+      stream.map(Path::toFile).sorted(Comparator.reverseOrder())
+          .forEach(File::delete);
+    }
+  }
+
+}
@@ -0,0 +1,90 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later 
+ * and CeCILL. This should be distributed with the code. If you 
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.fastqscreen;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.aozan.AozanException;
+import fr.ens.biologie.genomique.aozan.RunData;
+
+public class FastqScreenReadHitsTest {
+
+  @Test
+  public void testGetReadOrdinal() {
+
+    final FastqScreenReadHits hits = new FastqScreenReadHits();
+
+    Assert.assertEquals(0, hits.getReadOrdinal("read1"));
+    Assert.assertEquals(1, hits.getReadOrdinal("read2"));
+    Assert.assertEquals(0, hits.getReadOrdinal("read1"));
+    Assert.assertEquals(2, hits.getReadOrdinal("read3"));
+  }
+
+  @Test
+  public void testCountHits() throws AozanException {
+
+    final FastqScreenReadHits hits = new FastqScreenReadHits();
+    final FastqScreenResult result = new FastqScreenResult("bowtie");
+
+    result.addGenome("a", "a");
+    result.addGenome("b", "a");
+    hits.addGenome("a");
+    hits.addGenome("b");
+
+    // read1: one hit on a only
+    hits.addHit("a", "read1", true);
+
+    // read2: multiple hits on a only
+    hits.addHit("a", "read2", false);
+
+    // read3: one hit on a and multiple hits on b
+    hits.addHit("a", "read3", true);
+    hits.addHit("b", "read3", false);
+
+    // read4: one hit on b only
+    hits.addHit("b", "read4", true);
+
+    Assert.assertEquals(4, hits.countHits(result));
+
+    result.countPercentValue(4, 10);
+    final RunData data = result.createRundata("s");
+
+    Assert.assertEquals(0.1, data.getDouble("s.a.one.hit.one.library.percent"),
+        0.0);
+    Assert.assertEquals(0.1,
+        data.getDouble("s.a.multiple.hits.one.library.percent"), 0.0);
+    Assert.assertEquals(0.1,
+        data.getDouble("s.a.one.hit.multiple.libraries.percent"), 0.0);
+    Assert.assertEquals(0.0,
+        data.getDouble("s.a.multiple.hits.multiple.libraries.percent"), 0.0);
+    Assert.assertEquals(0.1,
+        data.getDouble("s.b.one.hit.one.library.percent"), 0.0);
+    Assert.assertEquals(0.1,
+        data.getDouble("s.b.multiple.hits.multiple.libraries.percent"), 0.0);
+    Assert.assertEquals(0.0,
+        data.getDouble("s.b.one.hit.multiple.libraries.percent"), 0.0);
+  }
+
+}
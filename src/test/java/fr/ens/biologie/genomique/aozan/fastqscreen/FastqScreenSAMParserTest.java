@@ -0,0 +1,98 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later 
+ * and CeCILL. This should be distributed with the code. If you 
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.fastqscreen;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.aozan.AozanException;
+import fr.ens.biologie.genomique.aozan.RunData;
+
+public class FastqScreenSAMParserTest {
+
+  private static final String HEADER =
+      "@HD\tVN:1.0\tSO:unsorted\n@SQ\tSN:chr1\tLN:1000\n";
+
+  @Test
+  public void testParseSingleEnd() throws IOException, AozanException {
+
+    final String sam = HEADER
+        + "read1\t0\tchr1\t10\t255\t4M\t*\t0\t0\tACGT\tIIII\n"
+        + "read2\t4\t*\t0\t0\t*\t*\t0\t0\tACGT\tIIII\n"
+        + "read3\t0\tchr1\t10\t255\t4M\t*\t0\t0\tACGT\tIIII\n"
+        + "read3\t256\tchr1\t50\t255\t4M\t*\t0\t0\tACGT\tIIII\r\n"
+        + "read4\t16\tchr1\t90\t255\t4M\t*\t0\t0\tACGT\tIIII";
+
+    final RunData data = parse(sam, false);
+
+    Assert.assertEquals(4, data.getInt("s.read.processed.count"));
+    Assert.assertEquals(3, data.getInt("s.read.mapped.count"));
+    Assert.assertEquals(0.5,
+        data.getDouble("s.g.one.hit.one.library.percent"), 0.0);
+    Assert.assertEquals(0.25,
+        data.getDouble("s.g.multiple.hits.one.library.percent"), 0.0);
+  }
+
+  @Test
+  public void testParsePairedEnd() throws IOException, AozanException {
+
+    final String sam = HEADER
+        + "read1\t99\tchr1\t10\t255\t4M\t=\t50\t44\tACGT\tIIII\n"
+        + "read1\t147\tchr1\t50\t255\t4M\t=\t10\t-44\tACGT\tIIII\n"
+        + "read2\t73\tchr1\t10\t255\t4M\t=\t10\t0\tACGT\tIIII\n"
+        + "read2\t133\tchr1\t10\t0\t*\t=\t10\t0\tACGT\tIIII\n"
+        + "read3\t99\tchr1\t10\t255\t4M\t=\t50\t44\tACGT\tIIII\n"
+        + "read3\t147\tchr1\t50\t255\t4M\t=\t10\t-44\tACGT\tIIII\n"
+        + "read3\t355\tchr1\t60\t255\t4M\t=\t90\t34\tACGT\tIIII\n"
+        + "read3\t403\tchr1\t90\t255\t4M\t=\t60\t-34\tACGT\tIIII\n";
+
+    final RunData data = parse(sam, true);
+
+    Assert.assertEquals(3, data.getInt("s.read.processed.count"));
+    Assert.assertEquals(2, data.getInt("s.read.mapped.count"));
+  }
+
+  private static RunData parse(final String sam, final boolean pairedMode)
+      throws IOException, AozanException {
+
+    final FastqScreenReadHits hits = new FastqScreenReadHits();
+    final FastqScreenSAMParser parser =
+        new FastqScreenSAMParser(hits, "g", pairedMode);
+
+    parser.parseLines(
+        new ByteArrayInputStream(sam.getBytes(StandardCharsets.US_ASCII)));
+
+    final FastqScreenResult result = new FastqScreenResult("bowtie");
+    result.addGenome("g", "g");
+    result.countPercentValue(hits.countHits(result),
+        parser.getReadsprocessed());
+
+    return result.createRundata("s");
+  }
+
+}
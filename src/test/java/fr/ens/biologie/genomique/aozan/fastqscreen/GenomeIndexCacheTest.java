@@ -0,0 +1,322 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later
+ * and CeCILL. This should be distributed with the code. If you
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.fastqscreen;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.aozan.AozanException;
+import fr.ens.biologie.genomique.aozan.fastqscreen.GenomeIndexCache.IndexCreator;
+
+public class GenomeIndexCacheTest {
+
+  private static final int ARCHIVE_SIZE = 1000;
+
+  @Test
+  public void testHitAndMiss() throws IOException, AozanException {
+
+    final File dir = Files.createTempDirectory("genome-cache-").toFile();
+
+    try {
+
+      final File genomeFile = createGenome(dir, "genome1.fasta");
+      final GenomeIndexCache cache =
+          new GenomeIndexCache(new File(dir, "cache"), 0);
+      final AtomicInteger count = new AtomicInteger();
+
+      // Miss
+      final File archive1 =
+          cache.acquireIndexArchive(genomeFile, "bowtie", creator(count));
+      cache.releaseIndexArchive(archive1);
+      Assert.assertEquals(1, count.get());
+      Assert.assertTrue(archive1.isFile());
+
+      // Hit, also with another instance of the cache
+      final File archive2 = new GenomeIndexCache(new File(dir, "cache"), 0)
+          .acquireIndexArchive(genomeFile, "bowtie", creator(count));
+      cache.releaseIndexArchive(archive2);
+      Assert.assertEquals(1, count.get());
+      Assert.assertEquals(archive1, archive2);
+
+      // Each mapper has its own index
+      final File archive3 =
+          cache.acquireIndexArchive(genomeFile, "bwa", creator(count));
+      cache.releaseIndexArchive(archive3);
+      Assert.assertEquals(2, count.get());
+      Assert.assertNotEquals(archive1, archive3);
+
+    } finally {
+      delete(dir);
+    }
+  }
+
+  @Test
+  public void testKeyInvalidation() throws IOException, AozanException {
+
+    final File dir = Files.createTempDirectory("genome-cache-").toFile();
+
+    try {
+
+      final File genomeFile = createGenome(dir, "genome1.fasta");
+      final GenomeIndexCache cache =
+          new GenomeIndexCache(new File(dir, "cache"), 0);
+      final AtomicInteger count = new AtomicInteger();
+
+      final File archive1 = acquireAndRelease(cache, genomeFile, count);
+
+      // The size of the genome changes
+      Files.write(genomeFile.toPath(), "ACGT\n".getBytes(),
+          StandardOpenOption.APPEND);
+      final File archive2 = acquireAndRelease(cache, genomeFile, count);
+      Assert.assertEquals(2, count.get());
+      Assert.assertNotEquals(archive1, archive2);
+
+      // The modification date of the genome changes
+      Assert.assertTrue(
+          genomeFile.setLastModified(genomeFile.lastModified() - 60_000));
+      final File archive3 = acquireAndRelease(cache, genomeFile, count);
+      Assert.assertEquals(3, count.get());
+      Assert.assertNotEquals(archive2, archive3);
+
+    } finally {
+      delete(dir);
+    }
+  }
+
+  @Test
+  public void testEviction() throws IOException, AozanException {
+
+    final File dir = Files.createTempDirectory("genome-cache-").toFile();
+
+    try {
+
+      final File cacheDir = new File(dir, "cache");
+      final GenomeIndexCache cache =
+          new GenomeIndexCache(cacheDir, ARCHIVE_SIZE * 3 / 2);
+      final AtomicInteger count = new AtomicInteger();
+
+      // A directory of the cache directory that is not an entry of the cache
+      final File otherDir = new File(cacheDir, "other");
+      Assert.assertTrue(otherDir.mkdirs());
+      Files.write(new File(otherDir, "file").toPath(),
+          new byte[ARCHIVE_SIZE * 10]);
+      Assert.assertTrue(otherDir.setLastModified(0));
+
+      final File archive1 = acquireAndRelease(cache,
+          createGenome(dir, "genome1.fasta"), count);
+      setOld(archive1, 2);
+
+      // The least recently used entry is removed
+      final File archive2 = acquireAndRelease(cache,
+          createGenome(dir, "genome2.fasta"), count);
+      Assert.assertFalse(archive1.getParentFile().exists());
+      Assert.assertTrue(archive2.isFile());
+
+      // The other files of the cache directory are kept
+      Assert.assertTrue(new File(otherDir, "file").isFile());
+
+      // The removed entry is created again
+      final File archive3 = acquireAndRelease(cache,
+          createGenome(dir, "genome1.fasta"), count);
+      Assert.assertEquals(archive1, archive3);
+      Assert.assertEquals(3, count.get());
+      Assert.assertFalse(archive2.getParentFile().exists());
+
+    } finally {
+      delete(dir);
+    }
+  }
+
+  @Test
+  public void testInUseEntries() throws IOException, AozanException {
+
+    final File dir = Files.createTempDirectory("genome-cache-").toFile();
+
+    try {
+
+      final File cacheDir = new File(dir, "cache");
+      final GenomeIndexCache cache =
+          new GenomeIndexCache(cacheDir, ARCHIVE_SIZE * 3 / 2);
+      final AtomicInteger count = new AtomicInteger();
+
+      final File genome1 = createGenome(dir, "genome1.fasta");
+      final File archive1 =
+          cache.acquireIndexArchive(genome1, "bowtie", creator(count));
+      setOld(archive1, 3);
+
+      // The entry in use is not removed
+      final File archive2 = acquireAndRelease(cache,
+          createGenome(dir, "genome2.fasta"), count);
+      setOld(archive2, 2);
+      Assert.assertTrue(archive1.isFile());
+      Assert.assertTrue(archive2.isFile());
+
+      // The entry is used twice
+      Assert.assertEquals(archive1,
+          cache.acquireIndexArchive(genome1, "bowtie", creator(count)));
+      cache.releaseIndexArchive(archive1);
+
+      final File archive3 = acquireAndRelease(cache,
+          createGenome(dir, "genome3.fasta"), count);
+      Assert.assertTrue(archive1.isFile());
+      Assert.assertFalse(archive2.getParentFile().exists());
+      Assert.assertTrue(archive3.isFile());
+      setOld(archive3, 1);
+
+      // The entry is no more used
+      cache.releaseIndexArchive(archive1);
+      acquireAndRelease(cache, createGenome(dir, "genome4.fasta"), count);
+      Assert.assertFalse(archive1.getParentFile().exists());
+      Assert.assertFalse(archive3.getParentFile().exists());
+
+    } finally {
+      delete(dir);
+    }
+  }
+
+  @Test
+  public void testEntryUsedByAnotherProcess()
+      throws IOException, AozanException {
+
+    final File dir = Files.createTempDirectory("genome-cache-").toFile();
+
+    try {
+
+      final File cacheDir = new File(dir, "cache");
+      final GenomeIndexCache cache =
+          new GenomeIndexCache(cacheDir, ARCHIVE_SIZE * 3 / 2);
+      final AtomicInteger count = new AtomicInteger();
+
+      final File archive1 = acquireAndRelease(cache,
+          createGenome(dir, "genome1.fasta"), count);
+      setOld(archive1, 2);
+
+      // Another process locks the lock file of the entry
+      final File lockFile = new File(cacheDir,
+          ".lock-" + archive1.getParentFile().getName());
+
+      try (FileChannel channel = FileChannel.open(lockFile.toPath(),
+          StandardOpenOption.READ, StandardOpenOption.WRITE);
+          FileLock lock = channel.lock(0, Long.MAX_VALUE, true)) {
+
+        acquireAndRelease(cache, createGenome(dir, "genome2.fasta"), count);
+        Assert.assertTrue(archive1.isFile());
+      }
+
+      acquireAndRelease(cache, createGenome(dir, "genome3.fasta"), count);
+      Assert.assertFalse(archive1.getParentFile().exists());
+
+    } finally {
+      delete(dir);
+    }
+  }
+
+  //
+  // Other methods
+  //
+
+  /**
+   * Create an index creator that count the created indexes.
+   * @param count the count of the created indexes
+   * @return an IndexCreator object
+   */
+  private static IndexCreator creator(final AtomicInteger count) {
+
+    return f -> {
+      Files.write(f.toPath(), new byte[ARCHIVE_SIZE]);
+      count.incrementAndGet();
+    };
+  }
+
+  /**
+   * Acquire and release the bowtie index archive of a genome.
+   * @param cache the cache
+   * @param genomeFile the genome file
+   * @param count the count of the created indexes
+   * @return the index archive
+   */
+  private static File acquireAndRelease(final GenomeIndexCache cache,
+      final File genomeFile, final AtomicInteger count)
+      throws IOException, AozanException {
+
+    final File result =
+        cache.acquireIndexArchive(genomeFile, "bowtie", creator(count));
+    cache.releaseIndexArchive(result);
+
+    return result;
+  }
+
+  /**
+   * Create a genome file.
+   * @param dir the directory of the genome
+   * @param filename the name of the genome file
+   * @return the genome file
+   */
+  private static File createGenome(final File dir, final String filename)
+      throws IOException {
+
+    final File result = new File(dir, filename);
+
+    if (!result.exists()) {
+      Files.write(result.toPath(), (">chr1\nACGTACGTACGT\n").getBytes());
+    }
+
+    return result;
+  }
+
+  /**
+   * Set the last access date of the entry of an index archive in the past.
+   * @param archive the index archive
+   * @param minutes number of minutes since the last access
+   */
+  private static void setOld(final File archive, final int minutes) {
+
+    Assert.assertTrue(archive.getParentFile()
+        .setLastModified(System.currentTimeMillis() - minutes * 60_000L));
+  }
+
+  /**
+   * Delete a directory and its content.
+   * @param dir the directory to delete
+   */
+  private static void delete(final File dir) throws IOException {
+
+    try (Stream<Path> stream = Files.walk(dir.toPath())) {
+      stream.map(Path::toFile).sorted(Comparator.reverseOrder())
+          .forEach(File::delete);
+    }
+  }
+
+}
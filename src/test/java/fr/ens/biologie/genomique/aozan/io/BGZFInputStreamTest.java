@@ -0,0 +1,189 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later 
+ * and CeCILL. This should be distributed with the code. If you 
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BGZFInputStreamTest {
+
+  @Test
+  public void testReadBGZF() throws IOException {
+
+    final byte[] data = createFastq(20000);
+    final File file = File.createTempFile("bgzf-test", ".fastq.gz");
+
+    try {
+      writeBGZF(file, data, 10000);
+
+      Assert.assertTrue(BGZFInputStream.isBGZF(file));
+
+      for (int threads = 1; threads <= 4; threads++) {
+        try (InputStream is = new BGZFInputStream(file, threads)) {
+          Assert.assertArrayEquals(data, is.readAllBytes());
+        }
+      }
+
+      // The multithreaded stream must give the same result as a gzip stream
+      try (InputStream is = new GZIPInputStream(new FileInputStream(file))) {
+        Assert.assertArrayEquals(data, is.readAllBytes());
+      }
+
+    } finally {
+      Files.delete(file.toPath());
+    }
+  }
+
+  @Test
+  public void testIsBGZF() throws IOException {
+
+    final File file = File.createTempFile("bgzf-test", ".fastq.gz");
+
+    try {
+      try (OutputStream os = new GZIPOutputStream(new FileOutputStream(file))) {
+        os.write(createFastq(10));
+      }
+
+      Assert.assertFalse(BGZFInputStream.isBGZF(file));
+
+    } finally {
+      Files.delete(file.toPath());
+    }
+  }
+
+  @Test
+  public void testPrefetch() throws IOException {
+
+    final byte[] data = createFastq(20000);
+    final File file = File.createTempFile("bgzf-test", ".fastq.gz");
+
+    try {
+      try (OutputStream os = new GZIPOutputStream(new FileOutputStream(file))) {
+        os.write(data);
+      }
+
+      try (InputStream is = new PrefetchInputStream(
+          new GZIPInputStream(new FileInputStream(file)), 1000, 3)) {
+        Assert.assertArrayEquals(data, is.readAllBytes());
+      }
+
+      // Close the stream before the end of the data
+      final InputStream is = new PrefetchInputStream(
+          new GZIPInputStream(new FileInputStream(file)), 1000, 2);
+      Assert.assertEquals('@', is.read());
+      is.close();
+
+      try {
+        is.read();
+        Assert.fail();
+      } catch (IOException e) {
+        // Expected exception
+      }
+
+    } finally {
+      Files.delete(file.toPath());
+    }
+  }
+
+  //
+  // Other methods
+  //
+
+  private static byte[] createFastq(final int count) {
+
+    final StringBuilder sb = new StringBuilder();
+
+    for (int i = 0; i < count; i++) {
+      sb.append("@read");
+      sb.append(i);
+      sb.append(" 1:N:0:ACGTACGT\n");
+      sb.append("ACGTACGTACGTACGTACGT\n+\nIIIIIIIIIIIIIIIIIIII\n");
+    }
+
+    return sb.toString().getBytes(StandardCharsets.US_ASCII);
+  }
+
+  private static void writeBGZF(final File file, final byte[] data,
+      final int memberSize) throws IOException {
+
+    try (OutputStream os = new FileOutputStream(file)) {
+
+      for (int off = 0; off < data.length; off += memberSize) {
+        writeMember(os, data, off, Math.min(memberSize, data.length - off));
+      }
+
+      // End of file marker
+      writeMember(os, data, 0, 0);
+    }
+  }
+
+  private static void writeMember(final OutputStream os, final byte[] data,
+      final int off, final int len) throws IOException {
+
+    final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    deflater.setInput(data, off, len);
+    deflater.finish();
+
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[4096];
+    while (!deflater.finished()) {
+      compressed.write(buffer, 0, deflater.deflate(buffer));
+    }
+    deflater.end();
+
+    final CRC32 crc = new CRC32();
+    crc.update(data, off, len);
+
+    final int blockSize = 18 + compressed.size() + 8 - 1;
+
+    os.write(new byte[] {31, (byte) 139, 8, 4, 0, 0, 0, 0, 0, (byte) 255, 6,
+        0, 'B', 'C', 2, 0, (byte) blockSize, (byte) (blockSize >> 8)});
+    compressed.writeTo(os);
+    writeInt(os, crc.getValue());
+    writeInt(os, len);
+  }
+
+  private static void writeInt(final OutputStream os, final long value)
+      throws IOException {
+
+    for (int i = 0; i < 4; i++) {
+      os.write((int) (value >> (8 * i)));
+    }
+  }
+
+}
@@ -0,0 +1,114 @@
+/*
+ *                  Aozan development code
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU General Public License version 3 or later
+ * and CeCILL. This should be distributed with the code. If you
+ * do not have a copy, see:
+ *
+ *      http://www.gnu.org/licenses/gpl-3.0-standalone.html
+ *      http://www.cecill.info/licences/Licence_CeCILL_V2-en.html
+ *
+ * Copyright for this code is held jointly by the Genomic platform
+ * of the Institut de Biologie de l'École Normale Supérieure and
+ * the individual authors. These should be listed in @author doc
+ * comments.
+ *
+ * For more information on the Aozan project and its aims,
+ * or to join the Aozan Google group, visit the home page at:
+ *
+ *      http://outils.genomique.biologie.ens.fr/aozan
+ *
+ */
+
+package fr.ens.biologie.genomique.aozan.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import fr.ens.biologie.genomique.kenetre.KenetreException;
+
+public class FastqRecordScannerTest {
+
+  @Test
+  public void testNext() throws IOException, KenetreException {
+
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      sb.append("@EAS139:136:FC706VJ:2:2104:15343:" + i + " 1:"
+          + (i % 3 == 0 ? 'Y' : 'N') + ":18:ATCACG\n");
+      sb.append("ACGTACGTAC\n+\nIIIIIIIIII\n");
+    }
+    final byte[] data = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+    // Small buffers test the records across the buffer boundaries
+    for (int bufferSize : new int[] {1, 7, 64, 1024 * 1024}) {
+
+      try (FastqRecordScanner scanner = new FastqRecordScanner(
+          new ByteArrayInputStream(data), bufferSize)) {
+
+        int count = 0;
+        while (scanner.next()) {
+
+          Assert.assertEquals(
+              "EAS139:136:FC706VJ:2:2104:15343:"
+                  + count + " 1:" + (count % 3 == 0 ? 'Y' : 'N')
+                  + ":18:ATCACG",
+              scanner.getName());
+          Assert.assertEquals("ACGTACGTAC", scanner.getSequence());
+          Assert.assertEquals("IIIIIIIIII", scanner.getQuality());
+          Assert.assertEquals(count % 3 == 0, scanner.isFiltered());
+          count++;
+        }
+
+        Assert.assertEquals(1000, count);
+      }
+    }
+  }
+
+  @Test
+  public void testEndOfLines() throws IOException {
+
+    final String data = "\n@read1\r\nACGT\r\n+read1\r\nIIII\r\n\r\n"
+        + "@read2\nAC\n+\nII";
+
+    try (FastqRecordScanner scanner = new FastqRecordScanner(
+        new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)), 4)) {
+
+      Assert.assertTrue(scanner.next());
+      Assert.assertEquals("read1", scanner.getName());
+      Assert.assertEquals("ACGT", scanner.getSequence());
+      Assert.assertEquals("IIII", scanner.getQuality());
+
+      Assert.assertTrue(scanner.next());
+      Assert.assertEquals("read2", scanner.getName());
+      Assert.assertEquals("AC", scanner.getSequence());
+      Assert.assertEquals("II", scanner.getQuality());
+
+      Assert.assertFalse(scanner.next());
+    }
+  }
+
+  @Test
+  public void testInvalidRecords() {
+
+    for (String data : new String[] {"@read1\nACGT\n+\n",
+        "read1\nACGT\n+\nIIII\n", "@read1\nACGT\n-\nIIII\n",
+        "@read1\nACGT\n+\nIII\n"}) {
+
+      try (FastqRecordScanner scanner = new FastqRecordScanner(
+          new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)))) {
+
+        scanner.next();
+        Assert.fail();
+      } catch (IOException e) {
+        Assert.assertTrue(true);
+      }
+    }
+  }
+
+}